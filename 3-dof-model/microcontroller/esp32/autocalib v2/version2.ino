@@ -1,6 +1,7 @@
 #include <Arduino.h>
    #include <Ticker.h>
     #include "EMGFilters.h"
+    #include <Preferences.h>
 
     // ==================== Pin Definitions ====================
     const int SensorInputPin = 4; // ADC1_CH6
@@ -20,6 +21,11 @@
     float UpperThreshold = 0.0;
     float LowerThreshold = 0.0;
 
+    // ==================== Saved Calibration ====================
+    // Levels and thresholds survive power cycles in NVS, so only the first boot
+    // (or one after the app cleared them) has to calibrate
+    Preferences calibrationStore;
+
     // ==================== Signal Smoothing Parameters ====================
     const int smoothingWindowSize = 50;
     float smoothingBuffer[smoothingWindowSize] = {0};
@@ -39,6 +45,20 @@
     volatile int Value = 0;
     volatile bool newData = false;
 
+    // ==================== Binary Framing (see app BinaryProtocol) ====================
+    const uint8_t PACKET_SYNC_0 = 0xA5;
+    const uint8_t PACKET_SYNC_1 = 0x5A;
+    const uint8_t PACKET_VERSION = 1;
+    const uint8_t PACKET_CHANNEL_MASK = 0x01;
+    const int FRAMES_PER_PACKET = 10;
+    const int PACKET_SIZE = 7 + FRAMES_PER_PACKET * 2 + 2;
+    bool binaryMode = false;
+    uint16_t packetSequence = 0;
+    int16_t packetSamples[FRAMES_PER_PACKET];
+    int packetFill = 0;
+    char commandBuffer[32];
+    int commandLength = 0;
+
     // ==================== Ticker Setup ====================
     Ticker timerTicker;
 
@@ -66,18 +86,24 @@
         timerTicker.attach_ms(1, onTick); // 1ms interval
 
         // ==================== Calibration ====================
-        Serial.println("Starting calibration...");
-        calibrateEMG();
-        Serial.println("Calibration complete.");
+        calibrationStore.begin("emg", false);
+        if (loadCalibration()) {
+            Serial.println("Using saved calibration.");
+        } else {
+            Serial.println("Starting calibration...");
+            calibrateEMG();
+            Serial.println("Calibration complete.");
+
+            // Set thresholds based on calibration
+            UpperThreshold = (restLevel + activeLevel) / 2 + (activeLevel - restLevel) * 0.2;
+            LowerThreshold = (restLevel + activeLevel) / 2 - (activeLevel - restLevel) * 0.2;
+            saveCalibration();
+        }
         Serial.print("Rest Level: ");
         Serial.println(restLevel);
         Serial.print("Active Level: ");
         Serial.println(activeLevel);
 
-        // Set thresholds based on calibration
-        UpperThreshold = (restLevel + activeLevel) / 2 + (activeLevel - restLevel) * 0.2;
-        LowerThreshold = (restLevel + activeLevel) / 2 - (activeLevel - restLevel) * 0.2;
-
         Serial.print("UpperThreshold: ");
         Serial.println(UpperThreshold);
         Serial.print("LowerThreshold: ");
@@ -85,6 +111,8 @@
     }
 
     void loop() {
+        readCommands();
+
         if (newData) {
             newData = false;
 
@@ -107,8 +135,11 @@
             float smoothedEnvelope = smoothingSum / (bufferFilled ? smoothingWindowSize : smoothingIndex);
 
             // Send smoothed data to Serial Monitor (for graphing)
-
-            Serial.println(smoothedEnvelope);
+            if (binaryMode) {
+                queueBinarySample(smoothedEnvelope);
+            } else {
+                Serial.println(smoothedEnvelope);
+            }
 
             // State machine logic with debouncing
             unsigned long currentTime = millis();
@@ -120,7 +151,7 @@
                             currentState = ACTIVE;
                             digitalWrite(ledPin, HIGH); // Turn LED on
                             lastStateChangeTime = currentTime;
-                            Serial.println("State changed to ACTIVE");
+                            if (!binaryMode) Serial.println("State changed to ACTIVE");
                         }
                     }
                     break;
@@ -131,7 +162,7 @@
                             currentState = IDLE;
                             digitalWrite(ledPin, LOW);  // Turn LED off
                             lastStateChangeTime = currentTime;
-                            Serial.println("State changed to IDLE");
+                            if (!binaryMode) Serial.println("State changed to IDLE");
                         }
                     }
                     break;
@@ -177,3 +208,101 @@
 
         activeLevel = (activeCount > 0) ? (activeSum / activeCount) : 0;
     }
+
+    bool loadCalibration() {
+        if (!calibrationStore.isKey("upper")) return false;
+        restLevel = calibrationStore.getFloat("rest", 0.0);
+        activeLevel = calibrationStore.getFloat("active", 0.0);
+        UpperThreshold = calibrationStore.getFloat("upper", 0.0);
+        LowerThreshold = calibrationStore.getFloat("lower", 0.0);
+        return UpperThreshold >= LowerThreshold;
+    }
+
+    void saveCalibration() {
+        calibrationStore.putFloat("rest", restLevel);
+        calibrationStore.putFloat("active", activeLevel);
+        calibrationStore.putFloat("lower", LowerThreshold);
+        // Written last, so a power cut mid-save leaves no "upper" and a fresh calibration
+        calibrationStore.putFloat("upper", UpperThreshold);
+    }
+
+    // ==================== Binary Framing ====================
+    // The app sends "BIN 1" right after connecting; answer by switching to packets.
+    // "THR <channel> <upper> <lower>" replaces the thresholds with ones the app calibrated,
+    // and saves them for the next boot; "CAL RESET" forgets them.
+    // Commands may end in " #<seq>"; those are answered with "ACK <seq>" once applied.
+    void readCommands() {
+        while (Serial.available() > 0) {
+            char c = Serial.read();
+            if (c == '\n') {
+                commandBuffer[commandLength] = '\0';
+                int sequence = -1;
+                char *tag = strstr(commandBuffer, " #");
+                if (tag != NULL) {
+                    sequence = atoi(tag + 2);
+                    *tag = '\0';
+                }
+                int channel;
+                float upper, lower;
+                if (strcmp(commandBuffer, "BIN 1") == 0) {
+                    binaryMode = true;
+                    packetFill = 0;
+                } else if (sscanf(commandBuffer, "THR %d %f %f", &channel, &upper, &lower) == 3
+                        && channel == 0 && upper >= lower) {
+                    // The app resends them on every connection; flash is only written on a change
+                    if (upper != UpperThreshold || lower != LowerThreshold) {
+                        UpperThreshold = upper;
+                        LowerThreshold = lower;
+                        saveCalibration();
+                    }
+                } else if (strcmp(commandBuffer, "CAL RESET") == 0) {
+                    calibrationStore.clear();
+                }
+                if (sequence >= 0) {
+                    // Between packets, so the app's decoder skips it like any stray byte
+                    Serial.printf("ACK %d\n", sequence);
+                }
+                commandLength = 0;
+            } else if (c != '\r' && commandLength < (int) sizeof(commandBuffer) - 1) {
+                commandBuffer[commandLength++] = c;
+            }
+        }
+    }
+
+    uint16_t crc16(const uint8_t *data, int length) {
+        uint16_t crc = 0xFFFF;
+        for (int i = 0; i < length; i++) {
+            crc ^= (uint16_t) data[i] << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+        }
+        return crc;
+    }
+
+    void queueBinarySample(float value) {
+        float scaled = constrain(value * 10.0f, -32768.0f, 32767.0f);
+        packetSamples[packetFill++] = (int16_t) lroundf(scaled);
+        if (packetFill < FRAMES_PER_PACKET) return;
+
+        uint8_t packet[PACKET_SIZE];
+        int p = 0;
+        packet[p++] = PACKET_SYNC_0;
+        packet[p++] = PACKET_SYNC_1;
+        packet[p++] = PACKET_VERSION;
+        packet[p++] = PACKET_CHANNEL_MASK;
+        packet[p++] = packetSequence & 0xFF;
+        packet[p++] = packetSequence >> 8;
+        packet[p++] = FRAMES_PER_PACKET;
+        for (int i = 0; i < FRAMES_PER_PACKET; i++) {
+            packet[p++] = packetSamples[i] & 0xFF;
+            packet[p++] = (uint16_t) packetSamples[i] >> 8;
+        }
+        uint16_t crc = crc16(packet + 2, p - 2);
+        packet[p++] = crc & 0xFF;
+        packet[p++] = crc >> 8;
+
+        Serial.write(packet, PACKET_SIZE);
+        packetSequence += FRAMES_PER_PACKET;
+        packetFill = 0;
+    }
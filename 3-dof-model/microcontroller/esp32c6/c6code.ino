@@ -106,6 +106,11 @@ class MyCallbacks: public BLECharacteristicCallbacks {
             char msgBuffer[100] = {0};
             size_t copyLen = std::min(len, sizeof(msgBuffer) - 1);
             memcpy(msgBuffer, data, copyLen);
+            // The app ends each command with " #<seq>" and a newline; match on the command alone
+            msgBuffer[strcspn(msgBuffer, "#\r\n")] = '\0';
+            for (int end = strlen(msgBuffer); end > 0 && msgBuffer[end - 1] == ' '; end--) {
+                msgBuffer[end - 1] = '\0';
+            }
 
             Serial.printf("BLE Received: %s\n", msgBuffer);
 
@@ -0,0 +1,77 @@
+import sys
+import gzip
+import struct
+import numpy as np
+
+# Loads a session exported from the app (Settings > Export session):
+#   .csv.gz  gzip CSV, "time_s,channel_1,..." with empty fields for missing values
+#   .hkc     gzip columnar, little endian (see SessionExporter.java)
+# Both return (time in seconds from the first sample, values[samples, channels]).
+
+HKC_MAGIC = 0x4C434B48  # "HKCL"
+HKC_VERSION = 1
+
+
+def load_csv(path):
+    with gzip.open(path, 'rt') as f:
+        header = f.readline().strip().split(',')
+        data = np.genfromtxt(f, delimiter=',', dtype=np.float64, missing_values='', filling_values=np.nan,
+                             ndmin=2)
+    if data.size == 0:
+        return np.zeros(0), np.zeros((0, len(header) - 1), dtype=np.float32)
+    return data[:, 0], data[:, 1:].astype(np.float32)
+
+
+def load_columnar(path):
+    with gzip.open(path, 'rb') as f:
+        raw = f.read()
+
+    magic, version, channels, start_millis, first_nanos = struct.unpack_from('<iiiqq', raw, 0)
+    if magic != HKC_MAGIC:
+        raise ValueError(f"{path} is not an .hkc export")
+    if version != HKC_VERSION:
+        raise ValueError(f"Unsupported .hkc version {version}")
+
+    deltas, columns = [], []
+    offset = struct.calcsize('<iiiqq')
+    while offset < len(raw):
+        (samples,) = struct.unpack_from('<i', raw, offset)
+        offset += 4
+        deltas.append(np.frombuffer(raw, dtype='<i8', count=samples, offset=offset))
+        offset += 8 * samples
+        block = np.frombuffer(raw, dtype='<f4', count=samples * channels, offset=offset)
+        columns.append(block.reshape(channels, samples).T)
+        offset += 4 * samples * channels
+
+    if not deltas:
+        return np.zeros(0), np.zeros((0, channels), dtype=np.float32)
+    # Deltas run from firstTimestampNanos, so the first sample is at zero
+    time = np.cumsum(np.concatenate(deltas)) / 1e9
+    return time, np.concatenate(columns)
+
+
+def load_session(path):
+    if path.endswith('.csv.gz'):
+        return load_csv(path)
+    if path.endswith('.hkc'):
+        return load_columnar(path)
+    raise ValueError(f"Unknown export format: {path}")
+
+
+def main():
+    if len(sys.argv) < 2:
+        print("Usage: python load_session.py <session.csv.gz|session.hkc>")
+        sys.exit(1)
+
+    time, values = load_session(sys.argv[1])
+    duration = time[-1] if len(time) else 0.0
+    print(f"{len(time)} samples, {values.shape[1]} channels, {duration:.3f} s")
+    for c in range(values.shape[1]):
+        column = values[:, c]
+        present = column[~np.isnan(column)]
+        if len(present):
+            print(f"channel_{c + 1}: min {present.min():.3f}  max {present.max():.3f}  mean {present.mean():.3f}")
+
+
+if __name__ == '__main__':
+    main()
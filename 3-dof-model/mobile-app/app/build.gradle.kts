@@ -1,5 +1,7 @@
 plugins {
     id("com.android.application")
+    // Builds the benchmark variants and merges the profile from :macrobenchmark
+    id("androidx.baselineprofile")
 }
 
 android {
@@ -47,9 +49,15 @@ dependencies {
     implementation ("androidx.cardview:cardview:1.0.0")
     // Bluetooth and Graphs
     implementation("com.jjoe64:graphview:4.2.2")
+    implementation(project(":ingest"))
+    // Installs the baseline profile on sideloaded and older builds too
+    implementation(libs.profileinstaller)
+    baselineProfile(project(":macrobenchmark"))
 
     // Testing
     testImplementation("junit:junit:4.13.2")
+    // The android.jar stubs of org.json throw in local unit tests
+    testImplementation("org.json:json:20231013")
     androidTestImplementation("androidx.test.ext:junit:1.1.5")
     androidTestImplementation("androidx.test.espresso:espresso-core:3.5.1")
 }
\ No newline at end of file
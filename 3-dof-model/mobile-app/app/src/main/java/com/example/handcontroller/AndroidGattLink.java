@@ -0,0 +1,177 @@
+package com.example.handcontroller;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.bluetooth.BluetoothProfile;
+import android.content.Context;
+import android.os.Build;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * {@link GattLink} on Android's BluetoothGatt, for boards that stream samples
+ * as notifications instead of over RFCOMM. Callbacks arrive on a binder
+ * thread. Callers check the Bluetooth permissions before connecting.
+ */
+@SuppressLint("MissingPermission")
+public class AndroidGattLink implements GattLink {
+
+    // Client Characteristic Configuration descriptor
+    private static final UUID CCCD_UUID = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+
+    private final Context context;
+    private final BluetoothDevice device;
+    private volatile BluetoothGatt gatt;
+    private volatile Callback callback;
+    private BluetoothGattCharacteristic sampleCharacteristic;
+    private BluetoothGattCharacteristic commandCharacteristic;
+
+    private final BluetoothGattCallback gattCallback = new BluetoothGattCallback() {
+        @Override
+        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
+            callback.onConnectionStateChanged(status == BluetoothGatt.GATT_SUCCESS
+                    && newState == BluetoothProfile.STATE_CONNECTED);
+        }
+
+        @Override
+        public void onServicesDiscovered(BluetoothGatt gatt, int status) {
+            BluetoothGattService service = status == BluetoothGatt.GATT_SUCCESS
+                    ? gatt.getService(BleSensorSource.SERVICE_UUID)
+                    : null;
+            if (service != null) {
+                sampleCharacteristic = service.getCharacteristic(BleSensorSource.SAMPLE_CHARACTERISTIC_UUID);
+                commandCharacteristic = service.getCharacteristic(BleSensorSource.COMMAND_CHARACTERISTIC_UUID);
+            }
+            callback.onServicesDiscovered(sampleCharacteristic != null);
+        }
+
+        @Override
+        public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
+            callback.onMtuChanged(mtu, status == BluetoothGatt.GATT_SUCCESS);
+        }
+
+        @Override
+        public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
+            if (CCCD_UUID.equals(descriptor.getUuid())) {
+                callback.onNotificationsEnabled(status == BluetoothGatt.GATT_SUCCESS);
+            }
+        }
+
+        @Override
+        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic,
+                                            byte[] value) {
+            callback.onNotification(value, value.length);
+        }
+
+        // Before API 33 the value is only available on the characteristic
+        @Override
+        @SuppressWarnings("deprecation")
+        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU) {
+                byte[] value = characteristic.getValue();
+                callback.onNotification(value, value.length);
+            }
+        }
+    };
+
+    public AndroidGattLink(Context context, BluetoothDevice device) {
+        this.context = context.getApplicationContext();
+        this.device = device;
+    }
+
+    @Override
+    public void connect(Callback callback) throws IOException {
+        this.callback = callback;
+        sampleCharacteristic = null;
+        commandCharacteristic = null;
+        gatt = device.connectGatt(context, false, gattCallback, BluetoothDevice.TRANSPORT_LE);
+        if (gatt == null) {
+            throw new IOException("connectGatt failed");
+        }
+    }
+
+    @Override
+    public void discoverServices() {
+        if (!gatt.discoverServices()) {
+            callback.onServicesDiscovered(false);
+        }
+    }
+
+    @Override
+    public void requestMtu(int mtu) {
+        if (!gatt.requestMtu(mtu)) {
+            callback.onMtuChanged(BleSensorSource.DEFAULT_MTU, false);
+        }
+    }
+
+    @Override
+    public void requestLowLatency() {
+        gatt.requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_HIGH);
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void enableNotifications() {
+        BluetoothGattDescriptor cccd = sampleCharacteristic.getDescriptor(CCCD_UUID);
+        boolean started = cccd != null && gatt.setCharacteristicNotification(sampleCharacteristic, true);
+        if (started) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+                started = gatt.writeDescriptor(cccd, BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE)
+                        == BluetoothGatt.GATT_SUCCESS;
+            } else {
+                cccd.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
+                started = gatt.writeDescriptor(cccd);
+            }
+        }
+        if (!started) {
+            callback.onNotificationsEnabled(false);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void write(byte[] value) throws IOException {
+        if (commandCharacteristic == null) {
+            // Boards without a command characteristic simply keep their framing
+            return;
+        }
+        // The C6 command characteristic only takes acknowledged writes
+        boolean written;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            written = gatt.writeCharacteristic(commandCharacteristic, value,
+                    BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT) == BluetoothGatt.GATT_SUCCESS;
+        } else {
+            commandCharacteristic.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
+            commandCharacteristic.setValue(value);
+            written = gatt.writeCharacteristic(commandCharacteristic);
+        }
+        if (!written) {
+            throw new IOException("GATT write failed");
+        }
+    }
+
+    @Override
+    public void close() {
+        BluetoothGatt current = gatt;
+        if (current != null) {
+            current.disconnect();
+            current.close();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return device.getName() != null ? device.getName() : device.getAddress();
+    }
+
+    @Override
+    public String getAddress() {
+        return device.getAddress();
+    }
+}
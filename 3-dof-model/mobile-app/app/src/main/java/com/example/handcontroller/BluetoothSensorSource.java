@@ -0,0 +1,71 @@
+package com.example.handcontroller;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+
+/**
+ * Classic Bluetooth (RFCOMM/SPP) connection to a paired board.
+ * Callers check the Bluetooth permissions before opening it.
+ */
+@SuppressLint("MissingPermission")
+public class BluetoothSensorSource implements SensorSource {
+
+    private final BluetoothDevice device;
+    private final UUID serviceUuid;
+    private BluetoothSocket socket;
+    private InputStream inputStream;
+    private OutputStream outputStream;
+
+    public BluetoothSensorSource(BluetoothDevice device, UUID serviceUuid) {
+        this.device = device;
+        this.serviceUuid = serviceUuid;
+    }
+
+    @Override
+    public void open() throws IOException {
+        socket = device.createRfcommSocketToServiceRecord(serviceUuid);
+        socket.connect();
+        inputStream = socket.getInputStream();
+        outputStream = socket.getOutputStream();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        return inputStream.read(buffer, offset, length);
+    }
+
+    @Override
+    public void write(byte[] data) throws IOException {
+        outputStream.write(data);
+        outputStream.flush();
+    }
+
+    @Override
+    public String getName() {
+        return device.getName() != null ? device.getName() : device.getAddress();
+    }
+
+    @Override
+    public String getAddress() {
+        return device.getAddress();
+    }
+
+    @Override
+    public boolean isLive() {
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Closing the socket also closes its streams and unblocks a pending read
+        if (socket != null) {
+            socket.close();
+        }
+    }
+}
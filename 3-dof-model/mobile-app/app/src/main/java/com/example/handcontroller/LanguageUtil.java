@@ -1,23 +1,50 @@
 package com.example.handcontroller;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.content.res.Configuration;
-import android.content.res.Resources;
 
 import java.util.Locale;
 
+/**
+ * The app's chosen language, applied once per activity when its context is
+ * attached (see {@link #wrap}) rather than by patching the shared Resources
+ * after the views exist.
+ *
+ * The preference is read once per process and kept here, so later
+ * activities and language checks in onResume cost no disk access.
+ */
 public class LanguageUtil {
 
-    public static void applySavedLanguage(Context context) {
-        SharedPreferences preferences = context.getSharedPreferences("AppPrefs", Context.MODE_PRIVATE);
-        String languageCode = preferences.getString("language", "en"); // Default to English
-        Locale locale = new Locale(languageCode);
-        Locale.setDefault(locale);
+    public static final String PREF_LANGUAGE = "language";
+    private static final String DEFAULT_LANGUAGE = "en";
+
+    private static volatile String language;
 
-        Resources resources = context.getResources();
-        Configuration config = resources.getConfiguration();
+    /** For attachBaseContext: base configured for the saved language. */
+    public static Context wrap(Context base) {
+        Locale locale = new Locale(getLanguage(base));
+        Locale.setDefault(locale);
+        Configuration config = new Configuration(base.getResources().getConfiguration());
         config.setLocale(locale);
-        resources.updateConfiguration(config, resources.getDisplayMetrics());
+        config.setLayoutDirection(locale);
+        return base.createConfigurationContext(config);
+    }
+
+    public static String getLanguage(Context context) {
+        String current = language;
+        if (current == null) {
+            current = context.getSharedPreferences("AppPrefs", Context.MODE_PRIVATE)
+                    .getString(PREF_LANGUAGE, DEFAULT_LANGUAGE);
+            language = current;
+        }
+        return current;
+    }
+
+    /** Saves the language; activities pick it up when they are next created. */
+    public static void setLanguage(Context context, String languageCode) {
+        language = languageCode;
+        context.getSharedPreferences("AppPrefs", Context.MODE_PRIVATE).edit()
+                .putString(PREF_LANGUAGE, languageCode)
+                .apply();
     }
 }
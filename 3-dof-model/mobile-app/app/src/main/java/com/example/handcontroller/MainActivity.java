@@ -3,33 +3,51 @@ package com.example.handcontroller;
 import android.Manifest;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothSocket;
+import android.bluetooth.BluetoothManager;
+import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.content.res.Configuration;
-import android.content.res.Resources;
+import android.content.res.TypedArray;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
+import android.os.IBinder;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.LayoutInflater;
+import android.view.View;
 import android.widget.Button;
+import android.widget.LinearLayout;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.jjoe64.graphview.GraphView;
+import com.jjoe64.graphview.series.BarGraphSeries;
 import com.jjoe64.graphview.series.DataPoint;
-import com.jjoe64.graphview.series.LineGraphSeries;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import java.util.UUID;
@@ -37,16 +55,101 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
-    private GraphView graphSensor1, graphSensor2;
-    private LineGraphSeries<DataPoint> seriesSensor1, seriesSensor2;
-    private int x1 = 0, x2 = 0;
-
+    // One graph per channel of every link, rebuilt whenever a link's channel layout changes
+    private LinearLayout channelGraphs;
+    private TextView tvLinkStats;
+    private TextView tvLatency;
+    private ChannelDescriptor[] shownLayouts = new ChannelDescriptor[0];
+    private int[] linkOffsets = new int[0];
+    private int[] linkChannels = new int[0];
+    private StreamingChartView[] channelCharts = new StreamingChartView[0];
+    private View trendCard;
+    private GraphView trendGraph;
+    private static final int TREND_DAYS = 90;
+    private static final String TAG = "MainActivity";
+    // File reads off the UI thread, one at a time; shut down with the activity
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+    // A minute of history at 1 kHz per channel in primitive ring buffers, decimated to one bucket per pixel column
+    private static final int SERIES_CAPACITY = 65536;
+    private static final int MAX_DISPLAY_BUCKETS = 2048;
+    private static final long GRAPH_WINDOW_MILLIS = 30_000;
+    private DecimatedSeries[] sensorSeries = new DecimatedSeries[0];
+
+    // Looked up on the first connect, not at startup
     private BluetoothAdapter bluetoothAdapter;
-    private BluetoothSocket bluetoothSocket;
-    private InputStream inputStream;
+    // Language the views were inflated in; another one means recreate
+    private String language;
+
+    // The connection and read thread live in the service so they survive this activity
+    private StreamingService streamingService;
+    private SensorSource[] pendingSources;
+    private boolean replayOnConnect;
+    private boolean failureReported;
+    private StreamingLoop.State lastState = StreamingLoop.State.DISCONNECTED;
+    private final StreamingService.Listener streamingListener = this::onStreamingStateChanged;
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            streamingService = ((StreamingService.LocalBinder) binder).getService();
+            streamingService.addListener(streamingListener);
+            if (pendingSources != null) {
+                streamingService.connect(pendingSources);
+                pendingSources = null;
+            } else if (replayOnConnect && !streamingService.isStreaming()) {
+                // Until a board is connected, play a recorded session or a generated waveform
+                startReplay();
+            }
+            replayOnConnect = false;
+            startDrainingSamples();
+        }
 
-    private final Handler mainHandler = new Handler(Looper.getMainLooper());
-    private Runnable graphUpdateRunnable;
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            streamingService = null;
+        }
+    };
+
+    // Intent extras for replaying instead of connecting, e.g. for load tests on an emulator
+    public static final String EXTRA_REPLAY_SESSION = "replay_session";
+    public static final String EXTRA_REPLAY_SPEED = "replay_speed";
+    public static final String EXTRA_REPLAY_ENCODING = "replay_encoding";
+    public static final String EXTRA_REPLAY_CHANNELS = "replay_channels";
+    private static final int DEFAULT_REPLAY_CHANNELS = 2;
+    private static final String PREF_SELECTED_DEVICES = "selected_devices";
+
+    // Link pipelines -> UI hand-off, merged in time order once per vsync
+    private final StreamMerger streamMerger = new StreamMerger(SystemClock::elapsedRealtimeNanos);
+    private IngestPipeline[] linkPipelines = new IngestPipeline[0];
+    private ChannelDescriptor[] linkLayouts = new ChannelDescriptor[0];
+    private long[] linkBytesRead = new long[0];
+    private long linkStatsNanos;
+
+    // Drain to drawn and frame stamped to drawn, timed on the UI thread
+    private final LatencyHistogram drawLatency = new LatencyHistogram();
+    private final LatencyHistogram endToEndLatency = new LatencyHistogram();
+    private long drainedAtNanos;
+    private long newestMergedNanos;
+    private boolean drawPending;
+    private static final String PREF_LATENCY_OVERLAY = "latency_overlay";
+
+    private final StreamMerger.Listener mergedFrameListener = (link, timestamp, values, channelCount) -> {
+        newestMergedNanos = Math.max(newestMergedNanos, timestamp);
+        int offset = linkOffsets[link];
+        int count = Math.min(channelCount, linkChannels[link]);
+        for (int c = 0; c < count; c++) {
+            if (!Double.isNaN(values[c])) {
+                sensorSeries[offset + c].append(timestamp, values[c]);
+            }
+        }
+    };
+    private boolean frameCallbackPosted;
+    private final Choreographer.FrameCallback drainFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            drainSamples();
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    };
 
     private static final UUID DEVICE_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
     private static final int PERMISSION_REQUEST_CODE = 100;
@@ -64,11 +167,16 @@ public class MainActivity extends AppCompatActivity {
     );
 
 
+    @Override
+    protected void attachBaseContext(Context base) {
+        // The saved language applies before anything is inflated
+        super.attachBaseContext(LanguageUtil.wrap(base));
+    }
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-
-        // Set content view first, then apply language
+        language = LanguageUtil.getLanguage(this);
         setContentView(R.layout.activity_main);
 
         // Initialize views and setup
@@ -76,52 +184,85 @@ public class MainActivity extends AppCompatActivity {
         setupConnectButton();
         setupBottomNavigation();
 
-        // Initialize Bluetooth adapter
-        bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
-        if (bluetoothAdapter == null) {
-            Toast.makeText(this, "Bluetooth not supported on this device", Toast.LENGTH_SHORT).show();
-            finish();
-            return;
-        }
-
-        // Simulated graph update for debugging
-        graphUpdateRunnable = new Runnable() {
-            @Override
-            public void run() {
-                updateGraphSensor1(Math.random() * 10); // Simulated Sensor 1 Data
-                updateGraphSensor2(Math.random() * 15); // Simulated Sensor 2 Data
-                mainHandler.postDelayed(this, 1000); // Update every second
-            }
-        };
-
-        mainHandler.post(graphUpdateRunnable);
+        // A recreated activity (rotation, language change) picks up the stream where it was
+        replayOnConnect = savedInstanceState == null;
+        StreamingService.start(this);
+        bindService(new Intent(this, StreamingService.class), serviceConnection, BIND_AUTO_CREATE);
 
-        // Check and request permissions
-        checkAndRequestPermissions();
+        // Bluetooth and its permissions wait for the Connect button; replays need neither
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        // Apply saved language when activity resumes
-        applySavedLanguage();
+        // Back from Settings with another language
+        if (!language.equals(LanguageUtil.getLanguage(this))) {
+            recreate();
+        }
     }
 
     private void initializeGraphs() {
-        graphSensor1 = findViewById(R.id.graphSensor1);
-        graphSensor2 = findViewById(R.id.graphSensor2);
-
-        seriesSensor1 = new LineGraphSeries<>();
-        seriesSensor2 = new LineGraphSeries<>();
+        channelGraphs = findViewById(R.id.channelGraphs);
+        tvLinkStats = findViewById(R.id.tvLinkStats);
+        trendCard = findViewById(R.id.trendCard);
+        trendGraph = findViewById(R.id.graphTrend);
+        trendGraph.setTitleColor(ContextCompat.getColor(this, R.color.graph_line_color));
+        trendGraph.getGridLabelRenderer().setHorizontalLabelsColor(0xff829ab1);
+        trendGraph.getGridLabelRenderer().setVerticalLabelsColor(0xff829ab1);
+        setupLatencyOverlay();
+        // Placeholder layout until the first frame tells us what the board sends
+        showChannels(new ChannelDescriptor[]{ChannelDescriptor.contiguous(DEFAULT_REPLAY_CHANNELS)},
+                new String[]{null});
+    }
 
-        graphSensor1.addSeries(seriesSensor1);
-        graphSensor2.addSeries(seriesSensor2);
+    // Layouts may contain nulls for links that have not sent anything yet
+    private void showChannels(ChannelDescriptor[] layouts, String[] linkNames) {
+        shownLayouts = layouts;
+        linkOffsets = new int[layouts.length];
+        linkChannels = new int[layouts.length];
+        int channels = 0;
+        for (int i = 0; i < layouts.length; i++) {
+            linkOffsets[i] = channels;
+            linkChannels[i] = layouts[i] == null ? 0 : layouts[i].getChannelCount();
+            channels += linkChannels[i];
+        }
+        channelGraphs.removeAllViews();
+        channelCharts = new StreamingChartView[channels];
+        sensorSeries = new DecimatedSeries[channels];
+
+        LayoutInflater inflater = LayoutInflater.from(this);
+        TypedArray lineColors = getResources().obtainTypedArray(R.array.graph_line_colors);
+        for (int c = 0; c < channels; c++) {
+            int link = linkOf(c);
+            int input = layouts[link].getDeviceChannel(c - linkOffsets[link]) + 1;
+            View card = inflater.inflate(R.layout.item_channel_graph, channelGraphs, false);
+            TextView label = card.findViewById(R.id.tvChannel);
+            // Boards are only named when there is more than one
+            label.setText(layouts.length > 1 && linkNames[link] != null
+                    ? getString(R.string.device_sensor_channel, linkNames[link], input)
+                    : getString(R.string.sensor_channel, input));
+
+            sensorSeries[c] = new DecimatedSeries(new SeriesBuffer(SERIES_CAPACITY), MAX_DISPLAY_BUCKETS);
+            StreamingChartView chart = card.findViewById(R.id.graphChannel);
+            chart.setSeries(sensorSeries[c]);
+            chart.setLineColor(lineColors.getColor(c % lineColors.length(), 0));
+            chart.setTimeWindowMillis(GRAPH_WINDOW_MILLIS);
+            channelCharts[c] = chart;
+            channelGraphs.addView(card);
+        }
+        lineColors.recycle();
+        // The last chart drawn closes the frame
+        if (channels > 0) {
+            channelCharts[channels - 1].setOnDrawnListener(this::onChartsDrawn);
+        }
+    }
 
-        // Configure graph properties
-        graphSensor1.getViewport().setScalable(true);
-        graphSensor2.getViewport().setScalable(true);
-        graphSensor1.getViewport().setScrollable(true);
-        graphSensor2.getViewport().setScrollable(true);
+    private int linkOf(int channel) {
+        int link = 0;
+        while (link + 1 < linkOffsets.length && channel >= linkOffsets[link + 1]) {
+            link++;
+        }
+        return link;
     }
 
     private void setupConnectButton() {
@@ -147,9 +288,24 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    private BluetoothAdapter getBluetoothAdapter() {
+        if (bluetoothAdapter == null) {
+            BluetoothManager manager = getSystemService(BluetoothManager.class);
+            bluetoothAdapter = manager == null ? null : manager.getAdapter();
+        }
+        return bluetoothAdapter;
+    }
+
     private void attemptBluetoothConnection() {
+        BluetoothAdapter adapter = getBluetoothAdapter();
+        if (adapter == null) {
+            // Replays still work, which is what emulators without Bluetooth are used for
+            Toast.makeText(this, "Bluetooth not supported on this device", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
         // Check if Bluetooth is enabled
-        if (!bluetoothAdapter.isEnabled()) {
+        if (!adapter.isEnabled()) {
             Intent enableBtIntent = new Intent(BluetoothAdapter.ACTION_REQUEST_ENABLE);
             bluetoothEnableLauncher.launch(enableBtIntent);
             return;
@@ -210,8 +366,9 @@ public class MainActivity extends AppCompatActivity {
                 }
             }
 
-            if (allPermissionsGranted) {
-                Toast.makeText(this, "Bluetooth permissions granted", Toast.LENGTH_SHORT).show();
+            if (allPermissionsGranted && grantResults.length > 0) {
+                // Asked for on Connect, so carry on connecting
+                connectToBluetoothDevice();
             } else {
                 Toast.makeText(this, "Some Bluetooth permissions were denied", Toast.LENGTH_LONG).show();
             }
@@ -225,116 +382,443 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        executorService.execute(() -> {
-            try {
-                // Get paired devices
-                if (ActivityCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
-                    return;
-                }
-                Set<BluetoothDevice> pairedDevices = bluetoothAdapter.getBondedDevices();
-
-                if (pairedDevices.isEmpty()) {
-                    mainHandler.post(() -> Toast.makeText(this, "No paired Bluetooth devices", Toast.LENGTH_SHORT).show());
-                    return;
-                }
+        try {
+            // Get paired devices
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                    && ActivityCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
+                return;
+            }
+            List<BluetoothDevice> pairedDevices = new ArrayList<>(getBluetoothAdapter().getBondedDevices());
 
-                // Select first paired device (replace with more robust device selection)
-                BluetoothDevice device = pairedDevices.iterator().next();
+            if (pairedDevices.isEmpty()) {
+                Toast.makeText(this, "No paired Bluetooth devices", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            if (pairedDevices.size() == 1) {
+                connectToDevices(pairedDevices);
+                return;
+            }
+            showDevicePicker(pairedDevices);
+        } catch (SecurityException e) {
+            Toast.makeText(this, "Bluetooth permissions not granted", Toast.LENGTH_SHORT).show();
+        }
+    }
 
-                bluetoothSocket = device.createRfcommSocketToServiceRecord(DEVICE_UUID);
-                bluetoothSocket.connect();
+    // Multi-choice list of paired boards, pre-selected with the last choice
+    private void showDevicePicker(List<BluetoothDevice> pairedDevices) {
+        SharedPreferences preferences = getSharedPreferences("AppPrefs", MODE_PRIVATE);
+        Set<String> lastSelected = preferences.getStringSet(PREF_SELECTED_DEVICES, new HashSet<>());
+        String[] names = new String[pairedDevices.size()];
+        boolean[] checked = new boolean[pairedDevices.size()];
+        for (int i = 0; i < names.length; i++) {
+            BluetoothDevice device = pairedDevices.get(i);
+            names[i] = device.getName() != null ? device.getName() : device.getAddress();
+            checked[i] = lastSelected.contains(device.getAddress());
+        }
 
-                inputStream = bluetoothSocket.getInputStream();
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.select_devices)
+                .setMultiChoiceItems(names, checked, (dialog, which, isChecked) -> checked[which] = isChecked)
+                .setPositiveButton(R.string.connect, (dialog, which) -> {
+                    List<BluetoothDevice> selected = new ArrayList<>();
+                    Set<String> addresses = new HashSet<>();
+                    for (int i = 0; i < checked.length; i++) {
+                        if (checked[i]) {
+                            selected.add(pairedDevices.get(i));
+                            addresses.add(pairedDevices.get(i).getAddress());
+                        }
+                    }
+                    preferences.edit().putStringSet(PREF_SELECTED_DEVICES, addresses).apply();
+                    if (!selected.isEmpty()) {
+                        connectToDevices(selected);
+                    }
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
 
-                mainHandler.post(() -> {
-                    Toast.makeText(this, "Connected to " + device.getName(), Toast.LENGTH_SHORT).show();
-                    // Stop simulated data and start real data processing
-                    mainHandler.removeCallbacks(graphUpdateRunnable);
-                    startBluetoothDataProcessing();
-                });
+    // One link per board, each read on its own thread by the service: BLE-only boards
+    // stream GATT notifications, everything else uses RFCOMM
+    private void connectToDevices(List<BluetoothDevice> devices) {
+        SensorSource[] sources = new SensorSource[devices.size()];
+        for (int i = 0; i < sources.length; i++) {
+            BluetoothDevice device = devices.get(i);
+            sources[i] = device.getType() == BluetoothDevice.DEVICE_TYPE_LE
+                    ? new BleSensorSource(new AndroidGattLink(this, device))
+                    : new BluetoothSensorSource(device, DEVICE_UUID);
+        }
+        startStreaming(sources);
+    }
 
+    private void startReplay() {
+        Intent intent = getIntent();
+        String sessionPath = intent.getStringExtra(EXTRA_REPLAY_SESSION);
+        double speed = intent.getFloatExtra(EXTRA_REPLAY_SPEED, 1f);
+        ReplaySensorSource.Encoding encoding = "binary".equals(intent.getStringExtra(EXTRA_REPLAY_ENCODING))
+                ? ReplaySensorSource.Encoding.BINARY
+                : ReplaySensorSource.Encoding.ASCII;
+
+        ReplayFrames frames;
+        String name;
+        if (sessionPath != null) {
+            File sessionFile = new File(sessionPath);
+            if (!sessionFile.isAbsolute()) {
+                sessionFile = new File(new File(getFilesDir(), "sessions"), sessionPath);
+            }
+            try {
+                frames = new SessionReplayFrames(sessionFile);
+                name = sessionFile.getName();
             } catch (IOException e) {
-                mainHandler.post(() -> {
-                    Toast.makeText(this, "Connection error: " + e.getMessage(), Toast.LENGTH_LONG).show();
-                });
+                Toast.makeText(this, "Cannot replay " + sessionPath + ": " + e.getMessage(), Toast.LENGTH_LONG).show();
+                return;
             }
-        });
+        } else {
+            // Fixed seed so every run is identical
+            int channels = intent.getIntExtra(EXTRA_REPLAY_CHANNELS, DEFAULT_REPLAY_CHANNELS);
+            frames = new WaveformReplayFrames(channels, 1000, -1, 42L);
+            name = "Simulated waveform";
+        }
+        startStreaming(new ReplaySensorSource(name, frames, speed, encoding));
     }
 
-    private void startBluetoothDataProcessing() {
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        executorService.execute(() -> {
-            byte[] buffer = new byte[1024];
-            int bytes;
-
-            while (true) {
-                try {
-                    if (inputStream != null && (bytes = inputStream.read(buffer)) != -1) {
-                        final double sensor1Value = parseFirstSensorValue(buffer, bytes);
-                        final double sensor2Value = parseSecondSensorValue(buffer, bytes);
-
-                        mainHandler.post(() -> {
-                            updateGraphSensor1(sensor1Value);
-                            updateGraphSensor2(sensor2Value);
-                        });
+    private void startStreaming(SensorSource... sources) {
+        failureReported = false;
+        if (streamingService == null) {
+            // Still binding; the service picks them up in onServiceConnected
+            pendingSources = sources;
+            return;
+        }
+        streamingService.connect(sources);
+        startDrainingSamples();
+    }
+
+    // One toast per event rather than per reconnect attempt
+    private void onStreamingStateChanged(SensorSource source, StreamingLoop.State state, IOException error) {
+        if (state == StreamingLoop.State.STREAMING) {
+            failureReported = false;
+            if (source.isLive()) {
+                Toast.makeText(this, "Connected to " + source.getName(), Toast.LENGTH_SHORT).show();
+                showTrend(source.getAddress());
+            }
+        } else if (state == StreamingLoop.State.RECONNECTING && lastState == StreamingLoop.State.STREAMING) {
+            Toast.makeText(this, "Data reading interrupted, reconnecting", Toast.LENGTH_SHORT).show();
+        } else if (error != null && !failureReported) {
+            failureReported = true;
+            Toast.makeText(this, "Connection error: " + error.getMessage(), Toast.LENGTH_LONG).show();
+        }
+        lastState = state;
+    }
+
+    // Reads 90 days of session rollups, a few hundred records, off the UI thread
+    private void showTrend(String device) {
+        Calendar today = Calendar.getInstance();
+        today.set(Calendar.HOUR_OF_DAY, 0);
+        today.set(Calendar.MINUTE, 0);
+        today.set(Calendar.SECOND, 0);
+        today.set(Calendar.MILLISECOND, 0);
+        long firstDay = today.getTimeInMillis() - (TREND_DAYS - 1) * RollupStore.DAY_MILLIS;
+        RollupStore store = new RollupStore(new File(getFilesDir(), "rollups"));
+        ioExecutor.execute(() -> {
+            List<Rollup> sessions;
+            try {
+                sessions = store.query(device, RollupStore.Tier.SESSION, firstDay,
+                        firstDay + TREND_DAYS * RollupStore.DAY_MILLIS);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not read the trend of " + device, e);
+                runOnUiThread(() -> {
+                    if (!isDestroyed()) {
+                        Toast.makeText(this, R.string.trend_failed, Toast.LENGTH_SHORT).show();
                     }
-                } catch (IOException e) {
-                    mainHandler.post(() -> Toast.makeText(this, "Data reading interrupted", Toast.LENGTH_SHORT).show());
-                    break;
-                }
+                });
+                return;
             }
+            if (sessions.isEmpty()) {
+                return;
+            }
+            // The board's first input, as of its latest session
+            int input = Integer.numberOfTrailingZeros(sessions.get(sessions.size() - 1).getLayoutMask());
+            Rollup[] days = RollupStore.daily(sessions, input, firstDay, TREND_DAYS);
+            // drawTrend skips an activity destroyed in the meantime
+            runOnUiThread(() -> drawTrend(days, input));
         });
     }
 
-    private double parseFirstSensorValue(byte[] buffer, int bytes) {
-        // Implement actual parsing logic for sensor 1 value
-        // For now, simulate some data
-        return Math.random() * 10;
+    // One bar per day with a session, today at 0
+    private void drawTrend(Rollup[] days, int input) {
+        if (isDestroyed()) {
+            return;
+        }
+        List<DataPoint> points = new ArrayList<>();
+        for (int d = 0; d < days.length; d++) {
+            if (days[d] != null) {
+                points.add(new DataPoint(d - (days.length - 1), days[d].getMax(0)));
+            }
+        }
+        BarGraphSeries<DataPoint> series = new BarGraphSeries<>(points.toArray(new DataPoint[0]));
+        series.setColor(ContextCompat.getColor(this, R.color.graph_line_color));
+        trendGraph.removeAllSeries();
+        trendGraph.addSeries(series);
+        trendGraph.setTitle(getString(R.string.trend_title, input + 1, days.length));
+        trendGraph.getViewport().setXAxisBoundsManual(true);
+        trendGraph.getViewport().setMinX(-(days.length - 1));
+        trendGraph.getViewport().setMaxX(0);
+        trendCard.setVisibility(View.VISIBLE);
     }
 
-    private double parseSecondSensorValue(byte[] buffer, int bytes) {
-        // Implement actual parsing logic for sensor 2 value
-        // For now, simulate some data
-        return Math.random() * 15;
+    private void startDrainingSamples() {
+        if (!frameCallbackPosted && !isDestroyed()) {
+            frameCallbackPosted = true;
+            Choreographer.getInstance().postFrameCallback(drainFrameCallback);
+        }
     }
 
-    private void updateGraphSensor1(double yValue) {
-        seriesSensor1.appendData(new DataPoint(x1++, yValue), true, 50);
+    private void drainSamples() {
+        if (streamingService == null) {
+            return;
+        }
+        StreamingLoop[] links = streamingService.getLinks();
+        if (links.length != linkPipelines.length) {
+            linkPipelines = new IngestPipeline[links.length];
+            linkLayouts = new ChannelDescriptor[links.length];
+        }
+        updateLinkStats(links);
+
+        // Settle every link's layout first so channel offsets hold for the whole merge
+        boolean anyLayout = false;
+        for (int i = 0; i < links.length; i++) {
+            IngestPipeline pipeline = links[i].getPipeline();
+            linkPipelines[i] = pipeline;
+            ChannelDescriptor layout = pipeline == null ? null : pipeline.advanceStream();
+            // A reconnecting link keeps its graphs until the new connection says otherwise
+            if (layout == null && links.length == shownLayouts.length) {
+                layout = shownLayouts[i];
+            }
+            linkLayouts[i] = layout;
+            anyLayout |= layout != null;
+        }
+        if (anyLayout && !Arrays.equals(linkLayouts, shownLayouts)) {
+            String[] names = new String[links.length];
+            for (int i = 0; i < links.length; i++) {
+                SensorSource source = links[i].getSource();
+                names[i] = source == null ? null : source.getName();
+            }
+            showChannels(linkLayouts.clone(), names);
+        }
+        if (!Arrays.equals(linkLayouts, shownLayouts)) {
+            // Nothing from the new links yet; keep the old graphs and skip their frames
+            return;
+        }
+
+        if (streamMerger.drain(linkPipelines, links.length, mergedFrameListener) > 0) {
+            drainedAtNanos = SystemClock.elapsedRealtimeNanos();
+            drawPending = true;
+            for (StreamingChartView chart : channelCharts) {
+                chart.invalidate();
+            }
+        }
     }
 
-    private void updateGraphSensor2(double yValue) {
-        seriesSensor2.appendData(new DataPoint(x2++, yValue), true, 50);
+    // End of the traversal that drew the frames drained this vsync
+    private void onChartsDrawn() {
+        if (!drawPending) {
+            return;
+        }
+        drawPending = false;
+        long now = SystemClock.elapsedRealtimeNanos();
+        drawLatency.record(now - drainedAtNanos);
+        // Frames carry their estimated sample time, so this includes the transport delay
+        endToEndLatency.record(now - newestMergedNanos);
     }
 
-    private void applySavedLanguage() {
+    private void setupLatencyOverlay() {
+        tvLatency = findViewById(R.id.tvLatency);
         SharedPreferences preferences = getSharedPreferences("AppPrefs", MODE_PRIVATE);
-        String languageCode = preferences.getString("language", "en"); // Default to English
-        Locale locale = new Locale(languageCode);
-        Locale.setDefault(locale);
-        Resources resources = getResources();
-        Configuration config = resources.getConfiguration();
-        config.setLocale(locale);
-        resources.updateConfiguration(config, resources.getDisplayMetrics());
+        // The first read waits for the preferences file; that wait stays off the cold start,
+        // and the UI thread reads the value from memory afterwards (gone until then)
+        ioExecutor.execute(() -> {
+            preferences.getBoolean(PREF_LATENCY_OVERLAY, false);
+            runOnUiThread(() -> {
+                if (!isDestroyed()) {
+                    tvLatency.setVisibility(
+                            preferences.getBoolean(PREF_LATENCY_OVERLAY, false) ? View.VISIBLE : View.GONE);
+                }
+            });
+        });
+        findViewById(R.id.tvTitle).setOnLongClickListener(view -> {
+            boolean show = tvLatency.getVisibility() != View.VISIBLE;
+            tvLatency.setVisibility(show ? View.VISIBLE : View.GONE);
+            preferences.edit().putBoolean(PREF_LATENCY_OVERLAY, show).apply();
+            return true;
+        });
+        tvLatency.setOnClickListener(view -> exportLatency());
     }
 
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        // Clean up Bluetooth resources
+    private void updateLatencyOverlay(StreamingLoop[] links) {
+        if (tvLatency.getVisibility() != View.VISIBLE) {
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < links.length; i++) {
+            IngestPipeline pipeline = links[i].getPipeline();
+            if (pipeline != null) {
+                String suffix = links.length > 1 ? " " + (i + 1) : "";
+                LatencyReport.appendSummary(text, "decode" + suffix, pipeline.getDecodeLatency());
+                LatencyReport.appendSummary(text, "hand-off" + suffix, pipeline.getHandOffLatency());
+                appendClockSummary(text, "clock" + suffix, pipeline.getDeviceClock());
+                GestureRecognizer recognizer = pipeline.getGestureRecognizer();
+                if (recognizer != null && recognizer.getClassifier() != null) {
+                    LatencyReport.appendSummary(text, "gesture" + suffix, recognizer.getDecisionLatency());
+                }
+            }
+            CommandChannel commands = links[i].getCommandChannel();
+            if (commands != null && commands.getSent() > 0) {
+                String suffix = links.length > 1 ? " " + (i + 1) : "";
+                LatencyReport.appendSummary(text, "cmd-queue" + suffix, commands.getQueueLatency());
+                if (commands.getAcknowledged() > 0) {
+                    LatencyReport.appendSummary(text, "cmd-ack" + suffix, commands.getAckLatency());
+                }
+            }
+        }
+        ControlLoop control = streamingService == null ? null : streamingService.getControlLoop();
+        if (control != null) {
+            appendControlSummary(text, control);
+        }
+        LatencyReport.appendSummary(text, "draw", drawLatency);
+        LatencyReport.appendSummary(text, "end-to-end", endToEndLatency);
+        tvLatency.setText(text.toString().trim());
+    }
+
+    // "control  100 Hz  jitter p99 0.4 ms  tick max 0.1 ms  overruns 0  missed 0"
+    private static void appendControlSummary(StringBuilder out, ControlLoop control) {
+        out.append(String.format(Locale.US, "%-10s %d Hz  jitter p99 %.1f ms  tick max %.1f ms  overruns %d  missed %d%n",
+                "control", 1_000_000_000L / control.getPeriodNanos(),
+                control.getJitter().getPercentileNanos(0.99) / 1e6,
+                control.getTickDuration().getMaxNanos() / 1e6,
+                control.getOverruns(), control.getMissed()));
+    }
+
+    // "clock  1000.2 Hz  +12 ppm  jitter p99 8.1 ms  gaps 2 (40 frames)"
+    private static void appendClockSummary(StringBuilder out, String label, DeviceClock clock) {
+        double drift = clock.getDriftPpm();
+        out.append(String.format(Locale.US, "%-10s %.1f Hz  %s  jitter p99 %.1f ms  gaps %d (%d frames)%n",
+                label, clock.getEstimatedRateHz(),
+                Double.isNaN(drift) ? "drift ?" : String.format(Locale.US, "%+.0f ppm", drift),
+                clock.getDelay().getPercentileNanos(0.99) / 1e6,
+                clock.getGaps(), clock.getFramesMissing()));
+    }
+
+    // CSV next to the app's other external files, so it can be pulled without root
+    private void exportLatency() {
+        StreamingLoop[] links = streamingService == null ? new StreamingLoop[0] : streamingService.getLinks();
+        List<String> stages = new ArrayList<>();
+        List<LatencyHistogram> histograms = new ArrayList<>();
+        for (int i = 0; i < links.length; i++) {
+            IngestPipeline pipeline = links[i].getPipeline();
+            if (pipeline != null) {
+                stages.add("decode-" + (i + 1));
+                histograms.add(pipeline.getDecodeLatency());
+                stages.add("handoff-" + (i + 1));
+                histograms.add(pipeline.getHandOffLatency());
+                stages.add("transport-jitter-" + (i + 1));
+                histograms.add(pipeline.getDeviceClock().getDelay());
+                if (pipeline.getGestureRecognizer() != null) {
+                    stages.add("gesture-decision-" + (i + 1));
+                    histograms.add(pipeline.getGestureRecognizer().getDecisionLatency());
+                }
+                if (pipeline.getController() != null && pipeline.getController().getInputAge().getCount() > 0) {
+                    stages.add("control-input-age-" + (i + 1));
+                    histograms.add(pipeline.getController().getInputAge());
+                }
+            }
+            CommandChannel commands = links[i].getCommandChannel();
+            if (commands != null) {
+                stages.add("command-queue-" + (i + 1));
+                histograms.add(commands.getQueueLatency());
+                stages.add("command-ack-" + (i + 1));
+                histograms.add(commands.getAckLatency());
+            }
+        }
+        ControlLoop control = streamingService == null ? null : streamingService.getControlLoop();
+        if (control != null) {
+            stages.add("control-jitter");
+            histograms.add(control.getJitter());
+            stages.add("control-tick");
+            histograms.add(control.getTickDuration());
+        }
+        stages.add("draw");
+        histograms.add(drawLatency);
+        stages.add("end-to-end");
+        histograms.add(endToEndLatency);
+
+        File dir = getExternalFilesDir("latency");
+        if (dir == null) {
+            dir = new File(getFilesDir(), "latency");
+        }
+        File file = new File(dir, "latency-" + System.currentTimeMillis() + ".csv");
         try {
-            if (bluetoothSocket != null) {
-                bluetoothSocket.close();
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("cannot create " + dir);
             }
-            if (inputStream != null) {
-                inputStream.close();
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                LatencyReport.writeCsv(out, stages.toArray(new String[0]),
+                        histograms.toArray(new LatencyHistogram[0]));
             }
+            Toast.makeText(this, "Latency saved to " + file.getAbsolutePath(), Toast.LENGTH_LONG).show();
         } catch (IOException e) {
-            e.printStackTrace();
+            Toast.makeText(this, "Cannot save latency: " + e.getMessage(), Toast.LENGTH_LONG).show();
         }
+    }
 
+    // Bytes per second of every link and the latency overlay, refreshed once a second from the vsync drain
+    private void updateLinkStats(StreamingLoop[] links) {
+        long now = SystemClock.elapsedRealtimeNanos();
+        if (links.length != linkBytesRead.length) {
+            linkBytesRead = new long[links.length];
+            for (int i = 0; i < links.length; i++) {
+                linkBytesRead[i] = links[i].getBytesRead();
+            }
+            linkStatsNanos = now;
+            tvLinkStats.setText(null);
+            return;
+        }
+        long elapsed = now - linkStatsNanos;
+        if (elapsed < 1_000_000_000L) {
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < links.length; i++) {
+            long bytesRead = links[i].getBytesRead();
+            SensorSource source = links[i].getSource();
+            if (source != null) {
+                if (text.length() > 0) {
+                    text.append("   ");
+                }
+                double kilobytesPerSecond = (bytesRead - linkBytesRead[i]) * 1e9 / elapsed / 1024;
+                text.append(getString(R.string.link_throughput, source.getName(), kilobytesPerSecond));
+            }
+            linkBytesRead[i] = bytesRead;
+        }
+        linkStatsNanos = now;
+        tvLinkStats.setText(text);
+        updateLatencyOverlay(links);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
         // Remove any pending callbacks
-        mainHandler.removeCallbacks(graphUpdateRunnable);
+        Choreographer.getInstance().removeFrameCallback(drainFrameCallback);
+        frameCallbackPosted = false;
+        ioExecutor.shutdownNow();
+
+        if (streamingService != null) {
+            streamingService.removeListener(streamingListener);
+            // Leaving the app ends the stream; recreation keeps it
+            if (isFinishing()) {
+                streamingService.stop();
+            }
+            streamingService = null;
+        }
+        unbindService(serviceConnection);
     }
 }
-
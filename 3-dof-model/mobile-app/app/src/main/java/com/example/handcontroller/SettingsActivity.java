@@ -1,38 +1,90 @@
 package com.example.handcontroller;
 
+import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
-import android.content.res.Configuration;
-import android.content.res.Resources;
+import android.content.ServiceConnection;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.IBinder;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.Log;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.EditText;
 import android.widget.TextView;
+import android.widget.Toast;
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.FileProvider;
 import com.example.handcontroller.utils.InstructionManager;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.android.material.button.MaterialButton;
-
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.util.Locale;
+import com.google.android.material.switchmaterial.SwitchMaterial;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
 
 public class SettingsActivity extends AppCompatActivity {
 
+    private static final String TAG = "SettingsActivity";
+    private static final long CALIBRATION_POLL_MILLIS = 100;
+    // Shared exports are left for the receiving app to read; only old ones are removed
+    private static final long EXPORT_MAX_AGE_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final long CALIBRATION_RESULT_MILLIS = 4000;
+    // Each gesture: time to get into it, then time it is recorded for
+    private static final long GESTURE_SETTLE_MILLIS = 1000;
+    private static final long GESTURE_RECORD_MILLIS = 4000;
+    private static final int MIN_GESTURE_EXAMPLES = 40;
+    // Label i is the gesture GestureRecognizer reports as i
+    private static final int[] GESTURE_PROMPTS = {
+            R.string.gesture_prompt_rest, R.string.gesture_prompt_open, R.string.gesture_prompt_close
+    };
+
     private TextView selectLanguage;
     private MaterialButton autoCalibrateButton;
+    private MaterialButton trainGesturesButton;
+    private SwitchMaterial phoneControlSwitch;
+    private MaterialButton exportButton;
+    private EditText forwardEndpoint;
     private TextView calibrationInstructions;
     private InstructionManager instructionManager;
 
+    private StreamingService streamingService;
+    private CalibrationEngine[] calibrationEngines;
+    private CalibrationEngine.State calibrationState;
+    private GestureRecognizer[] gestureRecognizers;
+
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            streamingService = ((StreamingService.LocalBinder) binder).getService();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            streamingService = null;
+        }
+    };
+
+    @Override
+    protected void attachBaseContext(Context base) {
+        // The saved language applies before anything is inflated
+        super.attachBaseContext(LanguageUtil.wrap(base));
+    }
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        // Measured by the language switch benchmark
+        Trace.beginSection("SettingsActivity.onCreate");
         super.onCreate(savedInstanceState);
-
-        // Apply saved language preference
-        applySavedLanguage();
-
         setContentView(R.layout.activity_settings);
 
         // Initialize InstructionManager
@@ -41,13 +93,47 @@ public class SettingsActivity extends AppCompatActivity {
         // Initialize views
         selectLanguage = findViewById(R.id.selectLanguage);
         autoCalibrateButton = findViewById(R.id.autocalibrate);
+        trainGesturesButton = findViewById(R.id.trainGestures);
         calibrationInstructions = findViewById(R.id.calibrationInstructions);
+        phoneControlSwitch = findViewById(R.id.phoneControl);
+        exportButton = findViewById(R.id.exportSession);
+        forwardEndpoint = findViewById(R.id.forwardEndpoint);
 
         // Set click listener for language selection
         selectLanguage.setOnClickListener(v -> openLanguageMenu(v));
 
         // Set click listener for calibration
         autoCalibrateButton.setOnClickListener(v -> startCalibration());
+        trainGesturesButton.setOnClickListener(v -> startGestureTraining());
+
+        // Takes effect on the running links through the service, and on later connections
+        phoneControlSwitch.setChecked(getSharedPreferences("AppPrefs", MODE_PRIVATE)
+                .getBoolean(StreamingService.PREF_PHONE_CONTROL, false));
+        phoneControlSwitch.setOnCheckedChangeListener((button, checked) -> setPhoneControl(checked));
+
+        exportButton.setOnClickListener(v -> chooseSession());
+
+        // Read when the links are next connected
+        forwardEndpoint.setText(getSharedPreferences("AppPrefs", MODE_PRIVATE)
+                .getString(StreamingService.PREF_FORWARD_ENDPOINT, ""));
+        forwardEndpoint.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                getSharedPreferences("AppPrefs", MODE_PRIVATE).edit()
+                        .putString(StreamingService.PREF_FORWARD_ENDPOINT, s.toString().trim()).apply();
+            }
+        });
+
+        // Calibration runs on the live stream, which the service owns
+        bindService(new Intent(this, StreamingService.class), serviceConnection, BIND_AUTO_CREATE);
 
         // Bottom navigation setup
         BottomNavigationView bottomNavigationView = findViewById(R.id.bottom_navigation);
@@ -57,8 +143,10 @@ public class SettingsActivity extends AppCompatActivity {
             int itemId = item.getItemId();
 
             if (itemId == R.id.home) {
-                // Navigate to HomeActivity
-                startActivity(new Intent(this, MainActivity.class));
+                // Back to the existing MainActivity instead of creating a new one
+                Intent intent = new Intent(this, MainActivity.class);
+                intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+                startActivity(intent);
                 finish(); // Close current activity
                 return true;
             } else if (itemId == R.id.settings) {
@@ -68,67 +156,303 @@ public class SettingsActivity extends AppCompatActivity {
                 return false;
             }
         });
+        Trace.endSection();
     }
 
-    private void startCalibration() {
-        // Hide the calibrate button
-        autoCalibrateButton.setVisibility(View.GONE);
+    private void setPhoneControl(boolean enabled) {
+        if (streamingService != null) {
+            streamingService.setPhoneControl(enabled);
+        } else {
+            getSharedPreferences("AppPrefs", MODE_PRIVATE).edit()
+                    .putBoolean(StreamingService.PREF_PHONE_CONTROL, enabled).apply();
+        }
+    }
+
+    // Recordings newest first, then the format
+    private void chooseSession() {
+        File[] files = new File(getFilesDir(), "sessions")
+                .listFiles((dir, name) -> name.endsWith(SessionFormat.FILE_EXTENSION));
+        if (files == null || files.length == 0) {
+            Toast.makeText(this, R.string.export_no_sessions, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+        String[] names = new String[files.length];
+        for (int i = 0; i < files.length; i++) {
+            names[i] = files[i].getName();
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.export_session)
+                .setItems(names, (dialog, which) -> chooseFormat(files[which]))
+                .show();
+    }
+
+    private void chooseFormat(File session) {
+        SessionExporter.Format[] formats = {SessionExporter.Format.CSV_GZIP, SessionExporter.Format.COLUMNAR};
+        String[] names = {getString(R.string.export_format_csv), getString(R.string.export_format_columnar)};
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.export_choose_format)
+                .setItems(names, (dialog, which) -> exportSession(session, formats[which]))
+                .show();
+    }
 
-        // Simulate API response for initial calibration state
-        try {
-            JSONObject initialResponse = new JSONObject();
-            initialResponse.put("calibration_state", "INITIAL");
-            instructionManager.updateInstructionsFromApiResponse(initialResponse);
+    // Chunk by chunk on a thread of its own; an hour-long session needs no more memory than a short one
+    private void exportSession(File session, SessionExporter.Format format) {
+        File dir = new File(getCacheDir(), "exports");
+        String name = session.getName();
+        File export = new File(dir, name.substring(0, name.length() - SessionFormat.FILE_EXTENSION.length())
+                + format.getExtension());
+        File partial = new File(dir, export.getName() + ".part");
+        exportButton.setEnabled(false);
+        new Thread(() -> {
+            boolean done = false;
+            try {
+                if (!dir.isDirectory() && !dir.mkdirs()) {
+                    throw new IOException("Cannot create " + dir);
+                }
+                deleteOldExports(dir);
+                int[] shownPercent = {-1};
+                try (SessionReader reader = new SessionReader(session);
+                     OutputStream out = new BufferedOutputStream(new FileOutputStream(partial))) {
+                    SessionExporter.export(reader, format, out, (written, total) -> {
+                        int percent = total > 0 ? (int) (100 * written / total) : 100;
+                        if (percent != shownPercent[0]) {
+                            shownPercent[0] = percent;
+                            runOnUiThread(() -> exportButton.setText(getString(R.string.export_progress, percent)));
+                        }
+                        // Leaving the screen abandons the export
+                        return !isDestroyed();
+                    });
+                }
+                // Renamed into place, so an app still reading an earlier export of the
+                // same session keeps its file
+                if (!isDestroyed() && !partial.renameTo(export)) {
+                    throw new IOException("Cannot rename " + partial);
+                }
+                done = !isDestroyed();
+            } catch (IOException e) {
+                Log.e(TAG, "Could not export " + session.getName(), e);
+            }
+            boolean shared = done;
+            partial.delete();
+            runOnUiThread(() -> finishExport(shared ? export : null, format));
+        }, "session-export").start();
+    }
 
-            // Display first instruction
-            updateCalibrationInstructions();
-        } catch (JSONException e) {
-            e.printStackTrace();
+    // Export thread. A share sheet or the receiving app may still be reading the recent ones
+    private static void deleteOldExports(File dir) {
+        File[] old = dir.listFiles();
+        long cutoff = System.currentTimeMillis() - EXPORT_MAX_AGE_MILLIS;
+        for (int i = 0; old != null && i < old.length; i++) {
+            if (old[i].lastModified() < cutoff) {
+                old[i].delete();
+            }
         }
     }
 
-    private void updateCalibrationInstructions() {
-        // Show instructions TextView
-        calibrationInstructions.setVisibility(View.VISIBLE);
+    private void finishExport(File export, SessionExporter.Format format) {
+        if (isDestroyed()) {
+            return;
+        }
+        exportButton.setEnabled(true);
+        exportButton.setText(R.string.export_session);
+        if (export == null) {
+            // Failed or abandoned; the reason is in the log
+            Toast.makeText(this, R.string.export_failed, Toast.LENGTH_LONG).show();
+            return;
+        }
+        Uri uri = FileProvider.getUriForFile(this, getPackageName() + ".exports", export);
+        Intent send = new Intent(Intent.ACTION_SEND);
+        send.setType(format.getMimeType());
+        send.putExtra(Intent.EXTRA_STREAM, uri);
+        send.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        startActivity(Intent.createChooser(send, getString(R.string.export_session)));
+    }
 
-        // Get current instruction
-        String currentInstruction = instructionManager.getCurrentInstruction();
-        calibrationInstructions.setText(currentInstruction);
+    private void startCalibration() {
+        CalibrationEngine[] engines = streamingService == null
+                ? new CalibrationEngine[0]
+                : streamingService.startCalibration();
+        if (engines.length == 0) {
+            instructionManager.setErrorMessage(getString(R.string.calibration_not_connected));
+            showCalibrationState(CalibrationEngine.State.FAILED);
+            finishCalibration();
+            return;
+        }
 
-        // Set up listener for moving to next instruction
-        calibrationInstructions.setOnClickListener(v -> {
-            // Check if more instructions are available
-            if (instructionManager.hasMoreInstructions()) {
-                // Advance to next instruction
-                instructionManager.advanceInstruction();
+        // Hide the buttons until the engines are done
+        autoCalibrateButton.setVisibility(View.GONE);
+        trainGesturesButton.setVisibility(View.GONE);
+        calibrationEngines = engines;
+        calibrationState = null;
+        calibrationInstructions.post(pollCalibration);
+    }
 
-                // Update UI with new instruction
-                String nextInstruction = instructionManager.getCurrentInstruction();
-                calibrationInstructions.setText(nextInstruction);
+    // The engines run on the link threads; follow them from here ten times a second
+    private final Runnable pollCalibration = new Runnable() {
+        @Override
+        public void run() {
+            CalibrationEngine[] engines = calibrationEngines;
+            if (engines == null) {
+                return;
+            }
+            long now = SystemClock.elapsedRealtimeNanos();
+            CalibrationEngine.State state = CalibrationEngine.State.FAILED;
+            double progress = 0;
+            for (CalibrationEngine engine : engines) {
+                engine.checkStalled(now);
+                // Boards finish the rest phase a few frames apart; show the one furthest behind
+                CalibrationEngine.State engineState = engine.getState();
+                if (engineState.ordinal() < state.ordinal()) {
+                    state = engineState;
+                    progress = engine.getPhaseProgress();
+                } else if (engineState == state) {
+                    progress = Math.min(progress, engine.getPhaseProgress());
+                }
+            }
+
+            if (state != calibrationState) {
+                if (state == CalibrationEngine.State.FAILED) {
+                    instructionManager.setErrorMessage(describeFailure(engines[0].getFailure()));
+                }
+                showCalibrationState(state);
+            }
+            if (state == CalibrationEngine.State.INITIAL || state == CalibrationEngine.State.GRIP_CALIBRATION) {
+                instructionManager.showProgress(progress);
+                calibrationInstructions.setText(instructionManager.getCurrentInstruction());
+                calibrationInstructions.postDelayed(this, CALIBRATION_POLL_MILLIS);
             } else {
-                // Calibration completed
+                if (state == CalibrationEngine.State.COMPLETED) {
+                    calibrationInstructions.append("\n" + describeThresholds(engines));
+                }
                 finishCalibration();
             }
-        });
+        }
+    };
+
+    private void showCalibrationState(CalibrationEngine.State state) {
+        calibrationState = state;
+        instructionManager.setCalibrationState(state.name());
+        calibrationInstructions.setVisibility(View.VISIBLE);
+        String text = instructionManager.getCurrentInstruction();
+        if (state == CalibrationEngine.State.FAILED) {
+            text += "\n" + instructionManager.getErrorInstruction();
+        }
+        calibrationInstructions.setText(text);
+    }
+
+    private String describeFailure(CalibrationEngine.Failure failure) {
+        switch (failure) {
+            case FLAT_SIGNAL:
+                return getString(R.string.calibration_flat_signal);
+            case NO_CONTRAST:
+                return getString(R.string.calibration_no_contrast);
+            default:
+                return getString(R.string.calibration_no_signal);
+        }
+    }
+
+    private String describeThresholds(CalibrationEngine[] engines) {
+        StringBuilder text = new StringBuilder();
+        for (CalibrationEngine engine : engines) {
+            ChannelDescriptor descriptor = engine.getDescriptor();
+            for (int c = 0; descriptor != null && c < descriptor.getChannelCount(); c++) {
+                if (engine.isCalibrated(c)) {
+                    if (text.length() > 0) {
+                        text.append('\n');
+                    }
+                    text.append(getString(R.string.calibration_thresholds, descriptor.getDeviceChannel(c) + 1,
+                            engine.getUpperThreshold(c), engine.getLowerThreshold(c)));
+                }
+            }
+        }
+        return text.toString();
     }
 
     private void finishCalibration() {
-        // Try to simulate a completed calibration
-        try {
-            JSONObject completedResponse = new JSONObject();
-            completedResponse.put("calibration_state", "COMPLETED");
-            instructionManager.updateInstructionsFromApiResponse(completedResponse);
+        calibrationEngines = null;
+        // Reset UI after a short delay
+        calibrationInstructions.postDelayed(() -> {
+            calibrationInstructions.setVisibility(View.GONE);
+            autoCalibrateButton.setVisibility(View.VISIBLE);
+            trainGesturesButton.setVisibility(View.VISIBLE);
+        }, CALIBRATION_RESULT_MILLIS);
+    }
 
-            // Display final instruction
-            calibrationInstructions.setText(instructionManager.getCurrentInstruction());
+    private void startGestureTraining() {
+        GestureRecognizer[] recognizers = streamingService == null
+                ? new GestureRecognizer[0]
+                : streamingService.getGestureRecognizers();
+        calibrationInstructions.setVisibility(View.VISIBLE);
+        if (recognizers.length == 0) {
+            calibrationInstructions.setText(R.string.calibration_not_connected);
+            finishCalibration();
+            return;
+        }
 
-            // Reset UI after a short delay
-            calibrationInstructions.postDelayed(() -> {
-                calibrationInstructions.setVisibility(View.GONE);
-                autoCalibrateButton.setVisibility(View.VISIBLE);
-            }, 2000);
-        } catch (JSONException e) {
-            e.printStackTrace();
+        autoCalibrateButton.setVisibility(View.GONE);
+        trainGesturesButton.setVisibility(View.GONE);
+        for (GestureRecognizer recognizer : recognizers) {
+            recognizer.clearExamples();
+        }
+        gestureRecognizers = recognizers;
+        recordGesture(recognizers, 0);
+    }
+
+    // Prompt, give the user a moment to get there, then label what the boards send
+    private void recordGesture(GestureRecognizer[] recognizers, int gesture) {
+        if (gestureRecognizers != recognizers) {
+            return;
+        }
+        if (gesture == GESTURE_PROMPTS.length) {
+            finishGestureTraining(recognizers);
+            return;
+        }
+        calibrationInstructions.setText(GESTURE_PROMPTS[gesture]);
+        calibrationInstructions.postDelayed(() -> {
+            if (gestureRecognizers == recognizers) {
+                for (GestureRecognizer recognizer : recognizers) {
+                    recognizer.startRecording(gesture);
+                }
+            }
+        }, GESTURE_SETTLE_MILLIS);
+        calibrationInstructions.postDelayed(() -> {
+            for (GestureRecognizer recognizer : recognizers) {
+                recognizer.stopRecording();
+            }
+            recordGesture(recognizers, gesture + 1);
+        }, GESTURE_SETTLE_MILLIS + GESTURE_RECORD_MILLIS);
+    }
+
+    private void finishGestureTraining(GestureRecognizer[] recognizers) {
+        gestureRecognizers = null;
+        int trained = 0;
+        for (GestureRecognizer recognizer : recognizers) {
+            // A few dozen examples of a few dozen features: milliseconds, fine on this thread
+            if (recognizer.train(GestureRecognizer.Model.LDA, GESTURE_PROMPTS.length, MIN_GESTURE_EXAMPLES) != null) {
+                trained++;
+            }
+        }
+        calibrationInstructions.setText(trained > 0 ? R.string.gestures_trained : R.string.gestures_not_trained);
+        finishCalibration();
+    }
+
+    private void cancelCalibration() {
+        CalibrationEngine[] engines = calibrationEngines;
+        calibrationEngines = null;
+        if (engines != null) {
+            for (CalibrationEngine engine : engines) {
+                engine.cancel();
+            }
+        }
+        calibrationInstructions.removeCallbacks(pollCalibration);
+
+        GestureRecognizer[] recognizers = gestureRecognizers;
+        gestureRecognizers = null;
+        if (recognizers != null) {
+            for (GestureRecognizer recognizer : recognizers) {
+                recognizer.stopRecording();
+            }
         }
     }
 
@@ -183,36 +507,18 @@ public class SettingsActivity extends AppCompatActivity {
     }
 
     private void changeLanguage(String languageCode) {
-        // Save selected language to SharedPreferences
-        SharedPreferences preferences = getSharedPreferences("AppPrefs", MODE_PRIVATE);
-        SharedPreferences.Editor editor = preferences.edit();
-        editor.putString("language", languageCode);
-        editor.apply();
-
-        // Update locale
-        Locale locale = new Locale(languageCode);
-        Locale.setDefault(locale);
-        Resources resources = getResources();
-        Configuration config = resources.getConfiguration();
-        config.setLocale(locale);
-        config.setLayoutDirection(locale);
-        resources.updateConfiguration(config, resources.getDisplayMetrics());
-
-        // Restart activity to apply changes
-        Intent intent = new Intent(this, SettingsActivity.class);
-        intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_NEW_TASK);
-        startActivity(intent);
-        finish();
-    }
-
-    private void applySavedLanguage() {
-        SharedPreferences preferences = getSharedPreferences("AppPrefs", MODE_PRIVATE);
-        String languageCode = preferences.getString("language", "en"); // Default to English
-        Locale locale = new Locale(languageCode);
-        Locale.setDefault(locale);
-        Resources resources = getResources();
-        Configuration config = resources.getConfiguration();
-        config.setLocale(locale);
-        resources.updateConfiguration(config, resources.getDisplayMetrics());
-    }
-}
\ No newline at end of file
+        if (languageCode.equals(LanguageUtil.getLanguage(this))) {
+            return;
+        }
+        LanguageUtil.setLanguage(this, languageCode);
+        // Recreated in place, so the service binding and the back stack stay; MainActivity follows on resume
+        recreate();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        cancelCalibration();
+        unbindService(serviceConnection);
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.handcontroller;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Lightweight live chart drawing a {@link DecimatedSeries} as a polyline.
+ *
+ * Replaces GraphView for the live sensor plots: it reads straight from the
+ * primitive buffers and reuses its arrays, so a redraw allocates nothing. The
+ * X axis is the last {@code timeWindowMillis} of data ending at the newest
+ * sample, the Y axis follows the visible range. When the window holds more
+ * samples than the view has pixel columns, the series is decimated to one
+ * bucket per column before drawing: LTTB while there are only a few samples
+ * per column, where it keeps the shape, and min/max once there are
+ * {@link #MIN_MAX_SAMPLES_PER_COLUMN} or more, where only the envelope is
+ * visible anyway and single spikes must not be dropped.
+ */
+public class StreamingChartView extends View {
+
+    private static final int GRID_LINES = 4;
+    static final int MIN_MAX_SAMPLES_PER_COLUMN = 8;
+
+    private final Paint linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint gridPaint = new Paint();
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private DecimatedSeries series;
+    private float[] linePoints = new float[0];
+    private long[] pointTimes = new long[0];
+    private double[] pointValues = new double[0];
+    private long timeWindowNanos = 30_000_000_000L;
+
+    // Y range is rounded to a "nice" value so the label strings rarely change
+    private double axisMax = Double.NaN;
+    private double axisMin = Double.NaN;
+    private String maxLabel = "";
+    private String minLabel = "";
+
+    private Runnable onDrawnListener;
+
+    public StreamingChartView(Context context) {
+        this(context, null);
+    }
+
+    public StreamingChartView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+
+        linePaint.setStyle(Paint.Style.STROKE);
+        linePaint.setStrokeWidth(dp(2));
+        linePaint.setColor(context.getColor(R.color.graph_line_color));
+
+        gridPaint.setColor(Color.argb(60, 188, 204, 220));
+        gridPaint.setStrokeWidth(1);
+
+        labelPaint.setColor(context.getColor(R.color.text_light));
+        labelPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 10,
+                getResources().getDisplayMetrics()));
+    }
+
+    public void setSeries(DecimatedSeries series) {
+        this.series = series;
+        // Worst case two points per column plus the open bucket
+        int maxPoints = series.getMaxBuckets() * 2 + 2;
+        this.pointTimes = new long[maxPoints];
+        this.pointValues = new double[maxPoints];
+        this.linePoints = new float[maxPoints * 4];
+        updateBuckets();
+        postInvalidateOnAnimation();
+    }
+
+    public void setLineColor(int color) {
+        linePaint.setColor(color);
+        invalidate();
+    }
+
+    public void setLineThickness(float thicknessDp) {
+        linePaint.setStrokeWidth(dp(thicknessDp));
+        invalidate();
+    }
+
+    /** Runs at the end of every onDraw, e.g. to time the frame. */
+    public void setOnDrawnListener(Runnable listener) {
+        this.onDrawnListener = listener;
+    }
+
+    public void setTimeWindowMillis(long millis) {
+        this.timeWindowNanos = millis * 1_000_000L;
+        updateBuckets();
+        invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateBuckets();
+    }
+
+    private int columns() {
+        int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        return series == null ? 0 : Math.min(width, series.getMaxBuckets());
+    }
+
+    // One bucket per pixel column of the current window
+    private void updateBuckets() {
+        int columns = columns();
+        if (columns > 0) {
+            series.setBucketNanos(Math.max(1, timeWindowNanos / columns));
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        drawChart(canvas);
+        if (onDrawnListener != null) {
+            onDrawnListener.run();
+        }
+    }
+
+    private void drawChart(Canvas canvas) {
+        float left = getPaddingLeft();
+        float top = getPaddingTop();
+        float width = getWidth() - getPaddingRight() - left;
+        float height = getHeight() - getPaddingBottom() - top;
+
+        for (int i = 0; i <= GRID_LINES; i++) {
+            float y = top + height * i / GRID_LINES;
+            canvas.drawLine(left, y, left + width, y, gridPaint);
+        }
+
+        SeriesBuffer raw = series == null ? null : series.getRaw();
+        if (raw == null || raw.size() < 2 || width <= 0 || height <= 0) {
+            return;
+        }
+
+        long end = raw.getNewestTimestamp();
+        long begin = end - timeWindowNanos;
+        int first = Math.max(0, raw.indexAtOrAfter(begin) - 1);
+        int columns = columns();
+
+        int points;
+        if (raw.size() - first <= Math.min(columns * 2, pointValues.length)) {
+            // Few enough samples to draw them all
+            points = 0;
+            for (int i = first; i < raw.size(); i++) {
+                pointTimes[points] = raw.getTimestamp(i);
+                pointValues[points++] = raw.getValue(i);
+            }
+        } else if (raw.size() - first < (long) columns * MIN_MAX_SAMPLES_PER_COLUMN) {
+            points = series.lttb(begin, end, columns, pointTimes, pointValues);
+        } else {
+            points = series.minMax(begin, end, pointTimes, pointValues);
+        }
+
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < points; i++) {
+            double v = pointValues[i];
+            if (v < min) min = v;
+            if (v > max) max = v;
+        }
+        updateAxis(min, max);
+
+        double xScale = width / (double) timeWindowNanos;
+        double yScale = height / (axisMax - axisMin);
+        int count = 0;
+        float prevX = 0;
+        float prevY = 0;
+        for (int i = 0; i < points; i++) {
+            float x = left + (float) ((pointTimes[i] - begin) * xScale);
+            float y = top + height - (float) ((pointValues[i] - axisMin) * yScale);
+            if (i > 0) {
+                linePoints[count++] = prevX;
+                linePoints[count++] = prevY;
+                linePoints[count++] = x;
+                linePoints[count++] = y;
+            }
+            prevX = x;
+            prevY = y;
+        }
+
+        canvas.save();
+        canvas.clipRect(left, top, left + width, top + height);
+        canvas.drawLines(linePoints, 0, count, linePaint);
+        canvas.restore();
+
+        canvas.drawText(maxLabel, left + dp(2), top + labelPaint.getTextSize(), labelPaint);
+        canvas.drawText(minLabel, left + dp(2), top + height - dp(2), labelPaint);
+    }
+
+    private void updateAxis(double min, double max) {
+        double niceMin = min >= 0 ? 0 : -niceCeil(-min);
+        double niceMax = max <= niceMin ? niceMin + 1 : niceCeil(max);
+        if (niceMax != axisMax || niceMin != axisMin) {
+            axisMax = niceMax;
+            axisMin = niceMin;
+            maxLabel = formatLabel(niceMax);
+            minLabel = formatLabel(niceMin);
+        }
+    }
+
+    // Smallest 1/2/5 x 10^n that is >= value
+    private static double niceCeil(double value) {
+        if (value <= 0) {
+            return 1;
+        }
+        double magnitude = Math.pow(10, Math.floor(Math.log10(value)));
+        double fraction = value / magnitude;
+        double nice = fraction <= 1 ? 1 : fraction <= 2 ? 2 : fraction <= 5 ? 5 : 10;
+        return nice * magnitude;
+    }
+
+    private static String formatLabel(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    private float dp(float value) {
+        return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, value, getResources().getDisplayMetrics());
+    }
+}
@@ -0,0 +1,690 @@
+package com.example.handcontroller;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.ServiceInfo;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.ServiceCompat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the sensor connection so it outlives activities: recreation, language
+ * changes and Settings round trips leave the stream untouched.
+ *
+ * Each connected board is a link: one {@link StreamingLoop} on its own I/O
+ * thread with its own socket and pipeline, so a slow or reconnecting board
+ * never holds up the others. Activities bind to the service, hand it the
+ * sources to stream and merge the links' pipelines on their vsync (see
+ * {@link StreamMerger}). Each link also has a {@link CommandChannel} with
+ * its own writer thread for commands to the board; the notification's Stop
+ * action sends the emergency stop through it. Link and writer threads stop
+ * when their sources are replaced and are joined in onDestroy.
+ *
+ * With phone control on, one {@link ControlLoop} thread ticks every link's
+ * {@link ProportionalController} at a fixed rate and sends the motor
+ * targets down the links, instead of the boards switching on thresholds.
+ *
+ * Calibrations are saved per user and board in a {@link CalibrationStore}.
+ * Each connection to a live board pushes the saved thresholds and ranges
+ * before anything else, and a {@link DriftMonitor} recalibrates from the
+ * stream (and saves the result) if the signal moves away from them, so the
+ * user only calibrates by hand the first time.
+ *
+ * Live sessions are recorded raw, kept for a couple of weeks, and rolled
+ * up per second, minute and session into a {@link RollupStore} for the
+ * long-term trends. With an endpoint set, every link also forwards its
+ * stream to a desktop visualizer through a {@link SampleForwarder}.
+ * While a live board is connected the service
+ * is in the foreground so the links (and the recordings) keep going with
+ * the screen off.
+ */
+public class StreamingService extends Service implements StreamingLoop.Listener {
+
+    private static final String TAG = "StreamingService";
+    private static final String NOTIFICATION_CHANNEL_ID = "streaming";
+    private static final int NOTIFICATION_ID = 1;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 2000;
+    private static final long MAX_RESAMPLE_GAP_NANOS = 50_000_000L;
+    private static final String ACTION_STOP = "com.example.handcontroller.action.STOP";
+    private static final String STOP_COMMAND = "STOP";
+    public static final String PREF_PHONE_CONTROL = "phone_control";
+    // Whose calibrations are saved and reused; one user unless set
+    public static final String PREF_USER = "user_id";
+    private static final String DEFAULT_USER = "default";
+    // ws:// or tcp:// address to forward the live stream to; empty for none
+    public static final String PREF_FORWARD_ENDPOINT = "forward_endpoint";
+    // Raw recordings older than this are deleted; their rollups stay
+    private static final int DEFAULT_RAW_RETENTION_DAYS = 14;
+    // The arm bridge takes "M<n>:<angle>" for motors 1 to 3
+    private static final int MAX_MOTORS = 3;
+
+    /** State changes, delivered on the main thread. */
+    public interface Listener {
+        void onStreamingStateChanged(SensorSource source, StreamingLoop.State state, IOException error);
+    }
+
+    public class LocalBinder extends Binder {
+        public StreamingService getService() {
+            return StreamingService.this;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    // File work off the link and main threads (calibration saves, pruning), in order
+    private final ExecutorService storageExecutor = Executors.newSingleThreadExecutor();
+
+    // Replaced as a whole, so the UI can read it without locking
+    private volatile StreamingLoop[] links = new StreamingLoop[0];
+    private Thread[] linkThreads = new Thread[0];
+    private Thread[] commandThreads = new Thread[0];
+    // Threads of replaced links that may still be running out; main thread only
+    private final List<Thread> retiredThreads = new ArrayList<>();
+    private SampleForwarder[] forwarders = new SampleForwarder[0];
+    private volatile ProportionalController[] controllers = new ProportionalController[0];
+    private ControlLoop controlLoop;
+    private Thread controlThread;
+    private CalibrationStore calibrationStore;
+    private RollupStore rollupStore;
+    private boolean foreground;
+    private boolean destroyed;
+
+    /**
+     * Started as well as bound, so unbinding during activity recreation does
+     * not destroy the service and drop the stream.
+     */
+    public static void start(Context context) {
+        context.startService(new Intent(context, StreamingService.class));
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        calibrationStore = new CalibrationStore(new File(getFilesDir(), "calibration"));
+        rollupStore = new RollupStore(new File(getFilesDir(), "rollups"));
+        storageExecutor.execute(this::pruneHistory);
+    }
+
+    // Background, once per service start
+    private void pruneHistory() {
+        long now = System.currentTimeMillis();
+        rollupStore.prune(now, RollupStore.DEFAULT_SECOND_RETENTION_MILLIS,
+                RollupStore.DEFAULT_MINUTE_RETENTION_MILLIS);
+        int days = getSharedPreferences("AppPrefs", MODE_PRIVATE)
+                .getInt("raw_retention_days", DEFAULT_RAW_RETENTION_DAYS);
+        File[] sessions = new File(getFilesDir(), "sessions").listFiles();
+        if (sessions == null) {
+            return;
+        }
+        long cutoff = now - days * RollupStore.DAY_MILLIS;
+        for (File file : sessions) {
+            // Recordings and their indexes alike
+            if (file.lastModified() < cutoff) {
+                file.delete();
+            }
+        }
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_STOP.equals(intent.getAction())) {
+            emergencyStop();
+        }
+        // Sources come from a bound activity, so there is nothing to resume after a kill
+        return START_NOT_STICKY;
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    @Override
+    public void onDestroy() {
+        destroyed = true;
+        stopLinks();
+        stopControl();
+        joinRetired();
+        // Lets a pending calibration save reach the disk
+        storageExecutor.shutdown();
+        try {
+            storageExecutor.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        leaveForeground();
+        listeners.clear();
+        super.onDestroy();
+    }
+
+    /**
+     * Streams from every source in parallel, one link each, replacing (and
+     * closing) whatever was streaming. Main thread.
+     */
+    public void connect(SensorSource... sources) {
+        stopLinks();
+        // The old links close their recordings and rollups on the way out; let them
+        // finish before new links open the same boards' files
+        joinRetired();
+        StreamingLoop[] started = new StreamingLoop[sources.length];
+        Thread[] threads = new Thread[sources.length];
+        Thread[] writers = new Thread[sources.length];
+        ProportionalController[] control = new ProportionalController[sources.length];
+        SampleForwarder[] forwarding = new SampleForwarder[sources.length];
+        SharedPreferences preferences = getSharedPreferences("AppPrefs", MODE_PRIVATE);
+        int sampleRate = preferences.getInt("sample_rate", 1000);
+        SampleForwarder.Endpoint endpoint = forwardEndpoint(preferences);
+        for (int i = 0; i < sources.length; i++) {
+            // One recognizer per board, kept across reconnects so its training survives them
+            GestureRecognizer recognizer = GestureRecognizer.forRate(BinaryProtocol.MAX_CHANNELS, sampleRate,
+                    SystemClock::elapsedRealtimeNanos);
+            // Commands queue here across reconnects; the link lends it the socket while streaming
+            CommandChannel commands = new CommandChannel(SystemClock::elapsedRealtimeNanos);
+            ProportionalController controller = new ProportionalController(BinaryProtocol.MAX_CHANNELS,
+                    (channel, angle) -> sendMotorTarget(commands, channel, angle));
+            control[i] = controller;
+            // One connection per board, kept across reconnects to it
+            SampleForwarder forwarder = endpoint != null
+                    ? new SampleForwarder(endpoint, BinaryProtocol.MAX_CHANNELS, System.currentTimeMillis(),
+                            SystemClock.elapsedRealtimeNanos())
+                    : null;
+            forwarding[i] = forwarder;
+            started[i] = new StreamingLoop(
+                    source -> createPipeline(source, recognizer, controller, commands, forwarder),
+                    new ReconnectBackoff(), this);
+            started[i].setCommandChannel(commands);
+            started[i].setSource(sources[i]);
+            threads[i] = new Thread(started[i], "sensor-io-" + i);
+            threads[i].start();
+            writers[i] = new Thread(commands, "command-writer-" + i);
+            writers[i].start();
+        }
+        links = started;
+        linkThreads = threads;
+        commandThreads = writers;
+        controllers = control;
+        forwarders = forwarding;
+        if (preferences.getBoolean(PREF_PHONE_CONTROL, false)) {
+            startControl();
+        }
+    }
+
+    private static SampleForwarder.Endpoint forwardEndpoint(SharedPreferences preferences) {
+        String address = preferences.getString(PREF_FORWARD_ENDPOINT, "");
+        if (address.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return SampleForwarder.Endpoint.parse(address);
+        } catch (IllegalArgumentException e) {
+            // A typo in Settings must not stop the stream, only the forwarding
+            Log.e(TAG, "Ignoring invalid forward endpoint", e);
+            return null;
+        }
+    }
+
+    /** Turns phone control on or off, now and for later connections. Main thread. */
+    public void setPhoneControl(boolean enabled) {
+        getSharedPreferences("AppPrefs", MODE_PRIVATE).edit().putBoolean(PREF_PHONE_CONTROL, enabled).apply();
+        if (enabled) {
+            for (ProportionalController controller : controllers) {
+                controller.resume();
+            }
+            startControl();
+        } else {
+            stopControl();
+        }
+    }
+
+    /** The running control loop, for its metrics, or null with phone control off. */
+    public ControlLoop getControlLoop() {
+        return controlLoop;
+    }
+
+    private void startControl() {
+        if (controlLoop != null) {
+            return;
+        }
+        int rateHz = getSharedPreferences("AppPrefs", MODE_PRIVATE)
+                .getInt("control_rate_hz", ControlLoop.DEFAULT_RATE_HZ);
+        // Reads the links' controllers every tick, so it carries on across connects
+        ControlLoop loop = new ControlLoop(rateHz, now -> {
+            for (ProportionalController controller : controllers) {
+                controller.tick(now);
+            }
+        }, SystemClock::elapsedRealtimeNanos);
+        controlThread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_DISPLAY);
+            loop.run();
+        }, "control-loop");
+        controlThread.start();
+        controlLoop = loop;
+    }
+
+    // Main thread. The loop returns within a tick, so no tick reaches the
+    // controllers, links or forwarders after this returns
+    private void stopControl() {
+        if (controlLoop == null) {
+            return;
+        }
+        controlLoop.shutdown();
+        Thread thread = controlThread;
+        controlLoop = null;
+        controlThread = null;
+        try {
+            thread.join(SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Only the control thread: an emergency stop must not wait for old links
+        if (thread.isAlive()) {
+            retiredThreads.add(thread);
+        }
+    }
+
+    // Control thread
+    private static void sendMotorTarget(CommandChannel commands, int channel, int angle) {
+        if (channel < MAX_MOTORS) {
+            String motor = "M" + (channel + 1);
+            commands.sendPosition(motor, motor + ":" + angle);
+        }
+    }
+
+    /** Disconnects and stops the service once no activity is bound any more. */
+    public void stop() {
+        stopLinks();
+        stopSelf();
+    }
+
+    /** True while any link still has a source, connected or reconnecting. */
+    public boolean isStreaming() {
+        for (StreamingLoop link : links) {
+            if (link.getSource() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Current links in connect order; the array is never modified, only replaced. */
+    public StreamingLoop[] getLinks() {
+        return links;
+    }
+
+    /**
+     * Calibrates every link that is streaming, from its live frames. Each
+     * engine pushes its thresholds to its board when it completes; the
+     * caller polls the engines for progress. Main thread.
+     */
+    public CalibrationEngine[] startCalibration() {
+        StreamingLoop[] current = links;
+        CalibrationEngine[] engines = new CalibrationEngine[current.length];
+        int started = 0;
+        for (StreamingLoop link : current) {
+            IngestPipeline pipeline = link.getPipeline();
+            if (pipeline == null || link.getState() != StreamingLoop.State.STREAMING) {
+                continue;
+            }
+            CalibrationEngine engine = new CalibrationEngine(pipeline.getMaxChannels(),
+                    finished -> onCalibrationFinished(link, pipeline, finished));
+            // Whatever the calibration finds replaces the saved profile
+            pipeline.setDriftMonitor(null);
+            pipeline.setCalibration(engine);
+            engine.start(SystemClock.elapsedRealtimeNanos());
+            engines[started++] = engine;
+        }
+        return Arrays.copyOf(engines, started);
+    }
+
+    // I/O thread of the link; the writer sends the thresholds, after a reconnect if need be
+    private void onCalibrationFinished(StreamingLoop link, IngestPipeline pipeline, CalibrationEngine engine) {
+        pipeline.setCalibration(null);
+        CommandChannel commands = link.getCommandChannel();
+        SensorSource source = link.getSource();
+        if (engine.getState() != CalibrationEngine.State.COMPLETED || commands == null || source == null) {
+            return;
+        }
+        SharedPreferences preferences = getSharedPreferences("AppPrefs", MODE_PRIVATE);
+        CalibrationProfile profile = CalibrationProfile.fromEngine(
+                preferences.getString(PREF_USER, DEFAULT_USER), source.getAddress(), System.currentTimeMillis(),
+                preferences.getBoolean("raw_adc_mode", false), preferences.getInt("sample_rate", 1000),
+                preferences.getInt("notch_frequency", 50), engine);
+        if (profile == null) {
+            return;
+        }
+        ProportionalController controller = pipeline.getController();
+        applyProfile(profile, commands, controller);
+        saveProfile(profile);
+        pipeline.setDriftMonitor(new DriftMonitor(profile,
+                (monitor, recalibrated) -> onRecalibrated(recalibrated, commands, controller)));
+    }
+
+    // I/O thread of the link, when the signal drifted away from the profile
+    private void onRecalibrated(CalibrationProfile profile, CommandChannel commands,
+                                ProportionalController controller) {
+        applyProfile(profile, commands, controller);
+        saveProfile(profile);
+    }
+
+    // Any link thread: thresholds to the board, ranges to the phone-side controller
+    private static void applyProfile(CalibrationProfile profile, CommandChannel commands,
+                                     ProportionalController controller) {
+        for (int i = 0; i < profile.getChannelCount(); i++) {
+            CalibrationProfile.Channel channel = profile.getChannel(i);
+            commands.sendControl(CalibrationEngine.thresholdCommand(channel.deviceChannel,
+                    channel.upper, channel.lower));
+            if (controller != null) {
+                // Open below the release threshold, closed at the typical grip
+                controller.setRange(channel.index, channel.lower, channel.activeMean);
+            }
+        }
+    }
+
+    // Off the link thread: a save forces the file to disk
+    private void saveProfile(CalibrationProfile profile) {
+        storageExecutor.execute(() -> {
+            try {
+                calibrationStore.save(profile);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not save calibration", e);
+            }
+        });
+    }
+
+    // I/O thread; the file is read once per process, reconnects hit memory
+    private CalibrationProfile loadProfile(SensorSource source, boolean rawAdc, int sampleRate, int notch) {
+        String user = getSharedPreferences("AppPrefs", MODE_PRIVATE).getString(PREF_USER, DEFAULT_USER);
+        try {
+            CalibrationProfile profile = calibrationStore.load(user, source.getAddress());
+            // Levels measured through other filters do not carry over
+            return profile != null && profile.matchesFilters(rawAdc, sampleRate, notch) ? profile : null;
+        } catch (IOException e) {
+            Log.e(TAG, "Ignoring unreadable calibration", e);
+            return null;
+        }
+    }
+
+    /**
+     * Stops every board now, ahead of anything queued, and turns phone control
+     * off until the user turns it back on. Main thread.
+     */
+    public void emergencyStop() {
+        // Latched: nothing moves the motors again until phone control is turned back on
+        for (ProportionalController controller : controllers) {
+            controller.halt();
+        }
+        stopControl();
+        getSharedPreferences("AppPrefs", MODE_PRIVATE).edit().putBoolean(PREF_PHONE_CONTROL, false).apply();
+        for (StreamingLoop link : links) {
+            CommandChannel commands = link.getCommandChannel();
+            if (commands != null) {
+                commands.sendEmergency(STOP_COMMAND);
+            }
+        }
+    }
+
+    /**
+     * Gesture recognizers of the links that are streaming, for training.
+     * Main thread.
+     */
+    public GestureRecognizer[] getGestureRecognizers() {
+        StreamingLoop[] current = links;
+        GestureRecognizer[] recognizers = new GestureRecognizer[current.length];
+        int found = 0;
+        for (StreamingLoop link : current) {
+            IngestPipeline pipeline = link.getPipeline();
+            if (pipeline != null && link.getState() == StreamingLoop.State.STREAMING
+                    && pipeline.getGestureRecognizer() != null) {
+                recognizers[found++] = pipeline.getGestureRecognizer();
+            }
+        }
+        return Arrays.copyOf(recognizers, found);
+    }
+
+    // Each loop closes its source and lets its threads run out; joinRetired waits for them
+    private void stopLinks() {
+        for (StreamingLoop link : links) {
+            link.shutdown();
+            CommandChannel commands = link.getCommandChannel();
+            if (commands != null) {
+                commands.shutdown();
+            }
+        }
+        for (SampleForwarder forwarder : forwarders) {
+            if (forwarder != null) {
+                forwarder.close();
+            }
+        }
+        forwarders = new SampleForwarder[0];
+        links = new StreamingLoop[0];
+        retiredThreads.addAll(Arrays.asList(linkThreads));
+        retiredThreads.addAll(Arrays.asList(commandThreads));
+        linkThreads = new Thread[0];
+        commandThreads = new Thread[0];
+        controllers = new ProportionalController[0];
+    }
+
+    // Main thread. Waits for stopped threads against one deadline; the ones still
+    // running afterwards stay listed for the next call
+    private void joinRetired() {
+        long deadline = SystemClock.uptimeMillis() + SHUTDOWN_TIMEOUT_MILLIS;
+        try {
+            for (Iterator<Thread> it = retiredThreads.iterator(); it.hasNext(); ) {
+                Thread thread = it.next();
+                thread.join(Math.max(1, deadline - SystemClock.uptimeMillis()));
+                if (!thread.isAlive()) {
+                    it.remove();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // I/O thread
+    @Override
+    public void onStateChanged(SensorSource source, StreamingLoop.State state, IOException error) {
+        if (error != null) {
+            Log.e(TAG, "Link to " + source.getName() + " " + state, error);
+        }
+        mainHandler.post(() -> {
+            if (destroyed) {
+                return;
+            }
+            if (source.isLive()) {
+                if (hasLiveLink()) {
+                    enterForeground(source, state);
+                } else {
+                    leaveForeground();
+                }
+            }
+            for (Listener listener : listeners) {
+                listener.onStreamingStateChanged(source, state, error);
+            }
+        });
+    }
+
+    private boolean hasLiveLink() {
+        for (StreamingLoop link : links) {
+            SensorSource source = link.getSource();
+            if (source != null && source.isLive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // I/O thread, once per connection
+    private IngestPipeline createPipeline(SensorSource source, GestureRecognizer recognizer,
+                                          ProportionalController controller, CommandChannel commands,
+                                          SampleForwarder forwarder) {
+        // Boards in raw ADC mode leave filtering to the phone
+        SharedPreferences preferences = getSharedPreferences("AppPrefs", MODE_PRIVATE);
+        boolean rawAdc = preferences.getBoolean("raw_adc_mode", false);
+        int sampleRate = preferences.getInt("sample_rate", 1000);
+        int notch = preferences.getInt("notch_frequency", 50);
+        EmgFilterChain filterChain = rawAdc
+                ? new EmgFilterChain(BinaryProtocol.MAX_CHANNELS,
+                        sampleRate == 500
+                                ? EmgFilterChain.SampleFrequency.HZ_500
+                                : EmgFilterChain.SampleFrequency.HZ_1000,
+                        notch == 60
+                                ? EmgFilterChain.NotchFrequency.HZ_60
+                                : EmgFilterChain.NotchFrequency.HZ_50)
+                : null;
+
+        // Every live session is recorded on-device; recording problems must not stop plotting
+        IngestPipeline.RecorderFactory recorders = source.isLive() ? this::openSessionRecorder : null;
+
+        // One decoded frame is one sample per channel, regardless of how the reads are chunked;
+        // the channel count and layout come from the stream itself
+        IngestPipeline pipeline = new IngestPipeline(BinaryProtocol.MAX_CHANNELS,
+                SampleRingBuffer.OverflowPolicy.AGGREGATE_MIN_MAX, filterChain, recorders,
+                SystemClock::elapsedRealtimeNanos);
+        // Every board lands on the same sample-rate grid, so channels and recordings line up
+        pipeline.setResampleRateHz(sampleRate, MAX_RESAMPLE_GAP_NANOS);
+        if (rawAdc) {
+            // Only raw ADC boards are known to sample at the configured rate
+            pipeline.getDeviceClock().setNominalRateHz(sampleRate);
+        }
+        recognizer.reset();
+        pipeline.setGestureRecognizer(recognizer);
+        pipeline.setController(controller);
+        pipeline.setForwarder(forwarder);
+        if (source.isLive()) {
+            pipeline.setRollupFactory(layout -> openRollups(source, layout));
+            // Queued now, so the saved thresholds go out right after the handshake
+            CalibrationProfile profile = loadProfile(source, rawAdc, sampleRate, notch);
+            if (profile != null) {
+                applyProfile(profile, commands, controller);
+                pipeline.setDriftMonitor(new DriftMonitor(profile,
+                        (monitor, recalibrated) -> onRecalibrated(recalibrated, commands, controller)));
+            }
+        }
+        return pipeline;
+    }
+
+    // Any link thread; synchronized so boards connecting together get distinct files
+    private synchronized SessionRecorder openSessionRecorder(ChannelDescriptor channels) {
+        File sessionDir = new File(getFilesDir(), "sessions");
+        if (!sessionDir.isDirectory() && !sessionDir.mkdirs()) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        File file = new File(sessionDir, "session-" + now + SessionFormat.FILE_EXTENSION);
+        for (int n = 1; file.exists(); n++) {
+            file = new File(sessionDir, "session-" + now + "-" + n + SessionFormat.FILE_EXTENSION);
+        }
+        try {
+            return new SessionRecorder(file, channels, now);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not start session recording", e);
+            return null;
+        }
+    }
+
+    // Link thread, per layout; activations are counted on the saved thresholds, if any
+    private RollupRecorder openRollups(SensorSource source, ChannelDescriptor layout) {
+        RollupRecorder rollups;
+        try {
+            rollups = rollupStore.openRecorder(source.getAddress(), layout,
+                    System.currentTimeMillis(), SystemClock.elapsedRealtimeNanos());
+        } catch (IOException e) {
+            Log.e(TAG, "Could not open rollups", e);
+            return null;
+        }
+        SharedPreferences preferences = getSharedPreferences("AppPrefs", MODE_PRIVATE);
+        CalibrationProfile profile = loadProfile(source, preferences.getBoolean("raw_adc_mode", false),
+                preferences.getInt("sample_rate", 1000), preferences.getInt("notch_frequency", 50));
+        if (profile != null && profile.getLayoutMask() == layout.getChannelMask()) {
+            for (int i = 0; i < profile.getChannelCount(); i++) {
+                CalibrationProfile.Channel channel = profile.getChannel(i);
+                rollups.setThresholds(channel.index, channel.upper, channel.lower);
+            }
+        }
+        return rollups;
+    }
+
+    private void enterForeground(SensorSource source, StreamingLoop.State state) {
+        Notification notification = buildNotification(source, state);
+        if (foreground) {
+            NotificationManager manager = getSystemService(NotificationManager.class);
+            manager.notify(NOTIFICATION_ID, notification);
+            return;
+        }
+        ServiceCompat.startForeground(this, NOTIFICATION_ID, notification,
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                        ? ServiceInfo.FOREGROUND_SERVICE_TYPE_CONNECTED_DEVICE
+                        : 0);
+        foreground = true;
+    }
+
+    private void leaveForeground() {
+        if (foreground) {
+            ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+            foreground = false;
+        }
+    }
+
+    private Notification buildNotification(SensorSource source, StreamingLoop.State state) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationManager manager = getSystemService(NotificationManager.class);
+            manager.createNotificationChannel(new NotificationChannel(NOTIFICATION_CHANNEL_ID,
+                    getString(R.string.streaming_channel_name), NotificationManager.IMPORTANCE_LOW));
+        }
+        PendingIntent openApp = PendingIntent.getActivity(this, 0,
+                new Intent(this, MainActivity.class).addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP),
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        PendingIntent stop = PendingIntent.getService(this, 0,
+                new Intent(this, StreamingService.class).setAction(ACTION_STOP),
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        String text = getString(state == StreamingLoop.State.STREAMING
+                ? R.string.streaming_connected
+                : R.string.streaming_reconnecting, source.getName());
+        return new NotificationCompat.Builder(this, NOTIFICATION_CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.stat_sys_data_bluetooth)
+                .setContentTitle(getString(R.string.prosthetic_arm_status))
+                .setContentText(text)
+                .setContentIntent(openApp)
+                .addAction(android.R.drawable.ic_media_pause, getString(R.string.emergency_stop), stop)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .build();
+    }
+}
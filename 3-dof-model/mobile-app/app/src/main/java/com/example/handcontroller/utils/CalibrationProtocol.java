@@ -0,0 +1,101 @@
+package com.example.handcontroller.utils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A calibration protocol compiled from its JSON definition: the steps shown
+ * for each calibration state, plus the fallback and error texts. Immutable,
+ * so one instance can be read from any thread while a newer one is being
+ * compiled elsewhere.
+ *
+ * The definition looks like
+ * <pre>
+ * {"format": 1, "version": 3,
+ *  "states": {"INITIAL": ["Relax your hand", ...], ...},
+ *  "default": "Awaiting calibration instructions",
+ *  "error": "Calibration failed. Check connection and try again."}
+ * </pre>
+ * "format" changes only when this layout does; "version" orders the
+ * definitions of one format, so a cached or fetched one replaces the
+ * bundled one only if it is newer.
+ */
+public final class CalibrationProtocol {
+
+    public static final int FORMAT = 1;
+
+    private final int version;
+    private final Map<String, List<String>> states;
+    private final List<String> defaultSteps;
+    private final String errorMessage;
+    private final String json;
+
+    private CalibrationProtocol(int version, Map<String, List<String>> states, List<String> defaultSteps,
+                                String errorMessage, String json) {
+        this.version = version;
+        this.states = states;
+        this.defaultSteps = defaultSteps;
+        this.errorMessage = errorMessage;
+        this.json = json;
+    }
+
+    /** Compiles a definition; throws if it is malformed or of another format. */
+    public static CalibrationProtocol compile(String json) throws JSONException {
+        JSONObject definition = new JSONObject(json);
+        int format = definition.getInt("format");
+        if (format != FORMAT) {
+            throw new JSONException("Unsupported protocol format " + format);
+        }
+        JSONObject stateSteps = definition.getJSONObject("states");
+        Map<String, List<String>> states = new HashMap<>();
+        for (Iterator<String> names = stateSteps.keys(); names.hasNext(); ) {
+            String name = names.next();
+            states.put(name, toList(stateSteps.getJSONArray(name)));
+        }
+        return new CalibrationProtocol(definition.getInt("version"), Collections.unmodifiableMap(states),
+                Collections.singletonList(definition.getString("default")),
+                definition.getString("error"), json);
+    }
+
+    private static List<String> toList(JSONArray array) throws JSONException {
+        if (array.length() == 0) {
+            throw new JSONException("A state needs at least one step");
+        }
+        List<String> steps = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            steps.add(array.getString(i));
+        }
+        return Collections.unmodifiableList(steps);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /** Steps for a calibration state; the default step for unknown ones. */
+    public List<String> getSteps(String state) {
+        List<String> steps = state == null ? null : states.get(state);
+        return steps != null ? steps : defaultSteps;
+    }
+
+    public String getDefaultInstruction() {
+        return defaultSteps.get(0);
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /** The definition this was compiled from, as cached on disk. */
+    public String toJson() {
+        return json;
+    }
+}
@@ -1,151 +1,292 @@
 package com.example.handcontroller.utils;
 
 import android.content.Context;
-import android.os.Build;
 import android.util.Log;
 
+import com.example.handcontroller.R;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Calibration instructions for the Settings screen.
+ *
+ * Everything shown comes from one immutable {@link Snapshot}: the compiled
+ * {@link CalibrationProtocol}, the current state, its steps and the step
+ * index. Reads take the current snapshot without locking; every change
+ * builds a new one and swaps it in, so a protocol update on a background
+ * thread never blocks the UI and never shows it half a protocol.
+ *
+ * The protocol is the bundled definition (res/raw) or, if newer, the one
+ * cached on disk from the last update; the cache is read in the background.
+ */
 public class InstructionManager {
-    private static InstructionManager instance;
-    private Map<String, List<String>> instructionSteps;
-    private int currentInstructionIndex;
-    private String currentCalibrationState;
-    private Context context;
+
+    private static final String TAG = "InstructionManager";
+    private static final String CACHE_DIR = "protocols";
+
+    private static volatile InstructionManager instance;
+
+    /** What the screen shows, replaced as a whole. */
+    private static final class Snapshot {
+        final CalibrationProtocol protocol;
+        final String state;
+        final List<String> steps;
+        final int index;
+        // Overrides the protocol's error text when set
+        final String errorMessage;
+
+        Snapshot(CalibrationProtocol protocol, String state, List<String> steps, int index, String errorMessage) {
+            this.protocol = protocol;
+            this.state = state;
+            this.steps = steps;
+            this.index = index;
+            this.errorMessage = errorMessage;
+        }
+
+        Snapshot withIndex(int newIndex) {
+            return newIndex == index ? this : new Snapshot(protocol, state, steps, newIndex, errorMessage);
+        }
+    }
+
+    private interface Change {
+        Snapshot apply(Snapshot current);
+    }
+
+    private final File cacheFile;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
 
     private InstructionManager(Context context) {
-        this.context = context.getApplicationContext();
-        instructionSteps = new HashMap<>();
-        currentInstructionIndex = 0;
-        initDefaultInstructions();
+        Context app = context.getApplicationContext();
+        cacheFile = new File(new File(app.getFilesDir(), CACHE_DIR),
+                "calibration-v" + CalibrationProtocol.FORMAT + ".json");
+        snapshot.set(new Snapshot(loadBundled(app), null, null, 0, null));
+        new Thread(this::loadCached, "protocol-cache").start();
     }
 
-    public static synchronized InstructionManager getInstance(Context context) {
-        if (instance == null) {
-            instance = new InstructionManager(context);
+    public static InstructionManager getInstance(Context context) {
+        InstructionManager current = instance;
+        if (current == null) {
+            synchronized (InstructionManager.class) {
+                current = instance;
+                if (current == null) {
+                    current = new InstructionManager(context);
+                    instance = current;
+                }
+            }
         }
-        return instance;
+        return current;
     }
 
-    private void initDefaultInstructions() {
-        // Default instructions
-        instructionSteps.put("default", List.of("Follow standard calibration procedure"));
-        instructionSteps.put("error", List.of("Calibration failed. Check connection and try again."));
+    private static CalibrationProtocol loadBundled(Context context) {
+        try (InputStream in = context.getResources().openRawResource(R.raw.calibration_protocol)) {
+            return CalibrationProtocol.compile(readFully(in));
+        } catch (IOException | JSONException e) {
+            // Shipped with the app, so only a broken build gets here
+            throw new IllegalStateException("Bundled calibration protocol is invalid", e);
+        }
+    }
+
+    // Background: a newer protocol from the last update replaces the bundled one
+    private void loadCached() {
+        if (!cacheFile.isFile()) {
+            return;
+        }
+        try (InputStream in = new FileInputStream(cacheFile)) {
+            install(CalibrationProtocol.compile(readFully(in)));
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Ignoring unreadable protocol cache", e);
+        }
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private Snapshot update(Change change) {
+        while (true) {
+            Snapshot current = snapshot.get();
+            Snapshot next = change.apply(current);
+            if (next == current || snapshot.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Compiles a fetched protocol definition and, if it is newer than the
+     * current one, caches it and switches to it. Call it off the UI thread:
+     * it parses and writes a file. Returns false if it was rejected.
+     */
+    public boolean updateProtocol(String json) {
+        CalibrationProtocol protocol;
+        try {
+            protocol = CalibrationProtocol.compile(json);
+        } catch (JSONException e) {
+            Log.e(TAG, "Rejecting invalid protocol", e);
+            return false;
+        }
+        if (!install(protocol)) {
+            return false;
+        }
+        writeCache(protocol);
+        return true;
+    }
+
+    // Swaps in protocol unless the current one is as new; the state's steps follow it
+    private boolean install(CalibrationProtocol protocol) {
+        Snapshot result = update(current -> {
+            if (protocol.getVersion() <= current.protocol.getVersion()) {
+                return current;
+            }
+            List<String> steps = current.state == null ? null : protocol.getSteps(current.state);
+            int index = steps == null ? 0 : Math.min(current.index, steps.size() - 1);
+            return new Snapshot(protocol, current.state, steps, index, current.errorMessage);
+        });
+        return result.protocol == protocol;
+    }
+
+    // Written aside and renamed, so a crash mid-write never leaves a torn cache;
+    // serialised, and skipped once a newer protocol was installed meanwhile
+    private synchronized void writeCache(CalibrationProtocol protocol) {
+        if (snapshot.get().protocol != protocol) {
+            return;
+        }
+        File dir = cacheFile.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            return;
+        }
+        File temp = new File(dir, cacheFile.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(protocol.toJson().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Could not cache protocol", e);
+            return;
+        }
+        if (!temp.renameTo(cacheFile)) {
+            Log.e(TAG, "Could not replace protocol cache");
+        }
     }
 
     // Method to update instructions from API response
     public void updateInstructionsFromApiResponse(JSONObject response) {
         try {
+            if (response.has("protocol")) {
+                updateProtocol(response.getJSONObject("protocol").toString());
+            }
+
             // Parse calibration state and instructions
             if (response.has("calibration_state")) {
-                String calibrationState = response.getString("calibration_state");
-                currentCalibrationState = calibrationState;
-                currentInstructionIndex = 0;
-
-                List<String> steps = new ArrayList<>();
-                switch (calibrationState) {
-                    case "INITIAL":
-                        steps.add("Relax your hand completely");
-                        steps.add("Rest your hand on a flat surface");
-                        steps.add("Keep your hand in a neutral, relaxed position");
-                        break;
-                    case "GRIP_CALIBRATION":
-                        steps.add("Relax your hand");
-                        steps.add("Flex muscle for sensor 0 - fully extend your hand");
-                        steps.add("Relax your hand");
-                        steps.add("Flex muscle for sensor 1 - fully close your hand into a tight grip");
-                        steps.add("Relax your hand");
-                        steps.add("Repeat full open and close motions 3 times");
-                        break;
-                    case "COMPLETED":
-                        steps.add("Hand calibration is now complete");
-                        steps.add("Your device is ready for use");
-                        break;
-                    case "FAILED":
-                        steps.add("Calibration process encountered an error");
-                        steps.add("Please restart the calibration");
-                        steps.add("Ensure your hand is clean and dry");
-                        steps.add("Check sensor connections");
-                        break;
-                    default:
-                        steps.add("Awaiting calibration instructions");
-                }
-
+                String state = response.getString("calibration_state");
                 // Allow for custom instructions from API if provided
+                List<String> custom = new ArrayList<>();
                 if (response.has("custom_instructions")) {
                     JSONArray customInstructions = response.getJSONArray("custom_instructions");
                     for (int i = 0; i < customInstructions.length(); i++) {
-                        steps.add(customInstructions.getString(i));
+                        custom.add(customInstructions.getString(i));
                     }
                 }
-
-                instructionSteps.put("current", steps);
+                update(current -> {
+                    List<String> steps = new ArrayList<>(current.protocol.getSteps(state));
+                    steps.addAll(custom);
+                    return new Snapshot(current.protocol, state, Collections.unmodifiableList(steps), 0,
+                            current.errorMessage);
+                });
             }
 
             // Update error message if provided
             if (response.has("error_message")) {
-                instructionSteps.put("error", List.of(response.getString("error_message")));
+                setErrorMessage(response.getString("error_message"));
             }
         } catch (JSONException e) {
-            Log.e("InstructionManager", "Error parsing API response", e);
-            instructionSteps.put("current", List.of("Error processing instructions"));
+            Log.e(TAG, "Error parsing API response", e);
+            update(current -> new Snapshot(current.protocol, current.state,
+                    Collections.singletonList("Error processing instructions"), 0, current.errorMessage));
         }
     }
 
+    // Calibration state measured on the device, e.g. by CalibrationEngine
+    public void setCalibrationState(String calibrationState) {
+        update(current -> new Snapshot(current.protocol, calibrationState,
+                current.protocol.getSteps(calibrationState), 0, current.errorMessage));
+    }
+
     // Get current instruction
     public String getCurrentInstruction() {
-        List<String> currentSteps = instructionSteps.get("current");
-        if (currentSteps == null || currentSteps.isEmpty()) {
-            return getDefaultInstruction();
-        }
-
-        if (currentInstructionIndex < currentSteps.size()) {
-            return currentSteps.get(currentInstructionIndex);
+        Snapshot current = snapshot.get();
+        if (current.steps == null || current.steps.isEmpty()) {
+            return current.protocol.getDefaultInstruction();
         }
-
-        return "Calibration instructions completed";
+        return current.steps.get(current.index);
     }
 
     // Move to next instruction
     public void advanceInstruction() {
-        List<String> currentSteps = instructionSteps.get("current");
-        if (currentSteps != null && currentInstructionIndex < currentSteps.size() - 1) {
-            currentInstructionIndex++;
-        }
+        update(current -> current.steps != null && current.index < current.steps.size() - 1
+                ? current.withIndex(current.index + 1)
+                : current);
     }
 
     // Check if more instructions are available
     public boolean hasMoreInstructions() {
-        List<String> currentSteps = instructionSteps.get("current");
-        return currentSteps != null && currentInstructionIndex < currentSteps.size() - 1;
+        Snapshot current = snapshot.get();
+        return current.steps != null && current.index < current.steps.size() - 1;
     }
 
-    // Reset instruction index
-    public void resetInstructions() {
-        currentInstructionIndex = 0;
+    // Show the step matching how far the current phase is (0..1)
+    public void showProgress(double fraction) {
+        update(current -> {
+            if (current.steps == null || current.steps.isEmpty()) {
+                return current;
+            }
+            int index = (int) (fraction * current.steps.size());
+            return current.withIndex(Math.max(0, Math.min(current.steps.size() - 1, index)));
+        });
     }
 
-    // Get default instruction
-    private String getDefaultInstruction() {
-        List<String> defaultSteps = instructionSteps.get("default");
-        return defaultSteps != null && !defaultSteps.isEmpty() ? defaultSteps.get(0) : "No instructions available";
+    // Replace the message shown when calibration fails
+    public void setErrorMessage(String message) {
+        update(current -> new Snapshot(current.protocol, current.state, current.steps, current.index, message));
+    }
+
+    // Reset instruction index
+    public void resetInstructions() {
+        update(current -> current.withIndex(0));
     }
 
     // Get error instruction
     public String getErrorInstruction() {
-        List<String> errorSteps = instructionSteps.get("error");
-        return errorSteps != null && !errorSteps.isEmpty() ? errorSteps.get(0) : "Unknown error occurred";
+        Snapshot current = snapshot.get();
+        return current.errorMessage != null ? current.errorMessage : current.protocol.getErrorMessage();
     }
 
     // Get current calibration state
     public String getCurrentCalibrationState() {
-        return currentCalibrationState;
+        return snapshot.get().state;
+    }
+
+    /** Version of the protocol in use, bundled or updated. */
+    public int getProtocolVersion() {
+        return snapshot.get().protocol.getVersion();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,58 @@
+package com.example.handcontroller.utils;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CalibrationProtocolTest {
+
+    private static final String DEFINITION = "{\"format\": 1, \"version\": 4,"
+            + " \"states\": {\"INITIAL\": [\"Relax\", \"Rest\"], \"COMPLETED\": [\"Done\"]},"
+            + " \"default\": \"Waiting\", \"error\": \"Failed\"}";
+
+    @Test
+    public void compilesStepsPerState() throws JSONException {
+        CalibrationProtocol protocol = CalibrationProtocol.compile(DEFINITION);
+        assertEquals(4, protocol.getVersion());
+        assertEquals(Arrays.asList("Relax", "Rest"), protocol.getSteps("INITIAL"));
+        assertEquals(Arrays.asList("Waiting"), protocol.getSteps("GRIP_CALIBRATION"));
+        assertEquals(Arrays.asList("Waiting"), protocol.getSteps(null));
+        assertEquals("Failed", protocol.getErrorMessage());
+        assertEquals(DEFINITION, protocol.toJson());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void stepsCannotBeChanged() throws JSONException {
+        List<String> steps = CalibrationProtocol.compile(DEFINITION).getSteps("INITIAL");
+        steps.add("Tampered");
+    }
+
+    @Test(expected = JSONException.class)
+    public void rejectsAnotherFormat() throws JSONException {
+        CalibrationProtocol.compile(DEFINITION.replace("\"format\": 1", "\"format\": 2"));
+    }
+
+    @Test(expected = JSONException.class)
+    public void rejectsMissingStates() throws JSONException {
+        CalibrationProtocol.compile("{\"format\": 1, \"version\": 1, \"default\": \"a\", \"error\": \"b\"}");
+    }
+
+    @Test
+    public void bundledDefinitionCompiles() throws IOException, JSONException {
+        // Unit tests run from the module directory
+        String json = new String(Files.readAllBytes(Paths.get("src/main/res/raw/calibration_protocol.json")),
+                StandardCharsets.UTF_8);
+        CalibrationProtocol protocol = CalibrationProtocol.compile(json);
+        for (String state : new String[]{"INITIAL", "GRIP_CALIBRATION", "COMPLETED", "FAILED"}) {
+            assertNotEquals(protocol.getSteps(null), protocol.getSteps(state));
+        }
+    }
+}
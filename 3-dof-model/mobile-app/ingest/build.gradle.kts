@@ -0,0 +1,30 @@
+// Plain JVM module with the sample ingest path (decoding, hand-off, series,
+// filtering, recording) so it can be unit tested and benchmarked off-device.
+plugins {
+    `java-library`
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+dependencies {
+    testImplementation("junit:junit:4.13.2")
+}
+
+// ./gradlew :ingest:jmh
+// Fixed forks/iterations and JSON output so results/jmh/results.json can be
+// diffed between commits. Allocation rate comes from the gc profiler.
+jmh {
+    jmhVersion.set("1.37")
+    fork.set(2)
+    warmupIterations.set(3)
+    warmup.set("2s")
+    iterations.set(5)
+    timeOnIteration.set("2s")
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+}
@@ -0,0 +1,32 @@
+package com.example.handcontroller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Pre-encoded wire streams for the benchmarks, produced by the same replay
+ * source the app uses so the bytes match what a board sends.
+ */
+final class BenchmarkStreams {
+
+    static final long SEED = 42;
+
+    private BenchmarkStreams() {
+    }
+
+    static byte[] encode(int channels, int rateHz, int frames, ReplaySensorSource.Encoding encoding)
+            throws IOException {
+        WaveformReplayFrames waveform = new WaveformReplayFrames(channels, rateHz, frames, SEED);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ReplaySensorSource source = new ReplaySensorSource("benchmark", waveform,
+                ReplaySensorSource.AS_FAST_AS_POSSIBLE, encoding)) {
+            source.open();
+            byte[] buffer = new byte[1024];
+            int n;
+            while ((n = source.read(buffer, 0, buffer.length)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+}
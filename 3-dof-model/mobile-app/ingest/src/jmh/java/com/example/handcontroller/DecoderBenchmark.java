@@ -0,0 +1,57 @@
+package com.example.handcontroller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wire decoding alone: bytes in, frames out to a sink. One op is one frame,
+ * so the score reads directly as decoded frames per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DecoderBenchmark {
+
+    static final int FRAMES = 1000;
+
+    @Param({"1", "2", "5"})
+    public int channels;
+
+    @Param({"ASCII", "BINARY"})
+    public ReplaySensorSource.Encoding encoding;
+
+    private byte[] stream;
+    private FrameDecoder decoder;
+    private Blackhole sink;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) throws IOException {
+        stream = BenchmarkStreams.encode(channels, 1000, FRAMES, encoding);
+        sink = blackhole;
+        FrameListener listener = (values, channelCount) -> sink.consume(values[channelCount - 1]);
+        decoder = encoding == ReplaySensorSource.Encoding.BINARY
+                ? new BinaryPacketDecoder(listener)
+                : new AsciiFrameDecoder(BinaryProtocol.MAX_CHANNELS, listener);
+    }
+
+    // Fed in Bluetooth-read sized chunks, as the read loop does
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void decode() {
+        for (int off = 0; off < stream.length; off += 1024) {
+            decoder.feed(stream, off, Math.min(1024, stream.length - off));
+        }
+    }
+}
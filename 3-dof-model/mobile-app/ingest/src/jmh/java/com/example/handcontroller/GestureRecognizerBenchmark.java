@@ -0,0 +1,72 @@
+package com.example.handcontroller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of gesture recognition on the read thread. One op is one hop (25
+ * frames at 1 kHz): the O(1) feature updates for every frame plus one
+ * classification, i.e. the work behind each decision. Must stay far below
+ * the 25 ms the hop takes to arrive, and allocation-free.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GestureRecognizerBenchmark {
+
+    static final int RATE_HZ = 1000;
+    static final int CLASSES = 4;
+
+    @Param({"2", "8"})
+    public int channels;
+
+    @Param({"LDA", "KNN"})
+    public GestureRecognizer.Model model;
+
+    private GestureRecognizer recognizer;
+    private double[][] frames;
+    private int hop;
+    private int next;
+    private long time;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        recognizer = GestureRecognizer.forRate(BinaryProtocol.MAX_CHANNELS, RATE_HZ, () -> time);
+        hop = recognizer.getExtractor().getHop();
+        frames = new double[RATE_HZ * CLASSES][channels];
+        for (int i = 0; i < frames.length; i++) {
+            int gesture = i / RATE_HZ;
+            for (int c = 0; c < channels; c++) {
+                frames[i][c] = random.nextGaussian() * (c % CLASSES == gesture ? 30 : 3);
+            }
+        }
+        // A second of each gesture, as recorded on the training screen
+        for (int i = 0; i < frames.length; i++) {
+            if (i % RATE_HZ == 0) {
+                recognizer.startRecording(i / RATE_HZ);
+            }
+            recognizer.accept(time++, frames[i], channels);
+        }
+        recognizer.stopRecording();
+        recognizer.train(model, CLASSES, 1);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public int oneHop() {
+        for (int i = 0; i < hop; i++) {
+            recognizer.accept(time++, frames[next], channels);
+            next = next + 1 == frames.length ? 0 : next + 1;
+        }
+        return recognizer.getGesture();
+    }
+}
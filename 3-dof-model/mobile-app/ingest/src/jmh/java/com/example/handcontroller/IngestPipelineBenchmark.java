@@ -0,0 +1,115 @@
+package com.example.handcontroller;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end ingest path: decode, ring buffer hand-off and drain into the
+ * graph series, without the UI. One invocation pushes one second of stream
+ * in vsync-sized batches (rate / 60 frames) and drains after each batch, the
+ * way the read thread and Choreographer interleave on a phone.
+ *
+ * {@code streamSeconds} is one op; the aux counters give samples/s so the
+ * result can be compared with the board's sample rate directly. Run with the
+ * gc profiler (on by default in the build) to check the path stays
+ * allocation-free.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IngestPipelineBenchmark {
+
+    static final int VSYNC_HZ = 60;
+    static final int SERIES_CAPACITY = 65536;
+    static final int SERIES_BUCKETS = 2048;
+
+    @Param({"1", "2", "5"})
+    public int channels;
+
+    @Param({"500", "1000"})
+    public int rateHz;
+
+    @Param({"BINARY", "ASCII"})
+    public ReplaySensorSource.Encoding encoding;
+
+    private byte[] stream;
+    private int[] batchEnds;
+    private IngestPipeline pipeline;
+    private DecimatedSeries[] series;
+    private byte[] singleFrame;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long samples;
+        public long frames;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            samples = 0;
+            frames = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stream = BenchmarkStreams.encode(channels, rateHz, rateHz, encoding);
+        singleFrame = BenchmarkStreams.encode(channels, rateHz, 1, encoding);
+
+        // Split on frame boundaries as closely as the encoding allows
+        int batches = VSYNC_HZ;
+        batchEnds = new int[batches];
+        for (int i = 0; i < batches; i++) {
+            batchEnds[i] = (int) ((long) stream.length * (i + 1) / batches);
+        }
+
+        pipeline = new IngestPipeline(BinaryProtocol.MAX_CHANNELS, SampleRingBuffer.OverflowPolicy.DROP_OLDEST,
+                null, null, NanoClock.SYSTEM);
+        series = new DecimatedSeries[channels];
+        for (int c = 0; c < channels; c++) {
+            series[c] = new DecimatedSeries(new SeriesBuffer(SERIES_CAPACITY), SERIES_BUCKETS);
+        }
+        // Lock the wire format before measuring
+        streamSecond(null);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public int streamSeconds(Counters counters) {
+        return streamSecond(counters);
+    }
+
+    // Bytes of one frame in to the frame being in the series
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int singleFrameLatency() {
+        pipeline.feed(singleFrame, 0, singleFrame.length);
+        return pipeline.drainTo(series);
+    }
+
+    private int streamSecond(Counters counters) {
+        int drained = 0;
+        int start = 0;
+        for (int end : batchEnds) {
+            pipeline.feed(stream, start, end - start);
+            drained += pipeline.drainTo(series);
+            start = end;
+        }
+        if (counters != null) {
+            counters.frames += drained;
+            counters.samples += (long) drained * channels;
+        }
+        return drained;
+    }
+}
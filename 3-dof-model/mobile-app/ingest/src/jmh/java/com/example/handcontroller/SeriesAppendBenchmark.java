@@ -0,0 +1,75 @@
+package com.example.handcontroller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consumer side of the graphs: appending to a full ring series (so every
+ * append evicts) and decimating the visible window for one redraw.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SeriesAppendBenchmark {
+
+    static final int BATCH = 1000;
+    static final long PERIOD_NANOS = 1_000_000L;
+
+    // Same sizes as MainActivity
+    static final int CAPACITY = 65536;
+    static final int BUCKETS = 2048;
+    static final long WINDOW_NANOS = 30_000_000_000L;
+
+    @Param({"MIN_MAX", "LTTB"})
+    public DecimatedSeries.Mode mode;
+
+    private DecimatedSeries series;
+    private long timestamp;
+    private double[] values;
+    private final long[] pointTimes = new long[BUCKETS * 2 + 2];
+    private final double[] pointValues = new double[BUCKETS * 2 + 2];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        series = new DecimatedSeries(new SeriesBuffer(CAPACITY), BUCKETS);
+        series.setBucketNanos(WINDOW_NANOS / 1080);
+        WaveformReplayFrames waveform = new WaveformReplayFrames(1, 1000, -1, BenchmarkStreams.SEED);
+        values = new double[BATCH];
+        double[] frame = new double[1];
+        for (int i = 0; i < BATCH; i++) {
+            waveform.next(frame);
+            values[i] = frame[0];
+        }
+        for (int i = 0; i < CAPACITY; i++) {
+            series.append(timestamp += PERIOD_NANOS, values[i % BATCH]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void append() {
+        for (int i = 0; i < BATCH; i++) {
+            series.append(timestamp += PERIOD_NANOS, values[i]);
+        }
+    }
+
+    // One redraw of a 1080 px wide chart
+    @Benchmark
+    public int decimateWindow() {
+        long end = series.getRaw().getNewestTimestamp();
+        if (mode == DecimatedSeries.Mode.LTTB) {
+            return series.lttb(end - WINDOW_NANOS, end, 1080, pointTimes, pointValues);
+        }
+        return series.minMax(end - WINDOW_NANOS, end, pointTimes, pointValues);
+    }
+}
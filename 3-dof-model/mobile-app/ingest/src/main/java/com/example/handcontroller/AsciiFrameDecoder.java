@@ -0,0 +1,151 @@
+package com.example.handcontroller;
+
+/**
+ * Incremental decoder for the newline terminated ASCII output of the firmware
+ * (e.g. {@code Serial.println(smoothedEnvelope)} in autocalib v2).
+ *
+ * Bytes can be fed in arbitrary chunks: a line split across two reads is
+ * completed on the next call, and a read holding many lines emits one frame per
+ * line. Numbers are parsed straight from the bytes, nothing is allocated per
+ * frame. Lines may carry several values separated by commas, spaces or tabs,
+ * one per channel. Status lines ("Calibration complete.", ...) are skipped.
+ */
+public class AsciiFrameDecoder implements FrameDecoder {
+
+    private static final int MAX_LINE_LENGTH = 128;
+
+    private final FrameListener listener;
+    private final double[] values;
+
+    // Parser state carried across feed() calls
+    private int channel;
+    private long mantissa;
+    private int digits;
+    private int fractionDigits;
+    private boolean inFraction;
+    private boolean negative;
+    private boolean inNumber;
+    private boolean rejectLine;
+    private int lineLength;
+
+    private long framesDecoded;
+    private long linesRejected;
+
+    public AsciiFrameDecoder(int maxChannels, FrameListener listener) {
+        if (maxChannels <= 0) {
+            throw new IllegalArgumentException("maxChannels must be positive");
+        }
+        this.values = new double[maxChannels];
+        this.listener = listener;
+    }
+
+    @Override
+    public void feed(byte[] buffer, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = buffer[i];
+
+            if (b == '\n') {
+                endLine();
+                continue;
+            }
+            if (rejectLine) {
+                continue;
+            }
+            if (++lineLength > MAX_LINE_LENGTH) {
+                rejectLine = true;
+                continue;
+            }
+
+            if (b >= '0' && b <= '9') {
+                // Ignore digits beyond what a long can hold, they are below float precision anyway
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    if (inFraction) {
+                        fractionDigits++;
+                    }
+                } else if (!inFraction) {
+                    rejectLine = true;
+                }
+                inNumber = true;
+            } else if (b == '.' && !inFraction) {
+                inFraction = true;
+                inNumber = true;
+            } else if (b == '-' && !inNumber) {
+                negative = true;
+                inNumber = true;
+            } else if (b == ',' || b == ' ' || b == '\t' || b == '\r') {
+                if (inNumber && !endNumber()) {
+                    rejectLine = true;
+                }
+            } else {
+                // Any other character means this is a log line, not sample data
+                rejectLine = true;
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        resetNumber();
+        channel = 0;
+        rejectLine = false;
+        lineLength = 0;
+    }
+
+    @Override
+    public long getFramesDecoded() {
+        return framesDecoded;
+    }
+
+    public long getLinesRejected() {
+        return linesRejected;
+    }
+
+    private void endLine() {
+        if (!rejectLine && inNumber && !endNumber()) {
+            rejectLine = true;
+        }
+
+        if (rejectLine) {
+            linesRejected++;
+        } else if (channel > 0) {
+            framesDecoded++;
+            listener.onFrame(values, channel);
+        }
+        reset();
+    }
+
+    private boolean endNumber() {
+        if (digits == 0 || channel >= values.length) {
+            resetNumber();
+            return false;
+        }
+        double value = mantissa;
+        if (fractionDigits > 0) {
+            value /= POWERS_OF_TEN[fractionDigits];
+        }
+        values[channel++] = negative ? -value : value;
+        resetNumber();
+        return true;
+    }
+
+    private void resetNumber() {
+        mantissa = 0;
+        digits = 0;
+        fractionDigits = 0;
+        inFraction = false;
+        negative = false;
+        inNumber = false;
+    }
+
+    private static final double[] POWERS_OF_TEN = new double[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+}
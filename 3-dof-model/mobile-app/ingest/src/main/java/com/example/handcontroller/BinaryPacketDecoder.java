@@ -0,0 +1,186 @@
+package com.example.handcontroller;
+
+/**
+ * Incremental decoder for the binary packet format described in {@link BinaryProtocol}.
+ *
+ * Packets may be split across reads or arrive back to back in one read. A packet
+ * with a bad header or CRC is dropped and the decoder hunts for the next sync
+ * word starting one byte after the rejected one. Sequence gaps are counted as
+ * lost frames, and the 16-bit sequence is unwrapped into a running device
+ * frame index (see {@link #getFrameIndex}).
+ *
+ * Frames are indexed by board input, like ASCII lines: the samples of a packet
+ * are placed at the bit positions of its channel mask, inputs left out of the
+ * mask are NaN, and the channel count is the highest input in the mask plus one.
+ */
+public class BinaryPacketDecoder implements FrameDecoder {
+
+    private final FrameListener listener;
+    private final double sampleScale;
+    private final byte[] packet = new byte[BinaryProtocol.MAX_PACKET_SIZE];
+    private final double[] values = new double[BinaryProtocol.MAX_CHANNELS];
+
+    private int packetLength;
+    private int expectedLength;
+    private int channelMask;
+    private int expectedSequence = -1;
+    private long nextFrameIndex;
+    private long frameIndex = -1;
+
+    private long framesDecoded;
+    private long packetsDecoded;
+    private long framesLost;
+    private long crcErrors;
+    private long headerErrors;
+
+    public BinaryPacketDecoder(FrameListener listener) {
+        this(listener, BinaryProtocol.DEFAULT_SAMPLE_SCALE);
+    }
+
+    public BinaryPacketDecoder(FrameListener listener, double sampleScale) {
+        this.listener = listener;
+        this.sampleScale = sampleScale;
+    }
+
+    @Override
+    public void feed(byte[] buffer, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            accept(buffer[i]);
+        }
+    }
+
+    @Override
+    public void reset() {
+        packetLength = 0;
+        expectedLength = 0;
+        expectedSequence = -1;
+        frameIndex = -1;
+    }
+
+    @Override
+    public long getFramesDecoded() {
+        return framesDecoded;
+    }
+
+    public long getPacketsDecoded() {
+        return packetsDecoded;
+    }
+
+    public long getFramesLost() {
+        return framesLost;
+    }
+
+    public long getCrcErrors() {
+        return crcErrors;
+    }
+
+    public long getHeaderErrors() {
+        return headerErrors;
+    }
+
+    /**
+     * Device-side index of the frame being delivered, valid during
+     * {@link FrameListener#onFrame}: the packet sequence unwrapped past 16 bits,
+     * so lost frames leave a gap. Restarts from the wire sequence after a reset.
+     */
+    public long getFrameIndex() {
+        return frameIndex;
+    }
+
+    // Channel mask of the last good packet, 0 before the first one
+    public int getChannelMask() {
+        return channelMask;
+    }
+
+    private void accept(byte b) {
+        int value = b & 0xFF;
+
+        if (packetLength == 0) {
+            if (value == BinaryProtocol.SYNC_0) {
+                packet[packetLength++] = b;
+            }
+            return;
+        }
+        if (packetLength == 1) {
+            if (value == BinaryProtocol.SYNC_1) {
+                packet[packetLength++] = b;
+            } else {
+                packetLength = value == BinaryProtocol.SYNC_0 ? 1 : 0;
+            }
+            return;
+        }
+
+        packet[packetLength++] = b;
+
+        if (packetLength == BinaryProtocol.HEADER_SIZE) {
+            int version = packet[2] & 0xFF;
+            int mask = packet[3] & 0xFF;
+            int frames = packet[6] & 0xFF;
+            if (version != BinaryProtocol.VERSION || mask == 0
+                    || frames == 0 || frames > BinaryProtocol.MAX_FRAMES_PER_PACKET) {
+                headerErrors++;
+                resync();
+                return;
+            }
+            expectedLength = BinaryProtocol.packetSize(Integer.bitCount(mask), frames);
+        }
+
+        if (expectedLength > 0 && packetLength == expectedLength) {
+            int crcOffset = expectedLength - BinaryProtocol.CRC_SIZE;
+            int received = (packet[crcOffset] & 0xFF) | (packet[crcOffset + 1] & 0xFF) << 8;
+            if (received != BinaryProtocol.crc16(packet, 2, crcOffset - 2)) {
+                crcErrors++;
+                resync();
+                return;
+            }
+            dispatch();
+            packetLength = 0;
+            expectedLength = 0;
+        }
+    }
+
+    private void dispatch() {
+        int mask = packet[3] & 0xFF;
+        int sequence = (packet[4] & 0xFF) | (packet[5] & 0xFF) << 8;
+        int frames = packet[6] & 0xFF;
+        int width = 32 - Integer.numberOfLeadingZeros(mask);
+
+        if (expectedSequence < 0) {
+            nextFrameIndex = sequence;
+        } else if (sequence != expectedSequence) {
+            int lost = (sequence - expectedSequence) & 0xFFFF;
+            framesLost += lost;
+            nextFrameIndex += lost;
+        }
+        expectedSequence = (sequence + frames) & 0xFFFF;
+        channelMask = mask;
+        packetsDecoded++;
+
+        int p = BinaryProtocol.HEADER_SIZE;
+        for (int f = 0; f < frames; f++) {
+            for (int input = 0; input < width; input++) {
+                if ((mask & (1 << input)) == 0) {
+                    values[input] = Double.NaN;
+                    continue;
+                }
+                short raw = (short) ((packet[p] & 0xFF) | (packet[p + 1] & 0xFF) << 8);
+                values[input] = raw * sampleScale;
+                p += 2;
+            }
+            framesDecoded++;
+            frameIndex = nextFrameIndex++;
+            listener.onFrame(values, width);
+        }
+    }
+
+    // Drop the current candidate and rescan the bytes after its first sync byte
+    private void resync() {
+        int length = packetLength;
+        packetLength = 0;
+        expectedLength = 0;
+        for (int i = 1; i < length; i++) {
+            accept(packet[i]);
+        }
+    }
+}
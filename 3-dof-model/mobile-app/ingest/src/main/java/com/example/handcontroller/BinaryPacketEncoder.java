@@ -0,0 +1,68 @@
+package com.example.handcontroller;
+
+/**
+ * Reference encoder for the binary packet format described in {@link BinaryProtocol}.
+ * The firmware implements the same layout; this one is used by tests and replay.
+ */
+public class BinaryPacketEncoder {
+
+    private final int channelMask;
+    private final int channelCount;
+    private final double sampleScale;
+    private int sequence;
+
+    public BinaryPacketEncoder(int channelMask) {
+        this(channelMask, BinaryProtocol.DEFAULT_SAMPLE_SCALE);
+    }
+
+    public BinaryPacketEncoder(int channelMask, double sampleScale) {
+        if (channelMask <= 0 || channelMask > 0xFF) {
+            throw new IllegalArgumentException("channelMask must select 1 to 8 channels");
+        }
+        this.channelMask = channelMask;
+        this.channelCount = Integer.bitCount(channelMask);
+        this.sampleScale = sampleScale;
+    }
+
+    /**
+     * Encodes frameCount frames taken from samples (interleaved, channelCount values
+     * per frame) into out at offset. Returns the number of bytes written.
+     */
+    public int encode(double[] samples, int frameCount, byte[] out, int offset) {
+        if (frameCount <= 0 || frameCount > BinaryProtocol.MAX_FRAMES_PER_PACKET) {
+            throw new IllegalArgumentException("frameCount out of range: " + frameCount);
+        }
+
+        int p = offset;
+        out[p++] = (byte) BinaryProtocol.SYNC_0;
+        out[p++] = (byte) BinaryProtocol.SYNC_1;
+        out[p++] = (byte) BinaryProtocol.VERSION;
+        out[p++] = (byte) channelMask;
+        out[p++] = (byte) sequence;
+        out[p++] = (byte) (sequence >>> 8);
+        out[p++] = (byte) frameCount;
+
+        int sampleCount = frameCount * channelCount;
+        for (int i = 0; i < sampleCount; i++) {
+            long raw = Math.round(samples[i] / sampleScale);
+            int clamped = (int) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, raw));
+            out[p++] = (byte) clamped;
+            out[p++] = (byte) (clamped >>> 8);
+        }
+
+        int crc = BinaryProtocol.crc16(out, offset + 2, p - offset - 2);
+        out[p++] = (byte) crc;
+        out[p++] = (byte) (crc >>> 8);
+
+        sequence = (sequence + frameCount) & 0xFFFF;
+        return p - offset;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    public void setSequence(int sequence) {
+        this.sequence = sequence & 0xFFFF;
+    }
+}
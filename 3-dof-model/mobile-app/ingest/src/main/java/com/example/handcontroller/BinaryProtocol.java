@@ -0,0 +1,77 @@
+package com.example.handcontroller;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Constants and CRC shared by {@link BinaryPacketEncoder} and {@link BinaryPacketDecoder}.
+ *
+ * Packet layout (multi-byte fields little endian):
+ * <pre>
+ *   0  sync        0xA5 0x5A
+ *   2  version     {@link #VERSION}
+ *   3  channelMask bit n set = channel n present, samples ordered by channel
+ *   4  sequence    uint16, index of the first frame in the packet
+ *   6  frameCount  uint8, 1..{@link #MAX_FRAMES_PER_PACKET}
+ *   7  samples     int16 per channel per frame, interleaved by frame
+ *   n  crc         CRC-16/CCITT-FALSE over bytes 2..n-1
+ * </pre>
+ * The sequence advances by frameCount per packet, so a gap in the sequence is
+ * the number of lost frames.
+ */
+public final class BinaryProtocol {
+
+    public static final int SYNC_0 = 0xA5;
+    public static final int SYNC_1 = 0x5A;
+    public static final int VERSION = 1;
+
+    public static final int HEADER_SIZE = 7;
+    public static final int CRC_SIZE = 2;
+    public static final int MAX_CHANNELS = 8;
+    public static final int MAX_FRAMES_PER_PACKET = 32;
+    public static final int MAX_PACKET_SIZE =
+            HEADER_SIZE + MAX_CHANNELS * MAX_FRAMES_PER_PACKET * 2 + CRC_SIZE;
+
+    // Samples travel as int16 in tenths of a unit (envelope range +/-3276.7)
+    public static final double DEFAULT_SAMPLE_SCALE = 0.1;
+
+    // Sent by the app after connecting; firmware that knows the protocol answers with packets
+    public static final byte[] HANDSHAKE = ("BIN " + VERSION + "\n").getBytes(StandardCharsets.US_ASCII);
+
+    private static final int[] CRC_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+            CRC_TABLE[i] = crc & 0xFFFF;
+        }
+    }
+
+    private BinaryProtocol() {
+    }
+
+    public static int packetSize(int channelCount, int frameCount) {
+        return HEADER_SIZE + channelCount * frameCount * 2 + CRC_SIZE;
+    }
+
+    /**
+     * Most frames of channelCount channels that fit in one packet of at most
+     * payloadBytes, e.g. one BLE notification (ATT MTU - 3). At least 1, so a
+     * payload too small for a whole frame still works, split across writes.
+     */
+    public static int framesPerPayload(int channelCount, int payloadBytes) {
+        int frames = (payloadBytes - HEADER_SIZE - CRC_SIZE) / (channelCount * 2);
+        return Math.max(1, Math.min(MAX_FRAMES_PER_PACKET, frames));
+    }
+
+    public static int crc16(byte[] data, int offset, int length) {
+        int crc = 0xFFFF;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            crc = ((crc << 8) ^ CRC_TABLE[((crc >>> 8) ^ data[i]) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+}
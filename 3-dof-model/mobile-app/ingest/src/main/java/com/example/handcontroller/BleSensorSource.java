@@ -0,0 +1,273 @@
+package com.example.handcontroller;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * BLE transport: the board notifies binary packets on a GATT characteristic
+ * and the bytes come out of {@link #read} like from an RFCOMM socket, so the
+ * rest of the ingest path does not know the difference.
+ *
+ * {@link #open} walks through connect, service discovery, MTU exchange and a
+ * low-latency connection request, then subscribes. The board packs as many
+ * frames per notification as the negotiated payload allows (see
+ * {@link BinaryProtocol#framesPerPayload}); a packet split over two
+ * notifications is simply reassembled by the decoder. Notifications are
+ * copied into a bounded byte ring on the GATT thread and drained by the
+ * link's read thread.
+ */
+public class BleSensorSource implements SensorSource {
+
+    // GATT layout shared with the ESP32-C6 sketch; commands use its existing characteristic
+    public static final UUID SERVICE_UUID = UUID.fromString("4fafc201-1fb5-459e-8fcc-c5c9c331914b");
+    public static final UUID COMMAND_CHARACTERISTIC_UUID = UUID.fromString("beb5483e-36e1-4688-b7f5-ea07361b26a8");
+    public static final UUID SAMPLE_CHARACTERISTIC_UUID = UUID.fromString("beb5483f-36e1-4688-b7f5-ea07361b26a8");
+
+    public static final int DEFAULT_MTU = 23;
+    // Largest MTU that still fits one LE data-length-extended PDU; 23 frames of 5 channels
+    public static final int REQUESTED_MTU = 247;
+    public static final long STEP_TIMEOUT_MILLIS = 10_000;
+    public static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+
+    // Notifications closer than this belong to the same connection event
+    private static final long SAME_EVENT_NANOS = 2_000_000L;
+
+    private static final int CONNECTED = 1;
+    private static final int SERVICES_DISCOVERED = 1 << 1;
+    private static final int MTU_EXCHANGED = 1 << 2;
+    private static final int SUBSCRIBED = 1 << 3;
+
+    private final GattLink link;
+    private final NanoClock clock;
+    private final Object lock = new Object();
+
+    // Guarded by lock
+    private final byte[] buffer;
+    private int bufferStart;
+    private int bufferCount;
+    private int completedSteps;
+    private boolean failed;
+    private boolean disconnected;
+    private boolean closed;
+
+    // Link statistics, written on the GATT thread
+    private volatile int mtu = DEFAULT_MTU;
+    private volatile long notifications;
+    private volatile long bytesReceived;
+    private volatile long bytesDropped;
+    private volatile long intervalNanos;
+    private long lastNotificationNanos;
+
+    private final GattLink.Callback callback = new GattLink.Callback() {
+        @Override
+        public void onConnectionStateChanged(boolean connected) {
+            synchronized (lock) {
+                if (connected) {
+                    completedSteps |= CONNECTED;
+                } else {
+                    disconnected = true;
+                }
+                lock.notifyAll();
+            }
+        }
+
+        @Override
+        public void onServicesDiscovered(boolean success) {
+            complete(SERVICES_DISCOVERED, success);
+        }
+
+        @Override
+        public void onMtuChanged(int newMtu, boolean success) {
+            if (success) {
+                mtu = newMtu;
+            }
+            // A refused exchange just leaves the default MTU
+            complete(MTU_EXCHANGED, true);
+        }
+
+        @Override
+        public void onNotificationsEnabled(boolean success) {
+            complete(SUBSCRIBED, success);
+        }
+
+        @Override
+        public void onNotification(byte[] value, int length) {
+            onSamples(value, length);
+        }
+    };
+
+    public BleSensorSource(GattLink link) {
+        this(link, DEFAULT_BUFFER_SIZE, NanoClock.SYSTEM);
+    }
+
+    public BleSensorSource(GattLink link, int bufferSize, NanoClock clock) {
+        this.link = link;
+        this.buffer = new byte[bufferSize];
+        this.clock = clock;
+    }
+
+    @Override
+    public void open() throws IOException {
+        synchronized (lock) {
+            bufferStart = 0;
+            bufferCount = 0;
+            completedSteps = 0;
+            failed = false;
+            disconnected = false;
+            closed = false;
+        }
+        mtu = DEFAULT_MTU;
+        intervalNanos = 0;
+
+        link.connect(callback);
+        await(CONNECTED, "connecting");
+        link.discoverServices();
+        await(SERVICES_DISCOVERED, "discovering services");
+        link.requestMtu(REQUESTED_MTU);
+        await(MTU_EXCHANGED, "exchanging MTU");
+        link.requestLowLatency();
+        link.enableNotifications();
+        await(SUBSCRIBED, "subscribing");
+    }
+
+    @Override
+    public int read(byte[] out, int offset, int length) throws IOException {
+        synchronized (lock) {
+            while (bufferCount == 0 && !closed && !disconnected) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted", e);
+                }
+            }
+            if (bufferCount == 0) {
+                if (closed) {
+                    return -1;
+                }
+                throw new IOException("BLE link lost");
+            }
+
+            int n = Math.min(length, bufferCount);
+            int firstRun = Math.min(n, buffer.length - bufferStart);
+            System.arraycopy(buffer, bufferStart, out, offset, firstRun);
+            System.arraycopy(buffer, 0, out, offset + firstRun, n - firstRun);
+            bufferStart = (bufferStart + n) % buffer.length;
+            bufferCount -= n;
+            return n;
+        }
+    }
+
+    @Override
+    public void write(byte[] data) throws IOException {
+        link.write(data);
+    }
+
+    @Override
+    public String getName() {
+        return link.getName();
+    }
+
+    @Override
+    public String getAddress() {
+        return link.getAddress();
+    }
+
+    @Override
+    public boolean isLive() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        link.close();
+    }
+
+    /** Negotiated ATT MTU; each notification carries up to mtu - 3 bytes. */
+    public int getMtu() {
+        return mtu;
+    }
+
+    public long getNotificationsReceived() {
+        return notifications;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    // Bytes lost because the read thread fell a whole buffer behind
+    public long getBytesDropped() {
+        return bytesDropped;
+    }
+
+    /**
+     * Connection interval as seen from the notification timing (smoothed gap
+     * between connection events), 0 until known. Android does not report the
+     * negotiated value.
+     */
+    public double getEstimatedIntervalMillis() {
+        return intervalNanos / 1e6;
+    }
+
+    // GATT thread
+    private void onSamples(byte[] value, int length) {
+        long now = clock.nanoTime();
+        long gap = now - lastNotificationNanos;
+        if (lastNotificationNanos != 0 && gap >= SAME_EVENT_NANOS) {
+            long previous = intervalNanos;
+            intervalNanos = previous == 0 ? gap : previous + (gap - previous) / 8;
+        }
+        lastNotificationNanos = now;
+        notifications++;
+        bytesReceived += length;
+
+        synchronized (lock) {
+            int n = Math.min(length, buffer.length - bufferCount);
+            // Never block the GATT thread; the decoder resyncs on the next packet
+            bytesDropped += length - n;
+            int end = (bufferStart + bufferCount) % buffer.length;
+            int firstRun = Math.min(n, buffer.length - end);
+            System.arraycopy(value, 0, buffer, end, firstRun);
+            System.arraycopy(value, firstRun, buffer, 0, n - firstRun);
+            bufferCount += n;
+            lock.notifyAll();
+        }
+    }
+
+    private void complete(int step, boolean success) {
+        synchronized (lock) {
+            if (success) {
+                completedSteps |= step;
+            } else {
+                failed = true;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private void await(int step, String what) throws IOException {
+        synchronized (lock) {
+            long deadline = System.currentTimeMillis() + STEP_TIMEOUT_MILLIS;
+            long remaining = STEP_TIMEOUT_MILLIS;
+            while ((completedSteps & step) == 0 && !failed && !disconnected && !closed && remaining > 0) {
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted while " + what, e);
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+            if ((completedSteps & step) != 0) {
+                return;
+            }
+            String reason = closed ? "closed" : failed ? "failed" : disconnected ? "disconnected" : "timed out";
+            throw new IOException("BLE " + reason + " while " + what);
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.example.handcontroller;
+
+import java.util.Locale;
+
+/**
+ * The firmware's calibrateEMG() run on the phone, on the live stream: a rest
+ * phase, then a grip phase, then Upper/LowerThreshold per channel.
+ *
+ * Nothing of the phases is buffered. Each channel keeps one-pass
+ * {@link OnlineStats} and three {@link StreamingQuantile} sketches: the rest
+ * median (the rest level), the rest 95th percentile (the noise ceiling a
+ * relaxed hand must fall back below) and the grip 90th percentile (the active
+ * level, which holds up when the user alternates open and close instead of
+ * holding one grip). The thresholds are the firmware's, 20% of the range
+ * either side of the midpoint, with the lower one raised to the noise
+ * ceiling. The first half second of each phase is skipped while the user
+ * reacts to the instruction.
+ *
+ * Phases are timed by frame timestamps. The states are those of
+ * InstructionManager: {@link State#INITIAL} (rest), then
+ * {@link State#GRIP_CALIBRATION}, then {@link State#COMPLETED} if at least
+ * one channel calibrated, else {@link State#FAILED}.
+ *
+ * Frames come from the producer thread ({@link IngestPipeline}); start,
+ * cancel and the getters may be called from any thread. Results are valid
+ * once the state is COMPLETED.
+ */
+public class CalibrationEngine {
+
+    public enum State { IDLE, INITIAL, GRIP_CALIBRATION, COMPLETED, FAILED }
+
+    public enum Failure { NONE, NO_SIGNAL, FLAT_SIGNAL, NO_CONTRAST, LAYOUT_CHANGED, CANCELLED }
+
+    /** Called on the producer thread when calibration completes or fails there. */
+    public interface Listener {
+        void onCalibrationFinished(CalibrationEngine engine);
+    }
+
+    public static final long DEFAULT_PHASE_NANOS = 5_000_000_000L;
+    public static final long DEFAULT_SETTLE_NANOS = 500_000_000L;
+    // No frame for this long while running, and the stream is considered gone
+    public static final long STALL_NANOS = 2_000_000_000L;
+
+    private static final int MIN_SAMPLES = 100;
+    // Below this a channel is a constant, i.e. an open input or a saturated ADC
+    private static final double FLAT_STANDARD_DEVIATION = 1e-3;
+    private static final double THRESHOLD_SPREAD = 0.2;
+
+    private final int maxChannels;
+    private final long phaseNanos;
+    private final long settleNanos;
+    private final Listener listener;
+
+    private volatile State state = State.IDLE;
+    private volatile Failure failure = Failure.NONE;
+    private volatile long startNanos;
+    private volatile long phaseStart = Long.MIN_VALUE;
+    private volatile long lastSampleNanos = Long.MIN_VALUE;
+    private ChannelDescriptor descriptor;
+
+    private final OnlineStats[] restStats;
+    private final OnlineStats[] activeStats;
+    private final StreamingQuantile[] restLevel;
+    private final StreamingQuantile[] restNoise;
+    private final StreamingQuantile[] activeLevel;
+
+    private final double[] upperThreshold;
+    private final double[] lowerThreshold;
+    private final Failure[] channelFailure;
+
+    public CalibrationEngine(int maxChannels, Listener listener) {
+        this(maxChannels, DEFAULT_PHASE_NANOS, DEFAULT_SETTLE_NANOS, listener);
+    }
+
+    public CalibrationEngine(int maxChannels, long phaseNanos, long settleNanos, Listener listener) {
+        this.maxChannels = maxChannels;
+        this.phaseNanos = phaseNanos;
+        this.settleNanos = settleNanos;
+        this.listener = listener;
+        restStats = new OnlineStats[maxChannels];
+        activeStats = new OnlineStats[maxChannels];
+        restLevel = new StreamingQuantile[maxChannels];
+        restNoise = new StreamingQuantile[maxChannels];
+        activeLevel = new StreamingQuantile[maxChannels];
+        for (int c = 0; c < maxChannels; c++) {
+            restStats[c] = new OnlineStats();
+            activeStats[c] = new OnlineStats();
+            restLevel[c] = new StreamingQuantile(0.5);
+            restNoise[c] = new StreamingQuantile(0.95);
+            activeLevel[c] = new StreamingQuantile(0.9);
+        }
+        upperThreshold = new double[maxChannels];
+        lowerThreshold = new double[maxChannels];
+        channelFailure = new Failure[maxChannels];
+    }
+
+    /** Enters the rest phase; its clock starts with the next frame. nowNanos is for {@link #checkStalled}. */
+    public void start(long nowNanos) {
+        startNanos = nowNanos;
+        transition(State.IDLE, State.INITIAL, Failure.NONE);
+    }
+
+    /** Fails a running calibration, e.g. when the user leaves the screen. */
+    public void cancel() {
+        fail(Failure.CANCELLED);
+    }
+
+    /**
+     * Fails with {@link Failure#NO_SIGNAL} if no frame arrived for
+     * {@link #STALL_NANOS} (the link dropped or reconnected to a new
+     * pipeline). Returns whether the calibration is still running.
+     */
+    public boolean checkStalled(long nowNanos) {
+        if (!isRunning()) {
+            return false;
+        }
+        long last = Math.max(startNanos, lastSampleNanos);
+        if (nowNanos - last > STALL_NANOS) {
+            fail(Failure.NO_SIGNAL);
+        }
+        return isRunning();
+    }
+
+    /** Producer side, for every frame of the stream. */
+    public void accept(ChannelDescriptor layout, long timestamp, double[] values, int channelCount) {
+        State current = state;
+        if (current != State.INITIAL && current != State.GRIP_CALIBRATION) {
+            return;
+        }
+        if (descriptor == null) {
+            descriptor = layout;
+            phaseStart = timestamp;
+        } else if (!descriptor.equals(layout)) {
+            finishWithFailure(Failure.LAYOUT_CHANGED);
+            return;
+        }
+        lastSampleNanos = timestamp;
+
+        long elapsed = timestamp - phaseStart;
+        if (elapsed >= phaseNanos) {
+            if (current == State.INITIAL) {
+                phaseStart = timestamp;
+                transition(State.INITIAL, State.GRIP_CALIBRATION, Failure.NONE);
+            } else {
+                finish();
+            }
+            return;
+        }
+        if (elapsed < settleNanos) {
+            return;
+        }
+
+        int channels = Math.min(channelCount, maxChannels);
+        if (current == State.INITIAL) {
+            for (int c = 0; c < channels; c++) {
+                double value = values[c];
+                if (!Double.isNaN(value)) {
+                    restStats[c].add(value);
+                    restLevel[c].add(value);
+                    restNoise[c].add(value);
+                }
+            }
+        } else {
+            for (int c = 0; c < channels; c++) {
+                double value = values[c];
+                if (!Double.isNaN(value)) {
+                    activeStats[c].add(value);
+                    activeLevel[c].add(value);
+                }
+            }
+        }
+    }
+
+    private void finish() {
+        int channels = Math.min(descriptor.getChannelCount(), maxChannels);
+        Failure first = Failure.NO_SIGNAL;
+        boolean any = false;
+        for (int c = 0; c < channels; c++) {
+            Failure result = calibrateChannel(c);
+            channelFailure[c] = result;
+            if (result == Failure.NONE) {
+                any = true;
+            } else if (first == Failure.NO_SIGNAL) {
+                first = result;
+            }
+        }
+        if (any) {
+            if (transition(State.GRIP_CALIBRATION, State.COMPLETED, Failure.NONE) && listener != null) {
+                listener.onCalibrationFinished(this);
+            }
+        } else {
+            finishWithFailure(first);
+        }
+    }
+
+    private Failure calibrateChannel(int c) {
+        if (restStats[c].getCount() < MIN_SAMPLES || activeStats[c].getCount() < MIN_SAMPLES) {
+            return Failure.NO_SIGNAL;
+        }
+        if (restStats[c].getStandardDeviation() < FLAT_STANDARD_DEVIATION
+                && activeStats[c].getStandardDeviation() < FLAT_STANDARD_DEVIATION) {
+            return Failure.FLAT_SIGNAL;
+        }
+        double rest = restLevel[c].get();
+        double noise = restNoise[c].get();
+        double active = activeLevel[c].get();
+        if (active <= noise) {
+            return Failure.NO_CONTRAST;
+        }
+        upperThreshold[c] = upperThreshold(rest, noise, active);
+        lowerThreshold[c] = lowerThreshold(rest, noise, active);
+        return Failure.NONE;
+    }
+
+    /**
+     * As the firmware: 20% of the range below the midpoint of the rest and
+     * active levels, but not below the noise ceiling.
+     */
+    static double lowerThreshold(double rest, double noise, double active) {
+        return Math.max((rest + active) / 2 - (active - rest) * THRESHOLD_SPREAD, noise);
+    }
+
+    /** 20% of the range above the midpoint, and never below the lower threshold. */
+    static double upperThreshold(double rest, double noise, double active) {
+        return Math.max((rest + active) / 2 + (active - rest) * THRESHOLD_SPREAD,
+                lowerThreshold(rest, noise, active));
+    }
+
+    private void finishWithFailure(Failure reason) {
+        if (fail(reason) && listener != null) {
+            listener.onCalibrationFinished(this);
+        }
+    }
+
+    private boolean fail(Failure reason) {
+        return transition(State.INITIAL, State.FAILED, reason)
+                || transition(State.GRIP_CALIBRATION, State.FAILED, reason);
+    }
+
+    // Rare, and raced by cancel on another thread
+    private synchronized boolean transition(State from, State to, Failure reason) {
+        if (state != from) {
+            return false;
+        }
+        failure = reason;
+        state = to;
+        return true;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isRunning() {
+        State current = state;
+        return current == State.INITIAL || current == State.GRIP_CALIBRATION;
+    }
+
+    /** Why the calibration failed, NONE unless FAILED. */
+    public Failure getFailure() {
+        return failure;
+    }
+
+    /** How far the current phase is, 0..1, by frame time. */
+    public double getPhaseProgress() {
+        long start = phaseStart;
+        long last = lastSampleNanos;
+        if (start == Long.MIN_VALUE || last == Long.MIN_VALUE) {
+            return 0;
+        }
+        return Math.min(1, Math.max(0, (last - start) / (double) phaseNanos));
+    }
+
+    /** Layout the calibration ran on, null before the first frame. */
+    public ChannelDescriptor getDescriptor() {
+        return descriptor;
+    }
+
+    public boolean isCalibrated(int channel) {
+        return state == State.COMPLETED && channelFailure[channel] == Failure.NONE;
+    }
+
+    /** Why a channel was not calibrated; only meaningful once finished. */
+    public Failure getChannelFailure(int channel) {
+        Failure result = channelFailure[channel];
+        return result == null ? Failure.NO_SIGNAL : result;
+    }
+
+    public double getUpperThreshold(int channel) {
+        return upperThreshold[channel];
+    }
+
+    public double getLowerThreshold(int channel) {
+        return lowerThreshold[channel];
+    }
+
+    /** Rest median, the rest level. */
+    public double getRestLevel(int channel) {
+        return restLevel[channel].get();
+    }
+
+    /** Rest 95th percentile, the noise ceiling. */
+    public double getNoiseLevel(int channel) {
+        return restNoise[channel].get();
+    }
+
+    /** Grip 90th percentile, the active level. */
+    public double getActiveLevel(int channel) {
+        return activeLevel[channel].get();
+    }
+
+    public OnlineStats getRestStats(int channel) {
+        return restStats[channel];
+    }
+
+    public OnlineStats getActiveStats(int channel) {
+        return activeStats[channel];
+    }
+
+    /**
+     * Command setting one input's thresholds on the board, "THR channel upper
+     * lower", for {@link CommandChannel#sendControl}.
+     */
+    public static String thresholdCommand(int deviceChannel, double upper, double lower) {
+        return String.format(Locale.US, "THR %d %.2f %.2f", deviceChannel, upper, lower);
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.handcontroller;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+/**
+ * What a calibration found for one user on one board: the rest, noise and
+ * active levels and the thresholds of every calibrated channel, plus the
+ * filter settings they were measured with. Reused on the next connection
+ * instead of calibrating again, as long as those settings still apply.
+ * Immutable.
+ *
+ * Stored by {@link CalibrationStore} in a few hundred bytes, big endian:
+ * <pre>
+ *   magic "HKCP", version, user, device, createdMillis, rawAdc,
+ *   sampleRateHz, notchHz, layoutMask, channelCount,
+ *   channel* (index, deviceChannel, rest, noise, active, activeMean, upper, lower),
+ *   crc32 of everything before it
+ * </pre>
+ */
+public final class CalibrationProfile {
+
+    public static final int MAGIC = 0x484B4350; // "HKCP"
+    public static final int VERSION = 1;
+
+    /** One calibrated channel; index is its position in the stream layout. */
+    public static final class Channel {
+        public final int index;
+        public final int deviceChannel;
+        public final double rest;
+        public final double noise;
+        public final double active;
+        // Typical grip, where proportional control reaches full close
+        public final double activeMean;
+        public final double upper;
+        public final double lower;
+
+        public Channel(int index, int deviceChannel, double rest, double noise, double active,
+                       double activeMean) {
+            this.index = index;
+            this.deviceChannel = deviceChannel;
+            this.rest = rest;
+            this.noise = noise;
+            this.active = active;
+            this.activeMean = activeMean;
+            this.upper = CalibrationEngine.upperThreshold(rest, noise, active);
+            this.lower = CalibrationEngine.lowerThreshold(rest, noise, active);
+        }
+    }
+
+    private final String user;
+    private final String device;
+    private final long createdMillis;
+    private final boolean rawAdc;
+    private final int sampleRateHz;
+    private final int notchHz;
+    private final int layoutMask;
+    private final Channel[] channels;
+
+    public CalibrationProfile(String user, String device, long createdMillis, boolean rawAdc,
+                              int sampleRateHz, int notchHz, int layoutMask, Channel[] channels) {
+        this.user = user;
+        this.device = device;
+        this.createdMillis = createdMillis;
+        this.rawAdc = rawAdc;
+        this.sampleRateHz = sampleRateHz;
+        this.notchHz = notchHz;
+        this.layoutMask = layoutMask;
+        this.channels = channels.clone();
+    }
+
+    /** The calibrated channels of a COMPLETED engine; null if there are none. */
+    public static CalibrationProfile fromEngine(String user, String device, long createdMillis, boolean rawAdc,
+                                                int sampleRateHz, int notchHz, CalibrationEngine engine) {
+        ChannelDescriptor descriptor = engine.getDescriptor();
+        if (descriptor == null) {
+            return null;
+        }
+        Channel[] calibrated = new Channel[descriptor.getChannelCount()];
+        int n = 0;
+        for (int c = 0; c < descriptor.getChannelCount(); c++) {
+            if (engine.isCalibrated(c)) {
+                calibrated[n++] = new Channel(c, descriptor.getDeviceChannel(c), engine.getRestLevel(c),
+                        engine.getNoiseLevel(c), engine.getActiveLevel(c), engine.getActiveStats(c).getMean());
+            }
+        }
+        if (n == 0) {
+            return null;
+        }
+        Channel[] channels = new Channel[n];
+        System.arraycopy(calibrated, 0, channels, 0, n);
+        return new CalibrationProfile(user, device, createdMillis, rawAdc, sampleRateHz, notchHz,
+                descriptor.getChannelMask(), channels);
+    }
+
+    /** The same user, board and settings with new levels, e.g. after drift. */
+    public CalibrationProfile withChannels(Channel[] newChannels, long newCreatedMillis) {
+        return new CalibrationProfile(user, device, newCreatedMillis, rawAdc, sampleRateHz, notchHz,
+                layoutMask, newChannels);
+    }
+
+    /** Whether levels measured under this profile's settings hold for these. */
+    public boolean matchesFilters(boolean rawAdc, int sampleRateHz, int notchHz) {
+        // The notch only runs on the phone in raw ADC mode
+        return this.rawAdc == rawAdc && this.sampleRateHz == sampleRateHz
+                && (!rawAdc || this.notchHz == notchHz);
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getDevice() {
+        return device;
+    }
+
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    public boolean isRawAdc() {
+        return rawAdc;
+    }
+
+    public int getSampleRateHz() {
+        return sampleRateHz;
+    }
+
+    public int getNotchHz() {
+        return notchHz;
+    }
+
+    /** {@link ChannelDescriptor#getChannelMask()} of the layout it was calibrated on. */
+    public int getLayoutMask() {
+        return layoutMask;
+    }
+
+    public int getChannelCount() {
+        return channels.length;
+    }
+
+    public Channel getChannel(int i) {
+        return channels[i];
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 + channels.length * 56);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(user);
+            out.writeUTF(device);
+            out.writeLong(createdMillis);
+            out.writeBoolean(rawAdc);
+            out.writeInt(sampleRateHz);
+            out.writeInt(notchHz);
+            out.writeInt(layoutMask);
+            out.writeInt(channels.length);
+            for (Channel channel : channels) {
+                out.writeInt(channel.index);
+                out.writeInt(channel.deviceChannel);
+                out.writeDouble(channel.rest);
+                out.writeDouble(channel.noise);
+                out.writeDouble(channel.active);
+                out.writeDouble(channel.activeMean);
+                out.writeDouble(channel.upper);
+                out.writeDouble(channel.lower);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeInt((int) crc.getValue());
+        } catch (IOException e) {
+            // Only in memory
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Parses {@link #toBytes}; throws if the data is torn, corrupt or of another version. */
+    public static CalibrationProfile fromBytes(byte[] data) throws IOException {
+        if (data.length < 4) {
+            throw new IOException("Calibration profile too short");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - 4);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        in.skipBytes(data.length - 4);
+        if (in.readInt() != (int) crc.getValue()) {
+            throw new IOException("Calibration profile checksum mismatch");
+        }
+        in = new DataInputStream(new ByteArrayInputStream(data, 0, data.length - 4));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a calibration profile");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported calibration profile version " + version);
+        }
+        String user = in.readUTF();
+        String device = in.readUTF();
+        long createdMillis = in.readLong();
+        boolean rawAdc = in.readBoolean();
+        int sampleRateHz = in.readInt();
+        int notchHz = in.readInt();
+        int layoutMask = in.readInt();
+        int count = in.readInt();
+        if (count <= 0 || count > 32) {
+            throw new IOException("Bad channel count " + count);
+        }
+        Channel[] channels = new Channel[count];
+        for (int i = 0; i < count; i++) {
+            int index = in.readInt();
+            int deviceChannel = in.readInt();
+            double rest = in.readDouble();
+            double noise = in.readDouble();
+            double active = in.readDouble();
+            double activeMean = in.readDouble();
+            // Thresholds are recomputed from the levels, as when they were saved
+            in.readDouble();
+            in.readDouble();
+            channels[i] = new Channel(index, deviceChannel, rest, noise, active, activeMean);
+        }
+        return new CalibrationProfile(user, device, createdMillis, rawAdc, sampleRateHz, notchHz,
+                layoutMask, channels);
+    }
+}
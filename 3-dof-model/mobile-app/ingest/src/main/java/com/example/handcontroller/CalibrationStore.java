@@ -0,0 +1,107 @@
+package com.example.handcontroller;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Saved {@link CalibrationProfile}s, one small file per user and board in a
+ * directory of their own, so a connection can reuse the last calibration
+ * instead of asking for a new one.
+ *
+ * A load reads one file of a few hundred bytes, and only once per process:
+ * profiles are kept in memory after that, so reconnects cost nothing. A save
+ * writes aside, forces and renames, so a crash leaves the old profile or the
+ * new one, never a torn one (which the checksum would reject anyway).
+ *
+ * Loads may come from any thread; saves are serialised.
+ */
+public class CalibrationStore {
+
+    public static final String FILE_EXTENSION = ".cal";
+
+    private final File directory;
+    private final ConcurrentHashMap<String, CalibrationProfile> profiles = new ConcurrentHashMap<>();
+
+    public CalibrationStore(File directory) {
+        this.directory = directory;
+    }
+
+    /** The saved profile for this user and board, or null if there is none. */
+    public CalibrationProfile load(String user, String device) throws IOException {
+        String name = fileName(user, device);
+        CalibrationProfile profile = profiles.get(name);
+        if (profile != null) {
+            return profile;
+        }
+        File file = new File(directory, name);
+        if (!file.isFile()) {
+            return null;
+        }
+        byte[] data = new byte[(int) file.length()];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int read = 0;
+            while (read < data.length) {
+                int n = in.read(data, read, data.length - read);
+                if (n < 0) {
+                    throw new IOException("Calibration profile truncated");
+                }
+                read += n;
+            }
+        }
+        profile = CalibrationProfile.fromBytes(data);
+        // A profile saved meanwhile is newer than the file just read
+        CalibrationProfile saved = profiles.putIfAbsent(name, profile);
+        return saved != null ? saved : profile;
+    }
+
+    public synchronized void save(CalibrationProfile profile) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        String name = fileName(profile.getUser(), profile.getDevice());
+        File file = new File(directory, name);
+        File temp = new File(directory, name + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(profile.toBytes());
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Cannot replace " + file);
+        }
+        profiles.put(name, profile);
+    }
+
+    /** Forgets the profile, so the next connection calibrates from scratch. */
+    public synchronized boolean delete(String user, String device) {
+        String name = fileName(user, device);
+        profiles.remove(name);
+        return new File(directory, name).delete();
+    }
+
+    static String fileName(String user, String device) {
+        return escapeKey(user) + "__" + escapeKey(device) + FILE_EXTENSION;
+    }
+
+    /**
+     * A key as a file name: letters, digits, '-' and '.' as they are,
+     * everything else (board addresses' ':' included) as _xx, so distinct
+     * keys never share a file. A leading '.' is escaped too.
+     */
+    static String escapeKey(String key) {
+        StringBuilder out = new StringBuilder();
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-'
+                    || (c == '.' && out.length() > 0)) {
+                out.append(c);
+            } else {
+                out.append('_').append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+            }
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.handcontroller;
+
+import java.util.Arrays;
+
+/**
+ * Channel layout of a stream: how many channels each frame carries and which
+ * input on the board each one comes from. Binary packets announce it with
+ * their channel mask; ASCII lines only give a count, numbered from input 0.
+ * Immutable, so it can be handed between the read and UI threads as is.
+ */
+public final class ChannelDescriptor {
+
+    private final int[] deviceChannels;
+
+    private ChannelDescriptor(int[] deviceChannels) {
+        this.deviceChannels = deviceChannels;
+    }
+
+    public static ChannelDescriptor contiguous(int channelCount) {
+        if (channelCount <= 0 || channelCount > 32) {
+            throw new IllegalArgumentException("channelCount must be between 1 and 32");
+        }
+        int[] channels = new int[channelCount];
+        for (int c = 0; c < channelCount; c++) {
+            channels[c] = c;
+        }
+        return new ChannelDescriptor(channels);
+    }
+
+    public static ChannelDescriptor fromMask(int channelMask) {
+        if (channelMask == 0) {
+            throw new IllegalArgumentException("channelMask must have at least one bit set");
+        }
+        int[] channels = new int[Integer.bitCount(channelMask)];
+        int n = 0;
+        for (int bit = 0; bit < 32; bit++) {
+            if ((channelMask & (1 << bit)) != 0) {
+                channels[n++] = bit;
+            }
+        }
+        return new ChannelDescriptor(channels);
+    }
+
+    public int getChannelCount() {
+        return deviceChannels.length;
+    }
+
+    /** Input on the board (0-based) that stream channel {@code channel} was sampled from. */
+    public int getDeviceChannel(int channel) {
+        return deviceChannels[channel];
+    }
+
+    public int getChannelMask() {
+        int mask = 0;
+        for (int channel : deviceChannels) {
+            mask |= 1 << channel;
+        }
+        return mask;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ChannelDescriptor
+                && Arrays.equals(deviceChannels, ((ChannelDescriptor) o).deviceChannels);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(deviceChannels);
+    }
+
+    @Override
+    public String toString() {
+        return "ChannelDescriptor" + Arrays.toString(deviceChannels);
+    }
+}
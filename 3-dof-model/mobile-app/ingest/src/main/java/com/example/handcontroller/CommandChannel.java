@@ -0,0 +1,299 @@
+package com.example.handcontroller;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The downlink of one link: text commands to the board over the same
+ * {@link SensorSource} the samples come from, written by one dedicated
+ * thread (this Runnable) so a slow write never stalls the read thread or
+ * the UI.
+ *
+ * Commands wait in three lanes, served strictly in order:
+ * {@link Priority#EMERGENCY} (stop; also drops queued positions, which it
+ * supersedes), {@link Priority#CONTROL} (thresholds, modes; FIFO) and
+ * {@link Priority#POSITION} (targets, coalesced per key: a new target for a
+ * motor replaces one still queued, so only the latest is ever sent).
+ *
+ * Every command goes out as one line with a sequence number,
+ * {@code "<text> #<seq>\n"}; firmware that knows it answers
+ * {@code "ACK <seq>\n"} in its output, which the read thread passes through
+ * {@link #onBytesReceived}. Queue time (enqueue to written) and round trip
+ * (written to ACK) are recorded per command.
+ *
+ * {@link StreamingLoop} attaches the source once it is streaming and
+ * detaches it when the link drops; meanwhile commands wait, and a command
+ * whose write failed is retried on the next connection (positions only if
+ * nothing newer arrived).
+ */
+public class CommandChannel implements Runnable {
+
+    public enum Priority { EMERGENCY, CONTROL, POSITION }
+
+    // Round trips are matched by sequence within this many outstanding commands
+    private static final int ACK_SLOTS = 64;
+    private static final byte[] ACK_PREFIX = "ACK ".getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_ACK_DIGITS = 9;
+
+    private static final class Command {
+        final Priority priority;
+        final String key;
+        final String text;
+        final long enqueuedNanos;
+
+        Command(Priority priority, String key, String text, long enqueuedNanos) {
+            this.priority = priority;
+            this.key = key;
+            this.text = text;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    private final NanoClock clock;
+    private final Object lock = new Object();
+    private final ArrayDeque<Command> emergency = new ArrayDeque<>();
+    private final ArrayDeque<Command> control = new ArrayDeque<>();
+    private final LinkedHashMap<String, Command> positions = new LinkedHashMap<>();
+    private SensorSource source;
+    private boolean shutdown;
+    private int nextSequence;
+
+    // Written by the writer thread, read by the read thread; the sequence publishes the time
+    private final long[] sentNanos = new long[ACK_SLOTS];
+    private final AtomicIntegerArray sentSequence = new AtomicIntegerArray(ACK_SLOTS);
+
+    // ACK parser state, read thread only
+    private int ackMatched;
+    private int ackValue;
+    private int ackDigits;
+
+    private volatile long sent;
+    private volatile long coalesced;
+    private volatile long dropped;
+    private volatile long failed;
+    private volatile long acknowledged;
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    private final LatencyHistogram ackLatency = new LatencyHistogram();
+
+    public CommandChannel(NanoClock clock) {
+        this.clock = clock;
+        for (int i = 0; i < ACK_SLOTS; i++) {
+            sentSequence.set(i, -1);
+        }
+    }
+
+    /** Jumps every queue, e.g. "STOP"; queued positions are dropped. Any thread. */
+    public void sendEmergency(String text) {
+        synchronized (lock) {
+            dropped += positions.size();
+            positions.clear();
+            emergency.add(new Command(Priority.EMERGENCY, null, text, clock.nanoTime()));
+            lock.notifyAll();
+        }
+    }
+
+    /** Sent in order after any emergency, e.g. thresholds or a mode change. Any thread. */
+    public void sendControl(String text) {
+        synchronized (lock) {
+            control.add(new Command(Priority.CONTROL, null, text, clock.nanoTime()));
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Target for what key names (e.g. "M1"), replacing any target for it
+     * still queued. The replaced one keeps its place in line but not its
+     * queue time, which starts again. Any thread.
+     */
+    public void sendPosition(String key, String text) {
+        synchronized (lock) {
+            Command previous = positions.put(key, new Command(Priority.POSITION, key, text, clock.nanoTime()));
+            if (previous != null) {
+                coalesced++;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /** Read thread: the link is up and commands may be written to source. */
+    public void attach(SensorSource source) {
+        synchronized (lock) {
+            this.source = source;
+            lock.notifyAll();
+        }
+    }
+
+    /** Read thread: source is gone; commands wait for the next one. */
+    public void detach(SensorSource source) {
+        synchronized (lock) {
+            if (this.source == source) {
+                this.source = null;
+            }
+        }
+    }
+
+    /** Stops the writer thread; queued commands are discarded. Any thread. */
+    public void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            Command command;
+            SensorSource target;
+            int sequence;
+            synchronized (lock) {
+                try {
+                    while (!shutdown && (source == null || isEmpty())) {
+                        lock.wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (shutdown) {
+                    return;
+                }
+                command = poll();
+                target = source;
+                sequence = nextSequence;
+                nextSequence = (nextSequence + 1) & Integer.MAX_VALUE;
+            }
+
+            byte[] line = (command.text + " #" + sequence + "\n").getBytes(StandardCharsets.US_ASCII);
+            int slot = sequence % ACK_SLOTS;
+            long now = clock.nanoTime();
+            sentNanos[slot] = now;
+            sentSequence.set(slot, sequence);
+            try {
+                target.write(line);
+                queueLatency.record(now - command.enqueuedNanos);
+                sent++;
+            } catch (IOException e) {
+                retry(command, target);
+                failed++;
+            }
+        }
+    }
+
+    private boolean isEmpty() {
+        return emergency.isEmpty() && control.isEmpty() && positions.isEmpty();
+    }
+
+    private Command poll() {
+        if (!emergency.isEmpty()) {
+            return emergency.poll();
+        }
+        if (!control.isEmpty()) {
+            return control.poll();
+        }
+        Iterator<Map.Entry<String, Command>> oldest = positions.entrySet().iterator();
+        Command command = oldest.next().getValue();
+        oldest.remove();
+        return command;
+    }
+
+    // Back to the front of its lane, and wait for the read side to reconnect
+    private void retry(Command command, SensorSource target) {
+        synchronized (lock) {
+            if (source == target) {
+                source = null;
+            }
+            switch (command.priority) {
+                case EMERGENCY:
+                    emergency.addFirst(command);
+                    break;
+                case CONTROL:
+                    control.addFirst(command);
+                    break;
+                default:
+                    if (!positions.containsKey(command.key)) {
+                        positions.put(command.key, command);
+                    }
+            }
+        }
+    }
+
+    /**
+     * Read thread, with every chunk read from the source: picks out
+     * "ACK <seq>" lines wherever they are. Sample bytes that happen to look
+     * like one would need the prefix, digits and newline in a row.
+     */
+    public void onBytesReceived(byte[] buffer, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = buffer[i];
+            if (ackMatched < ACK_PREFIX.length) {
+                ackMatched = b == ACK_PREFIX[ackMatched] ? ackMatched + 1 : (b == ACK_PREFIX[0] ? 1 : 0);
+                ackValue = 0;
+                ackDigits = 0;
+            } else if (b >= '0' && b <= '9' && ackDigits < MAX_ACK_DIGITS) {
+                ackValue = ackValue * 10 + (b - '0');
+                ackDigits++;
+            } else {
+                if ((b == '\n' || b == '\r') && ackDigits > 0) {
+                    acknowledge(ackValue);
+                }
+                ackMatched = b == ACK_PREFIX[0] ? 1 : 0;
+            }
+        }
+    }
+
+    private void acknowledge(int sequence) {
+        int slot = sequence % ACK_SLOTS;
+        if (!sentSequence.compareAndSet(slot, sequence, -1)) {
+            return;
+        }
+        ackLatency.record(clock.nanoTime() - sentNanos[slot]);
+        acknowledged++;
+    }
+
+    /** Commands waiting to be written. */
+    public int getQueued() {
+        synchronized (lock) {
+            return emergency.size() + control.size() + positions.size();
+        }
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    /** Position targets replaced while still queued. */
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    /** Position targets dropped by an emergency command. */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /** Writes that failed and were queued again. */
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getAcknowledged() {
+        return acknowledged;
+    }
+
+    /** Enqueued to written, written by the writer thread. */
+    public LatencyHistogram getQueueLatency() {
+        return queueLatency;
+    }
+
+    /** Written to ACK received, written by the read thread. */
+    public LatencyHistogram getAckLatency() {
+        return ackLatency;
+    }
+}
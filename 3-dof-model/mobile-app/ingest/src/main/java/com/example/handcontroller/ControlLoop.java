@@ -0,0 +1,121 @@
+package com.example.handcontroller;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Body of the control thread: runs a {@link Task} at a fixed rate, on
+ * absolute deadlines (start + k * period) so lateness never accumulates into
+ * drift. Separate from the read threads and the UI, so neither a burst of
+ * Bluetooth data nor a slow frame delays a tick.
+ *
+ * Each tick records its jitter (deadline to wake-up) and its duration. A
+ * tick that takes longer than the period is an overrun; deadlines already
+ * past by the time it finishes are skipped and counted as missed rather
+ * than run back to back, so the loop recovers at the next whole period.
+ *
+ * Between ticks the thread parks until the deadline; {@link #shutdown}
+ * unparks it, so run() returns within a tick.
+ */
+public class ControlLoop implements Runnable {
+
+    /** Called on the control thread once per period. */
+    public interface Task {
+        void tick(long nowNanos);
+    }
+
+    public static final int DEFAULT_RATE_HZ = 100;
+
+    private final long periodNanos;
+    private final Task task;
+    private final NanoClock clock;
+
+    private volatile boolean shutdown;
+    private volatile Thread runner;
+
+    // Written by the control thread only
+    private volatile long ticks;
+    private volatile long overruns;
+    private volatile long missed;
+    private final LatencyHistogram jitter = new LatencyHistogram();
+    private final LatencyHistogram tickDuration = new LatencyHistogram();
+
+    public ControlLoop(int rateHz, Task task, NanoClock clock) {
+        this.periodNanos = 1_000_000_000L / rateHz;
+        this.task = task;
+        this.clock = clock;
+    }
+
+    /** Stops ticking; run() returns after the current tick, if any. Any thread. */
+    public void shutdown() {
+        shutdown = true;
+        Thread thread = runner;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public void run() {
+        runner = Thread.currentThread();
+        long deadline = clock.nanoTime() + periodNanos;
+        while (awaitDeadline(deadline)) {
+            long start = clock.nanoTime();
+            jitter.record(start - deadline);
+            task.tick(start);
+            long end = clock.nanoTime();
+            tickDuration.record(end - start);
+            ticks++;
+            if (end - start > periodNanos) {
+                overruns++;
+            }
+
+            deadline += periodNanos;
+            if (end >= deadline) {
+                long behind = (end - deadline) / periodNanos + 1;
+                missed += behind;
+                deadline += behind * periodNanos;
+            }
+        }
+    }
+
+    // Parks until the deadline; false once shut down
+    private boolean awaitDeadline(long deadline) {
+        long remaining;
+        while (!shutdown && (remaining = deadline - clock.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return !shutdown;
+    }
+
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    /** Ticks that took longer than the period. */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    /** Deadlines skipped because a tick ran past them. */
+    public long getMissed() {
+        return missed;
+    }
+
+    /** Deadline to the tick starting, written by the control thread. */
+    public LatencyHistogram getJitter() {
+        return jitter;
+    }
+
+    /** Time spent in the task per tick, written by the control thread. */
+    public LatencyHistogram getTickDuration() {
+        return tickDuration;
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.handcontroller;
+
+/**
+ * Display decimation stage sitting on top of a raw {@link SeriesBuffer}.
+ *
+ * Every appended sample also updates a per-bucket min/max aggregate, where a
+ * bucket is one pixel column of the chart (window / view width). Buckets are
+ * aligned to absolute time so they stay stable while the window scrolls, which
+ * keeps the per-sample cost O(1). At draw time the chart asks for either the
+ * min/max envelope (two points per column) or a Largest-Triangle-Three-Buckets
+ * reduction of it, so only a few hundred points reach the renderer no matter
+ * how many raw samples are in the window.
+ */
+public class DecimatedSeries {
+
+    public enum Mode { MIN_MAX, LTTB }
+
+    private final SeriesBuffer raw;
+
+    // Finalized buckets, ring ordered oldest first; the open bucket is kept separately
+    private final long[] bucketMinTime;
+    private final long[] bucketMaxTime;
+    private final double[] bucketMin;
+    private final double[] bucketMax;
+    private int bucketStart;
+    private int bucketCount;
+
+    private long bucketNanos;
+    private long openBucket = Long.MIN_VALUE;
+    private long openMinTime;
+    private long openMaxTime;
+    private double openMin;
+    private double openMax;
+
+    // Candidate points for LTTB, reused between frames
+    private final long[] candidateTime;
+    private final double[] candidateValue;
+
+    public DecimatedSeries(SeriesBuffer raw, int maxBuckets) {
+        this.raw = raw;
+        this.bucketMinTime = new long[maxBuckets];
+        this.bucketMaxTime = new long[maxBuckets];
+        this.bucketMin = new double[maxBuckets];
+        this.bucketMax = new double[maxBuckets];
+        this.candidateTime = new long[maxBuckets * 2 + 2];
+        this.candidateValue = new double[maxBuckets * 2 + 2];
+    }
+
+    public SeriesBuffer getRaw() {
+        return raw;
+    }
+
+    public int getMaxBuckets() {
+        return bucketMin.length;
+    }
+
+    public long getBucketNanos() {
+        return bucketNanos;
+    }
+
+    public void append(long timestampNanos, double value) {
+        raw.append(timestampNanos, value);
+        if (bucketNanos > 0) {
+            aggregate(timestampNanos, value);
+        }
+    }
+
+    /**
+     * Sets the column width and rebuilds the aggregates from the raw buffer.
+     * Only called when the view size or window changes.
+     */
+    public void setBucketNanos(long nanos) {
+        if (nanos == bucketNanos) {
+            return;
+        }
+        bucketNanos = nanos;
+        bucketStart = 0;
+        bucketCount = 0;
+        openBucket = Long.MIN_VALUE;
+        if (nanos <= 0) {
+            return;
+        }
+        for (int i = 0; i < raw.size(); i++) {
+            aggregate(raw.getTimestamp(i), raw.getValue(i));
+        }
+    }
+
+    /**
+     * Writes the min and max of every column intersecting [fromNanos, toNanos],
+     * in time order, and returns the number of points written (at most
+     * 2 * {@link #getMaxBuckets()} + 2).
+     */
+    public int minMax(long fromNanos, long toNanos, long[] timeOut, double[] valueOut) {
+        int n = 0;
+        long firstBucket = Math.floorDiv(fromNanos, Math.max(1, bucketNanos));
+        for (int i = firstVisibleBucket(firstBucket); i < bucketCount; i++) {
+            int b = physical(i);
+            n = emit(bucketMinTime[b], bucketMin[b], bucketMaxTime[b], bucketMax[b], timeOut, valueOut, n);
+        }
+        if (openBucket != Long.MIN_VALUE && openBucket >= firstBucket
+                && openMinTime <= toNanos) {
+            n = emit(openMinTime, openMin, openMaxTime, openMax, timeOut, valueOut, n);
+        }
+        return n;
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets over the min/max envelope of the window,
+     * keeping the first and last point. Returns the number of points written,
+     * at most threshold.
+     */
+    public int lttb(long fromNanos, long toNanos, int threshold, long[] timeOut, double[] valueOut) {
+        int n = minMax(fromNanos, toNanos, candidateTime, candidateValue);
+        if (threshold >= n || threshold < 3) {
+            System.arraycopy(candidateTime, 0, timeOut, 0, n);
+            System.arraycopy(candidateValue, 0, valueOut, 0, n);
+            return n;
+        }
+
+        double every = (double) (n - 2) / (threshold - 2);
+        int a = 0;
+        int out = 0;
+        timeOut[out] = candidateTime[0];
+        valueOut[out++] = candidateValue[0];
+
+        for (int i = 0; i < threshold - 2; i++) {
+            // Average of the next bucket is the third triangle vertex
+            int avgStart = (int) ((i + 1) * every) + 1;
+            int avgEnd = Math.min((int) ((i + 2) * every) + 1, n);
+            double avgTime = 0;
+            double avgValue = 0;
+            for (int j = avgStart; j < avgEnd; j++) {
+                avgTime += candidateTime[j];
+                avgValue += candidateValue[j];
+            }
+            int avgLength = Math.max(1, avgEnd - avgStart);
+            avgTime /= avgLength;
+            avgValue /= avgLength;
+
+            int rangeStart = (int) (i * every) + 1;
+            int rangeEnd = (int) ((i + 1) * every) + 1;
+            double pointATime = candidateTime[a];
+            double pointAValue = candidateValue[a];
+            double maxArea = -1;
+            int next = rangeStart;
+            for (int j = rangeStart; j < rangeEnd; j++) {
+                double area = Math.abs((pointATime - avgTime) * (candidateValue[j] - pointAValue)
+                        - (pointATime - candidateTime[j]) * (avgValue - pointAValue));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = j;
+                }
+            }
+            timeOut[out] = candidateTime[next];
+            valueOut[out++] = candidateValue[next];
+            a = next;
+        }
+
+        timeOut[out] = candidateTime[n - 1];
+        valueOut[out++] = candidateValue[n - 1];
+        return out;
+    }
+
+    private void aggregate(long timestampNanos, double value) {
+        long bucket = Math.floorDiv(timestampNanos, bucketNanos);
+        if (bucket != openBucket) {
+            if (openBucket != Long.MIN_VALUE) {
+                closeOpenBucket();
+            }
+            openBucket = bucket;
+            openMin = value;
+            openMax = value;
+            openMinTime = timestampNanos;
+            openMaxTime = timestampNanos;
+            return;
+        }
+        if (value < openMin) {
+            openMin = value;
+            openMinTime = timestampNanos;
+        }
+        if (value > openMax) {
+            openMax = value;
+            openMaxTime = timestampNanos;
+        }
+    }
+
+    private void closeOpenBucket() {
+        int capacity = bucketMin.length;
+        int b = bucketStart + bucketCount;
+        if (b >= capacity) {
+            b -= capacity;
+        }
+        bucketMinTime[b] = openMinTime;
+        bucketMaxTime[b] = openMaxTime;
+        bucketMin[b] = openMin;
+        bucketMax[b] = openMax;
+        if (bucketCount < capacity) {
+            bucketCount++;
+        } else if (++bucketStart == capacity) {
+            bucketStart = 0;
+        }
+    }
+
+    // Buckets are in time order, so binary search on the bucket's earliest point
+    private int firstVisibleBucket(long firstBucket) {
+        int lo = 0;
+        int hi = bucketCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int b = physical(mid);
+            long time = Math.min(bucketMinTime[b], bucketMaxTime[b]);
+            if (Math.floorDiv(time, bucketNanos) < firstBucket) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int physical(int i) {
+        int index = bucketStart + i;
+        return index >= bucketMin.length ? index - bucketMin.length : index;
+    }
+
+    private static int emit(long minTime, double min, long maxTime, double max,
+                            long[] timeOut, double[] valueOut, int n) {
+        if (minTime <= maxTime) {
+            timeOut[n] = minTime;
+            valueOut[n++] = min;
+            if (maxTime != minTime || max != min) {
+                timeOut[n] = maxTime;
+                valueOut[n++] = max;
+            }
+        } else {
+            timeOut[n] = maxTime;
+            valueOut[n++] = max;
+            timeOut[n] = minTime;
+            valueOut[n++] = min;
+        }
+        return n;
+    }
+}
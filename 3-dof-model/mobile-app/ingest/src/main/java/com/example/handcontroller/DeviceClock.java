@@ -0,0 +1,267 @@
+package com.example.handcontroller;
+
+/**
+ * Turns device frame indexes into phone-clock timestamps, so frames carry the
+ * time they were sampled rather than the time their Bluetooth chunk happened
+ * to arrive.
+ *
+ * Arrival time is sample time plus a transport delay that is never negative
+ * and often large (chunking, retransmissions). Each half-second window keeps
+ * its least delayed frame; a line fitted under the last ~32 s of those
+ * minima gives the device period as seen by the phone clock (and so the
+ * drift against a nominal rate) and the smallest delay. Frames are stamped on
+ * that line, never later than they arrived and always increasing.
+ *
+ * Binary packets carry a sequence, so a jump in the index is a gap of that
+ * many frames. ASCII lines carry nothing; there the index is a local count
+ * and a gap shows as a whole window arriving too late for the line, which is
+ * then corrected by the missing frame count. After a second of silence (or
+ * an index going backwards, e.g. a board reset) the line is re-anchored,
+ * keeping the period.
+ *
+ * Producer thread only; the statistics may be read from any thread.
+ */
+public class DeviceClock {
+
+    public static final long DEFAULT_WINDOW_NANOS = 500_000_000L;
+    // Counterless streams only: how late a whole window must be to count as lost frames
+    public static final long DEFAULT_GAP_NANOS = 100_000_000L;
+
+    private static final int POINTS = 64;
+    private static final long MIN_FIT_SPAN_NANOS = 1_000_000_000L;
+    private static final long SILENCE_NANOS = 1_000_000_000L;
+
+    private final long windowNanos;
+    private final long gapNanos;
+    private volatile double nominalPeriodNanos;
+
+    // Line anchor; x and y below are relative to it
+    private boolean anchored;
+    private long anchorIndex;
+    private long anchorArrival;
+    private long indexOffset;
+
+    // Least delayed frame of the current window, and of everything since the anchor
+    private long windowStart;
+    private boolean windowHasPoint;
+    private double windowX;
+    private double windowY;
+    private double windowResidual;
+    private double envelope;
+
+    // Window minima and the line through them
+    private final double[] pointX = new double[POINTS];
+    private final double[] pointY = new double[POINTS];
+    private int pointCount;
+    private int pointNext;
+    private boolean fitted;
+    private double intercept;
+    private volatile double period;
+
+    private long lastIndex;
+    private long lastArrival;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    private volatile long gaps;
+    private volatile long framesMissing;
+    private final LatencyHistogram delay = new LatencyHistogram();
+
+    public DeviceClock() {
+        this(DEFAULT_WINDOW_NANOS, DEFAULT_GAP_NANOS);
+    }
+
+    public DeviceClock(long windowNanos, long gapNanos) {
+        this.windowNanos = windowNanos;
+        this.gapNanos = gapNanos;
+    }
+
+    /** Rate the board is configured for, if known; used before the first fit and for drift. */
+    public void setNominalRateHz(double rateHz) {
+        nominalPeriodNanos = rateHz > 0 ? 1e9 / rateHz : 0;
+    }
+
+    /** Forgets the line and the period, e.g. for another board. Statistics are kept. */
+    public void reset() {
+        anchored = false;
+        period = 0;
+        fitted = false;
+        lastTimestamp = Long.MIN_VALUE;
+    }
+
+    /**
+     * Timestamp for the frame with the given index that arrived at
+     * arrivalNanos. counted says the index comes from the device, so jumps
+     * are gaps; otherwise it is a local count of received frames.
+     */
+    public long timestamp(long index, boolean counted, long arrivalNanos) {
+        if (anchored && counted && index > lastIndex + 1) {
+            gaps++;
+            framesMissing += index - lastIndex - 1;
+        }
+        if (!anchored || arrivalNanos - lastArrival > SILENCE_NANOS || index <= lastIndex) {
+            anchor(index, arrivalNanos);
+        }
+        lastIndex = index;
+        lastArrival = arrivalNanos;
+
+        double x = index + indexOffset - anchorIndex;
+        double y = arrivalNanos - anchorArrival;
+        double p = currentPeriod(x, y);
+        double residual = y - x * p;
+        if (!windowHasPoint || residual < windowResidual) {
+            windowHasPoint = true;
+            windowX = x;
+            windowY = y;
+            windowResidual = residual;
+        }
+        envelope = Math.min(envelope, residual);
+        if (arrivalNanos - windowStart >= windowNanos) {
+            closeWindow(counted);
+            windowStart = arrivalNanos;
+        }
+
+        double predicted;
+        if (fitted) {
+            predicted = intercept + period * x;
+        } else if (p > 0) {
+            predicted = envelope + x * p;
+        } else {
+            predicted = y;
+        }
+        long timestamp = Math.min(anchorArrival + Math.round(predicted), arrivalNanos);
+        if (timestamp <= lastTimestamp) {
+            timestamp = lastTimestamp + 1;
+        }
+        lastTimestamp = timestamp;
+        delay.record(arrivalNanos - timestamp);
+        return timestamp;
+    }
+
+    private void anchor(long index, long arrivalNanos) {
+        anchored = true;
+        anchorIndex = index;
+        anchorArrival = arrivalNanos;
+        indexOffset = 0;
+        windowStart = arrivalNanos;
+        windowHasPoint = false;
+        envelope = Double.POSITIVE_INFINITY;
+        pointCount = 0;
+        pointNext = 0;
+        fitted = false;
+    }
+
+    // Fitted, else nominal, else the average since the anchor
+    private double currentPeriod(double x, double y) {
+        double p = period;
+        if (p > 0) {
+            return p;
+        }
+        double nominal = nominalPeriodNanos;
+        if (nominal > 0) {
+            return nominal;
+        }
+        return x > 0 ? y / x : 0;
+    }
+
+    private void closeWindow(boolean counted) {
+        if (!windowHasPoint) {
+            return;
+        }
+        windowHasPoint = false;
+
+        if (!counted && fitted) {
+            double late = windowY - (intercept + period * windowX);
+            if (late > gapNanos) {
+                // Even the fastest frame of the window is late: frames went missing before it
+                long missing = Math.round(late / period);
+                indexOffset += missing;
+                gaps++;
+                framesMissing += missing;
+                return;
+            }
+        }
+
+        pointX[pointNext] = windowX;
+        pointY[pointNext] = windowY;
+        pointNext = (pointNext + 1) % POINTS;
+        pointCount = Math.min(pointCount + 1, POINTS);
+        fit();
+    }
+
+    /*
+     * The least delayed window of each half of the history lies close to the
+     * true line, so the slope between the two is the period, accurate to their
+     * small excess delay over half the history. Picking them needs a slope
+     * guess, so this is done twice. The line is then lowered until no minimum
+     * lies below it.
+     */
+    private void fit() {
+        if (pointCount < 4) {
+            return;
+        }
+        int oldest = (pointNext - pointCount + POINTS) % POINTS;
+        int newest = (pointNext - 1 + POINTS) % POINTS;
+        double slope = period > 0 ? period
+                : nominalPeriodNanos > 0 ? nominalPeriodNanos
+                : (pointY[newest] - pointY[oldest]) / (pointX[newest] - pointX[oldest]);
+        int half = pointCount / 2;
+        for (int pass = 0; pass < 2; pass++) {
+            int a = lowest(oldest, 0, half, slope);
+            int b = lowest(oldest, half, pointCount, slope);
+            if (pointY[b] - pointY[a] < MIN_FIT_SPAN_NANOS) {
+                return;
+            }
+            slope = (pointY[b] - pointY[a]) / (pointX[b] - pointX[a]);
+        }
+        if (slope <= 0) {
+            return;
+        }
+
+        double offset = Double.POSITIVE_INFINITY;
+        for (int n = 0; n < pointCount; n++) {
+            int i = (oldest + n) % POINTS;
+            offset = Math.min(offset, pointY[i] - slope * pointX[i]);
+        }
+        period = slope;
+        intercept = offset;
+        fitted = true;
+    }
+
+    // Point of history[from, to) with the smallest delay for the given slope
+    private int lowest(int oldest, int from, int to, double slope) {
+        int best = (oldest + from) % POINTS;
+        for (int n = from + 1; n < to; n++) {
+            int i = (oldest + n) % POINTS;
+            if (pointY[i] - slope * pointX[i] < pointY[best] - slope * pointX[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /** Device frame rate measured with the phone clock, 0 until known. */
+    public double getEstimatedRateHz() {
+        double p = period;
+        return p > 0 ? 1e9 / p : 0;
+    }
+
+    /** How fast the device clock runs against the nominal rate, in ppm; NaN if either is unknown. */
+    public double getDriftPpm() {
+        double p = period;
+        double nominal = nominalPeriodNanos;
+        return p > 0 && nominal > 0 ? (nominal / p - 1) * 1e6 : Double.NaN;
+    }
+
+    /** Arrival minus assigned timestamp: the transport jitter on top of the smallest delay. */
+    public LatencyHistogram getDelay() {
+        return delay;
+    }
+
+    public long getGaps() {
+        return gaps;
+    }
+
+    public long getFramesMissing() {
+        return framesMissing;
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.handcontroller;
+
+/**
+ * Watches the live stream against a saved {@link CalibrationProfile} and
+ * recalibrates in the background when the signal has moved away from it,
+ * e.g. after the electrodes shifted or the skin warmed up, instead of
+ * making the user sit through a calibration on every connection.
+ *
+ * The stream is cut into windows. In each, every calibrated channel keeps
+ * two {@link StreamingQuantile} sketches: the 10th percentile, which stays
+ * at the rest level as long as the hand is relaxed most of the time, and
+ * the 90th, which reaches the active level if the user gripped. A window
+ * drifts when some channel's rest level is off the profile's by more than
+ * the bound, as a fraction of its calibrated range. After enough drifting
+ * windows in a row the profile is rebuilt from the last window: the rest
+ * and noise levels move with the measured rest level, and the active level
+ * is the measured one if the window had a clear grip, else it moves along.
+ * The listener gets the new profile, and drift is measured against it from
+ * then on.
+ *
+ * Frames come from the producer thread ({@link IngestPipeline}); the
+ * getters may be called from any thread. Layouts other than the profile's
+ * are not watched.
+ */
+public class DriftMonitor {
+
+    /** Called on the producer thread with the recalibrated profile. */
+    public interface Listener {
+        void onRecalibrated(DriftMonitor monitor, CalibrationProfile profile);
+    }
+
+    public static final long DEFAULT_WINDOW_NANOS = 10_000_000_000L;
+    // Rest level off by a quarter of the calibrated range
+    public static final double DEFAULT_BOUND = 0.25;
+    public static final int DEFAULT_WINDOWS = 3;
+
+    private static final int MIN_SAMPLES = 100;
+    // A window's 90th percentile this far above the noise (as a fraction of
+    // the calibrated range) means the user gripped in it
+    private static final double MIN_GRIP_CONTRAST = 0.5;
+
+    private final long windowNanos;
+    private final double bound;
+    private final int windows;
+    private final Listener listener;
+
+    private volatile CalibrationProfile profile;
+    private ChannelDescriptor checkedDescriptor;
+    private boolean watching;
+    private final StreamingQuantile[] restLevel;
+    private final StreamingQuantile[] activeLevel;
+    private long windowStart = Long.MIN_VALUE;
+    private int drifting;
+
+    private volatile double drift;
+    private volatile long windowsSeen;
+    private volatile long recalibrations;
+
+    public DriftMonitor(CalibrationProfile profile, Listener listener) {
+        this(profile, DEFAULT_WINDOW_NANOS, DEFAULT_BOUND, DEFAULT_WINDOWS, listener);
+    }
+
+    public DriftMonitor(CalibrationProfile profile, long windowNanos, double bound, int windows,
+                        Listener listener) {
+        this.profile = profile;
+        this.windowNanos = windowNanos;
+        this.bound = bound;
+        this.windows = windows;
+        this.listener = listener;
+        restLevel = new StreamingQuantile[profile.getChannelCount()];
+        activeLevel = new StreamingQuantile[profile.getChannelCount()];
+        for (int i = 0; i < restLevel.length; i++) {
+            restLevel[i] = new StreamingQuantile(0.1);
+            activeLevel[i] = new StreamingQuantile(0.9);
+        }
+    }
+
+    /** Producer thread, for every frame as queued. */
+    public void accept(ChannelDescriptor descriptor, long timestamp, double[] values, int channelCount) {
+        CalibrationProfile current = profile;
+        if (descriptor != checkedDescriptor) {
+            // Layout changed: start over, on a layout that may not be the profile's
+            checkedDescriptor = descriptor;
+            watching = descriptor.getChannelMask() == current.getLayoutMask();
+            startWindow(Long.MIN_VALUE);
+            drifting = 0;
+        }
+        if (!watching) {
+            return;
+        }
+        if (windowStart == Long.MIN_VALUE) {
+            windowStart = timestamp;
+        } else if (timestamp - windowStart >= windowNanos) {
+            endWindow(current);
+            startWindow(timestamp);
+        }
+        for (int i = 0; i < restLevel.length; i++) {
+            int index = current.getChannel(i).index;
+            if (index < channelCount) {
+                double value = values[index];
+                if (!Double.isNaN(value)) {
+                    restLevel[i].add(value);
+                    activeLevel[i].add(value);
+                }
+            }
+        }
+    }
+
+    private void startWindow(long timestamp) {
+        windowStart = timestamp;
+        for (int i = 0; i < restLevel.length; i++) {
+            restLevel[i].reset();
+            activeLevel[i].reset();
+        }
+    }
+
+    private void endWindow(CalibrationProfile current) {
+        double worst = 0;
+        for (int i = 0; i < restLevel.length; i++) {
+            if (restLevel[i].getCount() < MIN_SAMPLES) {
+                // Too little of this window to judge
+                return;
+            }
+            CalibrationProfile.Channel channel = current.getChannel(i);
+            worst = Math.max(worst, Math.abs(restLevel[i].get() - channel.rest) / range(channel));
+        }
+        drift = worst;
+        windowsSeen++;
+        if (worst <= bound) {
+            drifting = 0;
+            return;
+        }
+        if (++drifting < windows) {
+            return;
+        }
+        drifting = 0;
+        CalibrationProfile recalibrated = recalibrate(current);
+        profile = recalibrated;
+        recalibrations++;
+        if (listener != null) {
+            listener.onRecalibrated(this, recalibrated);
+        }
+    }
+
+    private CalibrationProfile recalibrate(CalibrationProfile current) {
+        CalibrationProfile.Channel[] channels = new CalibrationProfile.Channel[restLevel.length];
+        for (int i = 0; i < channels.length; i++) {
+            CalibrationProfile.Channel channel = current.getChannel(i);
+            double range = range(channel);
+            double shift = restLevel[i].get() - channel.rest;
+            double noise = channel.noise + shift;
+            double measured = activeLevel[i].get();
+            double active = measured - noise >= range * MIN_GRIP_CONTRAST ? measured : channel.active + shift;
+            channels[i] = new CalibrationProfile.Channel(channel.index, channel.deviceChannel,
+                    channel.rest + shift, noise, active, channel.activeMean + (active - channel.active));
+        }
+        return current.withChannels(channels, System.currentTimeMillis());
+    }
+
+    private static double range(CalibrationProfile.Channel channel) {
+        return Math.max(channel.active - channel.rest, 1e-9);
+    }
+
+    /** The profile drift is measured against: the saved one, or the last recalibration. */
+    public CalibrationProfile getProfile() {
+        return profile;
+    }
+
+    /** Largest rest level offset in the last full window, as a fraction of the range. */
+    public double getDrift() {
+        return drift;
+    }
+
+    public long getWindows() {
+        return windowsSeen;
+    }
+
+    public long getRecalibrations() {
+        return recalibrations;
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.handcontroller;
+
+import java.util.Arrays;
+
+/**
+ * Hudgins time-domain features over a sliding window, per channel: mean
+ * absolute value, root mean square, waveform length, zero crossings and
+ * slope sign changes.
+ *
+ * Every term is kept as a running sum. A sample adds its own terms as it
+ * enters the window and subtracts those of the sample it replaces, so a frame
+ * costs the same whatever the window length. The pairwise terms (waveform
+ * length, zero crossings, slope sign changes) are stored with the later sample
+ * of the pair, so they leave with it. A feature vector is due every hop
+ * samples once the window is full, which gives overlapping windows.
+ *
+ * Zero crossings and slope sign changes only mean something on a zero-mean
+ * signal, i.e. filtered but not rectified; steps smaller than the deadband
+ * are not counted, so noise around zero does not count as activity.
+ *
+ * Allocates nothing per frame. Not thread safe.
+ */
+public class EmgFeatureExtractor {
+
+    public static final int FEATURES_PER_CHANNEL = 5;
+    public static final int MAV = 0;
+    public static final int RMS = 1;
+    public static final int WAVEFORM_LENGTH = 2;
+    public static final int ZERO_CROSSINGS = 3;
+    public static final int SLOPE_SIGN_CHANGES = 4;
+
+    private final int maxChannels;
+    private final int window;
+    private final int hop;
+    private final double deadband;
+
+    // Per channel, [channel * window + slot]: the sample and the terms it brought in
+    private final double[] samples;
+    private final double[] lengthTerms;
+    private final byte[] crossingTerms;
+    private final byte[] slopeTerms;
+
+    private final double[] sumAbs;
+    private final double[] sumSquares;
+    private final double[] sumLength;
+    private final int[] crossings;
+    private final int[] slopeChanges;
+    private final double[] previous;
+    private final double[] beforePrevious;
+
+    private int channels;
+    private int slot;
+    private int filled;
+    private int sinceFeatures;
+
+    public EmgFeatureExtractor(int maxChannels, int window, int hop, double deadband) {
+        if (window < 2 || hop < 1) {
+            throw new IllegalArgumentException("window must be at least 2 and hop at least 1");
+        }
+        this.maxChannels = maxChannels;
+        this.window = window;
+        this.hop = hop;
+        this.deadband = deadband;
+        samples = new double[maxChannels * window];
+        lengthTerms = new double[maxChannels * window];
+        crossingTerms = new byte[maxChannels * window];
+        slopeTerms = new byte[maxChannels * window];
+        sumAbs = new double[maxChannels];
+        sumSquares = new double[maxChannels];
+        sumLength = new double[maxChannels];
+        crossings = new int[maxChannels];
+        slopeChanges = new int[maxChannels];
+        previous = new double[maxChannels];
+        beforePrevious = new double[maxChannels];
+    }
+
+    /** Empties the window, e.g. for a new channel layout. */
+    public void reset() {
+        Arrays.fill(samples, 0);
+        Arrays.fill(lengthTerms, 0);
+        Arrays.fill(crossingTerms, (byte) 0);
+        Arrays.fill(slopeTerms, (byte) 0);
+        Arrays.fill(sumAbs, 0);
+        Arrays.fill(sumSquares, 0);
+        Arrays.fill(sumLength, 0);
+        Arrays.fill(crossings, 0);
+        Arrays.fill(slopeChanges, 0);
+        channels = 0;
+        slot = 0;
+        filled = 0;
+        sinceFeatures = 0;
+    }
+
+    /**
+     * Adds one frame and returns true when a feature vector is due; read it
+     * with {@link #getFeatures} before the next frame.
+     */
+    public boolean accept(double[] values, int channelCount) {
+        int count = Math.min(channelCount, maxChannels);
+        if (count != channels) {
+            reset();
+            channels = count;
+        }
+
+        for (int c = 0; c < count; c++) {
+            double x = values[c];
+            int i = c * window + slot;
+            if (filled == window) {
+                double old = samples[i];
+                sumAbs[c] -= Math.abs(old);
+                sumSquares[c] -= old * old;
+                sumLength[c] -= lengthTerms[i];
+                crossings[c] -= crossingTerms[i];
+                slopeChanges[c] -= slopeTerms[i];
+            }
+
+            double length = 0;
+            byte crossing = 0;
+            byte slope = 0;
+            if (filled > 0) {
+                double p = previous[c];
+                double step = x - p;
+                length = Math.abs(step);
+                if (p * x < 0 && length >= deadband) {
+                    crossing = 1;
+                }
+                if (filled > 1) {
+                    // Whether the previous sample was a peak or a trough
+                    double rise = p - beforePrevious[c];
+                    if (rise * -step > 0 && (Math.abs(rise) >= deadband || length >= deadband)) {
+                        slope = 1;
+                    }
+                }
+            }
+
+            samples[i] = x;
+            lengthTerms[i] = length;
+            crossingTerms[i] = crossing;
+            slopeTerms[i] = slope;
+            sumAbs[c] += Math.abs(x);
+            sumSquares[c] += x * x;
+            sumLength[c] += length;
+            crossings[c] += crossing;
+            slopeChanges[c] += slope;
+            beforePrevious[c] = previous[c];
+            previous[c] = x;
+        }
+
+        slot = slot + 1 == window ? 0 : slot + 1;
+        if (filled < window) {
+            filled++;
+        }
+        if (filled < window || ++sinceFeatures < hop) {
+            return false;
+        }
+        sinceFeatures = 0;
+        return true;
+    }
+
+    /**
+     * Writes the features of the current window, channel-major:
+     * out[channel * FEATURES_PER_CHANNEL + feature]. Returns how many were written.
+     */
+    public int getFeatures(double[] out) {
+        for (int c = 0; c < channels; c++) {
+            int base = c * FEATURES_PER_CHANNEL;
+            out[base + MAV] = sumAbs[c] / window;
+            // Running sums can drift a hair below zero
+            out[base + RMS] = Math.sqrt(Math.max(0, sumSquares[c]) / window);
+            out[base + WAVEFORM_LENGTH] = Math.max(0, sumLength[c]);
+            out[base + ZERO_CROSSINGS] = crossings[c];
+            out[base + SLOPE_SIGN_CHANGES] = slopeChanges[c];
+        }
+        return getFeatureCount();
+    }
+
+    /** Length of the current feature vectors. */
+    public int getFeatureCount() {
+        return channels * FEATURES_PER_CHANNEL;
+    }
+
+    public int getMaxFeatureCount() {
+        return maxChannels * FEATURES_PER_CHANNEL;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public int getHop() {
+        return hop;
+    }
+}
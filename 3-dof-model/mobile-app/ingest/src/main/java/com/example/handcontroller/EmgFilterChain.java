@@ -0,0 +1,179 @@
+package com.example.handcontroller;
+
+import java.util.Arrays;
+
+/**
+ * Java port of the firmware EMG processing (updated-library/EMGFilters.cpp
+ * plus the envelope smoothing in the sketches), for boards that stream raw
+ * ADC samples.
+ *
+ * Per channel: 50/60 Hz notch (two biquads with output gain), 2nd order
+ * low-pass, 2nd order high-pass, absolute value, then a moving average.
+ * Coefficients are the firmware's, selected for 500 or 1000 Hz. All state
+ * lives in preallocated primitive arrays indexed by channel, so processing a
+ * sample is a handful of multiply-adds and no allocation.
+ */
+public class EmgFilterChain {
+
+    public enum SampleFrequency { HZ_500, HZ_1000 }
+
+    public enum NotchFrequency { HZ_50, HZ_60 }
+
+    public static final int DEFAULT_SMOOTHING_WINDOW = 50;
+
+    // Biquad coefficients {b0, b1, b2, a1, a2} indexed by sample frequency (500, 1000 Hz)
+    private static final double[][] LPF = {
+            {0.3913, 0.7827, 0.3913, 0.3695, 0.1958},
+            {0.1311, 0.2622, 0.1311, -0.7478, 0.2722}
+    };
+    private static final double[][] HPF = {
+            {0.8371, -1.6742, 0.8371, -1.6475, 0.7009},
+            {0.9150, -1.8299, 0.9150, -1.8227, 0.8372}
+    };
+    private static final double[][][] NOTCH_50HZ = {
+            {{0.9522, -1.5407, 0.9522, -1.5395, 0.9056}, {0.8158, -0.8045, 0.0855, -1.1187, 0.3129}},
+            {{0.5869, -1.1146, 0.5869, -1.8844, 0.9893}, {1.0499, -2.0000, 1.0499, -1.8991, 0.9892}}
+    };
+    private static final double[][][] NOTCH_60HZ = {
+            {{0.9528, -1.3891, 0.9528, -1.3880, 0.9066}, {0.8272, -0.7225, 0.0264, -0.9739, 0.2371}},
+            {{0.5824, -1.0810, 0.5824, -1.8407, 0.9894}, {1.0736, -2.0000, 1.0736, -1.8584, 0.9891}}
+    };
+    private static final double[] NOTCH_GAIN_50HZ = {1.3422, 1.4399};
+    private static final double[] NOTCH_GAIN_60HZ = {1.3430, 1.4206};
+
+    private final int channels;
+    private final int stages;
+    // coefficients[stage * 5 + k], state[(channel * stages + stage) * 2 + k]
+    private final double[] coefficients;
+    private final double[] state;
+    private final double notchGain;
+    private final boolean notchEnabled;
+
+    private final int smoothingWindow;
+    private final double[] smoothingBuffer;
+    private final double[] smoothingSum;
+    private final int[] smoothingIndex;
+    private final int[] smoothingFill;
+
+    public EmgFilterChain(int channels, SampleFrequency sampleFrequency, NotchFrequency notchFrequency) {
+        this(channels, sampleFrequency, notchFrequency, true, true, true, DEFAULT_SMOOTHING_WINDOW);
+    }
+
+    public EmgFilterChain(int channels, SampleFrequency sampleFrequency, NotchFrequency notchFrequency,
+                          boolean enableNotch, boolean enableLowpass, boolean enableHighpass,
+                          int smoothingWindow) {
+        if (channels <= 0 || smoothingWindow <= 0) {
+            throw new IllegalArgumentException("channels and smoothingWindow must be positive");
+        }
+        int rate = sampleFrequency == SampleFrequency.HZ_500 ? 0 : 1;
+        boolean is50Hz = notchFrequency == NotchFrequency.HZ_50;
+
+        // Same order as EMGFilters::update: notch, low-pass, high-pass
+        double[][] cascade = new double[4][];
+        int n = 0;
+        if (enableNotch) {
+            double[][] notch = is50Hz ? NOTCH_50HZ[rate] : NOTCH_60HZ[rate];
+            cascade[n++] = notch[0];
+            cascade[n++] = notch[1];
+        }
+        if (enableLowpass) {
+            cascade[n++] = LPF[rate];
+        }
+        if (enableHighpass) {
+            cascade[n++] = HPF[rate];
+        }
+
+        this.channels = channels;
+        this.stages = n;
+        this.coefficients = new double[n * 5];
+        for (int s = 0; s < n; s++) {
+            System.arraycopy(cascade[s], 0, coefficients, s * 5, 5);
+        }
+        this.state = new double[channels * n * 2];
+        this.notchEnabled = enableNotch;
+        this.notchGain = is50Hz ? NOTCH_GAIN_50HZ[rate] : NOTCH_GAIN_60HZ[rate];
+
+        this.smoothingWindow = smoothingWindow;
+        this.smoothingBuffer = new double[channels * smoothingWindow];
+        this.smoothingSum = new double[channels];
+        this.smoothingIndex = new int[channels];
+        this.smoothingFill = new int[channels];
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * Runs the filter cascade only and returns the filtered sample, truncated
+     * to an integer like the firmware's {@code (int)output}.
+     */
+    public double filter(int channel, double raw) {
+        double x = raw;
+        int base = channel * stages * 2;
+        for (int s = 0; s < stages; s++) {
+            int c = s * 5;
+            int z = base + s * 2;
+            // Transposed direct form II
+            double y = coefficients[c] * x + state[z];
+            state[z] = coefficients[c + 1] * x - coefficients[c + 3] * y + state[z + 1];
+            state[z + 1] = coefficients[c + 2] * x - coefficients[c + 4] * y;
+            x = y;
+            if (notchEnabled && s == 1) {
+                x *= notchGain;
+            }
+        }
+        return (long) x;
+    }
+
+    /**
+     * Full chain for one raw ADC sample: filter, rectify and smooth.
+     * Returns the smoothed envelope, the value the sketches print.
+     */
+    public double process(int channel, double raw) {
+        return smooth(channel, Math.abs(filter(channel, raw)));
+    }
+
+    private double smooth(int channel, double envelope) {
+        int base = channel * smoothingWindow;
+        int index = smoothingIndex[channel];
+        smoothingSum[channel] += envelope - smoothingBuffer[base + index];
+        smoothingBuffer[base + index] = envelope;
+        smoothingIndex[channel] = index + 1 == smoothingWindow ? 0 : index + 1;
+        if (smoothingFill[channel] < smoothingWindow) {
+            smoothingFill[channel]++;
+        }
+        return smoothingSum[channel] / smoothingFill[channel];
+    }
+
+    /**
+     * Replaces each raw value in the frame with its smoothed envelope.
+     */
+    public void processFrame(double[] values, int channelCount) {
+        int n = Math.min(channelCount, channels);
+        for (int c = 0; c < n; c++) {
+            values[c] = process(c, values[c]);
+        }
+    }
+
+    /**
+     * Same, and also writes each band-passed sample, before rectification,
+     * into filtered: the zero-mean signal the gesture features need.
+     */
+    public void processFrame(double[] values, int channelCount, double[] filtered) {
+        int n = Math.min(channelCount, channels);
+        for (int c = 0; c < n; c++) {
+            double sample = filter(c, values[c]);
+            filtered[c] = sample;
+            values[c] = smooth(c, Math.abs(sample));
+        }
+    }
+
+    public void reset() {
+        Arrays.fill(state, 0);
+        Arrays.fill(smoothingBuffer, 0);
+        Arrays.fill(smoothingSum, 0);
+        Arrays.fill(smoothingIndex, 0);
+        Arrays.fill(smoothingFill, 0);
+    }
+}
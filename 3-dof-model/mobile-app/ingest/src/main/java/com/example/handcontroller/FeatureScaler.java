@@ -0,0 +1,48 @@
+package com.example.handcontroller;
+
+/**
+ * Per-feature standardisation (zero mean, unit variance over the training
+ * set), so amplitudes, lengths and counts weigh alike. Features that never
+ * vary are left centred but unscaled.
+ */
+public final class FeatureScaler {
+
+    private final double[] mean;
+    private final double[] inverseDeviation;
+
+    private FeatureScaler(double[] mean, double[] inverseDeviation) {
+        this.mean = mean;
+        this.inverseDeviation = inverseDeviation;
+    }
+
+    public static FeatureScaler fit(double[][] examples, int featureCount) {
+        OnlineStats[] stats = new OnlineStats[featureCount];
+        for (int f = 0; f < featureCount; f++) {
+            stats[f] = new OnlineStats();
+        }
+        for (double[] example : examples) {
+            for (int f = 0; f < featureCount; f++) {
+                stats[f].add(example[f]);
+            }
+        }
+        double[] mean = new double[featureCount];
+        double[] inverseDeviation = new double[featureCount];
+        for (int f = 0; f < featureCount; f++) {
+            mean[f] = stats[f].getMean();
+            double deviation = stats[f].getStandardDeviation();
+            inverseDeviation[f] = deviation > 0 ? 1 / deviation : 1;
+        }
+        return new FeatureScaler(mean, inverseDeviation);
+    }
+
+    public int getFeatureCount() {
+        return mean.length;
+    }
+
+    /** out may be in. */
+    public void apply(double[] in, double[] out) {
+        for (int f = 0; f < mean.length; f++) {
+            out[f] = (in[f] - mean[f]) * inverseDeviation[f];
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.handcontroller;
+
+/**
+ * Turns raw bytes from the device link into frames. Implementations keep their
+ * state between calls, so reads can be fed in whatever chunks the socket returns.
+ */
+public interface FrameDecoder {
+    void feed(byte[] buffer, int offset, int length);
+
+    void reset();
+
+    long getFramesDecoded();
+}
@@ -0,0 +1,9 @@
+package com.example.handcontroller;
+
+/**
+ * Receives one decoded frame, i.e. one sample per channel.
+ */
+public interface FrameListener {
+    // values is reused between frames, copy it if it has to outlive the call
+    void onFrame(double[] values, int channelCount);
+}
@@ -0,0 +1,50 @@
+package com.example.handcontroller;
+
+import java.io.IOException;
+
+/**
+ * The few GATT operations the BLE transport needs, so {@link BleSensorSource}
+ * can run against Android's BluetoothGatt on a phone and against a fake
+ * peer on the JVM.
+ *
+ * Requests are asynchronous and, like on Android, only one may be
+ * outstanding at a time: the caller waits for the matching callback before
+ * issuing the next. Callbacks arrive on a thread owned by the link.
+ */
+public interface GattLink {
+
+    interface Callback {
+        void onConnectionStateChanged(boolean connected);
+
+        void onServicesDiscovered(boolean success);
+
+        void onMtuChanged(int mtu, boolean success);
+
+        void onNotificationsEnabled(boolean success);
+
+        // value is only valid during the call
+        void onNotification(byte[] value, int length);
+    }
+
+    void connect(Callback callback) throws IOException;
+
+    void discoverServices();
+
+    // ATT MTU; the payload of a notification is mtu - 3
+    void requestMtu(int mtu);
+
+    // Shortest connection interval the phone allows (about 7.5-15 ms); no callback
+    void requestLowLatency();
+
+    // Subscribes to the sample characteristic (writes its CCCD)
+    void enableNotifications();
+
+    // Writes to the command characteristic
+    void write(byte[] value) throws IOException;
+
+    void close();
+
+    String getName();
+
+    String getAddress();
+}
@@ -0,0 +1,16 @@
+package com.example.handcontroller;
+
+/**
+ * A trained model mapping one feature vector from {@link EmgFeatureExtractor}
+ * to a gesture label (0-based). Implementations are immutable apart from
+ * scratch space, allocate nothing per call and are used by one thread.
+ */
+public interface GestureClassifier {
+
+    /** Length of the feature vectors the model was trained on. */
+    int getFeatureCount();
+
+    int getClassCount();
+
+    int classify(double[] features);
+}
@@ -0,0 +1,195 @@
+package com.example.handcontroller;
+
+/**
+ * Multi-grip control input: classifies the stream into gestures every hop,
+ * replacing the firmware's single-channel threshold and 300 ms debounce.
+ *
+ * Frames go through an {@link EmgFeatureExtractor} (200 ms windows every
+ * 25 ms by default) and each feature vector through the current
+ * {@link GestureClassifier}. The decision latency, from the first frame of a
+ * hop to the decision that includes it, is recorded per decision: at most
+ * one hop plus the classification, well inside 50 ms at 1 kHz.
+ *
+ * To train, label what the user is doing with {@link #startRecording}; the
+ * feature vectors produced meanwhile are kept (up to
+ * {@link #MAX_TRAINING_EXAMPLES}) and {@link #train} fits a model on them.
+ *
+ * Frames come from the producer thread ({@link IngestPipeline}); recording,
+ * training and the getters may be used from any thread.
+ */
+public class GestureRecognizer {
+
+    public enum Model { LDA, KNN }
+
+    public static final int UNKNOWN = -1;
+    public static final int MAX_TRAINING_EXAMPLES = 4000;
+    public static final long DEFAULT_WINDOW_NANOS = 200_000_000L;
+    public static final long DEFAULT_HOP_NANOS = 25_000_000L;
+    // Filtered ADC counts; smaller steps around zero are noise
+    public static final double DEFAULT_DEADBAND = 1.0;
+
+    private final EmgFeatureExtractor extractor;
+    private final NanoClock clock;
+    private final double[] features;
+
+    private volatile GestureClassifier classifier;
+    private volatile int gesture = UNKNOWN;
+    private volatile long decisions;
+    private long hopStart = Long.MIN_VALUE;
+    private final LatencyHistogram decisionLatency = new LatencyHistogram();
+
+    private volatile int recordingLabel = UNKNOWN;
+    private final double[][] examples = new double[MAX_TRAINING_EXAMPLES][];
+    private final int[] labels = new int[MAX_TRAINING_EXAMPLES];
+    private int exampleCount;
+
+    public GestureRecognizer(EmgFeatureExtractor extractor, NanoClock clock) {
+        this.extractor = extractor;
+        this.clock = clock;
+        this.features = new double[extractor.getMaxFeatureCount()];
+    }
+
+    /** Default windows for a stream at rateHz. */
+    public static GestureRecognizer forRate(int maxChannels, int rateHz, NanoClock clock) {
+        int window = (int) Math.max(2, DEFAULT_WINDOW_NANOS * rateHz / 1_000_000_000L);
+        int hop = (int) Math.max(1, DEFAULT_HOP_NANOS * rateHz / 1_000_000_000L);
+        return new GestureRecognizer(new EmgFeatureExtractor(maxChannels, window, hop, DEFAULT_DEADBAND), clock);
+    }
+
+    /** Producer side: starts over, e.g. for a new connection or channel layout. */
+    public void reset() {
+        extractor.reset();
+        hopStart = Long.MIN_VALUE;
+        gesture = UNKNOWN;
+    }
+
+    /** Producer side, for every frame: zero-mean samples, see {@link EmgFeatureExtractor}. */
+    public void accept(long timestamp, double[] values, int channelCount) {
+        if (hopStart == Long.MIN_VALUE) {
+            hopStart = timestamp;
+        }
+        if (!extractor.accept(values, channelCount)) {
+            return;
+        }
+        int featureCount = extractor.getFeatures(features);
+
+        int label = recordingLabel;
+        if (label != UNKNOWN) {
+            record(label, featureCount);
+        }
+        GestureClassifier model = classifier;
+        if (model != null && model.getFeatureCount() == featureCount) {
+            gesture = model.classify(features);
+            decisions++;
+            decisionLatency.record(clock.nanoTime() - hopStart);
+        }
+        hopStart = Long.MIN_VALUE;
+    }
+
+    private synchronized void record(int label, int featureCount) {
+        if (exampleCount == MAX_TRAINING_EXAMPLES) {
+            return;
+        }
+        if (exampleCount > 0 && examples[0].length != featureCount) {
+            // The layout changed under the recording; keep only the new one
+            exampleCount = 0;
+        }
+        double[] example = examples[exampleCount];
+        if (example == null || example.length != featureCount) {
+            example = new double[featureCount];
+            examples[exampleCount] = example;
+        }
+        System.arraycopy(features, 0, example, 0, featureCount);
+        labels[exampleCount++] = label;
+    }
+
+    /** Labels the feature vectors from now on as gesture label (0-based). */
+    public void startRecording(int label) {
+        recordingLabel = label;
+    }
+
+    public void stopRecording() {
+        recordingLabel = UNKNOWN;
+    }
+
+    public synchronized void clearExamples() {
+        exampleCount = 0;
+    }
+
+    public synchronized int getExampleCount(int label) {
+        int count = 0;
+        for (int i = 0; i < exampleCount; i++) {
+            if (labels[i] == label) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Fits a model to the recorded examples of gestures 0..classCount-1 and
+     * starts classifying with it. Returns null, keeping the current model, if
+     * any gesture has fewer than minExamples.
+     */
+    public GestureClassifier train(Model model, int classCount, int minExamples) {
+        int[] counts = new int[classCount];
+        double[][] x;
+        int[] y;
+        synchronized (this) {
+            int n = 0;
+            for (int i = 0; i < exampleCount; i++) {
+                if (labels[i] < classCount) {
+                    counts[labels[i]]++;
+                    n++;
+                }
+            }
+            x = new double[n][];
+            y = new int[n];
+            n = 0;
+            for (int i = 0; i < exampleCount; i++) {
+                if (labels[i] < classCount) {
+                    x[n] = examples[i].clone();
+                    y[n++] = labels[i];
+                }
+            }
+        }
+        for (int count : counts) {
+            if (count < Math.max(1, minExamples)) {
+                return null;
+            }
+        }
+        int featureCount = x[0].length;
+        GestureClassifier trained = model == Model.KNN
+                ? KnnClassifier.train(x, y, classCount, featureCount,
+                        KnnClassifier.DEFAULT_K, KnnClassifier.DEFAULT_MAX_EXAMPLES)
+                : LdaClassifier.train(x, y, classCount, featureCount, LdaClassifier.DEFAULT_SHRINKAGE);
+        setClassifier(trained);
+        return trained;
+    }
+
+    public void setClassifier(GestureClassifier classifier) {
+        this.classifier = classifier;
+    }
+
+    public GestureClassifier getClassifier() {
+        return classifier;
+    }
+
+    /** Latest decision, {@link #UNKNOWN} until the first one. */
+    public int getGesture() {
+        return gesture;
+    }
+
+    public long getDecisions() {
+        return decisions;
+    }
+
+    /** First frame of a hop to the decision including it. */
+    public LatencyHistogram getDecisionLatency() {
+        return decisionLatency;
+    }
+
+    public EmgFeatureExtractor getExtractor() {
+        return extractor;
+    }
+}
@@ -0,0 +1,504 @@
+package com.example.handcontroller;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The sample ingest path between a sensor byte stream and the graphs.
+ *
+ * Producer side (read thread): {@link #feed} decodes bytes, optionally runs
+ * the on-phone filter chain, timestamps each frame and offers it to the
+ * bounded {@link SampleRingBuffer} (and the session recorder, if any).
+ * Consumer side (UI thread, once per vsync): {@link #drainTo} moves everything
+ * queued into the per-channel series.
+ *
+ * Frames are stamped with their sample time on the phone clock, estimated
+ * from the device frame index by a {@link DeviceClock} (the packet sequence
+ * for binary, a local count for ASCII), so bursty Bluetooth delivery does not
+ * bunch them up. With {@link #setResampleRateHz} they are also resampled onto
+ * a uniform grid shared by all pipelines before being queued and recorded.
+ *
+ * A {@link CalibrationEngine} can be attached to see the same frames while
+ * the user calibrates, a {@link DriftMonitor} to check them against a saved
+ * calibration, a {@link GestureRecognizer} to classify them and a
+ * {@link ProportionalController} to drive the motors from them, and a
+ * {@link SampleForwarder} to send them on to a desktop visualizer.
+ *
+ * Each frame is timed twice, allocation-free: decode (read returned to frame
+ * queued, on the producer) and hand-off (queued to drained, on the consumer,
+ * measured from the local queue time rather than the device timestamp),
+ * see {@link #getDecodeLatency} and {@link #getHandOffLatency}.
+ *
+ * The channel layout is not configured up front but taken from the stream.
+ * When it changes (first frame, another board, a new channel mask) the
+ * producer starts a new ring sized for exactly that many channels, so the
+ * per-sample cost only depends on the channels actually sent. The consumer
+ * finishes the old ring first and then reports the new
+ * {@link #getDescriptor() descriptor}, which is the cue to rebuild graphs.
+ * A binary header names its layout, so it switches at once; an ASCII line
+ * only says how many values it has, so a new count must hold for
+ * {@link #ASCII_LAYOUT_FRAMES} lines in a row, and the stray lines before
+ * that are dropped (see {@link #getRejectedFrames}).
+ */
+public class IngestPipeline implements FrameListener, Closeable {
+
+    public static final int DEFAULT_RING_CAPACITY = 4096;
+    public static final int DRAIN_BATCH = 512;
+    public static final int ASCII_LAYOUT_FRAMES = 4;
+
+    /** Opens the recording for a channel layout; may return null to skip recording. */
+    public interface RecorderFactory {
+        SessionRecorder open(ChannelDescriptor descriptor);
+    }
+
+    /** Opens the rollups for a channel layout; may return null to skip them. */
+    public interface RollupFactory {
+        RollupRecorder open(ChannelDescriptor descriptor);
+    }
+
+    // A channel layout and the ring carrying it
+    private static final class Stream {
+        final ChannelDescriptor descriptor;
+        final SampleRingBuffer ringBuffer;
+
+        Stream(ChannelDescriptor descriptor, SampleRingBuffer ringBuffer) {
+            this.descriptor = descriptor;
+            this.ringBuffer = ringBuffer;
+        }
+    }
+
+    private final int maxChannels;
+    private final int ringCapacity;
+    private final SampleRingBuffer.OverflowPolicy overflowPolicy;
+    private final NegotiatingFrameDecoder decoder;
+    private final EmgFilterChain filterChain;
+    private final RecorderFactory recorderFactory;
+    private final NanoClock clock;
+
+    // Producer side
+    private volatile Stream producerStream;
+    private int producerMask;
+    private int candidateChannels;
+    private int candidateFrames;
+    private volatile long rejectedFrames;
+    private SessionRecorder recorder;
+    private RollupFactory rollupFactory;
+    private RollupRecorder rollups;
+    private volatile IOException closeError;
+    private long readNanos;
+    // Local clock when the current frame was decoded; frames are queued against
+    // it, while their timestamp is the estimated device sample time
+    private long decodedNanos;
+    private long framesReceived;
+    private final LatencyHistogram decodeLatency = new LatencyHistogram();
+    private final DeviceClock deviceClock = new DeviceClock();
+    private UniformResampler resampler;
+    private final UniformResampler.Listener resampled = this::queueFrame;
+    private volatile CalibrationEngine calibration;
+    private volatile DriftMonitor driftMonitor;
+    private volatile GestureRecognizer gestureRecognizer;
+    private volatile ProportionalController controller;
+    private volatile SampleForwarder forwarder;
+    private final double[] filtered;
+
+    // Consumer side, with channel-major scratch arrays
+    private Stream consumerStream;
+    private final long[] drainTimestamps = new long[DRAIN_BATCH];
+    private final long[] drainQueued = new long[DRAIN_BATCH];
+    private final double[] drainMin;
+    private final double[] drainMax;
+    private final LatencyHistogram handOffLatency = new LatencyHistogram();
+
+    public IngestPipeline(int maxChannels, SampleRingBuffer.OverflowPolicy overflowPolicy,
+                          EmgFilterChain filterChain, RecorderFactory recorderFactory, NanoClock clock) {
+        this(maxChannels, DEFAULT_RING_CAPACITY, overflowPolicy, filterChain, recorderFactory, clock);
+    }
+
+    public IngestPipeline(int maxChannels, int ringCapacity, SampleRingBuffer.OverflowPolicy overflowPolicy,
+                          EmgFilterChain filterChain, RecorderFactory recorderFactory, NanoClock clock) {
+        this.maxChannels = maxChannels;
+        this.ringCapacity = ringCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.decoder = new NegotiatingFrameDecoder(maxChannels, this);
+        this.filterChain = filterChain;
+        this.recorderFactory = recorderFactory;
+        this.clock = clock;
+        this.filtered = new double[maxChannels];
+        this.drainMin = new double[DRAIN_BATCH * maxChannels];
+        this.drainMax = new double[DRAIN_BATCH * maxChannels];
+    }
+
+    /** Producer side, right after the bytes were read. */
+    public void feed(byte[] buffer, int offset, int length) {
+        readNanos = clock.nanoTime();
+        decoder.feed(buffer, offset, length);
+    }
+
+    @Override
+    public void onFrame(double[] values, int channelCount) {
+        Stream stream = producerStream;
+        boolean binary = decoder.getMode() == NegotiatingFrameDecoder.Mode.BINARY;
+        int mask = binary ? decoder.getBinaryDecoder().getChannelMask() : 0;
+        // Binary frames come indexed by board input; the ring carries only the inputs in the mask
+        if (binary && Integer.bitCount(mask) != channelCount) {
+            channelCount = gather(values, mask);
+        }
+        if (stream == null || (binary && mask != producerMask)) {
+            stream = startStream(channelCount);
+        } else if (channelCount != stream.descriptor.getChannelCount()) {
+            // A torn or garbled ASCII line looks like another layout; wait for the count to hold
+            if (!binary && !confirmLayout(channelCount)) {
+                rejectedFrames++;
+                return;
+            }
+            stream = startStream(channelCount);
+        } else {
+            candidateFrames = 0;
+        }
+
+        GestureRecognizer recognizer = gestureRecognizer;
+        if (filterChain != null) {
+            if (recognizer != null) {
+                filterChain.processFrame(values, channelCount, filtered);
+            } else {
+                filterChain.processFrame(values, channelCount);
+            }
+        }
+        decodedNanos = clock.nanoTime();
+        decodeLatency.record(decodedNanos - readNanos);
+
+        long index = binary ? decoder.getBinaryDecoder().getFrameIndex() : framesReceived;
+        framesReceived++;
+        long timestamp = deviceClock.timestamp(index, binary, readNanos);
+        if (recognizer != null) {
+            // At the device rate, on the signal before rectification when the phone filters
+            recognizer.accept(timestamp, filterChain != null ? filtered : values, channelCount);
+        }
+        if (resampler != null) {
+            resampler.accept(timestamp, values, channelCount, resampled);
+        } else {
+            queueFrame(timestamp, values, channelCount);
+        }
+    }
+
+    private void queueFrame(long timestamp, double[] values, int channelCount) {
+        Stream stream = producerStream;
+        stream.ringBuffer.offer(timestamp, decodedNanos, values, channelCount);
+        if (recorder != null) {
+            recorder.record(timestamp, values, channelCount);
+        }
+        if (rollups != null) {
+            rollups.record(timestamp, values, channelCount);
+        }
+        CalibrationEngine engine = calibration;
+        if (engine != null) {
+            engine.accept(stream.descriptor, timestamp, values, channelCount);
+        }
+        DriftMonitor monitor = driftMonitor;
+        if (monitor != null) {
+            monitor.accept(stream.descriptor, timestamp, values, channelCount);
+        }
+        ProportionalController control = controller;
+        if (control != null) {
+            control.accept(timestamp, values, channelCount);
+        }
+        SampleForwarder forward = forwarder;
+        if (forward != null) {
+            forward.accept(stream.descriptor, timestamp, values, channelCount);
+        }
+    }
+
+    /**
+     * Any thread: also classifies every frame into gestures, until replaced
+     * or cleared with null.
+     */
+    public void setGestureRecognizer(GestureRecognizer recognizer) {
+        gestureRecognizer = recognizer;
+    }
+
+    /**
+     * Any thread: also hands every queued frame (filtered and resampled, as
+     * plotted) to the controller, until replaced or cleared with null.
+     */
+    public void setController(ProportionalController controller) {
+        this.controller = controller;
+    }
+
+    /**
+     * Any thread: also hands every queued frame (filtered and resampled, as
+     * plotted) to the engine, until replaced or cleared with null.
+     */
+    public void setCalibration(CalibrationEngine engine) {
+        calibration = engine;
+    }
+
+    /**
+     * Any thread: also hands every queued frame to the drift monitor, until
+     * replaced or cleared with null.
+     */
+    public void setDriftMonitor(DriftMonitor monitor) {
+        driftMonitor = monitor;
+    }
+
+    /**
+     * Any thread: also hands every queued frame to the forwarder, until
+     * replaced or cleared with null. The forwarder is not closed here.
+     */
+    public void setForwarder(SampleForwarder forwarder) {
+        this.forwarder = forwarder;
+    }
+
+    /**
+     * Producer side, before the first feed: resample onto multiples of
+     * 1/rateHz, bridging gaps of up to maxGapNanos. 0 keeps the frames as
+     * they come.
+     */
+    public void setResampleRateHz(int rateHz, long maxGapNanos) {
+        resampler = rateHz > 0
+                ? new UniformResampler(1_000_000_000L / rateHz, maxGapNanos, maxChannels)
+                : null;
+    }
+
+    /**
+     * Producer side, before the first feed: also rolls every layout's frames
+     * up (as recorded) for long-term history.
+     */
+    public void setRollupFactory(RollupFactory factory) {
+        rollupFactory = factory;
+    }
+
+    // Producer side, per binary frame with gaps in its mask: packs a frame indexed
+    // by board input down to the inputs in the mask, in place
+    private static int gather(double[] values, int mask) {
+        int n = 0;
+        for (int input = 0; mask >>> input != 0; input++) {
+            if ((mask & (1 << input)) != 0) {
+                values[n++] = values[input];
+            }
+        }
+        return n;
+    }
+
+    private boolean confirmLayout(int channelCount) {
+        if (channelCount != candidateChannels) {
+            candidateChannels = channelCount;
+            candidateFrames = 0;
+        }
+        return ++candidateFrames >= ASCII_LAYOUT_FRAMES;
+    }
+
+    // Producer side, only when the layout changes
+    private Stream startStream(int channelCount) {
+        candidateFrames = 0;
+        ChannelDescriptor descriptor;
+        if (decoder.getMode() == NegotiatingFrameDecoder.Mode.BINARY) {
+            producerMask = decoder.getBinaryDecoder().getChannelMask();
+            descriptor = ChannelDescriptor.fromMask(producerMask);
+        } else {
+            producerMask = 0;
+            descriptor = ChannelDescriptor.contiguous(channelCount);
+        }
+
+        if (filterChain != null) {
+            filterChain.reset();
+        }
+        deviceClock.reset();
+        GestureRecognizer recognizer = gestureRecognizer;
+        if (recognizer != null) {
+            recognizer.reset();
+        }
+        ProportionalController control = controller;
+        if (control != null) {
+            control.reset();
+        }
+        if (resampler != null) {
+            resampler.reset();
+        }
+        closeRecorder();
+        if (recorderFactory != null) {
+            recorder = recorderFactory.open(descriptor);
+        }
+        if (rollupFactory != null) {
+            rollups = rollupFactory.open(descriptor);
+        }
+
+        Stream stream = new Stream(descriptor,
+                new SampleRingBuffer(ringCapacity, descriptor.getChannelCount(), overflowPolicy));
+        producerStream = stream;
+        return stream;
+    }
+
+    /**
+     * Appends every queued frame to series[channel] and returns the number of
+     * frames drained. Coalesced slots are plotted at their peak so bursts stay
+     * visible; channels missing from a frame are skipped. After a layout
+     * change the old stream is drained completely before
+     * {@link #getDescriptor()} moves on to the new one.
+     */
+    public int drainTo(DecimatedSeries[] series) {
+        Stream stream = consumerStream;
+        int drained = stream == null ? 0 : drainStream(stream, series);
+        advanceStream();
+        return drained;
+    }
+
+    /**
+     * Consumer side: moves on to the newest channel layout once everything
+     * queued under the current one has been drained, and returns the layout
+     * now being delivered (null before the first frame). {@link #drainTo}
+     * does this itself; callers polling single frames do it between batches.
+     */
+    public ChannelDescriptor advanceStream() {
+        Stream stream = consumerStream;
+        Stream latest = producerStream;
+        // Everything for the old stream was offered before the new one was published
+        if (latest != stream && (stream == null || stream.ringBuffer.size() == 0)) {
+            consumerStream = latest;
+            stream = latest;
+        }
+        return stream == null ? null : stream.descriptor;
+    }
+
+    /**
+     * Consumer side. Timestamp of the oldest frame of the current layout, or
+     * Long.MAX_VALUE when none is queued.
+     */
+    public long peekTimestamp() {
+        Stream stream = consumerStream;
+        return stream == null ? Long.MAX_VALUE : stream.ringBuffer.peekTimestamp();
+    }
+
+    /**
+     * Consumer side. Copies the oldest frame of the current layout into values
+     * (peak of a coalesced slot, NaN for missing channels) and returns its
+     * timestamp, or Long.MIN_VALUE when none is queued.
+     */
+    public long pollFrame(double[] values) {
+        Stream stream = consumerStream;
+        if (stream == null || stream.ringBuffer.drainTo(drainTimestamps, drainQueued, drainMin, drainMax, 1) == 0) {
+            return Long.MIN_VALUE;
+        }
+        System.arraycopy(drainMax, 0, values, 0, stream.ringBuffer.getChannels());
+        handOffLatency.record(clock.nanoTime() - drainQueued[0]);
+        return drainTimestamps[0];
+    }
+
+    private int drainStream(Stream stream, DecimatedSeries[] series) {
+        SampleRingBuffer ringBuffer = stream.ringBuffer;
+        int plotted = Math.min(series.length, ringBuffer.getChannels());
+        int drained = 0;
+        int frames;
+        do {
+            frames = ringBuffer.drainTo(drainTimestamps, drainQueued, drainMin, drainMax, DRAIN_BATCH);
+            long now = clock.nanoTime();
+            for (int i = 0; i < frames; i++) {
+                handOffLatency.record(now - drainQueued[i]);
+            }
+            for (int c = 0; c < plotted; c++) {
+                DecimatedSeries channel = series[c];
+                int base = c * DRAIN_BATCH;
+                for (int i = 0; i < frames; i++) {
+                    double value = drainMax[base + i];
+                    if (!Double.isNaN(value)) {
+                        channel.append(drainTimestamps[i], value);
+                    }
+                }
+            }
+            drained += frames;
+        } while (frames == DRAIN_BATCH);
+        return drained;
+    }
+
+    /**
+     * Consumer side: layout of the frames {@link #drainTo} is delivering, or
+     * null before the first frame.
+     */
+    public ChannelDescriptor getDescriptor() {
+        Stream stream = consumerStream;
+        return stream == null ? null : stream.descriptor;
+    }
+
+    /** Ring of the current layout, or null before the first frame. */
+    public SampleRingBuffer getRingBuffer() {
+        Stream stream = producerStream;
+        return stream == null ? null : stream.ringBuffer;
+    }
+
+    /** Attached drift monitor, or null. */
+    public DriftMonitor getDriftMonitor() {
+        return driftMonitor;
+    }
+
+    /** Attached controller, or null. */
+    public ProportionalController getController() {
+        return controller;
+    }
+
+    /** Attached recognizer, or null. */
+    public GestureRecognizer getGestureRecognizer() {
+        return gestureRecognizer;
+    }
+
+    /** Sample-time estimate, drift, jitter and gaps of the producer's stream. */
+    public DeviceClock getDeviceClock() {
+        return deviceClock;
+    }
+
+    /** Read returned to frame decoded and filtered, written by the producer. */
+    public LatencyHistogram getDecodeLatency() {
+        return decodeLatency;
+    }
+
+    /** Frame queued to drained by the consumer, including any merge hold-back. */
+    public LatencyHistogram getHandOffLatency() {
+        return handOffLatency;
+    }
+
+    /** ASCII lines dropped because their channel count did not match the layout (yet). */
+    public long getRejectedFrames() {
+        return rejectedFrames;
+    }
+
+    /**
+     * Latest error closing the recording or rollups of a previous layout, or
+     * null. A failure while recording is on the recorder itself, see
+     * {@link SessionRecorder#getWriteError} and {@link RollupRecorder#getError}.
+     */
+    public IOException getCloseError() {
+        return closeError;
+    }
+
+    public int getMaxChannels() {
+        return maxChannels;
+    }
+
+    public NegotiatingFrameDecoder getDecoder() {
+        return decoder;
+    }
+
+    /** Producer side: flushes and closes the recording and rollups of the current layout. */
+    @Override
+    public void close() throws IOException {
+        SessionRecorder current = recorder;
+        RollupRecorder currentRollups = rollups;
+        recorder = null;
+        rollups = null;
+        try {
+            if (current != null) {
+                current.close();
+            }
+        } finally {
+            if (currentRollups != null) {
+                currentRollups.close();
+            }
+        }
+    }
+
+    private void closeRecorder() {
+        try {
+            close();
+        } catch (IOException e) {
+            closeError = e;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.handcontroller;
+
+/**
+ * k nearest neighbours on standardised features, for gesture sets LDA
+ * separates poorly. Training keeps at most maxExamples of them, evenly
+ * spaced, which bounds the cost of a decision: one distance per kept example
+ * and an insertion into a k-long list, no allocation.
+ */
+public final class KnnClassifier implements GestureClassifier {
+
+    public static final int DEFAULT_K = 5;
+    public static final int DEFAULT_MAX_EXAMPLES = 1000;
+
+    private final FeatureScaler scaler;
+    private final int featureCount;
+    private final int classCount;
+    private final int k;
+    // examples[i * featureCount + f], standardised
+    private final double[] examples;
+    private final int[] labels;
+
+    private final double[] scaled;
+    private final double[] nearestDistance;
+    private final int[] nearestLabel;
+    private final int[] votes;
+
+    private KnnClassifier(FeatureScaler scaler, int classCount, int k, double[] examples, int[] labels) {
+        this.scaler = scaler;
+        this.featureCount = scaler.getFeatureCount();
+        this.classCount = classCount;
+        this.k = Math.min(k, labels.length);
+        this.examples = examples;
+        this.labels = labels;
+        this.scaled = new double[featureCount];
+        this.nearestDistance = new double[this.k];
+        this.nearestLabel = new int[this.k];
+        this.votes = new int[classCount];
+    }
+
+    public static KnnClassifier train(double[][] examples, int[] labels, int classCount, int featureCount,
+                                      int k, int maxExamples) {
+        if (examples.length == 0 || k < 1) {
+            throw new IllegalArgumentException("need examples and k >= 1");
+        }
+        FeatureScaler scaler = FeatureScaler.fit(examples, featureCount);
+        int kept = Math.min(examples.length, maxExamples);
+        double[] flat = new double[kept * featureCount];
+        int[] keptLabels = new int[kept];
+        double[] row = new double[featureCount];
+        for (int i = 0; i < kept; i++) {
+            int source = (int) ((long) i * examples.length / kept);
+            scaler.apply(examples[source], row);
+            System.arraycopy(row, 0, flat, i * featureCount, featureCount);
+            keptLabels[i] = labels[source];
+        }
+        return new KnnClassifier(scaler, classCount, k, flat, keptLabels);
+    }
+
+    @Override
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+    @Override
+    public int getClassCount() {
+        return classCount;
+    }
+
+    @Override
+    public int classify(double[] features) {
+        scaler.apply(features, scaled);
+        int found = 0;
+        for (int i = 0; i < labels.length; i++) {
+            int base = i * featureCount;
+            double distance = 0;
+            for (int f = 0; f < featureCount; f++) {
+                double d = examples[base + f] - scaled[f];
+                distance += d * d;
+            }
+            if (found == k && distance >= nearestDistance[k - 1]) {
+                continue;
+            }
+            // Insert into the sorted nearest list, dropping the farthest when full
+            int j = found < k ? found++ : k - 1;
+            while (j > 0 && nearestDistance[j - 1] > distance) {
+                nearestDistance[j] = nearestDistance[j - 1];
+                nearestLabel[j] = nearestLabel[j - 1];
+                j--;
+            }
+            nearestDistance[j] = distance;
+            nearestLabel[j] = labels[i];
+        }
+
+        for (int c = 0; c < classCount; c++) {
+            votes[c] = 0;
+        }
+        // Majority; of tied classes, the one whose neighbours are nearer
+        int best = nearestLabel[0];
+        for (int j = 0; j < found; j++) {
+            int label = nearestLabel[j];
+            votes[label]++;
+            if (votes[label] > votes[best]) {
+                best = label;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.handcontroller;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Text forms of a set of {@link LatencyHistogram}s: a one-line-per-stage
+ * summary for the debug overlay and a CSV export with the summary followed by
+ * the raw bucket counts, for plotting or comparing runs offline.
+ */
+public final class LatencyReport {
+
+    private LatencyReport() {
+    }
+
+    /** Appends "stage  p50 x  p99 y  max z ms  n=count" and a newline. */
+    public static void appendSummary(StringBuilder out, String stage, LatencyHistogram histogram) {
+        out.append(String.format(Locale.US, "%-10s p50 %6.2f  p99 %6.2f  max %6.2f ms  n=%d%n", stage,
+                millis(histogram.getPercentileNanos(0.5)),
+                millis(histogram.getPercentileNanos(0.99)),
+                millis(histogram.getMaxNanos()),
+                histogram.getCount()));
+    }
+
+    public static void writeCsv(Writer out, String[] stages, LatencyHistogram[] histograms) throws IOException {
+        out.write("stage,count,p50_ms,p99_ms,max_ms\n");
+        for (int s = 0; s < stages.length; s++) {
+            LatencyHistogram histogram = histograms[s];
+            out.write(String.format(Locale.US, "%s,%d,%.3f,%.3f,%.3f%n", stages[s], histogram.getCount(),
+                    millis(histogram.getPercentileNanos(0.5)),
+                    millis(histogram.getPercentileNanos(0.99)),
+                    millis(histogram.getMaxNanos())));
+        }
+
+        out.write("\nstage,bucket_low_ns,bucket_high_ns,count\n");
+        for (int s = 0; s < stages.length; s++) {
+            LatencyHistogram histogram = histograms[s];
+            for (int b = 0; b < histogram.getBuckets(); b++) {
+                long count = histogram.getBucketCount(b);
+                if (count > 0) {
+                    out.write(stages[s] + "," + LatencyHistogram.lowerBound(b) + ","
+                            + LatencyHistogram.upperBound(b) + "," + count + "\n");
+                }
+            }
+        }
+        out.flush();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
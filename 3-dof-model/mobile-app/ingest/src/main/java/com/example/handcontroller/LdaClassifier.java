@@ -0,0 +1,172 @@
+package com.example.handcontroller;
+
+/**
+ * Linear discriminant analysis: Gaussian classes sharing one covariance, the
+ * classic model for EMG time-domain features. Training pools the within-class
+ * covariance of the standardised features, shrinks it towards the identity so
+ * it stays invertible with few examples or correlated channels, and solves it
+ * once per class. Classifying is then one dot product per class.
+ */
+public final class LdaClassifier implements GestureClassifier {
+
+    public static final double DEFAULT_SHRINKAGE = 0.1;
+
+    private final FeatureScaler scaler;
+    // weights[k * featureCount + f]
+    private final double[] weights;
+    private final double[] bias;
+    private final double[] scaled;
+
+    private LdaClassifier(FeatureScaler scaler, double[] weights, double[] bias) {
+        this.scaler = scaler;
+        this.weights = weights;
+        this.bias = bias;
+        this.scaled = new double[scaler.getFeatureCount()];
+    }
+
+    /**
+     * Trains on examples[i] labelled labels[i] in [0, classCount). Every class
+     * needs at least one example.
+     */
+    public static LdaClassifier train(double[][] examples, int[] labels, int classCount, int featureCount,
+                                      double shrinkage) {
+        int n = examples.length;
+        if (n <= classCount) {
+            throw new IllegalArgumentException("need more examples than classes");
+        }
+        FeatureScaler scaler = FeatureScaler.fit(examples, featureCount);
+        double[][] x = new double[n][featureCount];
+        for (int i = 0; i < n; i++) {
+            scaler.apply(examples[i], x[i]);
+        }
+
+        double[][] means = new double[classCount][featureCount];
+        int[] counts = new int[classCount];
+        for (int i = 0; i < n; i++) {
+            counts[labels[i]]++;
+            for (int f = 0; f < featureCount; f++) {
+                means[labels[i]][f] += x[i][f];
+            }
+        }
+        for (int k = 0; k < classCount; k++) {
+            if (counts[k] == 0) {
+                throw new IllegalArgumentException("class " + k + " has no examples");
+            }
+            for (int f = 0; f < featureCount; f++) {
+                means[k][f] /= counts[k];
+            }
+        }
+
+        double[][] covariance = new double[featureCount][featureCount];
+        double[] centred = new double[featureCount];
+        for (int i = 0; i < n; i++) {
+            for (int f = 0; f < featureCount; f++) {
+                centred[f] = x[i][f] - means[labels[i]][f];
+            }
+            for (int a = 0; a < featureCount; a++) {
+                for (int b = 0; b <= a; b++) {
+                    covariance[a][b] += centred[a] * centred[b];
+                }
+            }
+        }
+        double trace = 0;
+        for (int a = 0; a < featureCount; a++) {
+            for (int b = 0; b <= a; b++) {
+                covariance[a][b] /= n - classCount;
+                covariance[b][a] = covariance[a][b];
+            }
+            trace += covariance[a][a];
+        }
+        double target = trace > 0 ? trace / featureCount : 1;
+        for (int a = 0; a < featureCount; a++) {
+            for (int b = 0; b < featureCount; b++) {
+                covariance[a][b] *= 1 - shrinkage;
+            }
+            covariance[a][a] += shrinkage * target;
+        }
+
+        double[][] cholesky = cholesky(covariance);
+        double[] weights = new double[classCount * featureCount];
+        double[] bias = new double[classCount];
+        double[] w = new double[featureCount];
+        for (int k = 0; k < classCount; k++) {
+            solve(cholesky, means[k], w);
+            double dot = 0;
+            for (int f = 0; f < featureCount; f++) {
+                dot += w[f] * means[k][f];
+            }
+            System.arraycopy(w, 0, weights, k * featureCount, featureCount);
+            bias[k] = -0.5 * dot + Math.log(counts[k] / (double) n);
+        }
+        return new LdaClassifier(scaler, weights, bias);
+    }
+
+    // Lower triangular L with L L^T = a; a is positive definite after shrinkage
+    private static double[][] cholesky(double[][] a) {
+        int d = a.length;
+        double[][] l = new double[d][d];
+        for (int i = 0; i < d; i++) {
+            for (int j = 0; j <= i; j++) {
+                double sum = a[i][j];
+                for (int k = 0; k < j; k++) {
+                    sum -= l[i][k] * l[j][k];
+                }
+                if (i == j) {
+                    l[i][i] = Math.sqrt(Math.max(sum, 1e-12));
+                } else {
+                    l[i][j] = sum / l[j][j];
+                }
+            }
+        }
+        return l;
+    }
+
+    // x = (L L^T)^-1 b
+    private static void solve(double[][] l, double[] b, double[] x) {
+        int d = l.length;
+        for (int i = 0; i < d; i++) {
+            double sum = b[i];
+            for (int k = 0; k < i; k++) {
+                sum -= l[i][k] * x[k];
+            }
+            x[i] = sum / l[i][i];
+        }
+        for (int i = d - 1; i >= 0; i--) {
+            double sum = x[i];
+            for (int k = i + 1; k < d; k++) {
+                sum -= l[k][i] * x[k];
+            }
+            x[i] = sum / l[i][i];
+        }
+    }
+
+    @Override
+    public int getFeatureCount() {
+        return scaled.length;
+    }
+
+    @Override
+    public int getClassCount() {
+        return bias.length;
+    }
+
+    @Override
+    public int classify(double[] features) {
+        int d = scaled.length;
+        scaler.apply(features, scaled);
+        int best = 0;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < bias.length; k++) {
+            double score = bias[k];
+            int base = k * d;
+            for (int f = 0; f < d; f++) {
+                score += weights[base + f] * scaled[f];
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = k;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.handcontroller;
+
+/**
+ * Monotonic clock in nanoseconds. The app uses SystemClock.elapsedRealtimeNanos,
+ * tests and benchmarks use System.nanoTime or a fake.
+ */
+public interface NanoClock {
+    NanoClock SYSTEM = System::nanoTime;
+
+    long nanoTime();
+}
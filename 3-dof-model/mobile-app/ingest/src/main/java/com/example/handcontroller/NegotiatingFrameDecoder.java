@@ -0,0 +1,86 @@
+package com.example.handcontroller;
+
+/**
+ * Picks the wire format after the app has sent {@link BinaryProtocol#HANDSHAKE}.
+ *
+ * Until a decision is made every byte goes to both decoders and ASCII frames
+ * are forwarded, so old firmware keeps plotting while we wait. The first valid
+ * binary packet locks binary mode; if none shows up within
+ * {@code fallbackBytes} the stream is locked to ASCII.
+ */
+public class NegotiatingFrameDecoder implements FrameDecoder {
+
+    public enum Mode { NEGOTIATING, BINARY, ASCII }
+
+    public static final int DEFAULT_FALLBACK_BYTES = 4096;
+
+    private final AsciiFrameDecoder asciiDecoder;
+    private final BinaryPacketDecoder binaryDecoder;
+    private final int fallbackBytes;
+
+    private Mode mode = Mode.NEGOTIATING;
+    private long bytesSeen;
+
+    public NegotiatingFrameDecoder(int maxChannels, FrameListener listener) {
+        this(maxChannels, listener, DEFAULT_FALLBACK_BYTES);
+    }
+
+    public NegotiatingFrameDecoder(int maxChannels, FrameListener listener, int fallbackBytes) {
+        this.asciiDecoder = new AsciiFrameDecoder(maxChannels, (values, channelCount) -> {
+            if (mode != Mode.BINARY) {
+                listener.onFrame(values, channelCount);
+            }
+        });
+        this.binaryDecoder = new BinaryPacketDecoder((values, channelCount) -> {
+            mode = Mode.BINARY;
+            listener.onFrame(values, channelCount);
+        });
+        this.fallbackBytes = fallbackBytes;
+    }
+
+    @Override
+    public void feed(byte[] buffer, int offset, int length) {
+        switch (mode) {
+            case BINARY:
+                binaryDecoder.feed(buffer, offset, length);
+                break;
+            case ASCII:
+                asciiDecoder.feed(buffer, offset, length);
+                break;
+            default:
+                binaryDecoder.feed(buffer, offset, length);
+                if (mode == Mode.NEGOTIATING) {
+                    asciiDecoder.feed(buffer, offset, length);
+                    bytesSeen += length;
+                    if (bytesSeen >= fallbackBytes) {
+                        mode = Mode.ASCII;
+                    }
+                }
+        }
+    }
+
+    @Override
+    public void reset() {
+        asciiDecoder.reset();
+        binaryDecoder.reset();
+        mode = Mode.NEGOTIATING;
+        bytesSeen = 0;
+    }
+
+    @Override
+    public long getFramesDecoded() {
+        return asciiDecoder.getFramesDecoded() + binaryDecoder.getFramesDecoded();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public BinaryPacketDecoder getBinaryDecoder() {
+        return binaryDecoder;
+    }
+
+    public AsciiFrameDecoder getAsciiDecoder() {
+        return asciiDecoder;
+    }
+}
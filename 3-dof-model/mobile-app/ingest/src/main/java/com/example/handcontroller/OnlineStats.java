@@ -0,0 +1,61 @@
+package com.example.handcontroller;
+
+/**
+ * Count, mean, variance and range of a stream of values in one pass and
+ * constant space (Welford's update, which stays accurate when the mean is
+ * large next to the spread). Not thread safe.
+ */
+public class OnlineStats {
+
+    private long count;
+    private double mean;
+    // Sum of squared differences from the running mean
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void reset() {
+        count = 0;
+        mean = 0;
+        m2 = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /** 0 before the first value. */
+    public double getMean() {
+        return mean;
+    }
+
+    /** Sample variance, 0 with fewer than two values. */
+    public double getVariance() {
+        return count > 1 ? m2 / (count - 1) : 0;
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /** +infinity before the first value. */
+    public double getMin() {
+        return min;
+    }
+
+    /** -infinity before the first value. */
+    public double getMax() {
+        return max;
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.handcontroller;
+
+/**
+ * Proportional grip on the phone: maps each channel's smoothed envelope to a
+ * motor target between open (0) and closed ({@link #MAX_ANGLE}), instead of
+ * the sketches' two-position threshold switch.
+ *
+ * Per channel, the envelope is placed between its rest and full-grip
+ * levels ({@link #setRange}, usually from calibration) as a fraction in
+ * [0, 1], low-pass filtered with a time constant and slew-limited to a
+ * maximum speed, then rounded to whole degrees. A target goes to the
+ * {@link Output} only when it changed, so a steady grip sends nothing.
+ *
+ * The producer thread hands over the latest frame ({@link #accept}, like
+ * {@link CalibrationEngine}); a {@link ControlLoop} calls {@link #tick} at
+ * its fixed rate. If no frame arrived for {@link #DEFAULT_STALE_NANOS} the
+ * motors hold their position. Tuning setters may be called from any thread.
+ *
+ * {@link #halt} latches an emergency stop: once it returns no tick sends
+ * anything, whatever the envelope does, until {@link #resume}.
+ */
+public class ProportionalController {
+
+    /** Where targets go, on the control thread; e.g. a {@link CommandChannel}. */
+    public interface Output {
+        void setTarget(int channel, int angle);
+    }
+
+    public static final int MAX_ANGLE = 180;
+    public static final long DEFAULT_SMOOTHING_NANOS = 50_000_000L;
+    // Fractions of the full range per second: open to closed in 250 ms
+    public static final double DEFAULT_MAX_SPEED = 4.0;
+    public static final long DEFAULT_STALE_NANOS = 200_000_000L;
+
+    private final int maxChannels;
+    private final Output output;
+    private final Object lock = new Object();
+    // Held for a whole tick, so halt() waits out a tick that is already sending
+    private final Object tickLock = new Object();
+
+    // Guarded by lock: producer side and tuning
+    private final double[] latest;
+    private int latestCount;
+    private long latestTimestamp = Long.MIN_VALUE;
+    private final double[] rest;
+    private final double[] full;
+
+    private volatile long smoothingNanos = DEFAULT_SMOOTHING_NANOS;
+    private volatile double maxSpeed = DEFAULT_MAX_SPEED;
+    private volatile long staleNanos = DEFAULT_STALE_NANOS;
+    private volatile boolean halted;
+
+    // Control thread only
+    private final double[] envelope;
+    private final double[] restLevel;
+    private final double[] fullLevel;
+    private final double[] position;
+    private final int[] sent;
+    private int tickedCount;
+    private long lastTick = Long.MIN_VALUE;
+    private boolean resendAfterHalt;
+
+    private volatile long targetsSent;
+    private volatile long staleTicks;
+    private final LatencyHistogram inputAge = new LatencyHistogram();
+
+    public ProportionalController(int maxChannels, Output output) {
+        this.maxChannels = maxChannels;
+        this.output = output;
+        this.latest = new double[maxChannels];
+        this.rest = new double[maxChannels];
+        this.full = new double[maxChannels];
+        this.envelope = new double[maxChannels];
+        this.restLevel = new double[maxChannels];
+        this.fullLevel = new double[maxChannels];
+        this.position = new double[maxChannels];
+        this.sent = new int[maxChannels];
+        resend();
+    }
+
+    /**
+     * Envelope levels of channel at rest and at full grip; the target moves
+     * linearly between them. Until set (full above rest) the channel sends
+     * nothing.
+     */
+    public void setRange(int channel, double restLevel, double fullLevel) {
+        synchronized (lock) {
+            rest[channel] = restLevel;
+            full[channel] = fullLevel;
+        }
+    }
+
+    /** Time constant of the low-pass on the grip fraction; 0 disables it. */
+    public void setSmoothingNanos(long nanos) {
+        smoothingNanos = nanos;
+    }
+
+    /** Fastest change of the grip fraction, in full ranges per second. */
+    public void setMaxSpeed(double rangesPerSecond) {
+        maxSpeed = rangesPerSecond;
+    }
+
+    public void setStaleNanos(long nanos) {
+        staleNanos = nanos;
+    }
+
+    /** Producer side: starts over, e.g. for a new channel layout; ranges are kept. */
+    public void reset() {
+        synchronized (lock) {
+            latestCount = 0;
+            latestTimestamp = Long.MIN_VALUE;
+        }
+    }
+
+    /** Producer side, for every frame: smoothed envelopes, as plotted. */
+    public void accept(long timestamp, double[] values, int channelCount) {
+        synchronized (lock) {
+            latestCount = Math.min(channelCount, maxChannels);
+            System.arraycopy(values, 0, latest, 0, latestCount);
+            latestTimestamp = timestamp;
+        }
+    }
+
+    /**
+     * Any thread: stops sending targets. When this returns, no target is
+     * being sent and none will be until {@link #resume}.
+     */
+    public void halt() {
+        synchronized (tickLock) {
+            halted = true;
+        }
+    }
+
+    /** Any thread: sends targets again, every one on the next tick. */
+    public void resume() {
+        halted = false;
+    }
+
+    public boolean isHalted() {
+        return halted;
+    }
+
+    /** Control thread: one step of the loop. */
+    public void tick(long now) {
+        synchronized (tickLock) {
+            if (halted) {
+                // The motors were stopped where they are; start over from the envelope
+                lastTick = Long.MIN_VALUE;
+                resendAfterHalt = true;
+                return;
+            }
+            if (resendAfterHalt) {
+                resendAfterHalt = false;
+                resend();
+            }
+            step(now);
+        }
+    }
+
+    private void step(long now) {
+        int n;
+        long timestamp;
+        synchronized (lock) {
+            n = latestCount;
+            timestamp = latestTimestamp;
+            System.arraycopy(latest, 0, envelope, 0, n);
+            System.arraycopy(rest, 0, restLevel, 0, n);
+            System.arraycopy(full, 0, fullLevel, 0, n);
+        }
+        if (timestamp == Long.MIN_VALUE || now - timestamp > staleNanos) {
+            // Nothing to go on: hold, and move on from there when frames return
+            staleTicks++;
+            lastTick = Long.MIN_VALUE;
+            return;
+        }
+        inputAge.record(now - timestamp);
+        if (n != tickedCount) {
+            // Another layout: channel c is not the same input any more
+            tickedCount = n;
+            resend();
+        }
+
+        double dt = lastTick == Long.MIN_VALUE ? 0 : (now - lastTick) / 1e9;
+        lastTick = now;
+        long smoothing = smoothingNanos;
+        double alpha = smoothing <= 0 ? 1 : 1 - Math.exp(-dt * 1e9 / smoothing);
+        double maxStep = maxSpeed * dt;
+
+        for (int c = 0; c < n; c++) {
+            double range = fullLevel[c] - restLevel[c];
+            if (!(range > 0)) {
+                continue;
+            }
+            double fraction = Math.max(0, Math.min(1, (envelope[c] - restLevel[c]) / range));
+            if (sent[c] < 0) {
+                // Nothing sent yet, so no position to move from
+                position[c] = fraction;
+            } else {
+                double step = alpha * (fraction - position[c]);
+                position[c] += Math.max(-maxStep, Math.min(maxStep, step));
+            }
+            int angle = (int) Math.round(position[c] * MAX_ANGLE);
+            if (angle != sent[c]) {
+                sent[c] = angle;
+                targetsSent++;
+                output.setTarget(c, angle);
+            }
+        }
+    }
+
+    /** Control thread: forgets what was sent, so the next tick sends every target again. */
+    public void resend() {
+        for (int c = 0; c < maxChannels; c++) {
+            sent[c] = -1;
+        }
+    }
+
+    /** Last target sent for channel, -1 if none yet. Control thread. */
+    public int getTarget(int channel) {
+        return sent[channel];
+    }
+
+    public long getTargetsSent() {
+        return targetsSent;
+    }
+
+    /** Ticks that held position for lack of recent frames. */
+    public long getStaleTicks() {
+        return staleTicks;
+    }
+
+    /** Sample time of the newest frame to the tick using it, written by the control thread. */
+    public LatencyHistogram getInputAge() {
+        return inputAge;
+    }
+}
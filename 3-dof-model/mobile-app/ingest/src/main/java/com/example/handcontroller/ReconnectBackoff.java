@@ -0,0 +1,49 @@
+package com.example.handcontroller;
+
+import java.util.Random;
+
+/**
+ * Exponential reconnect delays with jitter: each failed attempt doubles the
+ * ceiling up to {@code maxMillis}, and the actual delay is drawn from the
+ * upper half of it so several phones losing the same board do not retry in
+ * lock step. {@link #reset()} once a connection has proven stable.
+ */
+public class ReconnectBackoff {
+
+    public static final long DEFAULT_INITIAL_MILLIS = 500;
+    public static final long DEFAULT_MAX_MILLIS = 30_000;
+
+    private final long initialMillis;
+    private final long maxMillis;
+    private final Random random;
+    private int attempts;
+
+    public ReconnectBackoff() {
+        this(DEFAULT_INITIAL_MILLIS, DEFAULT_MAX_MILLIS, new Random());
+    }
+
+    public ReconnectBackoff(long initialMillis, long maxMillis, Random random) {
+        if (initialMillis <= 0 || maxMillis < initialMillis) {
+            throw new IllegalArgumentException("need 0 < initialMillis <= maxMillis");
+        }
+        this.initialMillis = initialMillis;
+        this.maxMillis = maxMillis;
+        this.random = random;
+    }
+
+    public long nextDelayMillis() {
+        // Shift capped well before it could overflow
+        long ceiling = Math.min(maxMillis, initialMillis << Math.min(attempts, 30));
+        attempts++;
+        long half = ceiling / 2;
+        return ceiling - half + (long) (random.nextDouble() * (half + 1));
+    }
+
+    public void reset() {
+        attempts = 0;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.handcontroller;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Frames played back by {@link ReplaySensorSource}.
+ */
+public interface ReplayFrames extends Closeable {
+
+    int getChannelCount();
+
+    // Fills values with the next frame and returns its timestamp, or -1 at the end
+    long next(double[] values) throws IOException;
+}
@@ -0,0 +1,212 @@
+package com.example.handcontroller;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays frames through the same byte-level pipeline as a live board.
+ *
+ * Frames are re-encoded in the firmware's wire format (ASCII lines or binary
+ * packets) and paced by their timestamps at 1x, Nx or, with
+ * {@link #AS_FAST_AS_POSSIBLE}, without any pacing. This makes the whole app
+ * path reproducible on an emulator: decoding, hand-off, recording and drawing.
+ * Frames with a missing sample are skipped rather than replayed as zeros.
+ */
+public class ReplaySensorSource implements SensorSource {
+
+    public enum Encoding { ASCII, BINARY }
+
+    public static final double AS_FAST_AS_POSSIBLE = 0;
+
+    private static final int FRAMES_PER_PACKET = 10;
+    private static final int MAX_ASCII_FRAME = 24 * BinaryProtocol.MAX_CHANNELS + 2;
+
+    private final String name;
+    private final ReplayFrames frames;
+    private final double speed;
+    private final Encoding encoding;
+    private final int channelCount;
+    private final BinaryPacketEncoder packetEncoder;
+
+    private final byte[] pending;
+    private int pendingStart;
+    private int pendingEnd;
+
+    // One frame of lookahead, held back until it is due
+    private final double[] heldValues;
+    private final double[] packetValues;
+    private long heldTimestamp = -1;
+    private boolean endOfFrames;
+
+    private long firstTimestamp = -1;
+    private long startNanos;
+    private volatile boolean closed;
+    // Written by the reading thread only
+    private volatile long framesSkipped;
+
+    public ReplaySensorSource(String name, ReplayFrames frames, double speed, Encoding encoding) {
+        this.name = name;
+        this.frames = frames;
+        this.speed = speed;
+        this.encoding = encoding;
+        this.channelCount = Math.min(frames.getChannelCount(), BinaryProtocol.MAX_CHANNELS);
+        this.packetEncoder = new BinaryPacketEncoder((1 << channelCount) - 1);
+        this.heldValues = new double[frames.getChannelCount()];
+        this.packetValues = new double[channelCount * FRAMES_PER_PACKET];
+        this.pending = new byte[Math.max(BinaryProtocol.MAX_PACKET_SIZE, MAX_ASCII_FRAME * FRAMES_PER_PACKET)];
+    }
+
+    @Override
+    public void open() {
+        firstTimestamp = -1;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        while (pendingStart == pendingEnd) {
+            if (closed || !fill()) {
+                return -1;
+            }
+        }
+        int n = Math.min(length, pendingEnd - pendingStart);
+        System.arraycopy(pending, pendingStart, buffer, offset, n);
+        pendingStart += n;
+        return n;
+    }
+
+    /**
+     * Frames left out because a channel had no sample (NaN), e.g. channels a
+     * recording did not carry for part of the session.
+     */
+    public long getFramesSkipped() {
+        return framesSkipped;
+    }
+
+    @Override
+    public void write(byte[] data) {
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    // No board behind a replay; its name is all there is
+    @Override
+    public String getAddress() {
+        return name;
+    }
+
+    @Override
+    public boolean isLive() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        frames.close();
+    }
+
+    // Encodes the frames that are due into pending; false at end of replay
+    private boolean fill() throws IOException {
+        pendingStart = 0;
+        pendingEnd = 0;
+        int count = 0;
+
+        while (count < FRAMES_PER_PACKET && !closed) {
+            if (heldTimestamp < 0) {
+                if (endOfFrames || (heldTimestamp = frames.next(heldValues)) < 0) {
+                    endOfFrames = true;
+                    break;
+                }
+            }
+
+            long wait = nanosUntilDue(heldTimestamp);
+            if (wait > 0) {
+                if (count > 0) {
+                    // Ship what is due now, keep the rest for the next read
+                    break;
+                }
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+
+            if (hasMissingSample(heldValues)) {
+                // Neither wire format has a field for a gap, and a zero would
+                // replay as a real reading, so the frame is left out
+                framesSkipped++;
+                heldTimestamp = -1;
+                continue;
+            }
+            if (encoding == Encoding.BINARY) {
+                System.arraycopy(heldValues, 0, packetValues, count * channelCount, channelCount);
+            } else {
+                pendingEnd = appendAsciiFrame(heldValues, pendingEnd);
+            }
+            count++;
+            heldTimestamp = -1;
+        }
+
+        if (count > 0 && encoding == Encoding.BINARY) {
+            pendingEnd = packetEncoder.encode(packetValues, count, pending, 0);
+        }
+        return count > 0;
+    }
+
+    private boolean hasMissingSample(double[] values) {
+        for (int c = 0; c < channelCount; c++) {
+            if (Double.isNaN(values[c])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long nanosUntilDue(long timestamp) {
+        if (speed <= AS_FAST_AS_POSSIBLE) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        if (firstTimestamp < 0) {
+            firstTimestamp = timestamp;
+            startNanos = now;
+        }
+        long due = startNanos + (long) ((timestamp - firstTimestamp) / speed);
+        return due - now;
+    }
+
+    // Same text the sketches print: values with two decimals, comma separated, CRLF
+    private int appendAsciiFrame(double[] values, int p) {
+        for (int c = 0; c < channelCount; c++) {
+            if (c > 0) {
+                pending[p++] = ',';
+            }
+            long hundredths = Math.round(values[c] * 100);
+            if (hundredths < 0) {
+                pending[p++] = '-';
+                hundredths = -hundredths;
+            }
+            p = appendDigits(hundredths / 100, p);
+            pending[p++] = '.';
+            long fraction = hundredths % 100;
+            pending[p++] = (byte) ('0' + fraction / 10);
+            pending[p++] = (byte) ('0' + fraction % 10);
+        }
+        pending[p++] = '\r';
+        pending[p++] = '\n';
+        return p;
+    }
+
+    private int appendDigits(long value, int p) {
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        while (divisor > 0) {
+            pending[p++] = (byte) ('0' + (value / divisor) % 10);
+            divisor /= 10;
+        }
+        return p;
+    }
+}
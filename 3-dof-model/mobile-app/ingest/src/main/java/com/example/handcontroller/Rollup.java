@@ -0,0 +1,185 @@
+package com.example.handcontroller;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Summary of a stretch of samples per channel: count, minimum, maximum,
+ * mean, RMS and activations (rises above the upper threshold, with the
+ * lower one to reset). Written by {@link RollupRecorder} for every second,
+ * minute and session and read back by {@link RollupStore}. Immutable.
+ *
+ * Times are wall clock, from the first to the last sample summed up.
+ * Files are big endian:
+ * <pre>
+ * rollup file (.hkr)
+ *   header   magic "HKRL", version
+ *   record*  startMillis, endMillis, layoutMask, channelCount,
+ *            channel* (count, min, max, mean, rms as floats, activations)
+ * </pre>
+ * Records are appended whole; a torn last record (from a crash) is dropped
+ * by the reader.
+ */
+public final class Rollup {
+
+    public static final int FILE_MAGIC = 0x484B524C; // "HKRL"
+    public static final int VERSION = 1;
+    public static final int FILE_HEADER_SIZE = 4 + 4;
+    public static final String FILE_EXTENSION = ".hkr";
+
+    private final long startMillis;
+    private final long endMillis;
+    private final int layoutMask;
+    private final int[] count;
+    private final double[] min;
+    private final double[] max;
+    private final double[] mean;
+    private final double[] rms;
+    private final int[] activations;
+
+    Rollup(long startMillis, long endMillis, int layoutMask, int[] count, double[] min, double[] max,
+           double[] mean, double[] rms, int[] activations) {
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+        this.layoutMask = layoutMask;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.rms = rms;
+        this.activations = activations;
+    }
+
+    public static int recordSize(int channelCount) {
+        return 8 + 8 + 4 + 4 + channelCount * (4 + 4 * 4 + 4);
+    }
+
+    static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(FILE_MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    static void readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != FILE_MAGIC) {
+            throw new IOException("Not a rollup file");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported rollup version " + version);
+        }
+    }
+
+    /** The next record, or null at the end of the file or a torn last record. */
+    static Rollup read(DataInputStream in) throws IOException {
+        try {
+            long startMillis = in.readLong();
+            long endMillis = in.readLong();
+            int layoutMask = in.readInt();
+            int channels = in.readInt();
+            if (channels != Integer.bitCount(layoutMask)) {
+                throw new IOException("Corrupt rollup record");
+            }
+            int[] count = new int[channels];
+            double[] min = new double[channels];
+            double[] max = new double[channels];
+            double[] mean = new double[channels];
+            double[] rms = new double[channels];
+            int[] activations = new int[channels];
+            for (int c = 0; c < channels; c++) {
+                count[c] = in.readInt();
+                min[c] = in.readFloat();
+                max[c] = in.readFloat();
+                mean[c] = in.readFloat();
+                rms[c] = in.readFloat();
+                activations[c] = in.readInt();
+            }
+            return new Rollup(startMillis, endMillis, layoutMask, count, min, max, mean, rms, activations);
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /** This rollup's one board input, or null if it was not in the layout. */
+    public Rollup channel(int deviceChannel) {
+        if ((layoutMask & (1 << deviceChannel)) == 0) {
+            return null;
+        }
+        int c = Integer.bitCount(layoutMask & ((1 << deviceChannel) - 1));
+        return new Rollup(startMillis, endMillis, 1 << deviceChannel, new int[]{count[c]},
+                new double[]{min[c]}, new double[]{max[c]}, new double[]{mean[c]}, new double[]{rms[c]},
+                new int[]{activations[c]});
+    }
+
+    /** Both stretches as one; they must have the same layout. */
+    public Rollup merge(Rollup other) {
+        if (other.layoutMask != layoutMask) {
+            throw new IllegalArgumentException("Rollups of different layouts");
+        }
+        int channels = count.length;
+        int[] mergedCount = new int[channels];
+        double[] mergedMin = new double[channels];
+        double[] mergedMax = new double[channels];
+        double[] mergedMean = new double[channels];
+        double[] mergedRms = new double[channels];
+        int[] mergedActivations = new int[channels];
+        for (int c = 0; c < channels; c++) {
+            int n = count[c] + other.count[c];
+            mergedCount[c] = n;
+            mergedMin[c] = Math.min(min[c], other.min[c]);
+            mergedMax[c] = Math.max(max[c], other.max[c]);
+            if (n > 0) {
+                mergedMean[c] = (mean[c] * count[c] + other.mean[c] * other.count[c]) / n;
+                mergedRms[c] = Math.sqrt((rms[c] * rms[c] * count[c]
+                        + other.rms[c] * other.rms[c] * other.count[c]) / n);
+            }
+            mergedActivations[c] = activations[c] + other.activations[c];
+        }
+        return new Rollup(Math.min(startMillis, other.startMillis), Math.max(endMillis, other.endMillis),
+                layoutMask, mergedCount, mergedMin, mergedMax, mergedMean, mergedRms, mergedActivations);
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    /** {@link ChannelDescriptor#getChannelMask()} of the layout summed up. */
+    public int getLayoutMask() {
+        return layoutMask;
+    }
+
+    public int getChannelCount() {
+        return count.length;
+    }
+
+    public int getCount(int channel) {
+        return count[channel];
+    }
+
+    /** +infinity without samples. */
+    public double getMin(int channel) {
+        return min[channel];
+    }
+
+    /** -infinity without samples. */
+    public double getMax(int channel) {
+        return max[channel];
+    }
+
+    public double getMean(int channel) {
+        return mean[channel];
+    }
+
+    public double getRms(int channel) {
+        return rms[channel];
+    }
+
+    public int getActivations(int channel) {
+        return activations[channel];
+    }
+}
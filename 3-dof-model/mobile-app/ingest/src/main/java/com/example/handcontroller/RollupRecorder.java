@@ -0,0 +1,269 @@
+package com.example.handcontroller;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Rolls one session's frames up as they arrive: a {@link Rollup} for every
+ * wall clock second, every minute and the whole session, so long-term
+ * progress never needs the raw samples. Opened by {@link RollupStore}.
+ *
+ * Each frame is added to the open second only; a finished second is
+ * written and merged into the open minute and the session, and so on up, so
+ * the per-frame cost does not depend on the number of tiers. Second and
+ * minute records go through buffers that are flushed every minute; the
+ * session record is appended on close.
+ *
+ * Producer thread only. A write failure stops the rollups, not the stream.
+ */
+public class RollupRecorder implements Closeable {
+
+    // Sums for one stretch of time, merged upwards
+    private static final class Bucket {
+        long startMillis = Long.MIN_VALUE;
+        long endMillis;
+        final int[] count;
+        final double[] min;
+        final double[] max;
+        final double[] sum;
+        final double[] sumSquares;
+        final int[] activations;
+
+        Bucket(int channels) {
+            count = new int[channels];
+            min = new double[channels];
+            max = new double[channels];
+            sum = new double[channels];
+            sumSquares = new double[channels];
+            activations = new int[channels];
+            reset();
+        }
+
+        boolean isEmpty() {
+            return startMillis == Long.MIN_VALUE;
+        }
+
+        void reset() {
+            startMillis = Long.MIN_VALUE;
+            Arrays.fill(count, 0);
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+            Arrays.fill(sum, 0);
+            Arrays.fill(sumSquares, 0);
+            Arrays.fill(activations, 0);
+        }
+
+        void merge(Bucket other) {
+            if (isEmpty()) {
+                startMillis = other.startMillis;
+            }
+            endMillis = other.endMillis;
+            for (int c = 0; c < count.length; c++) {
+                count[c] += other.count[c];
+                min[c] = Math.min(min[c], other.min[c]);
+                max[c] = Math.max(max[c], other.max[c]);
+                sum[c] += other.sum[c];
+                sumSquares[c] += other.sumSquares[c];
+                activations[c] += other.activations[c];
+            }
+        }
+
+        void write(DataOutputStream out, int layoutMask) throws IOException {
+            out.writeLong(startMillis);
+            out.writeLong(endMillis);
+            out.writeInt(layoutMask);
+            out.writeInt(count.length);
+            for (int c = 0; c < count.length; c++) {
+                int n = count[c];
+                out.writeInt(n);
+                out.writeFloat((float) min[c]);
+                out.writeFloat((float) max[c]);
+                out.writeFloat(n > 0 ? (float) (sum[c] / n) : 0f);
+                out.writeFloat(n > 0 ? (float) Math.sqrt(sumSquares[c] / n) : 0f);
+                out.writeInt(activations[c]);
+            }
+        }
+    }
+
+    private final int layoutMask;
+    private final int channels;
+    private final long wallOffsetMillis;
+    private final File sessionsFile;
+    private DataOutputStream seconds;
+    private DataOutputStream minutes;
+
+    private final Bucket second;
+    private final Bucket minute;
+    private final Bucket session;
+    private long currentSecond = Long.MIN_VALUE;
+    private long currentMinute = Long.MIN_VALUE;
+
+    private final double[] upperThreshold;
+    private final double[] lowerThreshold;
+    private final boolean[] active;
+    private volatile IOException error;
+
+    /**
+     * Rolls frames of this layout up into the given files; frame timestamps
+     * are on the clock that read nowNanos when the wall clock read
+     * wallClockMillis.
+     */
+    RollupRecorder(File secondsFile, File minutesFile, File sessionsFile, ChannelDescriptor layout,
+                   long wallClockMillis, long nowNanos) throws IOException {
+        this.layoutMask = layout.getChannelMask();
+        this.channels = layout.getChannelCount();
+        this.wallOffsetMillis = wallClockMillis - nowNanos / 1_000_000L;
+        this.sessionsFile = sessionsFile;
+        seconds = open(secondsFile);
+        try {
+            minutes = open(minutesFile);
+        } catch (IOException e) {
+            seconds.close();
+            throw e;
+        }
+        second = new Bucket(channels);
+        minute = new Bucket(channels);
+        session = new Bucket(channels);
+        upperThreshold = new double[channels];
+        lowerThreshold = new double[channels];
+        Arrays.fill(upperThreshold, Double.NaN);
+        Arrays.fill(lowerThreshold, Double.NaN);
+        active = new boolean[channels];
+    }
+
+    private static DataOutputStream open(File file) throws IOException {
+        boolean fresh = !file.isFile() || file.length() == 0;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        if (fresh) {
+            Rollup.writeHeader(out);
+        }
+        return out;
+    }
+
+    /** Counts rises above upper, re-armed below lower; without thresholds nothing is counted. */
+    public void setThresholds(int channel, double upper, double lower) {
+        upperThreshold[channel] = upper;
+        lowerThreshold[channel] = lower;
+        active[channel] = false;
+    }
+
+    public void record(long timestampNanos, double[] values, int channelCount) {
+        if (hasFailed()) {
+            return;
+        }
+        long wall = wallOffsetMillis + timestampNanos / 1_000_000L;
+        long secondIndex = Math.floorDiv(wall, 1000L);
+        if (secondIndex != currentSecond) {
+            if (!second.isEmpty()) {
+                closeSecond();
+            }
+            currentSecond = secondIndex;
+        }
+        Bucket bucket = second;
+        if (bucket.isEmpty()) {
+            bucket.startMillis = wall;
+        }
+        bucket.endMillis = wall;
+        int n = Math.min(channelCount, channels);
+        for (int c = 0; c < n; c++) {
+            double value = values[c];
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            bucket.count[c]++;
+            if (value < bucket.min[c]) {
+                bucket.min[c] = value;
+            }
+            if (value > bucket.max[c]) {
+                bucket.max[c] = value;
+            }
+            bucket.sum[c] += value;
+            bucket.sumSquares[c] += value * value;
+            if (active[c]) {
+                if (value < lowerThreshold[c]) {
+                    active[c] = false;
+                }
+            } else if (value > upperThreshold[c]) {
+                active[c] = true;
+                bucket.activations[c]++;
+            }
+        }
+    }
+
+    private void closeSecond() {
+        long minuteIndex = Math.floorDiv(currentSecond, 60L);
+        if (minuteIndex != currentMinute) {
+            if (!minute.isEmpty()) {
+                closeMinute();
+            }
+            currentMinute = minuteIndex;
+        }
+        try {
+            second.write(seconds, layoutMask);
+        } catch (IOException e) {
+            fail(e);
+        }
+        minute.merge(second);
+        session.merge(second);
+        second.reset();
+    }
+
+    private void closeMinute() {
+        try {
+            minute.write(minutes, layoutMask);
+            // Once a minute: whatever the buffers hold reaches the files
+            minutes.flush();
+            seconds.flush();
+        } catch (IOException e) {
+            fail(e);
+        }
+        minute.reset();
+    }
+
+    // The first error stops the rollups; the files keep what was written before it
+    private void fail(IOException e) {
+        if (error == null) {
+            error = e;
+        }
+    }
+
+    /** Writes the open second and minute and the session record, and closes the files. */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!hasFailed()) {
+                if (!second.isEmpty()) {
+                    closeSecond();
+                }
+                if (!minute.isEmpty()) {
+                    closeMinute();
+                }
+                if (!hasFailed() && !session.isEmpty()) {
+                    try (DataOutputStream out = open(sessionsFile)) {
+                        session.write(out, layoutMask);
+                    }
+                }
+            }
+        } finally {
+            try {
+                seconds.close();
+            } finally {
+                minutes.close();
+            }
+        }
+    }
+
+    public boolean hasFailed() {
+        return error != null;
+    }
+
+    /** The write error that stopped the rollups, or null. */
+    public IOException getError() {
+        return error;
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.handcontroller;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Long-term history as tiers of {@link Rollup}s, per board:
+ * <pre>
+ *   root/&lt;device&gt;/seconds/&lt;sessionStartMillis&gt;.hkr   one record a second, kept for a week
+ *   root/&lt;device&gt;/minutes/&lt;sessionStartMillis&gt;.hkr   one record a minute, kept for a year
+ *   root/&lt;device&gt;/sessions.hkr                        one record a session, kept
+ * </pre>
+ * Queries read the coarsest tier that answers them: months of daily trends
+ * come from the session tier, a few hundred records, and take milliseconds
+ * instead of a scan of the raw recordings, which are only kept briefly.
+ *
+ * Recorders write while queries read; a query sees whole records up to the
+ * last flush, and the session tier only has sessions that were closed.
+ */
+public class RollupStore {
+
+    public enum Tier { SECOND, MINUTE, SESSION }
+
+    public static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    public static final long DEFAULT_SECOND_RETENTION_MILLIS = 7 * DAY_MILLIS;
+    public static final long DEFAULT_MINUTE_RETENTION_MILLIS = 365 * DAY_MILLIS;
+
+    private static final String SECONDS_DIR = "seconds";
+    private static final String MINUTES_DIR = "minutes";
+    private static final String SESSIONS_FILE = "sessions" + Rollup.FILE_EXTENSION;
+
+    private final File root;
+
+    public RollupStore(File root) {
+        this.root = root;
+    }
+
+    private File deviceDir(String device) {
+        return new File(root, CalibrationStore.escapeKey(device));
+    }
+
+    /**
+     * Starts the rollups of a session on this board; frame timestamps are on
+     * the clock that read nowNanos when the wall clock read wallClockMillis.
+     */
+    public RollupRecorder openRecorder(String device, ChannelDescriptor layout, long wallClockMillis,
+                                       long nowNanos) throws IOException {
+        File dir = deviceDir(device);
+        File secondsDir = new File(dir, SECONDS_DIR);
+        File minutesDir = new File(dir, MINUTES_DIR);
+        if ((!secondsDir.isDirectory() && !secondsDir.mkdirs())
+                || (!minutesDir.isDirectory() && !minutesDir.mkdirs())) {
+            throw new IOException("Cannot create " + dir);
+        }
+        String name = wallClockMillis + Rollup.FILE_EXTENSION;
+        for (int n = 1; new File(secondsDir, name).exists(); n++) {
+            name = wallClockMillis + "-" + n + Rollup.FILE_EXTENSION;
+        }
+        return new RollupRecorder(new File(secondsDir, name), new File(minutesDir, name),
+                new File(dir, SESSIONS_FILE), layout, wallClockMillis, nowNanos);
+    }
+
+    /** Records of a tier that overlap [fromMillis, toMillis), oldest first. */
+    public List<Rollup> query(String device, Tier tier, long fromMillis, long toMillis) throws IOException {
+        List<Rollup> result = new ArrayList<>();
+        File dir = deviceDir(device);
+        if (tier == Tier.SESSION) {
+            read(new File(dir, SESSIONS_FILE), fromMillis, toMillis, result);
+        } else {
+            File[] files = new File(dir, tier == Tier.SECOND ? SECONDS_DIR : MINUTES_DIR).listFiles();
+            if (files == null) {
+                return result;
+            }
+            Arrays.sort(files, (a, b) -> Long.compare(sessionStart(a), sessionStart(b)));
+            for (File file : files) {
+                // Named by when the session began, and last written when it ended
+                if (sessionStart(file) < toMillis && file.lastModified() >= fromMillis) {
+                    read(file, fromMillis, toMillis, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * One input's session rollups merged per day, for days days from
+     * firstDayMillis (a midnight); null for days without a session.
+     * Sessions count for the day they began.
+     */
+    public Rollup[] daily(String device, int deviceChannel, long firstDayMillis, int days) throws IOException {
+        return daily(query(device, Tier.SESSION, firstDayMillis, firstDayMillis + days * DAY_MILLIS),
+                deviceChannel, firstDayMillis, days);
+    }
+
+    /** As {@link #daily(String, int, long, int)}, for session rollups already read. */
+    public static Rollup[] daily(List<Rollup> sessions, int deviceChannel, long firstDayMillis, int days) {
+        Rollup[] result = new Rollup[days];
+        for (Rollup session : sessions) {
+            long day = Math.floorDiv(session.getStartMillis() - firstDayMillis, DAY_MILLIS);
+            Rollup channel = session.channel(deviceChannel);
+            if (channel == null || day < 0 || day >= days) {
+                continue;
+            }
+            int i = (int) day;
+            result[i] = result[i] == null ? channel : result[i].merge(channel);
+        }
+        return result;
+    }
+
+    private static void read(File file, long fromMillis, long toMillis, List<Rollup> out) throws IOException {
+        if (!file.isFile() || file.length() < Rollup.FILE_HEADER_SIZE) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 16384))) {
+            Rollup.readHeader(in);
+            Rollup rollup;
+            while ((rollup = Rollup.read(in)) != null) {
+                if (rollup.getEndMillis() >= fromMillis && rollup.getStartMillis() < toMillis) {
+                    out.add(rollup);
+                }
+            }
+        }
+    }
+
+    private static long sessionStart(File file) {
+        String name = file.getName();
+        int end = name.indexOf('-');
+        if (end < 0) {
+            end = name.indexOf('.');
+        }
+        try {
+            return Long.parseLong(name.substring(0, Math.max(end, 0)));
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Deletes second and minute files last written before their retention;
+     * returns how many. The session tier is kept.
+     */
+    public int prune(long nowMillis, long secondRetentionMillis, long minuteRetentionMillis) {
+        int deleted = 0;
+        File[] devices = root.listFiles();
+        if (devices == null) {
+            return 0;
+        }
+        for (File dir : devices) {
+            deleted += prune(new File(dir, SECONDS_DIR), nowMillis - secondRetentionMillis);
+            deleted += prune(new File(dir, MINUTES_DIR), nowMillis - minuteRetentionMillis);
+        }
+        return deleted;
+    }
+
+    private static int prune(File dir, long cutoffMillis) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        int deleted = 0;
+        for (File file : files) {
+            if (file.lastModified() < cutoffMillis && file.delete()) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,538 @@
+package com.example.handcontroller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forwards the live stream to a desktop tool, the graph-visualizer's socket
+ * server or anything listening on a plain TCP port. Each batch goes out as
+ * one JSON array of samples, a WebSocket text message for ws:// endpoints
+ * and a line for tcp:// ones:
+ * <pre>
+ *   [{"timestamp":1700000000000,"channel1":412.5,"channel2":87},...]
+ * </pre>
+ * Timestamps are wall clock milliseconds, channels are numbered as the
+ * board's inputs, and a missing value is null.
+ *
+ * The read thread calls {@link #accept}, which only copies the frame into a
+ * preallocated batch. Batches spanning up to {@link #MAX_BATCH_SPAN_NANOS} are
+ * handed to a sender thread through a small pool, as in
+ * {@link SessionRecorder}, so a slow network never stalls Bluetooth ingest.
+ * When batches pile up the forwarder halves its rate instead, sending the
+ * peak of every 2, 4, ... frames per channel (bursts stay visible), and
+ * doubles it again once the sender keeps up. Only if the pool runs dry
+ * regardless are frames dropped and counted. The kernel send buffer is kept
+ * small for the same reason: backlog belongs in the pool, where it is seen.
+ *
+ * Not connecting, or losing the connection, is not an error for the stream:
+ * batches are discarded while the sender retries every
+ * {@link #RETRY_MILLIS}.
+ */
+public class SampleForwarder implements Closeable {
+
+    public static final int DEFAULT_BATCH_FRAMES = 64;
+    public static final int DEFAULT_BATCH_BUFFERS = 8;
+    // A batch goes out after this long even if it is not full; 20 messages a second at most
+    public static final long MAX_BATCH_SPAN_NANOS = 50_000_000L;
+    public static final int MAX_DECIMATION = 64;
+    public static final long RETRY_MILLIS = 1000;
+
+    static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    static final int SEND_BUFFER_BYTES = 16 * 1024;
+    private static final int VALUE_DECIMALS = 3;
+    // {"timestamp":<13 digits>, then ,"channelNN":<value> per channel
+    private static final int ROW_CHARS = 32;
+    private static final int COLUMN_CHARS = 48;
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    /** Where to forward to: ws://host:port/path or tcp://host:port. */
+    public static final class Endpoint {
+        final boolean webSocket;
+        final String host;
+        final int port;
+        final String path;
+
+        private Endpoint(boolean webSocket, String host, int port, String path) {
+            this.webSocket = webSocket;
+            this.host = host;
+            this.port = port;
+            this.path = path;
+        }
+
+        /** Throws IllegalArgumentException for anything but a ws:// or tcp:// address with a host. */
+        public static Endpoint parse(String address) {
+            URI uri;
+            try {
+                uri = new URI(address.trim());
+            } catch (URISyntaxException e) {
+                throw new IllegalArgumentException("Invalid endpoint " + address, e);
+            }
+            String scheme = uri.getScheme();
+            boolean webSocket = "ws".equalsIgnoreCase(scheme);
+            if ((!webSocket && !"tcp".equalsIgnoreCase(scheme)) || uri.getHost() == null) {
+                throw new IllegalArgumentException("Expected ws://host:port or tcp://host:port, got " + address);
+            }
+            int port = uri.getPort();
+            if (port < 0) {
+                if (!webSocket) {
+                    throw new IllegalArgumentException("tcp:// endpoints need a port: " + address);
+                }
+                port = 80;
+            }
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            if (uri.getRawQuery() != null) {
+                path += "?" + uri.getRawQuery();
+            }
+            return new Endpoint(webSocket, uri.getHost(), port, path);
+        }
+
+        @Override
+        public String toString() {
+            return (webSocket ? "ws://" : "tcp://") + host + ":" + port + (webSocket ? path : "");
+        }
+    }
+
+    private static final class Batch {
+        final long[] timestamps;
+        final double[] values;
+        ChannelDescriptor descriptor;
+        int frames;
+
+        Batch(int frames, int maxChannels) {
+            timestamps = new long[frames];
+            values = new double[frames * maxChannels];
+        }
+    }
+
+    private static final Batch END_OF_STREAM = new Batch(0, 0);
+
+    private final Endpoint endpoint;
+    private final int maxChannels;
+    private final int batchFrames;
+    private final long wallOffsetMillis;
+    private final BlockingQueue<Batch> freeBatches;
+    private final BlockingQueue<Batch> pendingBatches;
+    private final int backlogLimit;
+
+    // Producer state
+    private Batch current;
+    private ChannelDescriptor currentDescriptor;
+    private final double[] peak;
+    private int peakFrames;
+    private volatile int decimation = 1;
+    private volatile boolean closed;
+
+    // Sender state
+    private final TextBuffer text;
+    private final byte[] frame;
+    private final Random maskRandom = new Random();
+    private volatile Socket socket;
+    private OutputStream out;
+    private InputStream in;
+
+    private volatile long framesForwarded;
+    private volatile long framesDropped;
+    private volatile long batchesSent;
+    private volatile boolean connected;
+
+    /**
+     * Starts the sender, which connects in the background; frame timestamps
+     * are on the clock that read nowNanos when the wall clock read
+     * wallClockMillis.
+     */
+    public SampleForwarder(Endpoint endpoint, int maxChannels, long wallClockMillis, long nowNanos) {
+        this(endpoint, maxChannels, wallClockMillis, nowNanos, DEFAULT_BATCH_FRAMES, DEFAULT_BATCH_BUFFERS);
+    }
+
+    public SampleForwarder(Endpoint endpoint, int maxChannels, long wallClockMillis, long nowNanos,
+                           int batchFrames, int batchBuffers) {
+        this.endpoint = endpoint;
+        this.maxChannels = maxChannels;
+        this.batchFrames = batchFrames;
+        this.wallOffsetMillis = wallClockMillis - nowNanos / 1_000_000L;
+        this.freeBatches = new ArrayBlockingQueue<>(batchBuffers);
+        this.pendingBatches = new ArrayBlockingQueue<>(batchBuffers + 1);
+        for (int i = 0; i < batchBuffers; i++) {
+            freeBatches.add(new Batch(batchFrames, maxChannels));
+        }
+        // Half the pool waiting is the cue to send less
+        this.backlogLimit = Math.max(1, batchBuffers / 2);
+        this.peak = new double[maxChannels];
+        this.text = new TextBuffer(2 + batchFrames * (ROW_CHARS + maxChannels * COLUMN_CHARS));
+        this.frame = new byte[14 + text.remaining()];
+
+        new Thread(this::sendLoop, "SampleForwarder").start();
+    }
+
+    public Endpoint getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Producer side, with every queued frame (filtered and resampled, as
+     * plotted). Never blocks.
+     */
+    public void accept(ChannelDescriptor descriptor, long timestamp, double[] values, int channelCount) {
+        if (closed) {
+            return;
+        }
+        if (descriptor != currentDescriptor && !descriptor.equals(currentDescriptor)) {
+            // A batch carries one layout
+            seal();
+            currentDescriptor = descriptor;
+            peakFrames = 0;
+        }
+        int n = Math.min(Math.min(channelCount, descriptor.getChannelCount()), maxChannels);
+        if (peakFrames == 0) {
+            Arrays.fill(peak, Double.NaN);
+        }
+        for (int c = 0; c < n; c++) {
+            double value = values[c];
+            if (Double.isNaN(peak[c]) || Math.abs(value) > Math.abs(peak[c])) {
+                peak[c] = value;
+            }
+        }
+        if (++peakFrames < decimation) {
+            return;
+        }
+        int frames = peakFrames;
+        peakFrames = 0;
+
+        if (current != null && timestamp - current.timestamps[0] >= MAX_BATCH_SPAN_NANOS) {
+            seal();
+        }
+        if (current == null) {
+            current = freeBatches.poll();
+            if (current == null) {
+                framesDropped += frames;
+                // Nothing is sealed while the pool is dry, so back off here too
+                if (decimation < MAX_DECIMATION) {
+                    decimation *= 2;
+                }
+                return;
+            }
+            current.descriptor = descriptor;
+            current.frames = 0;
+        }
+        Batch batch = current;
+        batch.timestamps[batch.frames] = timestamp;
+        System.arraycopy(peak, 0, batch.values, batch.frames * maxChannels, maxChannels);
+        batch.frames++;
+        framesForwarded += frames;
+
+        if (batch.frames == batchFrames) {
+            seal();
+        }
+    }
+
+    private void seal() {
+        Batch batch = current;
+        current = null;
+        if (batch == null) {
+            return;
+        }
+        if (batch.frames == 0) {
+            freeBatches.add(batch);
+            return;
+        }
+        // pendingBatches has room for every buffer, so this never blocks
+        pendingBatches.add(batch);
+        int backlog = pendingBatches.size();
+        if (backlog > backlogLimit && decimation < MAX_DECIMATION) {
+            decimation *= 2;
+        } else if (backlog <= 1 && decimation > 1) {
+            decimation /= 2;
+        }
+    }
+
+    /**
+     * Stops the sender and drops the connection without waiting for it;
+     * whatever was still queued is discarded. Any thread.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pendingBatches.offer(END_OF_STREAM);
+        // Unblocks a write stuck on a stalled connection
+        disconnect();
+    }
+
+    /** Current rate: 1 sends every frame, n the peak of every n. */
+    public int getDecimation() {
+        return decimation;
+    }
+
+    /** Frames taken into batches, counting the ones folded into a peak. */
+    public long getFramesForwarded() {
+        return framesForwarded;
+    }
+
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+
+    public long getBatchesSent() {
+        return batchesSent;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    private void sendLoop() {
+        while (!closed) {
+            if (socket == null && !connect()) {
+                if (!discardFor(RETRY_MILLIS)) {
+                    return;
+                }
+                continue;
+            }
+            Batch batch;
+            try {
+                batch = pendingBatches.poll(RETRY_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (batch == END_OF_STREAM) {
+                break;
+            }
+            try {
+                skipIncoming();
+                if (batch != null) {
+                    send(batch);
+                    batchesSent++;
+                }
+            } catch (IOException e) {
+                disconnect();
+            } finally {
+                if (batch != null) {
+                    freeBatches.add(batch);
+                }
+            }
+        }
+        disconnect();
+    }
+
+    // While not connected: keep the pool flowing so the producer never runs dry for nothing
+    private boolean discardFor(long millis) {
+        long deadline = System.nanoTime() + millis * 1_000_000L;
+        long left;
+        while ((left = deadline - System.nanoTime()) > 0) {
+            Batch batch;
+            try {
+                batch = pendingBatches.poll(left, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                return false;
+            }
+            if (batch == END_OF_STREAM) {
+                return false;
+            }
+            if (batch != null) {
+                freeBatches.add(batch);
+            }
+        }
+        return !closed;
+    }
+
+    private boolean connect() {
+        Socket s = new Socket();
+        try {
+            s.setTcpNoDelay(true);
+            s.setSendBufferSize(SEND_BUFFER_BYTES);
+            s.connect(new InetSocketAddress(endpoint.host, endpoint.port), CONNECT_TIMEOUT_MILLIS);
+            socket = s;
+            if (closed) {
+                // close() ran before the socket was there to close
+                disconnect();
+                return false;
+            }
+            out = s.getOutputStream();
+            in = s.getInputStream();
+            if (endpoint.webSocket) {
+                s.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+                handshake();
+                s.setSoTimeout(0);
+            }
+            connected = true;
+            return true;
+        } catch (IOException e) {
+            disconnect();
+            try {
+                s.close();
+            } catch (IOException ignored) {
+            }
+            return false;
+        }
+    }
+
+    private void disconnect() {
+        connected = false;
+        Socket s = socket;
+        socket = null;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void handshake() throws IOException {
+        byte[] nonce = new byte[16];
+        new SecureRandom().nextBytes(nonce);
+        String key = base64(nonce);
+        String request = "GET " + endpoint.path + " HTTP/1.1\r\n"
+                + "Host: " + endpoint.host + ":" + endpoint.port + "\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: " + key + "\r\n"
+                + "Sec-WebSocket-Version: 13\r\n\r\n";
+        out.write(request.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+
+        String response = readHeaders(in);
+        if (!response.startsWith("HTTP/1.1 101")) {
+            throw new IOException("WebSocket upgrade refused: " + response.split("\r\n", 2)[0]);
+        }
+        String accept = acceptKey(key);
+        for (String line : response.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Accept")
+                    && line.substring(colon + 1).trim().equals(accept)) {
+                return;
+            }
+        }
+        throw new IOException("WebSocket upgrade without a valid accept key");
+    }
+
+    // Up to the blank line; byte by byte, so nothing after it is consumed
+    static String readHeaders(InputStream in) throws IOException {
+        StringBuilder headers = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            headers.append((char) b);
+            int n = headers.length();
+            if (n >= 4 && headers.charAt(n - 4) == '\r' && headers.charAt(n - 3) == '\n'
+                    && headers.charAt(n - 2) == '\r' && headers.charAt(n - 1) == '\n') {
+                return headers.toString();
+            }
+            if (n > 8192) {
+                throw new IOException("Headers too long");
+            }
+        }
+        throw new IOException("Connection closed during handshake");
+    }
+
+    static String acceptKey(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            return base64(sha1.digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // java.util.Base64 is API 26; this is only ever a handful of bytes
+    static String base64(byte[] data) {
+        final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        StringBuilder out = new StringBuilder((data.length + 2) / 3 * 4);
+        for (int i = 0; i < data.length; i += 3) {
+            int n = (data[i] & 0xFF) << 16;
+            if (i + 1 < data.length) {
+                n |= (data[i + 1] & 0xFF) << 8;
+            }
+            if (i + 2 < data.length) {
+                n |= data[i + 2] & 0xFF;
+            }
+            out.append(alphabet.charAt(n >> 18 & 63)).append(alphabet.charAt(n >> 12 & 63));
+            out.append(i + 1 < data.length ? alphabet.charAt(n >> 6 & 63) : '=');
+            out.append(i + 2 < data.length ? alphabet.charAt(n & 63) : '=');
+        }
+        return out.toString();
+    }
+
+    // The visualizer's server talks back (demo data, pings); nothing here needs it
+    private void skipIncoming() throws IOException {
+        int available = in.available();
+        if (available > 0) {
+            in.skip(available);
+        }
+    }
+
+    private void send(Batch batch) throws IOException {
+        format(batch);
+        if (!endpoint.webSocket) {
+            text.append('\n');
+            out.write(text.array(), 0, text.length());
+            return;
+        }
+
+        // One masked text frame, as clients must send
+        int length = text.length();
+        int header = 0;
+        frame[header++] = (byte) 0x81;
+        if (length < 126) {
+            frame[header++] = (byte) (0x80 | length);
+        } else if (length < 65536) {
+            frame[header++] = (byte) (0x80 | 126);
+            frame[header++] = (byte) (length >> 8);
+            frame[header++] = (byte) length;
+        } else {
+            frame[header++] = (byte) (0x80 | 127);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                frame[header++] = (byte) ((long) length >> shift);
+            }
+        }
+        int mask = maskRandom.nextInt();
+        for (int i = 0; i < 4; i++) {
+            frame[header++] = (byte) (mask >> (24 - 8 * i));
+        }
+        byte[] payload = text.array();
+        for (int i = 0; i < length; i++) {
+            frame[header + i] = (byte) (payload[i] ^ frame[header - 4 + (i & 3)]);
+        }
+        out.write(frame, 0, header + length);
+    }
+
+    private void format(Batch batch) {
+        ChannelDescriptor descriptor = batch.descriptor;
+        int channels = Math.min(descriptor.getChannelCount(), maxChannels);
+        text.clear();
+        text.append('[');
+        for (int i = 0; i < batch.frames; i++) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append("{\"timestamp\":").append(wallOffsetMillis + batch.timestamps[i] / 1_000_000L);
+            for (int c = 0; c < channels; c++) {
+                text.append(",\"channel").append(descriptor.getDeviceChannel(c) + 1).append("\":");
+                double value = batch.values[i * maxChannels + c];
+                if (Double.isNaN(value) || Double.isInfinite(value)) {
+                    text.append("null");
+                } else {
+                    text.appendFixed(value, VALUE_DECIMALS);
+                }
+            }
+            text.append('}');
+        }
+        text.append(']');
+    }
+}
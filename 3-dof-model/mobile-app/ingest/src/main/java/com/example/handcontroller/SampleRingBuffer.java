@@ -0,0 +1,228 @@
+package com.example.handcontroller;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded single-producer/single-consumer hand-off between the Bluetooth read
+ * thread and the UI thread, backed by primitive arrays.
+ *
+ * Each slot holds one frame as a per-channel min and max (equal for a plain
+ * sample) plus the frame timestamp and the time it was queued. Values are stored channel-major (one
+ * contiguous plane per channel), and drained the same way, so the consumer
+ * walks each channel sequentially whatever the channel count. When the UI falls behind, the
+ * {@link OverflowPolicy} decides what happens instead of the queue growing:
+ * DROP_OLDEST overwrites the oldest unread frame, AGGREGATE_MIN_MAX folds new
+ * samples into one pending slot that is published as soon as there is room.
+ */
+public class SampleRingBuffer {
+
+    public enum OverflowPolicy { DROP_OLDEST, AGGREGATE_MIN_MAX }
+
+    private final int capacity;
+    private final int mask;
+    private final int channels;
+    private final OverflowPolicy policy;
+
+    private final double[] minValues;
+    private final double[] maxValues;
+    private final long[] timestamps;
+    private final long[] queuedTimes;
+
+    // head = next slot to read, tail = next slot to write. Only the producer
+    // writes tail; head is advanced by the consumer and, for DROP_OLDEST, by the producer.
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    // Producer side aggregate used while the buffer is full (AGGREGATE_MIN_MAX)
+    private final double[] pendingMin;
+    private final double[] pendingMax;
+    private long pendingTimestamp;
+    private long pendingQueued;
+    private int pendingSamples;
+
+    private volatile long droppedSamples;
+    private volatile long coalescedSamples;
+
+    public SampleRingBuffer(int capacity, int channels, OverflowPolicy policy) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two >= 2");
+        }
+        if (channels <= 0) {
+            throw new IllegalArgumentException("channels must be positive");
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.channels = channels;
+        this.policy = policy;
+        this.minValues = new double[channels * capacity];
+        this.maxValues = new double[channels * capacity];
+        this.timestamps = new long[capacity];
+        this.queuedTimes = new long[capacity];
+        this.pendingMin = new double[channels];
+        this.pendingMax = new double[channels];
+    }
+
+    /**
+     * Producer side. Channels beyond channelCount are stored as NaN. The frame
+     * counts as queued at timestampNanos.
+     */
+    public void offer(long timestampNanos, double[] values, int channelCount) {
+        offer(timestampNanos, timestampNanos, values, channelCount);
+    }
+
+    /**
+     * Producer side. timestampNanos is carried along for plotting; queuedNanos
+     * is the local clock at hand-off, so the consumer can tell how long the
+     * frame waited. A coalesced slot keeps the queue time of its first sample.
+     */
+    public void offer(long timestampNanos, long queuedNanos, double[] values, int channelCount) {
+        if (pendingSamples > 0 && !publishPending()) {
+            foldIntoPending(values, channelCount);
+            return;
+        }
+
+        long t = tail.get();
+        if (t - head.get() >= capacity) {
+            if (policy == OverflowPolicy.AGGREGATE_MIN_MAX) {
+                pendingTimestamp = timestampNanos;
+                pendingQueued = queuedNanos;
+                for (int c = 0; c < channels; c++) {
+                    pendingMin[c] = Double.POSITIVE_INFINITY;
+                    pendingMax[c] = Double.NEGATIVE_INFINITY;
+                }
+                foldIntoPending(values, channelCount);
+                return;
+            }
+            // Reclaim the oldest slot unless the consumer freed one meanwhile
+            long h = head.get();
+            if (t - h >= capacity && head.compareAndSet(h, h + 1)) {
+                droppedSamples++;
+            }
+        }
+
+        int slot = (int) (t & mask);
+        for (int c = 0; c < channels; c++) {
+            double v = c < channelCount ? values[c] : Double.NaN;
+            minValues[c * capacity + slot] = v;
+            maxValues[c * capacity + slot] = v;
+        }
+        timestamps[slot] = timestampNanos;
+        queuedTimes[slot] = queuedNanos;
+        tail.lazySet(t + 1);
+    }
+
+    /**
+     * Consumer side. Copies up to maxFrames frames into the output arrays and
+     * returns how many were copied. minOut/maxOut are channel-major: frame i of
+     * channel c is at {@code c * maxFrames + i}, so they need
+     * {@link #getChannels()} * maxFrames elements.
+     */
+    public int drainTo(long[] timestampOut, double[] minOut, double[] maxOut, int maxFrames) {
+        return drainTo(timestampOut, null, minOut, maxOut, maxFrames);
+    }
+
+    /**
+     * Consumer side. As {@link #drainTo(long[], double[], double[], int)}, also
+     * copying each frame's queue time into queuedOut unless it is null.
+     */
+    public int drainTo(long[] timestampOut, long[] queuedOut, double[] minOut, double[] maxOut,
+                       int maxFrames) {
+        while (true) {
+            long h = head.get();
+            long available = tail.get() - h;
+            int n = (int) Math.min(available, maxFrames);
+            if (n <= 0) {
+                return 0;
+            }
+
+            // At most two contiguous runs per plane, where the ring wraps
+            int first = (int) (h & mask);
+            int firstRun = Math.min(n, capacity - first);
+            System.arraycopy(timestamps, first, timestampOut, 0, firstRun);
+            System.arraycopy(timestamps, 0, timestampOut, firstRun, n - firstRun);
+            if (queuedOut != null) {
+                System.arraycopy(queuedTimes, first, queuedOut, 0, firstRun);
+                System.arraycopy(queuedTimes, 0, queuedOut, firstRun, n - firstRun);
+            }
+            for (int c = 0; c < channels; c++) {
+                int plane = c * capacity;
+                int out = c * maxFrames;
+                System.arraycopy(minValues, plane + first, minOut, out, firstRun);
+                System.arraycopy(minValues, plane, minOut, out + firstRun, n - firstRun);
+                System.arraycopy(maxValues, plane + first, maxOut, out, firstRun);
+                System.arraycopy(maxValues, plane, maxOut, out + firstRun, n - firstRun);
+            }
+
+            // A failed CAS means the producer dropped slots under us; copy again
+            if (head.compareAndSet(h, h + n)) {
+                return n;
+            }
+        }
+    }
+
+    /**
+     * Consumer side. Timestamp of the oldest queued frame, or Long.MAX_VALUE
+     * when there is none.
+     */
+    public long peekTimestamp() {
+        long h = head.get();
+        if (tail.get() == h) {
+            return Long.MAX_VALUE;
+        }
+        return timestamps[(int) (h & mask)];
+    }
+
+    public int size() {
+        return (int) Math.min(capacity, tail.get() - head.get());
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    public long getDroppedSamples() {
+        return droppedSamples;
+    }
+
+    public long getCoalescedSamples() {
+        return coalescedSamples;
+    }
+
+    private void foldIntoPending(double[] values, int channelCount) {
+        for (int c = 0; c < channels; c++) {
+            double v = c < channelCount ? values[c] : Double.NaN;
+            if (v < pendingMin[c]) pendingMin[c] = v;
+            if (v > pendingMax[c]) pendingMax[c] = v;
+        }
+        if (pendingSamples > 0) {
+            coalescedSamples++;
+        }
+        pendingSamples++;
+    }
+
+    private boolean publishPending() {
+        long t = tail.get();
+        if (t - head.get() >= capacity) {
+            return false;
+        }
+        int slot = (int) (t & mask);
+        for (int c = 0; c < channels; c++) {
+            boolean empty = pendingMin[c] > pendingMax[c];
+            minValues[c * capacity + slot] = empty ? Double.NaN : pendingMin[c];
+            maxValues[c * capacity + slot] = empty ? Double.NaN : pendingMax[c];
+        }
+        timestamps[slot] = pendingTimestamp;
+        queuedTimes[slot] = pendingQueued;
+        pendingSamples = 0;
+        tail.lazySet(t + 1);
+        return true;
+    }
+}
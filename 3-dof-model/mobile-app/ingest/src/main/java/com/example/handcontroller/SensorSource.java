@@ -0,0 +1,30 @@
+package com.example.handcontroller;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A stream of bytes from a sensor board, live or replayed. Everything behind
+ * it (frame decoding, hand-off, graphs) is the same for every source.
+ */
+public interface SensorSource extends Closeable {
+
+    // Blocks until the source is ready to deliver bytes
+    void open() throws IOException;
+
+    // Same contract as InputStream.read: blocks, returns -1 at end of stream
+    int read(byte[] buffer, int offset, int length) throws IOException;
+
+    // Bytes for the device, e.g. the protocol handshake; replays ignore them
+    void write(byte[] data) throws IOException;
+
+    // For display; may be shared by several boards
+    String getName();
+
+    // Stable and unique per board (the Bluetooth address), never null; keys
+    // what is stored per board, such as calibrations and rollups
+    String getAddress();
+
+    // Live sources are recorded, replays are not
+    boolean isLive();
+}
@@ -0,0 +1,92 @@
+package com.example.handcontroller;
+
+/**
+ * Fixed-capacity time series kept in preallocated primitive ring buffers.
+ *
+ * Appends are O(1) and allocate nothing; once full the oldest point is
+ * overwritten. Index 0 is always the oldest retained point. Meant to be used
+ * from a single thread (the UI thread that also draws it).
+ */
+public class SeriesBuffer {
+
+    private final long[] timestamps;
+    private final double[] values;
+    private int start;
+    private int size;
+
+    public SeriesBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.timestamps = new long[capacity];
+        this.values = new double[capacity];
+    }
+
+    public void append(long timestampNanos, double value) {
+        int capacity = values.length;
+        int index = start + size;
+        if (index >= capacity) {
+            index -= capacity;
+        }
+        timestamps[index] = timestampNanos;
+        values[index] = value;
+
+        if (size < capacity) {
+            size++;
+        } else if (++start == capacity) {
+            start = 0;
+        }
+    }
+
+    public void clear() {
+        start = 0;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return values.length;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getTimestamp(int i) {
+        return timestamps[physical(i)];
+    }
+
+    public double getValue(int i) {
+        return values[physical(i)];
+    }
+
+    public long getNewestTimestamp() {
+        return size == 0 ? 0 : timestamps[physical(size - 1)];
+    }
+
+    /**
+     * Index of the first point with timestamp >= fromNanos, or size() if there is none.
+     * Timestamps are expected to be non-decreasing, so this is a binary search.
+     */
+    public int indexAtOrAfter(long fromNanos) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (timestamps[physical(mid)] < fromNanos) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int physical(int i) {
+        int index = start + i;
+        return index >= values.length ? index - values.length : index;
+    }
+}
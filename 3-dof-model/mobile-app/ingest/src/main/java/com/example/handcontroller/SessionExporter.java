@@ -0,0 +1,202 @@
+package com.example.handcontroller;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a recorded session for desktop tools, gzip compressed, either as
+ * CSV or in a columnar layout that numpy reads without parsing.
+ *
+ * The session is read one chunk at a time into buffers sized for the
+ * largest chunk, and formatted into one reused byte buffer, so memory use
+ * does not depend on the session length. Numbers are formatted by hand:
+ * String.format per value would dominate an hour of 1 kHz samples.
+ *
+ * CSV: a header row "time_s,channel_1,..." naming each column after its
+ * board input (1-based, from the chunk channel masks), then one row per
+ * sample, time in seconds from the first sample and an empty field for a
+ * missing value.
+ *
+ * Columnar (.hkc), little endian, all of it inside the gzip stream:
+ * <pre>
+ *   header  magic "HKCL", version, channelCount, startWallClockMillis,
+ *           firstTimestampNanos
+ *   block*  sampleCount, int64 timestamp delta per sample (from the
+ *           previous sample, the first from firstTimestampNanos),
+ *           then per channel a float32 column of sampleCount values
+ * </pre>
+ * On the resampled grid the deltas are all the same, which gzip reduces to
+ * almost nothing. plotter/load_session.py reads both formats.
+ */
+public class SessionExporter {
+
+    public enum Format {
+        CSV_GZIP(".csv.gz", "application/gzip"),
+        COLUMNAR(".hkc", "application/octet-stream");
+
+        private final String extension;
+        private final String mimeType;
+
+        Format(String extension, String mimeType) {
+            this.extension = extension;
+            this.mimeType = mimeType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+    }
+
+    /** Called after every chunk; return false to stop the export. */
+    public interface Progress {
+        boolean onProgress(long samplesWritten, long totalSamples);
+    }
+
+    public static final int COLUMNAR_MAGIC = 0x4C434B48; // "HKCL" as little endian bytes
+    public static final int COLUMNAR_VERSION = 1;
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    // Fast compression: the export is bounded by deflate, and level 1 still shrinks EMG well
+    private static final int COMPRESSION_LEVEL = Deflater.BEST_SPEED;
+    private static final int CSV_DECIMALS = 3;
+    private static final int TEXT_BUFFER_SIZE = 64 * 1024;
+    private static final int ROW_COLUMN_CHARS = 32;
+
+    private SessionExporter() {
+    }
+
+    /**
+     * Writes the whole session to out (which is not closed) and returns the
+     * number of samples written, fewer if progress stopped it.
+     */
+    public static long export(SessionReader reader, Format format, OutputStream out, Progress progress)
+            throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(new NonClosingOutputStream(out), GZIP_BUFFER_SIZE) {
+            {
+                def.setLevel(COMPRESSION_LEVEL);
+            }
+        };
+        long written;
+        try {
+            written = format == Format.CSV_GZIP
+                    ? writeCsv(reader, gzip, progress)
+                    : writeColumnar(reader, gzip, progress);
+        } finally {
+            gzip.close();
+        }
+        return written;
+    }
+
+    private static long writeCsv(SessionReader reader, OutputStream out, Progress progress) throws IOException {
+        int channels = reader.getChannelCount();
+        int maxSamples = reader.getMaxChunkSampleCount();
+        long[] timestamps = new long[maxSamples];
+        float[] values = new float[maxSamples * channels];
+        // Handed to gzip whenever less than a row is left; a value is at most ~25 characters
+        int maxRow = ROW_COLUMN_CHARS * (channels + 1);
+        TextBuffer text = new TextBuffer(Math.max(TEXT_BUFFER_SIZE, 4 * maxRow));
+
+        // Columns are named after the board inputs (1-based), as the graphs are
+        ChannelDescriptor layout = reader.getLayout();
+        text.append("time_s");
+        for (int c = 0; c < channels; c++) {
+            text.append(",channel_").append((layout != null ? layout.getDeviceChannel(c) : c) + 1);
+        }
+        text.append('\n');
+
+        long first = reader.getChunkCount() > 0 ? reader.getChunkFirstTimestamp(0) : 0;
+        long written = 0;
+        for (int chunk = 0; chunk < reader.getChunkCount(); chunk++) {
+            int samples = reader.readChunk(chunk, timestamps, values);
+            int v = 0;
+            for (int i = 0; i < samples; i++) {
+                if (text.remaining() < maxRow) {
+                    text.writeTo(out);
+                }
+                text.appendFixed((timestamps[i] - first) / 1e9, 6);
+                for (int c = 0; c < channels; c++) {
+                    text.append(',');
+                    float value = values[v++];
+                    if (!Float.isNaN(value)) {
+                        text.appendFixed(value, CSV_DECIMALS);
+                    }
+                }
+                text.append('\n');
+            }
+            written += samples;
+            if (progress != null && !progress.onProgress(written, reader.getTotalSamples())) {
+                break;
+            }
+        }
+        text.writeTo(out);
+        return written;
+    }
+
+    private static long writeColumnar(SessionReader reader, OutputStream out, Progress progress)
+            throws IOException {
+        int channels = reader.getChannelCount();
+        int maxSamples = reader.getMaxChunkSampleCount();
+        long[] timestamps = new long[maxSamples];
+        float[] values = new float[maxSamples * channels];
+        ByteBuffer block = ByteBuffer.allocate(4 + maxSamples * (8 + 4 * channels)).order(ByteOrder.LITTLE_ENDIAN);
+
+        long first = reader.getChunkCount() > 0 ? reader.getChunkFirstTimestamp(0) : 0;
+        ByteBuffer header = ByteBuffer.allocate(4 + 4 + 4 + 8 + 8).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(COLUMNAR_MAGIC)
+                .putInt(COLUMNAR_VERSION)
+                .putInt(channels)
+                .putLong(reader.getStartWallClockMillis())
+                .putLong(first);
+        out.write(header.array(), 0, header.position());
+
+        long previous = first;
+        long written = 0;
+        for (int chunk = 0; chunk < reader.getChunkCount(); chunk++) {
+            int samples = reader.readChunk(chunk, timestamps, values);
+            block.clear();
+            block.putInt(samples);
+            for (int i = 0; i < samples; i++) {
+                block.putLong(timestamps[i] - previous);
+                previous = timestamps[i];
+            }
+            // Interleaved per sample in the session, one column per channel here
+            for (int c = 0; c < channels; c++) {
+                for (int i = 0, v = c; i < samples; i++, v += channels) {
+                    block.putFloat(values[v]);
+                }
+            }
+            out.write(block.array(), 0, block.position());
+            written += samples;
+            if (progress != null && !progress.onProgress(written, reader.getTotalSamples())) {
+                break;
+            }
+        }
+        return written;
+    }
+
+    // The gzip trailer has to be written without closing the caller's stream
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
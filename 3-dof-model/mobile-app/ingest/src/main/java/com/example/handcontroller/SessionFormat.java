@@ -0,0 +1,45 @@
+package com.example.handcontroller;
+
+/**
+ * On-disk layout of a recorded session, written by {@link SessionRecorder} and
+ * read back by {@link SessionReader}. All fields are big endian.
+ *
+ * <pre>
+ * session file (.hks)
+ *   header   magic "HKSR", version, channelCount, startWallClockMillis
+ *   chunk*   magic "CHNK", firstTimestampNanos, lastTimestampNanos, channelMask,
+ *            sampleCount, payloadLength, payloadCrc32, payload
+ *            payload = sampleCount x (timestampNanos, float per channel)
+ *
+ * index file (.hks.idx)
+ *   entry*   chunkOffset, firstTimestampNanos, lastTimestampNanos, channelMask, sampleCount
+ * </pre>
+ *
+ * A chunk's channelMask has bit n set for board input n when a channel from
+ * that input is present in the chunk, as in {@link ChannelDescriptor#getChannelMask()};
+ * the payload holds channelCount values per sample in input order.
+ *
+ * The file is append-only and a chunk is only indexed after it has been
+ * written and forced to disk, so a crash can at worst leave a torn last
+ * chunk, which the reader detects by its CRC and ignores.
+ */
+public final class SessionFormat {
+
+    public static final int FILE_MAGIC = 0x484B5352; // "HKSR"
+    public static final int CHUNK_MAGIC = 0x43484E4B; // "CHNK"
+    public static final int VERSION = 1;
+
+    public static final int FILE_HEADER_SIZE = 4 + 4 + 4 + 8;
+    public static final int CHUNK_HEADER_SIZE = 4 + 8 + 8 + 4 + 4 + 4 + 4;
+    public static final int INDEX_ENTRY_SIZE = 8 + 8 + 8 + 4 + 4;
+
+    public static final String FILE_EXTENSION = ".hks";
+    public static final String INDEX_EXTENSION = ".idx";
+
+    private SessionFormat() {
+    }
+
+    public static int frameSize(int channelCount) {
+        return 8 + 4 * channelCount;
+    }
+}
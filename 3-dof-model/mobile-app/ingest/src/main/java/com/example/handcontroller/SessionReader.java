@@ -0,0 +1,259 @@
+package com.example.handcontroller;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a session written by {@link SessionRecorder} chunk by chunk.
+ *
+ * The chunk table comes from the index file; chunks written after the last
+ * index entry (the app died between the two writes) are found by scanning,
+ * and a torn or corrupt tail chunk is left out. Reading a chunk reuses one
+ * buffer, so memory use does not depend on the session length.
+ */
+public class SessionReader implements Closeable {
+
+    private final FileChannel channel;
+    private final int channelCount;
+    private final long startWallClockMillis;
+
+    // Chunk table as parallel primitive arrays
+    private long[] chunkOffsets = new long[16];
+    private long[] chunkFirstTimestamps = new long[16];
+    private long[] chunkLastTimestamps = new long[16];
+    private int[] chunkChannelMasks = new int[16];
+    private int[] chunkSampleCounts = new int[16];
+    private int chunkCount;
+    private long totalSamples;
+
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer chunkHeader = ByteBuffer.allocate(SessionFormat.CHUNK_HEADER_SIZE);
+    private ByteBuffer chunkBuffer = ByteBuffer.allocate(SessionFormat.CHUNK_HEADER_SIZE);
+
+    public SessionReader(File file) throws IOException {
+        channel = new RandomAccessFile(file, "r").getChannel();
+        try {
+            ByteBuffer header = ByteBuffer.allocate(SessionFormat.FILE_HEADER_SIZE);
+            readFully(header, 0);
+            header.flip();
+            if (header.getInt() != SessionFormat.FILE_MAGIC) {
+                throw new IOException("Not a session file: " + file);
+            }
+            int version = header.getInt();
+            if (version != SessionFormat.VERSION) {
+                throw new IOException("Unsupported session version " + version);
+            }
+            channelCount = header.getInt();
+            startWallClockMillis = header.getLong();
+
+            long next = loadIndex(new File(file.getPath() + SessionFormat.INDEX_EXTENSION));
+            scanFrom(next);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    public long getStartWallClockMillis() {
+        return startWallClockMillis;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public long getTotalSamples() {
+        return totalSamples;
+    }
+
+    public long getChunkFirstTimestamp(int chunk) {
+        return chunkFirstTimestamps[chunk];
+    }
+
+    public long getChunkLastTimestamp(int chunk) {
+        return chunkLastTimestamps[chunk];
+    }
+
+    public int getChunkChannelMask(int chunk) {
+        return chunkChannelMasks[chunk];
+    }
+
+    /**
+     * Board inputs the session's channels came from: the union of the chunk
+     * masks, or null when that does not name one input per channel (e.g. a
+     * channel that never had a value).
+     */
+    public ChannelDescriptor getLayout() {
+        int mask = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            mask |= chunkChannelMasks[i];
+        }
+        return Integer.bitCount(mask) == channelCount ? ChannelDescriptor.fromMask(mask) : null;
+    }
+
+    public int getChunkSampleCount(int chunk) {
+        return chunkSampleCounts[chunk];
+    }
+
+    public int getMaxChunkSampleCount() {
+        int max = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            max = Math.max(max, chunkSampleCounts[i]);
+        }
+        return max;
+    }
+
+    /**
+     * Reads one chunk into timestamps (one per sample) and values (channelCount
+     * per sample, interleaved). Returns the sample count.
+     */
+    public int readChunk(int chunk, long[] timestamps, float[] values) throws IOException {
+        ByteBuffer buffer = loadChunk(chunkOffsets[chunk]);
+        if (buffer == null) {
+            throw new IOException("Chunk " + chunk + " is corrupt");
+        }
+        int samples = buffer.getInt(24);
+        buffer.position(SessionFormat.CHUNK_HEADER_SIZE);
+        int v = 0;
+        for (int i = 0; i < samples; i++) {
+            timestamps[i] = buffer.getLong();
+            for (int c = 0; c < channelCount; c++) {
+                values[v++] = buffer.getFloat();
+            }
+        }
+        return samples;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Returns the file offset right after the last indexed chunk
+    private long loadIndex(File indexFile) throws IOException {
+        long next = SessionFormat.FILE_HEADER_SIZE;
+        if (!indexFile.exists()) {
+            return next;
+        }
+        try (FileChannel index = new RandomAccessFile(indexFile, "r").getChannel()) {
+            long entries = index.size() / SessionFormat.INDEX_ENTRY_SIZE;
+            ByteBuffer entry = ByteBuffer.allocate(SessionFormat.INDEX_ENTRY_SIZE);
+            for (long i = 0; i < entries; i++) {
+                entry.clear();
+                while (entry.hasRemaining()) {
+                    if (index.read(entry, i * SessionFormat.INDEX_ENTRY_SIZE + entry.position()) < 0) {
+                        return next;
+                    }
+                }
+                entry.flip();
+                long offset = entry.getLong();
+                // Entries must describe consecutive chunks; stop trusting the index otherwise
+                if (offset != next || !readChunkHeader(offset)) {
+                    return next;
+                }
+                next = addChunk(offset);
+            }
+        }
+        return next;
+    }
+
+    private void scanFrom(long offset) throws IOException {
+        long size = channel.size();
+        while (offset + SessionFormat.CHUNK_HEADER_SIZE <= size) {
+            // Scanned chunks are verified in full since nothing vouches for them
+            if (!readChunkHeader(offset) || loadChunk(offset) == null) {
+                return;
+            }
+            offset = addChunk(offset);
+        }
+    }
+
+    private boolean readChunkHeader(long offset) throws IOException {
+        chunkHeader.clear();
+        if (!tryReadFully(chunkHeader, offset)) {
+            return false;
+        }
+        int payloadLength = chunkHeader.getInt(28);
+        int samples = chunkHeader.getInt(24);
+        return chunkHeader.getInt(0) == SessionFormat.CHUNK_MAGIC
+                && samples > 0
+                && payloadLength == samples * SessionFormat.frameSize(channelCount)
+                && offset + SessionFormat.CHUNK_HEADER_SIZE + payloadLength <= channel.size();
+    }
+
+    // Uses the header most recently read by readChunkHeader
+    private long addChunk(long offset) {
+        if (chunkCount == chunkOffsets.length) {
+            int capacity = chunkCount * 2;
+            chunkOffsets = Arrays.copyOf(chunkOffsets, capacity);
+            chunkFirstTimestamps = Arrays.copyOf(chunkFirstTimestamps, capacity);
+            chunkLastTimestamps = Arrays.copyOf(chunkLastTimestamps, capacity);
+            chunkChannelMasks = Arrays.copyOf(chunkChannelMasks, capacity);
+            chunkSampleCounts = Arrays.copyOf(chunkSampleCounts, capacity);
+        }
+        chunkOffsets[chunkCount] = offset;
+        chunkFirstTimestamps[chunkCount] = chunkHeader.getLong(4);
+        chunkLastTimestamps[chunkCount] = chunkHeader.getLong(12);
+        chunkChannelMasks[chunkCount] = chunkHeader.getInt(20);
+        chunkSampleCounts[chunkCount] = chunkHeader.getInt(24);
+        totalSamples += chunkSampleCounts[chunkCount];
+        chunkCount++;
+        return offset + SessionFormat.CHUNK_HEADER_SIZE + chunkHeader.getInt(28);
+    }
+
+    // Reads header and payload at offset and checks the CRC; null if corrupt
+    private ByteBuffer loadChunk(long offset) throws IOException {
+        chunkBuffer.clear().limit(SessionFormat.CHUNK_HEADER_SIZE);
+        if (!tryReadFully(chunkBuffer, offset)) {
+            return null;
+        }
+        int payloadLength = chunkBuffer.getInt(28);
+        if (chunkBuffer.getInt(0) != SessionFormat.CHUNK_MAGIC || payloadLength < 0
+                || offset + SessionFormat.CHUNK_HEADER_SIZE + payloadLength > channel.size()) {
+            return null;
+        }
+        int total = SessionFormat.CHUNK_HEADER_SIZE + payloadLength;
+        if (chunkBuffer.capacity() < total) {
+            chunkBuffer = ByteBuffer.allocate(total);
+            chunkBuffer.position(0);
+        } else {
+            chunkBuffer.position(SessionFormat.CHUNK_HEADER_SIZE);
+        }
+        chunkBuffer.limit(total);
+        if (!tryReadFully(chunkBuffer, offset + chunkBuffer.position())) {
+            return null;
+        }
+        crc.reset();
+        crc.update(chunkBuffer.array(), SessionFormat.CHUNK_HEADER_SIZE, payloadLength);
+        if ((int) crc.getValue() != chunkBuffer.getInt(32)) {
+            return null;
+        }
+        return chunkBuffer;
+    }
+
+    private boolean tryReadFully(ByteBuffer buffer, long position) throws IOException {
+        long start = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        if (!tryReadFully(buffer, position)) {
+            throw new IOException("Unexpected end of session file");
+        }
+    }
+}
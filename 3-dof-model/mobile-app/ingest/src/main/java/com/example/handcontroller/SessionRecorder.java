@@ -0,0 +1,272 @@
+package com.example.handcontroller;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+
+/**
+ * Records every decoded frame of a session to an append-only chunked file
+ * (see {@link SessionFormat}).
+ *
+ * The read thread calls {@link #record} which only copies the frame into a
+ * preallocated chunk buffer. Full chunks are handed to a dedicated writer
+ * thread through a small pool of buffers; if the disk cannot keep up and the
+ * pool runs dry, frames are dropped and counted instead of blocking the
+ * Bluetooth read loop.
+ */
+public class SessionRecorder implements Closeable {
+
+    public static final int DEFAULT_FRAMES_PER_CHUNK = 1024;
+    public static final int DEFAULT_CHUNK_BUFFERS = 8;
+    // Seal a chunk after this long even if it is not full, bounds what a crash can lose
+    public static final long MAX_CHUNK_SPAN_NANOS = 1_000_000_000L;
+
+    private static final class Chunk {
+        final ByteBuffer buffer;
+        int frames;
+        int channelMask;
+        long firstTimestamp;
+        long lastTimestamp;
+
+        Chunk(int capacityBytes) {
+            buffer = ByteBuffer.allocate(capacityBytes);
+        }
+    }
+
+    private static final Chunk END_OF_STREAM = new Chunk(0);
+
+    private final File file;
+    private final int channelCount;
+    // Board inputs of the first k channels, so a frame of count k marks them in its chunk
+    private final int[] presentMasks;
+    private final int framesPerChunk;
+    private final FileChannel dataChannel;
+    private final FileChannel indexChannel;
+    private final BlockingQueue<Chunk> freeChunks;
+    private final BlockingQueue<Chunk> pendingChunks;
+    private final Thread writerThread;
+
+    // Producer state
+    private Chunk current;
+    private boolean closed;
+
+    // Writer state
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer indexEntry = ByteBuffer.allocate(SessionFormat.INDEX_ENTRY_SIZE);
+    private long fileOffset;
+
+    private volatile long framesRecorded;
+    private volatile long framesDropped;
+    private volatile long chunksWritten;
+    private volatile IOException writeError;
+
+    public SessionRecorder(File file, ChannelDescriptor layout, long startWallClockMillis) throws IOException {
+        this(file, layout, startWallClockMillis, DEFAULT_FRAMES_PER_CHUNK, DEFAULT_CHUNK_BUFFERS);
+    }
+
+    /** Channels numbered from board input 0, as ASCII lines are. */
+    public SessionRecorder(File file, int channelCount, long startWallClockMillis,
+                           int framesPerChunk, int chunkBuffers) throws IOException {
+        this(file, ChannelDescriptor.contiguous(channelCount), startWallClockMillis, framesPerChunk, chunkBuffers);
+    }
+
+    /**
+     * Records frames of the given layout; the chunk channel masks name the
+     * board inputs the frames came from (see {@link ChannelDescriptor#getChannelMask()}).
+     */
+    public SessionRecorder(File file, ChannelDescriptor layout, long startWallClockMillis,
+                           int framesPerChunk, int chunkBuffers) throws IOException {
+        this.file = file;
+        this.channelCount = layout.getChannelCount();
+        this.presentMasks = new int[channelCount + 1];
+        for (int c = 0; c < channelCount; c++) {
+            presentMasks[c + 1] = presentMasks[c] | 1 << layout.getDeviceChannel(c);
+        }
+        this.framesPerChunk = framesPerChunk;
+
+        int chunkBytes = SessionFormat.CHUNK_HEADER_SIZE + framesPerChunk * SessionFormat.frameSize(channelCount);
+        this.freeChunks = new ArrayBlockingQueue<>(chunkBuffers);
+        this.pendingChunks = new ArrayBlockingQueue<>(chunkBuffers + 1);
+        for (int i = 0; i < chunkBuffers; i++) {
+            freeChunks.add(new Chunk(chunkBytes));
+        }
+
+        this.dataChannel = new FileOutputStream(file).getChannel();
+        this.indexChannel = new FileOutputStream(new File(file.getPath() + SessionFormat.INDEX_EXTENSION)).getChannel();
+
+        ByteBuffer header = ByteBuffer.allocate(SessionFormat.FILE_HEADER_SIZE);
+        header.putInt(SessionFormat.FILE_MAGIC)
+                .putInt(SessionFormat.VERSION)
+                .putInt(channelCount)
+                .putLong(startWallClockMillis)
+                .flip();
+        writeFully(dataChannel, header);
+        dataChannel.force(false);
+        fileOffset = SessionFormat.FILE_HEADER_SIZE;
+
+        writerThread = new Thread(this::writeLoop, "SessionRecorder");
+        writerThread.start();
+    }
+
+    /**
+     * Producer side, called from the read thread. Channels beyond channelCount
+     * are stored as NaN.
+     */
+    public void record(long timestampNanos, double[] values, int count) {
+        if (closed) {
+            return;
+        }
+        if (current == null) {
+            current = freeChunks.poll();
+            if (current == null) {
+                framesDropped++;
+                return;
+            }
+            current.frames = 0;
+            current.channelMask = 0;
+            current.firstTimestamp = timestampNanos;
+            current.buffer.clear();
+            current.buffer.position(SessionFormat.CHUNK_HEADER_SIZE);
+        }
+
+        Chunk chunk = current;
+        ByteBuffer buffer = chunk.buffer;
+        buffer.putLong(timestampNanos);
+        for (int c = 0; c < channelCount; c++) {
+            buffer.putFloat(c < count ? (float) values[c] : Float.NaN);
+        }
+        chunk.channelMask |= presentMasks[Math.min(count, channelCount)];
+        chunk.lastTimestamp = timestampNanos;
+        chunk.frames++;
+        framesRecorded++;
+
+        if (chunk.frames == framesPerChunk || timestampNanos - chunk.firstTimestamp >= MAX_CHUNK_SPAN_NANOS) {
+            seal();
+        }
+    }
+
+    /**
+     * Writes out the partially filled chunk, stops the writer thread and closes the files.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        seal();
+        pendingChunks.add(END_OF_STREAM);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            dataChannel.close();
+        } finally {
+            indexChannel.close();
+        }
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getFramesRecorded() {
+        return framesRecorded;
+    }
+
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+
+    public long getChunksWritten() {
+        return chunksWritten;
+    }
+
+    public IOException getWriteError() {
+        return writeError;
+    }
+
+    private void seal() {
+        Chunk chunk = current;
+        current = null;
+        if (chunk == null || chunk.frames == 0) {
+            if (chunk != null) {
+                freeChunks.add(chunk);
+            }
+            return;
+        }
+        // pendingChunks has room for every buffer, so this never blocks
+        pendingChunks.add(chunk);
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Chunk chunk;
+            try {
+                chunk = pendingChunks.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (chunk == END_OF_STREAM) {
+                return;
+            }
+            if (writeError == null) {
+                try {
+                    writeChunk(chunk);
+                } catch (IOException e) {
+                    writeError = e;
+                }
+            }
+            freeChunks.add(chunk);
+        }
+    }
+
+    private void writeChunk(Chunk chunk) throws IOException {
+        ByteBuffer buffer = chunk.buffer;
+        int payloadLength = buffer.position() - SessionFormat.CHUNK_HEADER_SIZE;
+        crc.reset();
+        crc.update(buffer.array(), SessionFormat.CHUNK_HEADER_SIZE, payloadLength);
+
+        buffer.putInt(0, SessionFormat.CHUNK_MAGIC)
+                .putLong(4, chunk.firstTimestamp)
+                .putLong(12, chunk.lastTimestamp)
+                .putInt(20, chunk.channelMask)
+                .putInt(24, chunk.frames)
+                .putInt(28, payloadLength)
+                .putInt(32, (int) crc.getValue());
+        buffer.flip();
+
+        long chunkOffset = fileOffset;
+        writeFully(dataChannel, buffer);
+        dataChannel.force(false);
+        fileOffset += SessionFormat.CHUNK_HEADER_SIZE + payloadLength;
+
+        // Index only after the chunk is durable; a missing entry is rebuilt by scanning
+        indexEntry.clear();
+        indexEntry.putLong(chunkOffset)
+                .putLong(chunk.firstTimestamp)
+                .putLong(chunk.lastTimestamp)
+                .putInt(chunk.channelMask)
+                .putInt(chunk.frames)
+                .flip();
+        writeFully(indexChannel, indexEntry);
+        chunksWritten++;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
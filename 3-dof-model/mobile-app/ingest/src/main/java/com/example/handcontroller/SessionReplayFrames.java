@@ -0,0 +1,51 @@
+package com.example.handcontroller;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Plays back a session recorded by {@link SessionRecorder}, one chunk in memory at a time.
+ */
+public class SessionReplayFrames implements ReplayFrames {
+
+    private final SessionReader reader;
+    private final long[] timestamps;
+    private final float[] values;
+    private int chunk;
+    private int chunkSamples;
+    private int position;
+
+    public SessionReplayFrames(File file) throws IOException {
+        reader = new SessionReader(file);
+        int maxSamples = reader.getMaxChunkSampleCount();
+        timestamps = new long[maxSamples];
+        values = new float[maxSamples * reader.getChannelCount()];
+    }
+
+    @Override
+    public int getChannelCount() {
+        return reader.getChannelCount();
+    }
+
+    @Override
+    public long next(double[] out) throws IOException {
+        while (position == chunkSamples) {
+            if (chunk == reader.getChunkCount()) {
+                return -1;
+            }
+            chunkSamples = reader.readChunk(chunk++, timestamps, values);
+            position = 0;
+        }
+        int channels = reader.getChannelCount();
+        int base = position * channels;
+        for (int c = 0; c < channels; c++) {
+            out[c] = values[base + c];
+        }
+        return timestamps[position++];
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.handcontroller;
+
+/**
+ * Merges the frames of several links (one {@link IngestPipeline} per board,
+ * each fed by its own read thread) into one stream in timestamp order.
+ *
+ * Every link stamps frames on the same phone clock, with their estimated
+ * sample time (see {@link DeviceClock}), which is never later than their
+ * arrival. The merge holds back the last {@code holdBackNanos} and never
+ * waits for a particular link: a stalled or reconnecting board simply
+ * contributes nothing while the others keep flowing. A frame delayed in
+ * transport by more than the hold back is still delivered, just after newer
+ * frames of other links; each link's own frames always stay in order.
+ *
+ * Consumer side only (the UI thread); allocates nothing per frame.
+ */
+public class StreamMerger {
+
+    public static final long DEFAULT_HOLD_BACK_NANOS = 5_000_000L;
+
+    public interface Listener {
+        void onFrame(int link, long timestampNanos, double[] values, int channelCount);
+    }
+
+    private final long holdBackNanos;
+    private final NanoClock clock;
+    private double[] values = new double[BinaryProtocol.MAX_CHANNELS];
+
+    private long lastTimestamp = Long.MIN_VALUE;
+    private long framesMerged;
+    private long outOfOrderFrames;
+
+    public StreamMerger(NanoClock clock) {
+        this(DEFAULT_HOLD_BACK_NANOS, clock);
+    }
+
+    public StreamMerger(long holdBackNanos, NanoClock clock) {
+        this.holdBackNanos = holdBackNanos;
+        this.clock = clock;
+    }
+
+    /**
+     * Emits, oldest first, every queued frame of links[0..linkCount) stamped
+     * before now - holdBack. Null entries are links without a connection yet.
+     * Call {@link IngestPipeline#advanceStream()} on each link first so the
+     * channel layouts are settled for the whole merge.
+     */
+    public int drain(IngestPipeline[] links, int linkCount, Listener listener) {
+        long watermark = clock.nanoTime() - holdBackNanos;
+        int merged = 0;
+        while (true) {
+            // k-way merge over the ring heads; k is the handful of connected boards
+            int next = -1;
+            long oldest = Long.MAX_VALUE;
+            for (int i = 0; i < linkCount; i++) {
+                IngestPipeline link = links[i];
+                if (link != null) {
+                    long timestamp = link.peekTimestamp();
+                    if (timestamp < oldest) {
+                        oldest = timestamp;
+                        next = i;
+                    }
+                }
+            }
+            if (next < 0 || oldest > watermark) {
+                framesMerged += merged;
+                return merged;
+            }
+
+            IngestPipeline link = links[next];
+            int channelCount = link.getDescriptor().getChannelCount();
+            if (channelCount > values.length) {
+                values = new double[channelCount];
+            }
+            long timestamp = link.pollFrame(values);
+            if (timestamp < lastTimestamp) {
+                // Transport delay of one link beyond the hold back
+                outOfOrderFrames++;
+            } else {
+                lastTimestamp = timestamp;
+            }
+            listener.onFrame(next, timestamp, values, channelCount);
+            merged++;
+        }
+    }
+
+    public long getFramesMerged() {
+        return framesMerged;
+    }
+
+    public long getOutOfOrderFrames() {
+        return outOfOrderFrames;
+    }
+}
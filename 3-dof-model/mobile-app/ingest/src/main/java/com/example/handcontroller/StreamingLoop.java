@@ -0,0 +1,275 @@
+package com.example.handcontroller;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Body of the one long-lived I/O thread: connects the requested
+ * {@link SensorSource}, feeds its bytes to a fresh {@link IngestPipeline} and,
+ * for live sources, reconnects with {@link ReconnectBackoff} when the link
+ * drops. Replays simply end.
+ *
+ * Nothing here spins: with no source the thread waits on a monitor, while
+ * streaming it blocks in read, and between attempts it waits out the backoff.
+ * {@link #setSource} and {@link #shutdown} close the current source to unblock
+ * a pending connect or read, so both take effect immediately.
+ *
+ * A runtime exception from the source or a pipeline stage (a revoked
+ * Bluetooth permission, a bug in a decoder) is handled like a dropped link,
+ * wrapped in the IOException passed to the listener, instead of ending the
+ * thread while the link still looks connected.
+ *
+ * With a {@link CommandChannel} set, its writer may use the source while it
+ * is streaming, and every chunk read is scanned for acknowledgements.
+ */
+public class StreamingLoop implements Runnable {
+
+    public enum State { CONNECTING, STREAMING, RECONNECTING, DISCONNECTED }
+
+    /** Called on the I/O thread; error is the cause of a drop, if any. */
+    public interface Listener {
+        void onStateChanged(SensorSource source, State state, IOException error);
+    }
+
+    /** Builds the pipeline for a freshly opened source. */
+    public interface PipelineFactory {
+        IngestPipeline create(SensorSource source);
+    }
+
+    // A link that stayed up this long starts over with the shortest delay
+    public static final long DEFAULT_STABLE_NANOS = 10_000_000_000L;
+
+    private static final int READ_BUFFER_SIZE = 1024;
+
+    private final PipelineFactory pipelineFactory;
+    private final ReconnectBackoff backoff;
+    private final Listener listener;
+    private final NanoClock clock;
+    private final long stableNanos;
+
+    private final Object lock = new Object();
+    private volatile SensorSource requested;
+    private volatile boolean shutdown;
+    private volatile IngestPipeline pipeline;
+    private volatile CommandChannel commandChannel;
+    private volatile State state = State.DISCONNECTED;
+    // Written by the I/O thread only
+    private volatile long bytesRead;
+    private volatile IOException closeError;
+
+    public StreamingLoop(PipelineFactory pipelineFactory, ReconnectBackoff backoff, Listener listener) {
+        this(pipelineFactory, backoff, listener, NanoClock.SYSTEM, DEFAULT_STABLE_NANOS);
+    }
+
+    public StreamingLoop(PipelineFactory pipelineFactory, ReconnectBackoff backoff, Listener listener,
+                         NanoClock clock, long stableNanos) {
+        this.pipelineFactory = pipelineFactory;
+        this.backoff = backoff;
+        this.listener = listener;
+        this.clock = clock;
+        this.stableNanos = stableNanos;
+    }
+
+    /** Replaces the source being streamed; null just disconnects. Any thread. */
+    public void setSource(SensorSource source) {
+        SensorSource previous;
+        synchronized (lock) {
+            if (shutdown) {
+                closeQuietly(source);
+                return;
+            }
+            previous = requested;
+            requested = source;
+            lock.notifyAll();
+        }
+        if (previous != source) {
+            closeQuietly(previous);
+        }
+    }
+
+    /** Stops streaming for good; run() returns shortly after. Any thread. */
+    public void shutdown() {
+        SensorSource previous;
+        synchronized (lock) {
+            shutdown = true;
+            previous = requested;
+            requested = null;
+            lock.notifyAll();
+        }
+        closeQuietly(previous);
+    }
+
+    /** Downlink to attach while streaming; set before the thread starts. */
+    public void setCommandChannel(CommandChannel commandChannel) {
+        this.commandChannel = commandChannel;
+    }
+
+    public CommandChannel getCommandChannel() {
+        return commandChannel;
+    }
+
+    public SensorSource getSource() {
+        return requested;
+    }
+
+    /** Pipeline of the current (or last) connection, or null before the first one. */
+    public IngestPipeline getPipeline() {
+        return pipeline;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Bytes received over the lifetime of the loop, across reconnects. Sample
+     * it periodically for the link's throughput.
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Latest error closing a source or the recording of a connection, or null.
+     * Those do not stop streaming, so they are not reported as a state.
+     */
+    public IOException getCloseError() {
+        return closeError;
+    }
+
+    @Override
+    public void run() {
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        SensorSource source;
+        while ((source = awaitSource()) != null) {
+            stream(source, buffer);
+        }
+    }
+
+    private void stream(SensorSource source, byte[] buffer) {
+        backoff.reset();
+        CommandChannel commands = commandChannel;
+        while (isCurrent(source)) {
+            setState(source, State.CONNECTING, null);
+            IOException error = null;
+            long connectedAt = -1;
+            IngestPipeline current = null;
+            try {
+                source.open();
+                // Replaced or shut down while connecting: close() may have run before open()
+                if (!isCurrent(source)) {
+                    break;
+                }
+                // Ask for binary framing; firmware that does not know it keeps sending ASCII
+                source.write(BinaryProtocol.HANDSHAKE);
+                current = pipelineFactory.create(source);
+                pipeline = current;
+                connectedAt = clock.nanoTime();
+                setState(source, State.STREAMING, null);
+                if (commands != null) {
+                    commands.attach(source);
+                }
+
+                int n;
+                while (isCurrent(source) && (n = source.read(buffer, 0, buffer.length)) != -1) {
+                    bytesRead += n;
+                    current.feed(buffer, 0, n);
+                    if (commands != null) {
+                        commands.onBytesReceived(buffer, 0, n);
+                    }
+                }
+            } catch (IOException e) {
+                error = e;
+            } catch (RuntimeException e) {
+                error = new IOException("Stream failed: " + e, e);
+            } finally {
+                if (commands != null) {
+                    commands.detach(source);
+                }
+                closeQuietly(source);
+                // Flushes the last partial chunk of the recording
+                closeQuietly(current);
+            }
+
+            if (!isCurrent(source)) {
+                break;
+            }
+            if (!source.isLive()) {
+                // A replay that ended or failed has nothing to reconnect to
+                clearSource(source);
+                setState(source, State.DISCONNECTED, error);
+                return;
+            }
+            if (connectedAt >= 0 && clock.nanoTime() - connectedAt >= stableNanos) {
+                backoff.reset();
+            }
+            setState(source, State.RECONNECTING, error);
+            if (!awaitReconnect(source, backoff.nextDelayMillis())) {
+                break;
+            }
+        }
+        setState(source, State.DISCONNECTED, null);
+    }
+
+    private SensorSource awaitSource() {
+        synchronized (lock) {
+            try {
+                while (!shutdown && requested == null) {
+                    lock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            return shutdown ? null : requested;
+        }
+    }
+
+    // Waits out the backoff; false if the source was replaced meanwhile
+    private boolean awaitReconnect(SensorSource source, long delayMillis) {
+        synchronized (lock) {
+            long deadline = System.currentTimeMillis() + delayMillis;
+            long remaining = delayMillis;
+            try {
+                while (isCurrent(source) && remaining > 0) {
+                    lock.wait(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return isCurrent(source);
+        }
+    }
+
+    private boolean isCurrent(SensorSource source) {
+        return !shutdown && requested == source;
+    }
+
+    private void clearSource(SensorSource source) {
+        synchronized (lock) {
+            if (requested == source) {
+                requested = null;
+            }
+        }
+    }
+
+    private void setState(SensorSource source, State newState, IOException error) {
+        state = newState;
+        if (listener != null) {
+            listener.onStateChanged(source, newState, error);
+        }
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            closeError = e;
+        }
+    }
+}
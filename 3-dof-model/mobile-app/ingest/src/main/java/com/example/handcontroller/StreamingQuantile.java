@@ -0,0 +1,119 @@
+package com.example.handcontroller;
+
+/**
+ * Estimate of one quantile of a stream in constant space, with the P-square
+ * algorithm (Jain and Chlamtac, 1985): five markers track the minimum, the
+ * quantile, the maximum and the two midpoints between them, and are nudged
+ * along a parabola through their neighbours as values arrive. Nothing is
+ * stored per value, so a phase of any length costs the same. Exact for the
+ * first five values. Not thread safe.
+ */
+public class StreamingQuantile {
+
+    private final double quantile;
+    // Marker heights, actual and desired positions (1-based ranks), and desired increments
+    private final double[] heights = new double[5];
+    private final int[] positions = new int[5];
+    private final double[] desired = new double[5];
+    private final double[] increments;
+    private long count;
+
+    public StreamingQuantile(double quantile) {
+        if (!(quantile > 0 && quantile < 1)) {
+            throw new IllegalArgumentException("quantile must be between 0 and 1");
+        }
+        this.quantile = quantile;
+        this.increments = new double[]{0, quantile / 2, quantile, (1 + quantile) / 2, 1};
+        reset();
+    }
+
+    public void reset() {
+        count = 0;
+        for (int i = 0; i < 5; i++) {
+            positions[i] = i + 1;
+        }
+        desired[0] = 1;
+        desired[1] = 1 + 2 * quantile;
+        desired[2] = 1 + 4 * quantile;
+        desired[3] = 3 + 2 * quantile;
+        desired[4] = 5;
+    }
+
+    public void add(double value) {
+        if (count < 5) {
+            // Insertion sort into the markers until there are five
+            int i = (int) count++;
+            while (i > 0 && heights[i - 1] > value) {
+                heights[i] = heights[i - 1];
+                i--;
+            }
+            heights[i] = value;
+            return;
+        }
+        count++;
+
+        int cell;
+        if (value < heights[0]) {
+            heights[0] = value;
+            cell = 0;
+        } else if (value >= heights[4]) {
+            heights[4] = value;
+            cell = 3;
+        } else {
+            cell = 0;
+            while (value >= heights[cell + 1]) {
+                cell++;
+            }
+        }
+        for (int i = cell + 1; i < 5; i++) {
+            positions[i]++;
+        }
+        for (int i = 0; i < 5; i++) {
+            desired[i] += increments[i];
+        }
+
+        for (int i = 1; i < 4; i++) {
+            double offset = desired[i] - positions[i];
+            if ((offset >= 1 && positions[i + 1] - positions[i] > 1)
+                    || (offset <= -1 && positions[i - 1] - positions[i] < -1)) {
+                int step = offset > 0 ? 1 : -1;
+                double height = parabolic(i, step);
+                if (height <= heights[i - 1] || height >= heights[i + 1]) {
+                    height = heights[i] + step * (heights[i + step] - heights[i])
+                            / (positions[i + step] - positions[i]);
+                }
+                heights[i] = height;
+                positions[i] += step;
+            }
+        }
+    }
+
+    private double parabolic(int i, int step) {
+        double below = positions[i] - positions[i - 1];
+        double above = positions[i + 1] - positions[i];
+        return heights[i] + step / (double) (positions[i + 1] - positions[i - 1])
+                * ((below + step) * (heights[i + 1] - heights[i]) / above
+                + (above - step) * (heights[i] - heights[i - 1]) / below);
+    }
+
+    /** Current estimate; NaN before the first value. */
+    public double get() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (count < 5) {
+            // Nearest rank among the values seen so far
+            int rank = (int) Math.ceil(quantile * count);
+            return heights[Math.max(0, rank - 1)];
+        }
+        return heights[2];
+    }
+
+    public double getQuantile() {
+        return quantile;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.handcontroller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ASCII text built straight into a reused byte array, for exports and the
+ * forwarder: no String or formatter per number on paths that run once per
+ * sample.
+ */
+final class TextBuffer {
+    private static final long[] POWERS_OF_TEN = {
+            1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000, 1_000_000_000
+    };
+
+    private final byte[] bytes;
+    private int length;
+
+    TextBuffer(int capacity) {
+        bytes = new byte[capacity];
+    }
+
+    int remaining() {
+        return bytes.length - length;
+    }
+
+    int length() {
+        return length;
+    }
+
+    /** The backing array; the text is its first {@link #length()} bytes. */
+    byte[] array() {
+        return bytes;
+    }
+
+    void clear() {
+        length = 0;
+    }
+
+    TextBuffer append(char c) {
+        bytes[length++] = (byte) c;
+        return this;
+    }
+
+    TextBuffer append(String s) {
+        byte[] ascii = s.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(ascii, 0, bytes, length, ascii.length);
+        length += ascii.length;
+        return this;
+    }
+
+    TextBuffer append(long value) {
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+        int start = length;
+        do {
+            bytes[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        // Digits came out last first
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            byte t = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = t;
+        }
+        return this;
+    }
+
+    /** Rounded to decimals places, trailing zeros dropped; huge values fall back to toString. */
+    TextBuffer appendFixed(double value, int decimals) {
+        long scale = POWERS_OF_TEN[decimals];
+        if (Double.isInfinite(value) || Math.abs(value) >= Long.MAX_VALUE / (double) scale) {
+            return append(Double.toString(value));
+        }
+        long scaled = Math.round(value * scale);
+        if (scaled < 0) {
+            append('-');
+            scaled = -scaled;
+        }
+        append(scaled / scale);
+        long fraction = scaled % scale;
+        if (fraction != 0) {
+            append('.');
+            int digits = decimals;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            // Leading zeros of the fraction
+            for (long p = POWERS_OF_TEN[digits - 1]; p > fraction; p /= 10) {
+                append('0');
+            }
+            append(fraction);
+        }
+        return this;
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, length);
+        length = 0;
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.handcontroller;
+
+/**
+ * Resamples a frame stream onto the grid of multiples of a fixed period, by
+ * linear interpolation between neighbouring frames.
+ *
+ * The grid is absolute (timestamp % period == 0), so every channel of every
+ * board resampled with the same period lands on the same instants, whatever
+ * each board's rate, phase or drift. Grid points inside a gap longer than
+ * maxGapNanos are skipped rather than bridged with a straight line. Output
+ * lags the input by up to one input frame. Allocates nothing per frame.
+ */
+public class UniformResampler {
+
+    public interface Listener {
+        // values is only valid during the call
+        void onSample(long timestampNanos, double[] values, int channelCount);
+    }
+
+    private final long periodNanos;
+    private final long maxGapNanos;
+    private final double[] previous;
+    private final double[] output;
+
+    private boolean hasPrevious;
+    private long previousTimestamp;
+    private int previousChannels;
+    private long nextGrid;
+    private long gaps;
+
+    public UniformResampler(long periodNanos, long maxGapNanos, int maxChannels) {
+        this.periodNanos = periodNanos;
+        this.maxGapNanos = maxGapNanos;
+        this.previous = new double[maxChannels];
+        this.output = new double[maxChannels];
+    }
+
+    /** Starts over, e.g. after a channel layout change. */
+    public void reset() {
+        hasPrevious = false;
+    }
+
+    public void accept(long timestamp, double[] values, int channelCount, Listener listener) {
+        if (hasPrevious && timestamp <= previousTimestamp) {
+            // Not later than what was already interpolated up to
+            return;
+        }
+        if (!hasPrevious || channelCount != previousChannels || timestamp - previousTimestamp > maxGapNanos) {
+            if (hasPrevious && channelCount == previousChannels) {
+                gaps++;
+            }
+            nextGrid = -Math.floorDiv(-timestamp, periodNanos) * periodNanos;
+            if (nextGrid == timestamp) {
+                listener.onSample(timestamp, values, channelCount);
+                nextGrid += periodNanos;
+            }
+            store(timestamp, values, channelCount);
+            return;
+        }
+
+        double span = timestamp - previousTimestamp;
+        while (nextGrid <= timestamp) {
+            double fraction = (nextGrid - previousTimestamp) / span;
+            for (int c = 0; c < channelCount; c++) {
+                output[c] = previous[c] + fraction * (values[c] - previous[c]);
+            }
+            listener.onSample(nextGrid, output, channelCount);
+            nextGrid += periodNanos;
+        }
+        store(timestamp, values, channelCount);
+    }
+
+    private void store(long timestamp, double[] values, int channelCount) {
+        System.arraycopy(values, 0, previous, 0, channelCount);
+        previousTimestamp = timestamp;
+        previousChannels = channelCount;
+        hasPrevious = true;
+    }
+
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    /** Gaps left unbridged so far. */
+    public long getGaps() {
+        return gaps;
+    }
+}
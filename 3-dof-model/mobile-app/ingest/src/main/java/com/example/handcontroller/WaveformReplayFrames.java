@@ -0,0 +1,54 @@
+package com.example.handcontroller;
+
+import java.util.Random;
+
+/**
+ * Synthetic EMG envelope for load tests without a board: a noisy resting
+ * level with a contraction burst every few seconds, phase-shifted per channel.
+ * Seeded, so two runs with the same parameters produce identical data.
+ */
+public class WaveformReplayFrames implements ReplayFrames {
+
+    private static final double REST_LEVEL = 5;
+    private static final double ACTIVE_LEVEL = 150;
+    private static final double NOISE = 2;
+    private static final double PERIOD_SECONDS = 3;
+    private static final double BURST_SECONDS = 1.5;
+
+    private final int channelCount;
+    private final int sampleRateHz;
+    private final long totalFrames;
+    private final Random random;
+    private long frame;
+
+    // totalFrames < 0 means endless
+    public WaveformReplayFrames(int channelCount, int sampleRateHz, long totalFrames, long seed) {
+        this.channelCount = channelCount;
+        this.sampleRateHz = sampleRateHz;
+        this.totalFrames = totalFrames;
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    @Override
+    public long next(double[] values) {
+        if (totalFrames >= 0 && frame >= totalFrames) {
+            return -1;
+        }
+        double seconds = (double) frame / sampleRateHz;
+        for (int c = 0; c < channelCount; c++) {
+            double phase = (seconds + c * PERIOD_SECONDS / channelCount) % PERIOD_SECONDS;
+            double activation = phase < BURST_SECONDS ? Math.sin(Math.PI * phase / BURST_SECONDS) : 0;
+            values[c] = REST_LEVEL + (ACTIVE_LEVEL - REST_LEVEL) * activation + NOISE * random.nextGaussian();
+        }
+        return frame++ * 1_000_000_000L / sampleRateHz;
+    }
+
+    @Override
+    public void close() {
+    }
+}
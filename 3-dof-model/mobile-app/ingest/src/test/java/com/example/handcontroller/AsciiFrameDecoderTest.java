@@ -0,0 +1,61 @@
+package com.example.handcontroller;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AsciiFrameDecoderTest {
+
+    private final List<double[]> frames = new ArrayList<>();
+    private final AsciiFrameDecoder decoder = new AsciiFrameDecoder(2,
+            (values, channelCount) -> frames.add(Arrays.copyOf(values, channelCount)));
+
+    private void feed(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        decoder.feed(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void decodesManyLinesInOneRead() {
+        feed("1.50\r\n2.25\r\n-3\r\n");
+
+        assertEquals(3, frames.size());
+        assertEquals(1.5, frames.get(0)[0], 1e-9);
+        assertEquals(2.25, frames.get(1)[0], 1e-9);
+        assertEquals(-3.0, frames.get(2)[0], 1e-9);
+    }
+
+    @Test
+    public void completesLineSplitAcrossReads() {
+        feed("12.");
+        feed("3");
+        assertTrue(frames.isEmpty());
+        feed("4\r\n");
+
+        assertEquals(1, frames.size());
+        assertEquals(12.34, frames.get(0)[0], 1e-9);
+    }
+
+    @Test
+    public void decodesMultipleChannelsPerLine() {
+        feed("10.5,20.25\r\n");
+
+        assertEquals(1, frames.size());
+        assertEquals(2, frames.get(0).length);
+        assertEquals(20.25, frames.get(0)[1], 1e-9);
+    }
+
+    @Test
+    public void skipsStatusLines() {
+        feed("Calibration complete.\r\nRest Level: 4.20\r\n7.00\r\n");
+
+        assertEquals(1, frames.size());
+        assertEquals(7.0, frames.get(0)[0], 1e-9);
+        assertEquals(2, decoder.getLinesRejected());
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.handcontroller;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BinaryProtocolTest {
+
+    private final List<double[]> frames = new ArrayList<>();
+    private final FrameListener collector =
+            (values, channelCount) -> frames.add(Arrays.copyOf(values, channelCount));
+
+    @Test
+    public void crcMatchesCcittFalseCheckValue() {
+        byte[] check = "123456789".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(0x29B1, BinaryProtocol.crc16(check, 0, check.length));
+    }
+
+    @Test
+    public void roundTripsInterleavedChannels() {
+        BinaryPacketEncoder encoder = new BinaryPacketEncoder(0b11);
+        BinaryPacketDecoder decoder = new BinaryPacketDecoder(collector);
+        byte[] packet = new byte[BinaryProtocol.MAX_PACKET_SIZE];
+
+        int length = encoder.encode(new double[]{1.5, -2.0, 300.1, 0.0}, 2, packet, 0);
+        assertEquals(BinaryProtocol.packetSize(2, 2), length);
+        decoder.feed(packet, 0, length);
+
+        assertEquals(2, frames.size());
+        assertArrayEquals(new double[]{1.5, -2.0}, frames.get(0), 1e-9);
+        assertArrayEquals(new double[]{300.1, 0.0}, frames.get(1), 1e-9);
+        assertEquals(0b11, decoder.getChannelMask());
+    }
+
+    @Test
+    public void placesSamplesAtTheirMaskBits() {
+        BinaryPacketEncoder encoder = new BinaryPacketEncoder(0b101);
+        BinaryPacketDecoder decoder = new BinaryPacketDecoder(collector);
+        byte[] packet = new byte[BinaryProtocol.MAX_PACKET_SIZE];
+
+        int length = encoder.encode(new double[]{1.0, 2.0, 3.0, 4.0}, 2, packet, 0);
+        assertEquals(BinaryProtocol.packetSize(2, 2), length);
+        decoder.feed(packet, 0, length);
+
+        // Inputs 0 and 2; input 1 is not sent
+        assertEquals(2, frames.size());
+        assertArrayEquals(new double[]{1.0, Double.NaN, 2.0}, frames.get(0), 1e-9);
+        assertArrayEquals(new double[]{3.0, Double.NaN, 4.0}, frames.get(1), 1e-9);
+        assertEquals(0b101, decoder.getChannelMask());
+    }
+
+    @Test
+    public void decodesPacketsSplitAndConcatenatedAcrossReads() {
+        BinaryPacketEncoder encoder = new BinaryPacketEncoder(0b1);
+        BinaryPacketDecoder decoder = new BinaryPacketDecoder(collector);
+        byte[] stream = new byte[256];
+        int length = 0;
+        for (int i = 0; i < 4; i++) {
+            length += encoder.encode(new double[]{i, i + 0.5}, 2, stream, length);
+        }
+
+        // Feed one byte at a time, then everything at once
+        for (int i = 0; i < length; i++) {
+            decoder.feed(stream, i, 1);
+        }
+        decoder.feed(stream, 0, length);
+
+        assertEquals(16, frames.size());
+        assertEquals(3.5, frames.get(7)[0], 1e-9);
+    }
+
+    @Test
+    public void dropsCorruptPacketAndResyncs() {
+        BinaryPacketEncoder encoder = new BinaryPacketEncoder(0b1);
+        BinaryPacketDecoder decoder = new BinaryPacketDecoder(collector);
+        byte[] stream = new byte[128];
+        int first = encoder.encode(new double[]{1.0}, 1, stream, 0);
+        int length = first + encoder.encode(new double[]{2.0}, 1, stream, first);
+        stream[BinaryProtocol.HEADER_SIZE] ^= 0x10;
+
+        decoder.feed(stream, 0, length);
+
+        assertEquals(1, frames.size());
+        assertEquals(2.0, frames.get(0)[0], 1e-9);
+        assertEquals(1, decoder.getCrcErrors());
+    }
+
+    @Test
+    public void countsFramesLostFromSequenceGap() {
+        BinaryPacketEncoder encoder = new BinaryPacketEncoder(0b1);
+        BinaryPacketDecoder decoder = new BinaryPacketDecoder(collector);
+        byte[] packet = new byte[64];
+
+        decoder.feed(packet, 0, encoder.encode(new double[]{1, 2, 3}, 3, packet, 0));
+        encoder.encode(new double[]{4, 5}, 2, packet, 0);
+        decoder.feed(packet, 0, encoder.encode(new double[]{6}, 1, packet, 0));
+
+        assertEquals(2, decoder.getFramesLost());
+    }
+
+    @Test
+    public void negotiationLocksBinaryOnFirstPacket() {
+        NegotiatingFrameDecoder decoder = new NegotiatingFrameDecoder(2, collector);
+        byte[] ascii = "5.0\r\n".getBytes(StandardCharsets.US_ASCII);
+        decoder.feed(ascii, 0, ascii.length);
+        assertEquals(NegotiatingFrameDecoder.Mode.NEGOTIATING, decoder.getMode());
+
+        byte[] packet = new byte[32];
+        int length = new BinaryPacketEncoder(0b1).encode(new double[]{7.0}, 1, packet, 0);
+        decoder.feed(packet, 0, length);
+
+        assertEquals(NegotiatingFrameDecoder.Mode.BINARY, decoder.getMode());
+        assertEquals(2, frames.size());
+        assertEquals(7.0, frames.get(1)[0], 1e-9);
+    }
+
+    @Test
+    public void negotiationFallsBackToAscii() {
+        NegotiatingFrameDecoder decoder = new NegotiatingFrameDecoder(2, collector, 16);
+        byte[] ascii = "1.0\r\n2.0\r\n3.0\r\n4.0\r\n".getBytes(StandardCharsets.US_ASCII);
+        decoder.feed(ascii, 0, ascii.length);
+
+        assertEquals(NegotiatingFrameDecoder.Mode.ASCII, decoder.getMode());
+        assertEquals(4, frames.size());
+    }
+
+    @Test
+    public void framesPerPayloadFillsANotification() {
+        // Default ATT MTU (20-byte payload) and the 247-byte MTU most phones grant
+        assertEquals(2, BinaryProtocol.framesPerPayload(2, 20));
+        assertEquals(23, BinaryProtocol.framesPerPayload(5, 244));
+        assertTrue(BinaryProtocol.packetSize(5, 23) <= 244);
+        assertEquals(1, BinaryProtocol.framesPerPayload(8, 20));
+        assertEquals(BinaryProtocol.MAX_FRAMES_PER_PACKET, BinaryProtocol.framesPerPayload(1, 509));
+    }
+
+    @Test
+    public void frameIndexUnwrapsTheSequenceAndSkipsLostFrames() {
+        List<Long> indexes = new ArrayList<>();
+        BinaryPacketDecoder[] holder = new BinaryPacketDecoder[1];
+        BinaryPacketDecoder decoder = new BinaryPacketDecoder((values, channelCount) ->
+                indexes.add(holder[0].getFrameIndex()));
+        holder[0] = decoder;
+        BinaryPacketEncoder encoder = new BinaryPacketEncoder(0b1);
+        byte[] packet = new byte[64];
+
+        encoder.setSequence(0xFFFE);
+        int length = encoder.encode(new double[]{1, 2, 3}, 3, packet, 0);
+        decoder.feed(packet, 0, length);
+        // Two frames lost after the wrap
+        encoder.setSequence(3);
+        length = encoder.encode(new double[]{4}, 1, packet, 0);
+        decoder.feed(packet, 0, length);
+
+        assertEquals(List.of(0xFFFEL, 0xFFFFL, 0x10000L, 0x10003L), indexes);
+        assertEquals(2, decoder.getFramesLost());
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.handcontroller;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BleSensorSourceTest {
+
+    /**
+     * GATT peer on its own callback thread, like Android's binder thread. Once
+     * subscribed it packs replay frames into binary packets sized for the
+     * negotiated MTU and sends one packet per notification.
+     */
+    private static class FakeGattPeer implements GattLink {
+        final ExecutorService gattThread = Executors.newSingleThreadExecutor();
+        final int supportedMtu;
+        final int channels;
+        final long frames;
+        volatile boolean lowLatencyRequested;
+        volatile int packetsSent;
+        volatile int framesPerPacket;
+        private Callback callback;
+        private int mtu = BleSensorSource.DEFAULT_MTU;
+
+        FakeGattPeer(int supportedMtu, int channels, long frames) {
+            this.supportedMtu = supportedMtu;
+            this.channels = channels;
+            this.frames = frames;
+        }
+
+        @Override
+        public void connect(Callback callback) {
+            this.callback = callback;
+            gattThread.execute(() -> callback.onConnectionStateChanged(true));
+        }
+
+        @Override
+        public void discoverServices() {
+            gattThread.execute(() -> callback.onServicesDiscovered(true));
+        }
+
+        @Override
+        public void requestMtu(int requested) {
+            gattThread.execute(() -> {
+                if (supportedMtu > BleSensorSource.DEFAULT_MTU) {
+                    mtu = Math.min(requested, supportedMtu);
+                    callback.onMtuChanged(mtu, true);
+                } else {
+                    callback.onMtuChanged(BleSensorSource.DEFAULT_MTU, false);
+                }
+            });
+        }
+
+        @Override
+        public void requestLowLatency() {
+            lowLatencyRequested = true;
+        }
+
+        @Override
+        public void enableNotifications() {
+            gattThread.execute(() -> {
+                callback.onNotificationsEnabled(true);
+                notifyFrames();
+            });
+        }
+
+        private void notifyFrames() {
+            WaveformReplayFrames replay = new WaveformReplayFrames(channels, 1000, frames, 5L);
+            BinaryPacketEncoder encoder = new BinaryPacketEncoder((1 << channels) - 1);
+            int payload = mtu - 3;
+            framesPerPacket = BinaryProtocol.framesPerPayload(channels, payload);
+            double[] frame = new double[channels];
+            double[] packet = new double[channels * framesPerPacket];
+            byte[] notification = new byte[BinaryProtocol.MAX_PACKET_SIZE];
+            int count = 0;
+            while (replay.next(frame) >= 0) {
+                System.arraycopy(frame, 0, packet, count * channels, channels);
+                if (++count == framesPerPacket) {
+                    send(encoder.encode(packet, count, notification, 0), payload, notification);
+                    count = 0;
+                }
+            }
+            if (count > 0) {
+                send(encoder.encode(packet, count, notification, 0), payload, notification);
+            }
+        }
+
+        private void send(int length, int payload, byte[] notification) {
+            assertTrue(length <= payload);
+            callback.onNotification(notification, length);
+            packetsSent++;
+        }
+
+        void disconnect() {
+            gattThread.execute(() -> callback.onConnectionStateChanged(false));
+        }
+
+        // Waits until every queued callback has run
+        void awaitIdle() throws InterruptedException {
+            gattThread.shutdown();
+            assertTrue(gattThread.awaitTermination(5, TimeUnit.SECONDS));
+        }
+
+        @Override
+        public void write(byte[] value) {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String getName() {
+            return "fake-peer";
+        }
+
+        @Override
+        public String getAddress() {
+            return "00:11:22:33:44:55";
+        }
+    }
+
+    private FakeGattPeer peer;
+
+    @After
+    public void stopPeer() {
+        if (peer != null) {
+            peer.gattThread.shutdownNow();
+        }
+    }
+
+    private static IngestPipeline pipeline() {
+        return new IngestPipeline(BinaryProtocol.MAX_CHANNELS, 8192, SampleRingBuffer.OverflowPolicy.DROP_OLDEST,
+                null, null, NanoClock.SYSTEM);
+    }
+
+    // Reads like the link thread while the peer notifies; closes once the peer is done
+    private static void drain(BleSensorSource source, IngestPipeline pipeline, FakeGattPeer peer)
+            throws Exception {
+        Thread closer = new Thread(() -> {
+            try {
+                peer.awaitIdle();
+            } catch (InterruptedException ignored) {
+            }
+            source.close();
+        });
+        closer.start();
+        byte[] buffer = new byte[64];
+        int n;
+        while ((n = source.read(buffer, 0, buffer.length)) != -1) {
+            pipeline.feed(buffer, 0, n);
+        }
+        closer.join();
+    }
+
+    @Test
+    public void packsSeveralFramesPerNotificationAfterMtuExchange() throws Exception {
+        peer = new FakeGattPeer(BleSensorSource.REQUESTED_MTU, 5, 2000);
+        // Room for the whole burst: the peer notifies far faster than a real link
+        BleSensorSource source = new BleSensorSource(peer, 64 * 1024, NanoClock.SYSTEM);
+        source.open();
+        IngestPipeline pipeline = pipeline();
+        drain(source, pipeline, peer);
+
+        assertEquals(BleSensorSource.REQUESTED_MTU, source.getMtu());
+        assertTrue(peer.lowLatencyRequested);
+        assertEquals(23, peer.framesPerPacket);
+        assertEquals(peer.packetsSent, source.getNotificationsReceived());
+        assertEquals(2000, pipeline.getDecoder().getFramesDecoded());
+        assertEquals(0, source.getBytesDropped());
+    }
+
+    @Test
+    public void fallsBackToTheDefaultMtu() throws Exception {
+        peer = new FakeGattPeer(BleSensorSource.DEFAULT_MTU, 2, 300);
+        BleSensorSource source = new BleSensorSource(peer);
+        source.open();
+        IngestPipeline pipeline = pipeline();
+        drain(source, pipeline, peer);
+
+        assertEquals(BleSensorSource.DEFAULT_MTU, source.getMtu());
+        // 20-byte payload: two 2-channel frames per packet
+        assertEquals(2, peer.framesPerPacket);
+        assertEquals(300, pipeline.getDecoder().getFramesDecoded());
+    }
+
+    @Test(timeout = 5000)
+    public void disconnectFailsTheRead() throws Exception {
+        peer = new FakeGattPeer(BleSensorSource.REQUESTED_MTU, 2, 0);
+        BleSensorSource source = new BleSensorSource(peer);
+        source.open();
+        peer.disconnect();
+        try {
+            source.read(new byte[16], 0, 16);
+            fail();
+        } catch (IOException expected) {
+            // StreamingLoop reconnects on this
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void closeEndsABlockedRead() throws Exception {
+        peer = new FakeGattPeer(BleSensorSource.REQUESTED_MTU, 2, 0);
+        BleSensorSource source = new BleSensorSource(peer);
+        source.open();
+        Thread closer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            source.close();
+        });
+        closer.start();
+        assertEquals(-1, source.read(new byte[16], 0, 16));
+        closer.join();
+    }
+
+    @Test
+    public void overflowDropsInsteadOfBlockingTheGattThread() throws Exception {
+        peer = new FakeGattPeer(BleSensorSource.REQUESTED_MTU, 5, 2000);
+        BleSensorSource source = new BleSensorSource(peer, 1024, NanoClock.SYSTEM);
+        source.open();
+        peer.awaitIdle();
+
+        assertEquals(2000 / 23 + 1, source.getNotificationsReceived());
+        assertEquals(source.getBytesReceived() - 1024, source.getBytesDropped());
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.handcontroller;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CalibrationEngineTest {
+
+    private static final long PERIOD = 1_000_000L;
+    private static final ChannelDescriptor TWO = ChannelDescriptor.fromMask(0b101);
+
+    private final List<CalibrationEngine> finished = new ArrayList<>();
+    private final Random random = new Random(3);
+    private long time = 10_000_000_000L;
+
+    private CalibrationEngine engine() {
+        CalibrationEngine engine = new CalibrationEngine(BinaryProtocol.MAX_CHANNELS, finished::add);
+        engine.start(time);
+        return engine;
+    }
+
+    // Rectified noise around 5 (p95 about 8), like a relaxed muscle
+    private double rest() {
+        return 5 + Math.abs(random.nextGaussian()) * 1.5;
+    }
+
+    private void run(CalibrationEngine engine, long nanos, boolean grip) {
+        double[] frame = new double[2];
+        for (long end = time + nanos; time < end; time += PERIOD) {
+            // Channel 0 is gripped on and off twice a second; channel 1 never moves
+            boolean closed = grip && (time / 250_000_000L) % 2 == 0;
+            frame[0] = closed ? 40 + random.nextGaussian() * 3 : rest();
+            frame[1] = rest();
+            engine.accept(TWO, time, frame, 2);
+        }
+    }
+
+    @Test
+    public void restThenGripGivesThresholdsBetweenTheLevels() {
+        CalibrationEngine engine = engine();
+        assertEquals(CalibrationEngine.State.INITIAL, engine.getState());
+
+        run(engine, 2_500_000_000L, false);
+        assertEquals(0.5, engine.getPhaseProgress(), 0.01);
+        run(engine, 2_600_000_000L, false);
+        assertEquals(CalibrationEngine.State.GRIP_CALIBRATION, engine.getState());
+        run(engine, 5_100_000_000L, true);
+
+        assertEquals(CalibrationEngine.State.COMPLETED, engine.getState());
+        assertEquals(1, finished.size());
+        assertTrue(engine.isCalibrated(0));
+        double lower = engine.getLowerThreshold(0);
+        double upper = engine.getUpperThreshold(0);
+        // Above a relaxed hand's noise, below a grip, with hysteresis
+        assertTrue("lower " + lower, lower > 7.5);
+        assertTrue(upper > lower && upper < 37);
+        // 4.5 s of each phase after the settle time
+        assertEquals(4500, engine.getRestStats(0).getCount(), 1);
+        assertEquals(4500, engine.getActiveStats(0).getCount(), 1);
+
+        assertFalse(engine.isCalibrated(1));
+        assertEquals(CalibrationEngine.Failure.NO_CONTRAST, engine.getChannelFailure(1));
+
+        // Frames after completion change nothing
+        run(engine, 1_000_000_000L, true);
+        assertEquals(1, finished.size());
+        assertEquals(lower, engine.getLowerThreshold(0), 0);
+    }
+
+    @Test
+    public void flatInputFails() {
+        CalibrationEngine engine = engine();
+        double[] frame = {512, 512};
+        for (int i = 0; i < 11_000; i++, time += PERIOD) {
+            engine.accept(TWO, time, frame, 2);
+        }
+        assertEquals(CalibrationEngine.State.FAILED, engine.getState());
+        assertEquals(CalibrationEngine.Failure.FLAT_SIGNAL, engine.getFailure());
+        assertEquals(1, finished.size());
+    }
+
+    @Test
+    public void silenceAndLayoutChangesFail() {
+        CalibrationEngine stalled = engine();
+        assertTrue(stalled.checkStalled(time + 1_000_000_000L));
+        assertFalse(stalled.checkStalled(time + 3_000_000_000L));
+        assertEquals(CalibrationEngine.Failure.NO_SIGNAL, stalled.getFailure());
+
+        CalibrationEngine engine = engine();
+        run(engine, 1_000_000_000L, false);
+        engine.accept(ChannelDescriptor.contiguous(2), time, new double[]{1, 1}, 2);
+        assertEquals(CalibrationEngine.Failure.LAYOUT_CHANGED, engine.getFailure());
+
+        CalibrationEngine cancelled = engine();
+        cancelled.cancel();
+        run(cancelled, 11_000_000_000L, true);
+        assertEquals(CalibrationEngine.Failure.CANCELLED, cancelled.getFailure());
+        assertEquals(1, finished.size());
+    }
+
+    @Test
+    public void thresholdCommandIsText() {
+        assertEquals("THR 2 21.50 13.25", CalibrationEngine.thresholdCommand(2, 21.5, 13.25));
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.handcontroller;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class CalibrationStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static CalibrationProfile profile(String user, String device, double rest) {
+        CalibrationProfile.Channel[] channels = {
+                new CalibrationProfile.Channel(0, 0, rest, rest + 2, rest + 40, rest + 35),
+                new CalibrationProfile.Channel(2, 5, rest, rest + 1, rest + 20, rest + 18),
+        };
+        return new CalibrationProfile(user, device, 1234L, true, 1000, 50, 0b100101, channels);
+    }
+
+    @Test
+    public void roundTripsAProfile() throws IOException {
+        File directory = folder.newFolder("calibration");
+        new CalibrationStore(directory).save(profile("alice", "AA:BB:CC:DD:EE:FF", 10));
+
+        // A new store has nothing in memory, so this reads the file
+        CalibrationProfile loaded = new CalibrationStore(directory).load("alice", "AA:BB:CC:DD:EE:FF");
+        assertNotNull(loaded);
+        assertEquals("alice", loaded.getUser());
+        assertEquals("AA:BB:CC:DD:EE:FF", loaded.getDevice());
+        assertEquals(1234L, loaded.getCreatedMillis());
+        assertEquals(0b100101, loaded.getLayoutMask());
+        assertEquals(2, loaded.getChannelCount());
+        CalibrationProfile.Channel channel = loaded.getChannel(1);
+        assertEquals(2, channel.index);
+        assertEquals(5, channel.deviceChannel);
+        assertEquals(10, channel.rest, 0);
+        assertEquals(28, channel.activeMean, 0);
+        // The firmware's thresholds: 20% either side of the midpoint, lower not below the noise
+        assertEquals(20 + 4, channel.upper, 1e-9);
+        assertEquals(20 - 4, channel.lower, 1e-9);
+    }
+
+    @Test
+    public void keysByUserAndDevice() throws IOException {
+        CalibrationStore store = new CalibrationStore(folder.newFolder("calibration"));
+        store.save(profile("alice", "board", 10));
+        store.save(profile("bob", "board", 20));
+        assertEquals(10, store.load("alice", "board").getChannel(0).rest, 0);
+        assertEquals(20, store.load("bob", "board").getChannel(0).rest, 0);
+        assertNull(store.load("alice", "other"));
+
+        assertTrue(store.delete("alice", "board"));
+        assertNull(store.load("alice", "board"));
+    }
+
+    @Test
+    public void fileNamesNeverCollide() {
+        assertNotEquals(CalibrationStore.fileName("a__b", "c"), CalibrationStore.fileName("a", "b__c"));
+        assertNotEquals(CalibrationStore.fileName("a:b", "c"), CalibrationStore.fileName("a_b", "c"));
+        assertEquals("_2e__x.cal", CalibrationStore.fileName(".", "x"));
+        assertFalse(CalibrationStore.fileName("../x", "y").contains("/"));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsACorruptFile() throws IOException {
+        File directory = folder.newFolder("calibration");
+        new CalibrationStore(directory).save(profile("alice", "board", 10));
+        File file = new File(directory, CalibrationStore.fileName("alice", "board"));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 20);
+            raf.write(0x55);
+        }
+        new CalibrationStore(directory).load("alice", "board");
+    }
+
+    @Test
+    public void filtersMustMatch() {
+        CalibrationProfile profile = profile("alice", "board", 10);
+        assertTrue(profile.matchesFilters(true, 1000, 50));
+        assertFalse(profile.matchesFilters(true, 1000, 60));
+        assertFalse(profile.matchesFilters(true, 500, 50));
+        assertFalse(profile.matchesFilters(false, 1000, 50));
+    }
+}
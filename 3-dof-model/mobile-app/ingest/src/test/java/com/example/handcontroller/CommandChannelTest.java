@@ -0,0 +1,165 @@
+package com.example.handcontroller;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CommandChannelTest {
+
+    /** Live link that records each line written, or fails every write. */
+    private static class RecordingSource implements SensorSource {
+        final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        volatile boolean failing;
+
+        @Override
+        public void open() {
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            return -1;
+        }
+
+        @Override
+        public void write(byte[] data) throws IOException {
+            if (failing) {
+                throw new IOException("link lost");
+            }
+            lines.add(new String(data, StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        public String getName() {
+            return "recording";
+        }
+
+        @Override
+        public String getAddress() {
+            return "00:00:00:00:00:02";
+        }
+
+        @Override
+        public boolean isLive() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private volatile long time;
+    private final CommandChannel channel = new CommandChannel(() -> time);
+    private final Thread writer = new Thread(channel, "command-writer-test");
+
+    @After
+    public void stopWriter() throws Exception {
+        channel.shutdown();
+        writer.join(2000);
+        assertFalse(writer.isAlive());
+    }
+
+    private static String next(RecordingSource source) throws InterruptedException {
+        return source.lines.poll(5, TimeUnit.SECONDS);
+    }
+
+    private void feed(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        channel.onBytesReceived(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void lanesAreServedByPriority() throws Exception {
+        writer.start();
+        // Queued while detached, so the writer sees them all at once
+        channel.sendPosition("M1", "M1:10");
+        channel.sendPosition("M2", "M2:20");
+        channel.sendPosition("M1", "M1:30");
+        channel.sendControl("A");
+        channel.sendControl("B");
+        assertEquals(1, channel.getCoalesced());
+        assertEquals(4, channel.getQueued());
+
+        RecordingSource source = new RecordingSource();
+        channel.attach(source);
+        assertEquals("A #0\n", next(source));
+        assertEquals("B #1\n", next(source));
+        // The newer M1 target took the queued one's place in line
+        assertEquals("M1:30 #2\n", next(source));
+        assertEquals("M2:20 #3\n", next(source));
+
+        channel.detach(source);
+        channel.sendPosition("M3", "M3:90");
+        channel.sendControl("C");
+        channel.sendEmergency("STOP");
+        assertEquals(1, channel.getDropped());
+        channel.attach(source);
+        assertEquals("STOP #4\n", next(source));
+        assertEquals("C #5\n", next(source));
+        assertNull(source.lines.poll(50, TimeUnit.MILLISECONDS));
+        assertEquals(6, channel.getSent());
+        assertEquals(6, channel.getQueueLatency().getCount());
+    }
+
+    @Test
+    public void acknowledgementsAreTimedAcrossChunks() throws Exception {
+        writer.start();
+        RecordingSource source = new RecordingSource();
+        channel.attach(source);
+        time = 1_000_000L;
+        channel.sendControl("THR 0 20.00 10.00");
+        assertEquals("THR 0 20.00 10.00 #0\n", next(source));
+
+        time = 6_000_000L;
+        // Split mid-line and between binary packet bytes
+        feed("\u0001ACKAC");
+        feed("K 0");
+        assertEquals(0, channel.getAcknowledged());
+        feed("\r\n");
+        assertEquals(1, channel.getAcknowledged());
+        assertEquals(5_000_000L, channel.getAckLatency().getMaxNanos());
+
+        // Duplicates and sequences never sent are ignored
+        feed("ACK 0\nACK 7\nACK \n");
+        assertEquals(1, channel.getAcknowledged());
+    }
+
+    @Test
+    public void failedWriteIsRetriedOnTheNextConnection() throws Exception {
+        writer.start();
+        RecordingSource first = new RecordingSource();
+        first.failing = true;
+        channel.attach(first);
+        channel.sendControl("A");
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (channel.getFailed() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, channel.getFailed());
+        assertEquals(1, channel.getQueued());
+
+        RecordingSource second = new RecordingSource();
+        channel.attach(second);
+        assertEquals("A #1\n", next(second));
+        assertEquals(0, channel.getQueued());
+        assertTrue(first.lines.isEmpty());
+    }
+
+    @Test
+    public void shutdownStopsAWaitingWriter() throws Exception {
+        writer.start();
+        channel.sendControl("A");
+        channel.shutdown();
+        writer.join(2000);
+        assertFalse(writer.isAlive());
+        assertEquals(0, channel.getSent());
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.handcontroller;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class ControlLoopTest {
+
+    private static Thread start(ControlLoop loop) {
+        Thread thread = new Thread(loop, "control-loop-test");
+        thread.start();
+        return thread;
+    }
+
+    @Test
+    public void ticksOnAFixedGrid() throws Exception {
+        AtomicLong first = new AtomicLong();
+        AtomicLong last = new AtomicLong();
+        ControlLoop loop = new ControlLoop(100, now -> {
+            first.compareAndSet(0, now);
+            last.set(now);
+        }, NanoClock.SYSTEM);
+        Thread thread = start(loop);
+        Thread.sleep(1000);
+        loop.shutdown();
+        thread.join(2000);
+        assertFalse(thread.isAlive());
+
+        long ticks = loop.getTicks();
+        // A busy machine may skip deadlines, but every one is either ticked or counted as missed
+        long deadlines = ticks + loop.getMissed();
+        assertTrue("ticks " + ticks + " missed " + loop.getMissed(), ticks > 0 && deadlines >= 90 && deadlines <= 101);
+        // Absolute deadlines: late wake-ups do not push the later ticks back
+        long span = last.get() - first.get();
+        long expected = (ticks - 1 + loop.getMissed()) * loop.getPeriodNanos();
+        assertEquals(expected, span, loop.getJitter().getMaxNanos() + 1);
+        assertEquals(ticks, loop.getJitter().getCount());
+        assertEquals(0, loop.getOverruns());
+    }
+
+    @Test
+    public void slowTicksAreOverrunsAndSkipDeadlines() throws Exception {
+        ControlLoop loop = new ControlLoop(100, now -> {
+            try {
+                Thread.sleep(25);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, NanoClock.SYSTEM);
+        Thread thread = start(loop);
+        Thread.sleep(300);
+        loop.shutdown();
+        thread.join(2000);
+        assertFalse(thread.isAlive());
+
+        long ticks = loop.getTicks();
+        assertTrue(ticks > 0);
+        assertEquals(ticks, loop.getOverruns());
+        // Each 25 ms tick runs past two deadlines, which are dropped rather than caught up on
+        assertTrue(loop.getMissed() >= 2 * ticks - 1);
+        assertTrue(loop.getTickDuration().getMaxNanos() >= 25_000_000L);
+    }
+
+    @Test
+    public void shutdownWakesAParkedLoop() throws Exception {
+        ControlLoop loop = new ControlLoop(1, now -> { }, NanoClock.SYSTEM);
+        Thread thread = start(loop);
+        Thread.sleep(50);
+        loop.shutdown();
+        thread.join(500);
+        assertFalse(thread.isAlive());
+        assertEquals(0, loop.getTicks());
+    }
+}
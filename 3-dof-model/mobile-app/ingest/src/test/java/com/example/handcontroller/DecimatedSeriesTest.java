@@ -0,0 +1,62 @@
+package com.example.handcontroller;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DecimatedSeriesTest {
+
+    private final long[] times = new long[64];
+    private final double[] values = new double[64];
+
+    @Test
+    public void minMaxKeepsPeaksOfEveryColumn() {
+        DecimatedSeries series = new DecimatedSeries(new SeriesBuffer(1024), 16);
+        series.setBucketNanos(100);
+        for (int t = 0; t < 400; t++) {
+            // One spike per 100 ns column
+            series.append(t, t % 100 == 37 ? 50 : 1);
+        }
+
+        int n = series.minMax(0, 399, times, values);
+
+        assertEquals(8, n);
+        for (int i = 0; i < n; i += 2) {
+            assertEquals(1.0, values[i], 0);
+            assertEquals(50.0, values[i + 1], 0);
+            assertEquals(i / 2 * 100 + 37, times[i + 1]);
+        }
+    }
+
+    @Test
+    public void rebuildsFromRawWhenColumnWidthChanges() {
+        DecimatedSeries series = new DecimatedSeries(new SeriesBuffer(1024), 16);
+        for (int t = 0; t < 400; t++) {
+            series.append(t, t);
+        }
+        series.setBucketNanos(200);
+
+        assertEquals(4, series.minMax(0, 399, times, values));
+        assertEquals(399.0, values[3], 0);
+    }
+
+    @Test
+    public void lttbReducesToThresholdAndKeepsEndpoints() {
+        DecimatedSeries series = new DecimatedSeries(new SeriesBuffer(4096), 32);
+        series.setBucketNanos(100);
+        for (int t = 0; t < 3200; t++) {
+            series.append(t, Math.sin(t / 200.0) * 10 + (t == 1650 ? 40 : 0));
+        }
+
+        int n = series.lttb(0, 3199, 12, times, values);
+
+        assertEquals(12, n);
+        assertEquals(0, times[0]);
+        boolean keptSpike = false;
+        for (int i = 1; i < n; i++) {
+            assertTrue(times[i] > times[i - 1]);
+            keptSpike |= times[i] == 1650;
+        }
+        assertTrue(keptSpike);
+    }
+}
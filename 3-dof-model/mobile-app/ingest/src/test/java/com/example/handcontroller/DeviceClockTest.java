@@ -0,0 +1,105 @@
+package com.example.handcontroller;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DeviceClockTest {
+
+    private static final long MIN_DELAY = 5_000_000L;
+    private static final int CHUNK = 20;
+
+    /**
+     * Board sampling at 1 kHz by its own clock, running 200 ppm fast, sent in
+     * chunks of 20 frames that arrive at least 5 ms after the last frame was
+     * sampled, 10 ms more on average, and up to 100 ms.
+     */
+    private static class SimulatedLink {
+        final double period = 1_000_000 / 1.0002;
+        final Random random = new Random(11);
+        final long start = 3_000_000_000L;
+        long lastArrival;
+
+        long sampleTime(long index) {
+            return start + Math.round(index * period);
+        }
+
+        long arrival(long index) {
+            long chunkEnd = (index / CHUNK + 1) * CHUNK - 1;
+            if (index % CHUNK == 0) {
+                long delay = MIN_DELAY + (long) Math.min(-Math.log(1 - random.nextDouble()) * 10_000_000L,
+                        95_000_000L);
+                lastArrival = Math.max(lastArrival, sampleTime(chunkEnd) + delay);
+            }
+            return lastArrival;
+        }
+    }
+
+    @Test
+    public void estimatesDriftAndStampsOnTheMinimumDelayLine() {
+        DeviceClock clock = new DeviceClock();
+        clock.setNominalRateHz(1000);
+        SimulatedLink link = new SimulatedLink();
+
+        long previous = Long.MIN_VALUE;
+        double worstError = 0;
+        for (long i = 0; i < 60_000; i++) {
+            long timestamp = clock.timestamp(i, true, link.arrival(i));
+            assertTrue(timestamp > previous);
+            previous = timestamp;
+            if (i >= 5_000) {
+                worstError = Math.max(worstError, Math.abs(timestamp - (link.sampleTime(i) + MIN_DELAY)));
+            }
+        }
+
+        assertEquals(1000.2, clock.getEstimatedRateHz(), 0.02);
+        assertEquals(200, clock.getDriftPpm(), 20);
+        assertTrue("error " + worstError, worstError < 2_000_000);
+        assertEquals(0, clock.getGaps());
+        assertTrue(clock.getDelay().getPercentileNanos(0.99) < 100_000_000L);
+    }
+
+    @Test
+    public void sequenceJumpIsAGap() {
+        DeviceClock clock = new DeviceClock();
+        SimulatedLink link = new SimulatedLink();
+        long before = 0;
+        for (long i = 0; i < 10_000; i++) {
+            if (i >= 5_000 && i < 5_050) {
+                link.arrival(i);
+                continue;
+            }
+            long timestamp = clock.timestamp(i, true, link.arrival(i));
+            if (i == 4_999) {
+                before = timestamp;
+            } else if (i == 5_050) {
+                assertEquals(51 * link.period, timestamp - before, 2_000_000);
+            }
+        }
+        assertEquals(1, clock.getGaps());
+        assertEquals(50, clock.getFramesMissing());
+    }
+
+    @Test
+    public void lateWindowWithoutCounterIsAGap() {
+        DeviceClock clock = new DeviceClock();
+        SimulatedLink link = new SimulatedLink();
+        long received = 0;
+        for (long i = 0; i < 15_000; i++) {
+            long arrival = link.arrival(i);
+            // 300 lines lost; an ASCII stream cannot tell which
+            if (i >= 8_000 && i < 8_300) {
+                continue;
+            }
+            long timestamp = clock.timestamp(received++, false, arrival);
+            // The missing count is only known to within a few frames
+            if (i >= 10_000) {
+                assertEquals(link.sampleTime(i) + MIN_DELAY, timestamp, 5_000_000);
+            }
+        }
+        assertEquals(1, clock.getGaps());
+        assertEquals(300, clock.getFramesMissing(), 5);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.handcontroller;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DriftMonitorTest {
+
+    private static final long WINDOW = 1_000_000_000L;
+    private static final long PERIOD = 1_000_000L;
+    private static final ChannelDescriptor LAYOUT = ChannelDescriptor.contiguous(1);
+
+    private static CalibrationProfile profile() {
+        CalibrationProfile.Channel[] channels = {new CalibrationProfile.Channel(0, 0, 10, 12, 50, 45)};
+        return new CalibrationProfile("user", "board", 0, false, 1000, 50, LAYOUT.getChannelMask(), channels);
+    }
+
+    // Mostly rest at the given level, with a grip to gripLevel every fifth sample
+    private static long feed(DriftMonitor monitor, ChannelDescriptor layout, long start, int samples,
+                             double restLevel, double gripLevel) {
+        double[] values = new double[1];
+        long t = start;
+        for (int i = 0; i < samples; i++) {
+            values[0] = i % 5 == 0 ? gripLevel : restLevel + (i % 3) * 0.1;
+            monitor.accept(layout, t, values, 1);
+            t += PERIOD;
+        }
+        return t;
+    }
+
+    @Test
+    public void steadySignalKeepsTheProfile() {
+        List<CalibrationProfile> recalibrated = new ArrayList<>();
+        DriftMonitor monitor = new DriftMonitor(profile(), WINDOW, 0.25, 3, (m, p) -> recalibrated.add(p));
+        feed(monitor, LAYOUT, 0, 10_000, 10, 50);
+        assertTrue(monitor.getWindows() >= 9);
+        assertTrue(monitor.getDrift() < 0.05);
+        assertTrue(recalibrated.isEmpty());
+    }
+
+    @Test
+    public void sustainedDriftRecalibrates() {
+        List<CalibrationProfile> recalibrated = new ArrayList<>();
+        DriftMonitor monitor = new DriftMonitor(profile(), WINDOW, 0.25, 3, (m, p) -> recalibrated.add(p));
+        // Rest up by half the range, grips now to 90
+        long t = feed(monitor, LAYOUT, 0, 3_500, 30, 90);
+        assertEquals(1, recalibrated.size());
+        CalibrationProfile.Channel channel = recalibrated.get(0).getChannel(0);
+        assertEquals(30, channel.rest, 1);
+        assertEquals(32, channel.noise, 1);
+        assertEquals(90, channel.active, 1);
+        assertTrue(channel.upper > channel.lower && channel.lower >= channel.noise);
+        assertSame(recalibrated.get(0), monitor.getProfile());
+
+        // Measured against the new profile from then on
+        feed(monitor, LAYOUT, t, 5_000, 30, 90);
+        assertEquals(1, monitor.getRecalibrations());
+    }
+
+    @Test
+    public void briefDriftIsIgnored() {
+        List<CalibrationProfile> recalibrated = new ArrayList<>();
+        DriftMonitor monitor = new DriftMonitor(profile(), WINDOW, 0.25, 3, (m, p) -> recalibrated.add(p));
+        long t = feed(monitor, LAYOUT, 0, 2_100, 30, 90);
+        t = feed(monitor, LAYOUT, t, 1_000, 10, 50);
+        feed(monitor, LAYOUT, t, 2_100, 30, 90);
+        assertTrue(recalibrated.isEmpty());
+    }
+
+    @Test
+    public void withoutAGripTheRangeMovesAlong() {
+        List<CalibrationProfile> recalibrated = new ArrayList<>();
+        DriftMonitor monitor = new DriftMonitor(profile(), WINDOW, 0.25, 3, (m, p) -> recalibrated.add(p));
+        // Relaxed throughout: the grip samples sit at rest too
+        feed(monitor, LAYOUT, 0, 3_500, 25, 25);
+        CalibrationProfile.Channel channel = recalibrated.get(0).getChannel(0);
+        assertEquals(25, channel.rest, 1);
+        assertEquals(65, channel.active, 1);
+        assertEquals(60, channel.activeMean, 1);
+    }
+
+    @Test
+    public void otherLayoutsAreNotWatched() {
+        List<CalibrationProfile> recalibrated = new ArrayList<>();
+        DriftMonitor monitor = new DriftMonitor(profile(), WINDOW, 0.25, 3, (m, p) -> recalibrated.add(p));
+        feed(monitor, ChannelDescriptor.fromMask(0b10), 0, 5_000, 30, 90);
+        assertEquals(0, monitor.getWindows());
+        assertTrue(recalibrated.isEmpty());
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.handcontroller;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class EmgFeatureExtractorTest {
+
+    private static final int WINDOW = 50;
+    private static final int HOP = 10;
+    private static final double DEADBAND = 0.5;
+
+    // Features of history[end - WINDOW, end) the slow way; pair terms use the sample before each one
+    private static double[] bruteForce(double[] history, int end) {
+        double abs = 0;
+        double squares = 0;
+        double length = 0;
+        int crossings = 0;
+        int slopes = 0;
+        for (int i = end - WINDOW; i < end; i++) {
+            double x = history[i];
+            abs += Math.abs(x);
+            squares += x * x;
+            if (i >= 1) {
+                double step = x - history[i - 1];
+                length += Math.abs(step);
+                if (x * history[i - 1] < 0 && Math.abs(step) >= DEADBAND) {
+                    crossings++;
+                }
+            }
+            if (i >= 2) {
+                double rise = history[i - 1] - history[i - 2];
+                double fall = history[i - 1] - x;
+                if (rise * fall > 0 && (Math.abs(rise) >= DEADBAND || Math.abs(fall) >= DEADBAND)) {
+                    slopes++;
+                }
+            }
+        }
+        return new double[]{abs / WINDOW, Math.sqrt(squares / WINDOW), length, crossings, slopes};
+    }
+
+    @Test
+    public void slidingSumsMatchRecomputingTheWindow() {
+        Random random = new Random(17);
+        int frames = 5_000;
+        double[][] history = new double[2][frames];
+        EmgFeatureExtractor extractor = new EmgFeatureExtractor(4, WINDOW, HOP, DEADBAND);
+        double[] frame = new double[2];
+        double[] features = new double[4 * EmgFeatureExtractor.FEATURES_PER_CHANNEL];
+
+        int vectors = 0;
+        for (int i = 0; i < frames; i++) {
+            // Bursts of activity on channel 0, low noise on channel 1
+            double amplitude = (i / 500) % 2 == 0 ? 20 : 1;
+            history[0][i] = random.nextGaussian() * amplitude;
+            history[1][i] = random.nextGaussian() * 0.3;
+            frame[0] = history[0][i];
+            frame[1] = history[1][i];
+
+            boolean due = extractor.accept(frame, 2);
+            assertEquals(i + 1 >= WINDOW && (i + 1 - WINDOW) % HOP == HOP - 1, due);
+            if (!due) {
+                continue;
+            }
+            vectors++;
+            assertEquals(10, extractor.getFeatures(features));
+            for (int c = 0; c < 2; c++) {
+                double[] expected = bruteForce(history[c], i + 1);
+                for (int f = 0; f < EmgFeatureExtractor.FEATURES_PER_CHANNEL; f++) {
+                    assertEquals("frame " + i + " channel " + c + " feature " + f,
+                            expected[f], features[c * EmgFeatureExtractor.FEATURES_PER_CHANNEL + f], 1e-6);
+                }
+            }
+        }
+        assertEquals((frames - WINDOW) / HOP, vectors);
+    }
+
+    @Test
+    public void layoutChangeRefillsTheWindow() {
+        EmgFeatureExtractor extractor = new EmgFeatureExtractor(4, WINDOW, HOP, DEADBAND);
+        double[] frame = {1, -1, 1};
+        for (int i = 0; i < WINDOW + HOP; i++) {
+            extractor.accept(frame, 2);
+        }
+        for (int i = 0; i < WINDOW + HOP - 2; i++) {
+            assertFalse(extractor.accept(frame, 3));
+        }
+        assertTrue(extractor.accept(frame, 3));
+        assertEquals(15, extractor.getFeatureCount());
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.handcontroller;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EmgFilterChainTest {
+
+    @Test
+    public void rejectsMainsHumAndDcOffset() {
+        EmgFilterChain chain = new EmgFilterChain(1, EmgFilterChain.SampleFrequency.HZ_1000,
+                EmgFilterChain.NotchFrequency.HZ_50);
+        double envelope = 0;
+        for (int n = 0; n < 5000; n++) {
+            double hum = 200 * Math.sin(2 * Math.PI * 50 * n / 1000.0);
+            envelope = chain.process(0, 2048 + hum);
+        }
+        // Same 4-digit coefficients as the firmware, so the notch is ~20 dB rather than ideal
+        assertTrue("envelope " + envelope, envelope < 25);
+    }
+
+    @Test
+    public void passesEmgBand() {
+        EmgFilterChain chain = new EmgFilterChain(1, EmgFilterChain.SampleFrequency.HZ_1000,
+                EmgFilterChain.NotchFrequency.HZ_50);
+        double envelope = 0;
+        for (int n = 0; n < 5000; n++) {
+            envelope = chain.process(0, 2048 + 200 * Math.sin(2 * Math.PI * 120 * n / 1000.0));
+        }
+        assertTrue("envelope " + envelope, envelope > 60);
+    }
+
+    @Test
+    public void keepsChannelsIndependent() {
+        EmgFilterChain chain = new EmgFilterChain(2, EmgFilterChain.SampleFrequency.HZ_500,
+                EmgFilterChain.NotchFrequency.HZ_60);
+        double[] frame = new double[2];
+        for (int n = 0; n < 2000; n++) {
+            frame[0] = 2048 + 300 * Math.sin(2 * Math.PI * 100 * n / 500.0 + 0.3);
+            frame[1] = 2048;
+            chain.processFrame(frame, 2);
+        }
+        assertTrue(frame[0] > 50);
+        assertEquals(0.0, frame[1], 1.0);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.handcontroller;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GestureRecognizerTest {
+
+    private static final int CHANNELS = 8;
+    private static final long PERIOD = 1_000_000L;
+    private static final int REST = 0;
+    private static final int OPEN = 1;
+    private static final int CLOSE = 2;
+
+    private final Random random = new Random(23);
+    private final double[] frame = new double[CHANNELS];
+    private long time;
+
+    // Extensors on channels 0-3, flexors on 4-7, some cross-talk
+    private void synthesize(int gesture) {
+        for (int c = 0; c < CHANNELS; c++) {
+            double amplitude = 2;
+            if (gesture == OPEN) {
+                amplitude = c < 4 ? 30 : 6;
+            } else if (gesture == CLOSE) {
+                amplitude = c < 4 ? 8 : 25;
+            }
+            frame[c] = random.nextGaussian() * amplitude;
+        }
+    }
+
+    private void run(GestureRecognizer recognizer, int gesture, long nanos) {
+        for (long end = time + nanos; time < end; time += PERIOD) {
+            synthesize(gesture);
+            recognizer.accept(time, frame, CHANNELS);
+        }
+    }
+
+    private GestureRecognizer trained(GestureRecognizer.Model model) {
+        GestureRecognizer recognizer = GestureRecognizer.forRate(CHANNELS, 1000, () -> time);
+        for (int gesture = REST; gesture <= CLOSE; gesture++) {
+            // Skip the changeover, as the training screen does
+            run(recognizer, gesture, 500_000_000L);
+            recognizer.startRecording(gesture);
+            run(recognizer, gesture, 4_000_000_000L);
+            recognizer.stopRecording();
+        }
+        assertEquals(160, recognizer.getExampleCount(OPEN), 1);
+        assertNotNull(recognizer.train(model, 3, 50));
+        return recognizer;
+    }
+
+    private double accuracy(GestureRecognizer recognizer) {
+        int correct = 0;
+        int total = 0;
+        for (int gesture = REST; gesture <= CLOSE; gesture++) {
+            // One window to flush the previous gesture
+            run(recognizer, gesture, 200_000_000L);
+            for (int hop = 0; hop < 80; hop++) {
+                run(recognizer, gesture, 25_000_000L);
+                correct += recognizer.getGesture() == gesture ? 1 : 0;
+                total++;
+            }
+        }
+        return correct / (double) total;
+    }
+
+    @Test
+    public void ldaSeparatesGrips() {
+        GestureRecognizer recognizer = trained(GestureRecognizer.Model.LDA);
+        assertTrue(recognizer.getClassifier() instanceof LdaClassifier);
+        assertTrue(accuracy(recognizer) > 0.97);
+    }
+
+    @Test
+    public void knnSeparatesGrips() {
+        GestureRecognizer recognizer = trained(GestureRecognizer.Model.KNN);
+        assertTrue(recognizer.getClassifier() instanceof KnnClassifier);
+        assertTrue(accuracy(recognizer) > 0.97);
+    }
+
+    @Test
+    public void decidesWithinFiftyMilliseconds() {
+        GestureRecognizer recognizer = trained(GestureRecognizer.Model.KNN);
+        run(recognizer, OPEN, 10_000_000_000L);
+        // The clock stands still while classifying, so this is the hop wait alone
+        assertEquals(400, recognizer.getDecisions(), 1);
+        assertTrue(recognizer.getDecisionLatency().getMaxNanos() < 25_000_000L);
+
+        // And classifying all channels costs far less than the frames take to arrive
+        long start = System.nanoTime();
+        run(recognizer, CLOSE, 10_000_000_000L);
+        long elapsed = System.nanoTime() - start;
+        assertTrue("10 s of frames took " + elapsed / 1_000_000 + " ms", elapsed < 1_000_000_000L);
+    }
+
+    @Test
+    public void needsExamplesOfEveryGesture() {
+        GestureRecognizer recognizer = GestureRecognizer.forRate(CHANNELS, 1000, () -> time);
+        recognizer.startRecording(REST);
+        run(recognizer, REST, 2_000_000_000L);
+        recognizer.stopRecording();
+        assertNull(recognizer.train(GestureRecognizer.Model.LDA, 3, 10));
+        assertNull(recognizer.getClassifier());
+        assertEquals(GestureRecognizer.UNKNOWN, recognizer.getGesture());
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.handcontroller;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class IngestPipelineTest {
+
+    private long now;
+
+    private IngestPipeline pipeline(IngestPipeline.RecorderFactory recorders) {
+        return new IngestPipeline(BinaryProtocol.MAX_CHANNELS, 64,
+                SampleRingBuffer.OverflowPolicy.DROP_OLDEST, null, recorders, () -> now += 1000);
+    }
+
+    private static DecimatedSeries[] series(int channels) {
+        DecimatedSeries[] series = new DecimatedSeries[channels];
+        for (int c = 0; c < channels; c++) {
+            series[c] = new DecimatedSeries(new SeriesBuffer(256), 16);
+        }
+        return series;
+    }
+
+    private static void feed(IngestPipeline pipeline, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        pipeline.feed(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void layoutComesFromTheStream() {
+        IngestPipeline pipeline = pipeline(null);
+        assertNull(pipeline.getDescriptor());
+        assertEquals(0, pipeline.drainTo(series(2)));
+
+        feed(pipeline, "1.5,2.5\r\n3.5,4.5\r\n");
+        // The first drain only picks up the layout, so graphs can be built for it
+        DecimatedSeries[] two = series(2);
+        assertEquals(0, pipeline.drainTo(two));
+        assertEquals(ChannelDescriptor.contiguous(2), pipeline.getDescriptor());
+        assertEquals(2, pipeline.drainTo(two));
+        assertEquals(4.5, two[1].getRaw().getValue(1), 0);
+    }
+
+    @Test
+    public void layoutChangeDrainsOldFramesBeforeSwitching() {
+        IngestPipeline pipeline = pipeline(null);
+        DecimatedSeries[] two = series(2);
+        feed(pipeline, "1,2\r\n");
+        pipeline.drainTo(two);
+        pipeline.drainTo(two);
+
+        // The new count has to hold before the layout switches; the first lines are dropped
+        feed(pipeline, "3,4\r\n1,1,1,1,1\r\n2,2,2,2,2\r\n3,3,3,3,3\r\n10,11,12,13,14\r\n");
+        assertEquals(3, pipeline.getRejectedFrames());
+        // The 2-channel frame still goes to the 2-channel series
+        assertEquals(1, pipeline.drainTo(two));
+        assertEquals(2, two[0].getRaw().size());
+        assertEquals(ChannelDescriptor.contiguous(5), pipeline.getDescriptor());
+
+        DecimatedSeries[] five = series(5);
+        assertEquals(1, pipeline.drainTo(five));
+        assertEquals(14.0, five[4].getRaw().getValue(0), 0);
+    }
+
+    @Test
+    public void strayAsciiLineDoesNotRestartTheStream() {
+        List<ChannelDescriptor> opened = new ArrayList<>();
+        IngestPipeline pipeline = pipeline(descriptor -> {
+            opened.add(descriptor);
+            return null;
+        });
+        DecimatedSeries[] three = series(3);
+        feed(pipeline, "1,2,3\r\n4,5,6\r\n");
+        pipeline.drainTo(three);
+        // A line torn by the link in the middle of the stream
+        feed(pipeline, "7,8\r\n9,10,11\r\n12,13,14\r\n");
+
+        assertEquals(4, pipeline.drainTo(three));
+        assertEquals(ChannelDescriptor.contiguous(3), pipeline.getDescriptor());
+        assertEquals(1, opened.size());
+        assertEquals(1, pipeline.getRejectedFrames());
+        assertEquals(12.0, three[0].getRaw().getValue(3), 0);
+    }
+
+    @Test
+    public void binaryMaskNamesTheBoardInputs() {
+        IngestPipeline pipeline = pipeline(null);
+        int mask = 0b10110;
+        BinaryPacketEncoder encoder = new BinaryPacketEncoder(mask);
+        byte[] packet = new byte[BinaryProtocol.MAX_PACKET_SIZE];
+        int length = encoder.encode(new double[]{1, 2, 3, 4, 5, 6}, 2, packet, 0);
+        pipeline.feed(packet, 0, length);
+
+        DecimatedSeries[] three = series(3);
+        pipeline.drainTo(three);
+        pipeline.drainTo(three);
+        ChannelDescriptor descriptor = pipeline.getDescriptor();
+        assertEquals(ChannelDescriptor.fromMask(mask), descriptor);
+        assertEquals(3, descriptor.getChannelCount());
+        assertEquals(4, descriptor.getDeviceChannel(2));
+        assertEquals(mask, descriptor.getChannelMask());
+        assertEquals(6.0, three[2].getRaw().getValue(1), 0.001);
+    }
+
+    @Test
+    public void opensOneRecordingPerLayout() {
+        List<ChannelDescriptor> opened = new ArrayList<>();
+        IngestPipeline pipeline = pipeline(descriptor -> {
+            opened.add(descriptor);
+            return null;
+        });
+        feed(pipeline, "1,2\r\n3,4\r\n5,6,7\r\n8,9,10\r\n11,12,13\r\n14,15,16\r\n");
+
+        assertEquals(2, opened.size());
+        assertEquals(ChannelDescriptor.contiguous(2), opened.get(0));
+        assertEquals(ChannelDescriptor.contiguous(3), opened.get(1));
+    }
+
+    @Test
+    public void timesDecodeAndHandOff() {
+        IngestPipeline pipeline = pipeline(null);
+        // Clock ticks 1 us per read: read at 1 us, frames decoded at 2 and 3 us but
+        // stamped with the read time, as the estimated sample time cannot be later
+        feed(pipeline, "1,2\r\n3,4\r\n");
+        DecimatedSeries[] two = series(2);
+        pipeline.drainTo(two);
+        // Drained at 4 us; hand-off runs from when each frame was queued, not its timestamp
+        assertEquals(2, pipeline.drainTo(two));
+
+        assertEquals(2, pipeline.getDecodeLatency().getCount());
+        assertEquals(2000, pipeline.getDecodeLatency().getMaxNanos());
+        assertEquals(2, pipeline.getHandOffLatency().getCount());
+        assertEquals(2000, pipeline.getHandOffLatency().getMaxNanos());
+        assertEquals(1000, two[0].getRaw().getTimestamp(0));
+        assertEquals(1001, two[0].getRaw().getTimestamp(1));
+    }
+}
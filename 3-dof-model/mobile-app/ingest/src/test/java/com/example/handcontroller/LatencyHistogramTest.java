@@ -0,0 +1,70 @@
+package com.example.handcontroller;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (int b = 1; b < new LatencyHistogram().getBuckets(); b++) {
+            assertEquals(LatencyHistogram.upperBound(b - 1) + 1, LatencyHistogram.lowerBound(b));
+        }
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_NANOS,
+                LatencyHistogram.upperBound(new LatencyHistogram().getBuckets() - 1));
+    }
+
+    @Test
+    public void valuesLandInTheirBucket() {
+        long[] values = {0, 1, 31, 32, 33, 1000, 999_999, 12_345_678, LatencyHistogram.MAX_TRACKABLE_NANOS};
+        for (long value : values) {
+            int bucket = LatencyHistogram.indexOf(value);
+            assertTrue(value >= LatencyHistogram.lowerBound(bucket));
+            assertTrue(value <= LatencyHistogram.upperBound(bucket));
+        }
+    }
+
+    @Test
+    public void percentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1..1000 us
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMaxNanos());
+        assertEquals(500_000, histogram.getPercentileNanos(0.5), 500_000 / 16.0);
+        assertEquals(990_000, histogram.getPercentileNanos(0.99), 990_000 / 16.0);
+        assertEquals(1_000_000, histogram.getPercentileNanos(1.0));
+    }
+
+    @Test
+    public void emptyAndOutOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileNanos(0.99));
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(0.5));
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_NANOS, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void csvHasSummaryAndBuckets() throws IOException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(2_000_000);
+        histogram.record(2_000_000);
+        StringWriter out = new StringWriter();
+        LatencyReport.writeCsv(out, new String[]{"draw"}, new LatencyHistogram[]{histogram});
+
+        String[] lines = out.toString().split("\n");
+        assertEquals("stage,count,p50_ms,p99_ms,max_ms", lines[0]);
+        assertEquals("draw,2,2.000,2.000,2.000", lines[1].trim());
+        assertEquals("stage,bucket_low_ns,bucket_high_ns,count", lines[3]);
+        assertTrue(lines[4].startsWith("draw,") && lines[4].endsWith(",2"));
+    }
+}
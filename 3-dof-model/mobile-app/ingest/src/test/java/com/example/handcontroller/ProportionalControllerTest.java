@@ -0,0 +1,130 @@
+package com.example.handcontroller;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ProportionalControllerTest {
+
+    private static final long TICK = 10_000_000L;
+
+    private final List<int[]> targets = new ArrayList<>();
+    private final ProportionalController controller =
+            new ProportionalController(4, (channel, angle) -> targets.add(new int[]{channel, angle}));
+    private long time;
+
+    // One frame just before each tick, like a 100 Hz loop over a live stream
+    private void run(double[] envelope, long nanos) {
+        for (long end = time + nanos; time < end; time += TICK) {
+            controller.accept(time - 1_000_000L, envelope, envelope.length);
+            controller.tick(time);
+        }
+    }
+
+    private int lastTarget(int channel) {
+        for (int i = targets.size() - 1; i >= 0; i--) {
+            if (targets.get(i)[0] == channel) {
+                return targets.get(i)[1];
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void envelopeMapsLinearlyBetweenRestAndFullGrip() {
+        controller.setRange(0, 10, 50);
+        controller.setRange(1, 10, 50);
+        run(new double[]{30, 5}, TICK);
+        assertEquals(90, lastTarget(0));
+        assertEquals(0, lastTarget(1));
+
+        // Beyond full grip is closed, nothing more
+        run(new double[]{80, 50}, 1_000_000_000L);
+        assertEquals(180, lastTarget(0));
+        assertEquals(180, lastTarget(1));
+        assertEquals(101, controller.getInputAge().getCount());
+    }
+
+    @Test
+    public void movesAtMostAtTheMaximumSpeed() {
+        controller.setRange(0, 0, 100);
+        controller.setSmoothingNanos(0);
+        run(new double[]{0}, TICK);
+        assertEquals(0, lastTarget(0));
+
+        // Default 4 ranges per second: a quarter second from open to closed
+        run(new double[]{100}, 100_000_000L);
+        assertEquals(72, lastTarget(0));
+        run(new double[]{100}, 150_000_000L);
+        assertEquals(180, lastTarget(0));
+    }
+
+    @Test
+    public void steadyGripSendsNothing() {
+        controller.setRange(0, 0, 100);
+        run(new double[]{50}, 1_000_000_000L);
+        int sent = targets.size();
+        assertEquals(controller.getTargetsSent(), sent);
+        run(new double[]{50}, 1_000_000_000L);
+        assertEquals(sent, targets.size());
+        // Channels without a range stay out of it
+        assertEquals(-1, lastTarget(1));
+    }
+
+    @Test
+    public void holdsWhenFramesStop() {
+        controller.setRange(0, 0, 100);
+        run(new double[]{60}, 500_000_000L);
+        int sent = targets.size();
+        for (int i = 0; i < 50; i++) {
+            time += TICK;
+            controller.tick(time);
+        }
+        assertEquals(sent, targets.size());
+        // 200 ms after the last frame
+        assertEquals(32, controller.getStaleTicks());
+        assertEquals(108, lastTarget(0));
+    }
+
+    @Test
+    public void layoutChangeSendsEveryTargetAgain() {
+        controller.setRange(0, 0, 100);
+        run(new double[]{50, 0}, 500_000_000L);
+        targets.clear();
+        run(new double[]{50}, TICK);
+        assertEquals(1, targets.size());
+        assertEquals(90, lastTarget(0));
+    }
+
+    @Test
+    public void emergencyStopLatchesUntilResumed() {
+        // Wired as the service does it: targets become queued positions
+        CommandChannel commands = new CommandChannel(() -> time);
+        ProportionalController latched = new ProportionalController(4,
+                (channel, angle) -> commands.sendPosition("M" + (channel + 1), "M" + (channel + 1) + ":" + angle));
+        latched.setRange(0, 0, 100);
+        latched.accept(time, new double[]{20}, 1);
+        latched.tick(time += TICK);
+        assertEquals(1, commands.getQueued());
+
+        // Emergency stop: halt first, then STOP drops what was queued
+        latched.halt();
+        commands.sendEmergency("STOP");
+        for (int i = 0; i < 50; i++) {
+            latched.accept(time, new double[]{20 + i * 2}, 1);
+            latched.tick(time += TICK);
+        }
+        assertEquals(1, commands.getQueued());
+        assertTrue(latched.isHalted());
+
+        // Turned back on: every target goes out again, from the envelope as it is now
+        latched.resume();
+        latched.accept(time, new double[]{50}, 1);
+        latched.tick(time += TICK);
+        assertEquals(2, commands.getQueued());
+        assertEquals(90, latched.getTarget(0));
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.handcontroller;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReplaySensorSourceTest {
+
+    private static List<Double> decode(ReplaySensorSource.Encoding encoding) throws IOException {
+        List<Double> samples = new ArrayList<>();
+        NegotiatingFrameDecoder decoder = new NegotiatingFrameDecoder(2,
+                (values, channelCount) -> samples.add(values[1]), 64);
+        ReplayFrames frames = new WaveformReplayFrames(2, 1000, 2500, 7L);
+        try (ReplaySensorSource source = new ReplaySensorSource("test", frames,
+                ReplaySensorSource.AS_FAST_AS_POSSIBLE, encoding)) {
+            source.open();
+            byte[] buffer = new byte[37];
+            int n;
+            while ((n = source.read(buffer, 0, buffer.length)) != -1) {
+                decoder.feed(buffer, 0, n);
+            }
+        }
+        return samples;
+    }
+
+    @Test
+    public void replaysEveryFrameThroughTheDecoder() throws IOException {
+        assertEquals(2500, decode(ReplaySensorSource.Encoding.ASCII).size());
+        assertEquals(2500, decode(ReplaySensorSource.Encoding.BINARY).size());
+    }
+
+    @Test
+    public void replayIsDeterministicAcrossRunsAndEncodings() throws IOException {
+        List<Double> first = decode(ReplaySensorSource.Encoding.ASCII);
+        List<Double> second = decode(ReplaySensorSource.Encoding.ASCII);
+        List<Double> binary = decode(ReplaySensorSource.Encoding.BINARY);
+
+        assertEquals(first, second);
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.get(i), binary.get(i), 0.06);
+        }
+    }
+
+    @Test
+    public void pacesAtRequestedSpeed() throws IOException {
+        ReplayFrames frames = new WaveformReplayFrames(1, 1000, 200, 1L);
+        long start = System.nanoTime();
+        try (ReplaySensorSource source = new ReplaySensorSource("test", frames, 2.0,
+                ReplaySensorSource.Encoding.BINARY)) {
+            byte[] buffer = new byte[256];
+            while (source.read(buffer, 0, buffer.length) != -1) {
+                // drain
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        // 200 ms of data at 2x is ~100 ms
+        assertTrue("elapsed " + elapsedMillis, elapsedMillis >= 90 && elapsedMillis < 1000);
+    }
+
+    @Test
+    public void skipsFramesWithMissingSamplesInsteadOfReplayingZeros() throws IOException {
+        double[][] recorded = {{1, 2}, {3, Double.NaN}, {5, 6}};
+        for (ReplaySensorSource.Encoding encoding : ReplaySensorSource.Encoding.values()) {
+            List<Double> samples = new ArrayList<>();
+            NegotiatingFrameDecoder decoder = new NegotiatingFrameDecoder(2,
+                    (values, channelCount) -> samples.add(values[1]), 64);
+            ReplayFrames frames = new ReplayFrames() {
+                private int index;
+
+                @Override
+                public int getChannelCount() {
+                    return 2;
+                }
+
+                @Override
+                public long next(double[] values) {
+                    if (index == recorded.length) {
+                        return -1;
+                    }
+                    System.arraycopy(recorded[index], 0, values, 0, 2);
+                    return index++;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+            try (ReplaySensorSource source = new ReplaySensorSource("test", frames,
+                    ReplaySensorSource.AS_FAST_AS_POSSIBLE, encoding)) {
+                byte[] buffer = new byte[64];
+                int n;
+                while ((n = source.read(buffer, 0, buffer.length)) != -1) {
+                    decoder.feed(buffer, 0, n);
+                }
+                assertEquals(1, source.getFramesSkipped());
+            }
+            assertEquals(2, samples.size());
+            assertEquals(2.0, samples.get(0), 0.01);
+            assertEquals(6.0, samples.get(1), 0.01);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.handcontroller;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RollupRecorderTest {
+
+    private static final long START = 1_700_000_040_000L; // on a minute boundary
+    private static final ChannelDescriptor LAYOUT = ChannelDescriptor.fromMask(0b101);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Channel 0 ramps 0..999 every second, channel 1 is constant 2, at 1 kHz on a clock at 5 s
+    private static void record(RollupRecorder recorder, int seconds) {
+        double[] values = new double[2];
+        long base = 5_000_000_000L;
+        for (int i = 0; i < seconds * 1000; i++) {
+            values[0] = i % 1000;
+            values[1] = 2;
+            recorder.record(base + i * 1_000_000L, values, 2);
+        }
+    }
+
+    @Test
+    public void rollsUpSecondsMinutesAndSession() throws IOException {
+        RollupStore store = new RollupStore(folder.getRoot());
+        try (RollupRecorder recorder = store.openRecorder("board", LAYOUT, START, 5_000_000_000L)) {
+            record(recorder, 150);
+        }
+
+        List<Rollup> seconds = store.query("board", RollupStore.Tier.SECOND, 0, Long.MAX_VALUE);
+        assertEquals(150, seconds.size());
+        Rollup first = seconds.get(0);
+        assertEquals(START, first.getStartMillis());
+        assertEquals(START + 999, first.getEndMillis());
+        assertEquals(0b101, first.getLayoutMask());
+        assertEquals(1000, first.getCount(0));
+        assertEquals(0, first.getMin(0), 0);
+        assertEquals(999, first.getMax(0), 0);
+        assertEquals(499.5, first.getMean(0), 1e-3);
+        assertEquals(Math.sqrt(332833.5), first.getRms(0), 1e-1);
+        assertEquals(2, first.getRms(1), 1e-6);
+
+        List<Rollup> minutes = store.query("board", RollupStore.Tier.MINUTE, 0, Long.MAX_VALUE);
+        assertEquals(3, minutes.size());
+        assertEquals(60_000, minutes.get(0).getCount(0));
+        assertEquals(30_000, minutes.get(2).getCount(0));
+        assertEquals(499.5, minutes.get(1).getMean(0), 1e-3);
+
+        List<Rollup> sessions = store.query("board", RollupStore.Tier.SESSION, 0, Long.MAX_VALUE);
+        assertEquals(1, sessions.size());
+        assertEquals(150_000, sessions.get(0).getCount(0));
+        assertEquals(START + 149_999, sessions.get(0).getEndMillis());
+    }
+
+    @Test
+    public void countsActivationsWithHysteresis() throws IOException {
+        RollupStore store = new RollupStore(folder.getRoot());
+        try (RollupRecorder recorder = store.openRecorder("board", LAYOUT, START, 5_000_000_000L)) {
+            recorder.setThresholds(0, 800, 200);
+            record(recorder, 10);
+        }
+        List<Rollup> seconds = store.query("board", RollupStore.Tier.SECOND, 0, Long.MAX_VALUE);
+        // One rise above 800 per ramp, re-armed when it falls back to 0
+        assertEquals(1, seconds.get(3).getActivations(0));
+        assertEquals(0, seconds.get(3).getActivations(1));
+        assertEquals(10, store.query("board", RollupStore.Tier.SESSION, 0, Long.MAX_VALUE).get(0)
+                .getActivations(0));
+    }
+
+    @Test
+    public void dropsATornLastRecord() throws IOException {
+        RollupStore store = new RollupStore(folder.getRoot());
+        try (RollupRecorder recorder = store.openRecorder("board", LAYOUT, START, 5_000_000_000L)) {
+            record(recorder, 5);
+        }
+        File[] files = new File(new File(folder.getRoot(), "board"), "seconds").listFiles();
+        try (RandomAccessFile raf = new RandomAccessFile(files[0], "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+        assertEquals(4, store.query("board", RollupStore.Tier.SECOND, 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void sessionsAppendToOneFile() throws IOException {
+        RollupStore store = new RollupStore(folder.getRoot());
+        try (RollupRecorder recorder = store.openRecorder("board", LAYOUT, START, 5_000_000_000L)) {
+            record(recorder, 2);
+        }
+        try (RollupRecorder recorder = store.openRecorder("board", LAYOUT, START + 3_600_000, 5_000_000_000L)) {
+            record(recorder, 3);
+        }
+        List<Rollup> sessions = store.query("board", RollupStore.Tier.SESSION, 0, Long.MAX_VALUE);
+        assertEquals(2, sessions.size());
+        assertEquals(3000, sessions.get(1).getCount(0));
+        assertEquals(1, store.query("board", RollupStore.Tier.SESSION, START + 3_600_000, Long.MAX_VALUE).size());
+    }
+}
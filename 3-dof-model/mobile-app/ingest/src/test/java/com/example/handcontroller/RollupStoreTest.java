@@ -0,0 +1,102 @@
+package com.example.handcontroller;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class RollupStoreTest {
+
+    private static final long DAY = RollupStore.DAY_MILLIS;
+    private static final long FIRST_DAY = 1_700_006_400_000L - 90 * DAY;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // A short session on the given day with channel 0 peaking at peak
+    private static void session(RollupStore store, String device, long startMillis, double peak)
+            throws IOException {
+        try (RollupRecorder recorder = store.openRecorder(device, ChannelDescriptor.fromMask(0b11),
+                startMillis, 0)) {
+            double[] values = new double[2];
+            for (int i = 0; i < 2000; i++) {
+                values[0] = i == 1000 ? peak : 1;
+                values[1] = 3;
+                recorder.record(i * 1_000_000L, values, 2);
+            }
+        }
+    }
+
+    @Test
+    public void dailyPeaksOverNinetyDays() throws IOException {
+        RollupStore store = new RollupStore(folder.getRoot());
+        for (int day = 0; day < 90; day += 3) {
+            session(store, "AA:BB", FIRST_DAY + day * DAY + 9 * 3_600_000L, 100 + day);
+            session(store, "AA:BB", FIRST_DAY + day * DAY + 18 * 3_600_000L, 50);
+        }
+        session(store, "other", FIRST_DAY, 999);
+
+        long started = System.nanoTime();
+        Rollup[] days = store.daily("AA:BB", 0, FIRST_DAY, 90);
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+        assertEquals(90, days.length);
+        for (int day = 0; day < 90; day++) {
+            if (day % 3 == 0) {
+                assertEquals(100 + day, days[day].getMax(0), 0);
+                assertEquals(4000, days[day].getCount(0));
+                assertEquals(1 << 0, days[day].getLayoutMask());
+            } else {
+                assertNull(days[day]);
+            }
+        }
+        assertEquals(3, store.daily("AA:BB", 1, FIRST_DAY, 90)[0].getMax(0), 0);
+        assertNull(store.daily("AA:BB", 5, FIRST_DAY, 90)[0]);
+        // Generous for a loaded build machine; on a phone this is a few milliseconds
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 500);
+    }
+
+    @Test
+    public void noHistoryIsEmpty() throws IOException {
+        RollupStore store = new RollupStore(folder.getRoot());
+        assertTrue(store.query("none", RollupStore.Tier.MINUTE, 0, Long.MAX_VALUE).isEmpty());
+        assertNull(store.daily("none", 0, FIRST_DAY, 90)[89]);
+    }
+
+    @Test
+    public void mergeWeighsByCount() {
+        Rollup a = new Rollup(0, 10, 1, new int[]{1}, new double[]{2}, new double[]{2}, new double[]{2},
+                new double[]{2}, new int[]{1});
+        Rollup b = new Rollup(20, 30, 1, new int[]{3}, new double[]{4}, new double[]{6}, new double[]{5},
+                new double[]{Math.sqrt(26)}, new int[]{2});
+        Rollup merged = a.merge(b);
+        assertEquals(0, merged.getStartMillis());
+        assertEquals(30, merged.getEndMillis());
+        assertEquals(4, merged.getCount(0));
+        assertEquals(2, merged.getMin(0), 0);
+        assertEquals(6, merged.getMax(0), 0);
+        assertEquals(4.25, merged.getMean(0), 1e-9);
+        assertEquals(Math.sqrt((4 + 78) / 4.0), merged.getRms(0), 1e-9);
+        assertEquals(3, merged.getActivations(0));
+    }
+
+    @Test
+    public void prunesFinerTiersOnly() throws IOException {
+        RollupStore store = new RollupStore(folder.getRoot());
+        session(store, "board", FIRST_DAY, 10);
+        File device = new File(folder.getRoot(), "board");
+        long old = System.currentTimeMillis() - 30 * DAY;
+        for (File file : new File(device, "seconds").listFiles()) {
+            assertTrue(file.setLastModified(old));
+        }
+        assertEquals(1, store.prune(System.currentTimeMillis(), RollupStore.DEFAULT_SECOND_RETENTION_MILLIS,
+                RollupStore.DEFAULT_MINUTE_RETENTION_MILLIS));
+        assertTrue(store.query("board", RollupStore.Tier.SECOND, 0, Long.MAX_VALUE).isEmpty());
+        assertEquals(1, store.query("board", RollupStore.Tier.MINUTE, 0, Long.MAX_VALUE).size());
+        assertEquals(1, store.query("board", RollupStore.Tier.SESSION, 0, Long.MAX_VALUE).size());
+    }
+}
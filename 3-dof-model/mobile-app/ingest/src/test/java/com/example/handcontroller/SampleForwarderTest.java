@@ -0,0 +1,231 @@
+package com.example.handcontroller;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SampleForwarderTest {
+
+    private ServerSocket server;
+    private SampleForwarder forwarder;
+
+    @After
+    public void tearDown() throws IOException {
+        if (forwarder != null) {
+            forwarder.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private int listen(int receiveBufferBytes) throws IOException {
+        server = new ServerSocket();
+        if (receiveBufferBytes > 0) {
+            server.setReceiveBufferSize(receiveBufferBytes);
+        }
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        return server.getLocalPort();
+    }
+
+    private static void awaitConnected(SampleForwarder forwarder) throws InterruptedException {
+        for (int i = 0; i < 200 && !forwarder.isConnected(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(forwarder.isConnected());
+    }
+
+    // Inputs 0 and 2 of the board; the second is missing on frame 5
+    private static void feed(SampleForwarder forwarder, int from, int frames) {
+        ChannelDescriptor layout = ChannelDescriptor.fromMask(0b101);
+        double[] values = new double[2];
+        for (int i = from; i < from + frames; i++) {
+            values[0] = i;
+            values[1] = i == 5 ? Double.NaN : -i * 0.25;
+            forwarder.accept(layout, i * 1_000_000L, values, 2);
+        }
+    }
+
+    private static int count(String text, String of) {
+        int n = 0;
+        for (int i = text.indexOf(of); i >= 0; i = text.indexOf(of, i + 1)) {
+            n++;
+        }
+        return n;
+    }
+
+    @Test
+    public void sendsJsonBatchesAsLinesOverTcp() throws Exception {
+        int port = listen(0);
+        forwarder = new SampleForwarder(SampleForwarder.Endpoint.parse("tcp://127.0.0.1:" + port), 4,
+                1000L, 0L);
+        awaitConnected(forwarder);
+        feed(forwarder, 0, 120);
+
+        try (Socket client = server.accept()) {
+            client.setSoTimeout(5000);
+            BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(),
+                    StandardCharsets.US_ASCII));
+            String first = in.readLine();
+            assertTrue(first, first.startsWith(
+                    "[{\"timestamp\":1000,\"channel1\":0,\"channel3\":0},{\"timestamp\":1001,\"channel1\":1,"));
+            assertTrue(first.contains("{\"timestamp\":1005,\"channel1\":5,\"channel3\":null}"));
+            assertTrue(first.endsWith("]"));
+            // Sealed every 50 ms of samples, the last 20 still open
+            int samples = count(first, "{");
+            while (samples < 100) {
+                samples += count(in.readLine(), "{");
+            }
+            assertEquals(100, samples);
+        }
+        assertEquals(1, forwarder.getDecimation());
+        assertEquals(0, forwarder.getFramesDropped());
+    }
+
+    @Test
+    public void sendsMaskedTextFramesOverWebSocket() throws Exception {
+        int port = listen(0);
+        forwarder = new SampleForwarder(SampleForwarder.Endpoint.parse("ws://127.0.0.1:" + port + "/emg"), 4,
+                1000L, 0L);
+
+        try (Socket client = server.accept()) {
+            client.setSoTimeout(5000);
+            InputStream in = client.getInputStream();
+            String request = SampleForwarder.readHeaders(in);
+            assertTrue(request, request.startsWith("GET /emg HTTP/1.1\r\n"));
+            String key = null;
+            for (String line : request.split("\r\n")) {
+                if (line.startsWith("Sec-WebSocket-Key: ")) {
+                    key = line.substring("Sec-WebSocket-Key: ".length());
+                }
+            }
+            assertNotNull(key);
+            OutputStream out = client.getOutputStream();
+            out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + SampleForwarder.acceptKey(key) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            // Whatever the server sends back is skipped
+            out.write(new byte[]{(byte) 0x81, 2, '{', '}'});
+            out.flush();
+
+            awaitConnected(forwarder);
+            feed(forwarder, 0, 60);
+
+            DataInputStream frames = new DataInputStream(in);
+            assertEquals(0x81, frames.readUnsignedByte());
+            int length = frames.readUnsignedByte();
+            assertTrue((length & 0x80) != 0);
+            length &= 0x7F;
+            if (length == 126) {
+                length = frames.readUnsignedShort();
+            }
+            byte[] mask = new byte[4];
+            frames.readFully(mask);
+            byte[] payload = new byte[length];
+            frames.readFully(payload);
+            for (int i = 0; i < length; i++) {
+                payload[i] ^= mask[i & 3];
+            }
+            String json = new String(payload, StandardCharsets.US_ASCII);
+            assertTrue(json, json.startsWith("[{\"timestamp\":1000,\"channel1\":0,\"channel3\":0},"));
+            assertEquals(50, count(json, "{"));
+        }
+    }
+
+    @Test
+    public void decimatesAndDropsInsteadOfBlockingWhenTheServerStalls() throws Exception {
+        int port = listen(4096);
+        forwarder = new SampleForwarder(SampleForwarder.Endpoint.parse("tcp://127.0.0.1:" + port), 4,
+                1000L, 0L);
+        awaitConnected(forwarder);
+
+        try (Socket client = server.accept()) {
+            // Never read: the sender blocks once the socket buffers are full
+            long start = System.nanoTime();
+            feed(forwarder, 0, 200_000);
+            assertTrue(System.nanoTime() - start < 5_000_000_000L);
+            assertEquals(SampleForwarder.MAX_DECIMATION, forwarder.getDecimation());
+            assertTrue(forwarder.getFramesDropped() > 0);
+            assertTrue(forwarder.getFramesForwarded() + forwarder.getFramesDropped() > 200_000 - 64);
+
+            // Reading again: the rate recovers
+            Thread reader = new Thread(() -> {
+                byte[] buffer = new byte[8192];
+                try {
+                    InputStream in = client.getInputStream();
+                    while (in.read(buffer) > 0) {
+                        // Discard
+                    }
+                } catch (IOException ignored) {
+                }
+            });
+            reader.start();
+            // 50 ms of samples every millisecond or so, well below what loopback takes
+            int frame = 200_000;
+            for (int i = 0; i < 5000 && forwarder.getDecimation() > 1; i++) {
+                feed(forwarder, frame, 50);
+                frame += 50;
+                Thread.sleep(1);
+            }
+            assertEquals(1, forwarder.getDecimation());
+        }
+    }
+
+    @Test
+    public void discardsWhileNobodyListens() throws Exception {
+        int port = listen(0);
+        server.close();
+        forwarder = new SampleForwarder(SampleForwarder.Endpoint.parse("tcp://127.0.0.1:" + port), 4,
+                1000L, 0L);
+        for (int i = 0; i < 20; i++) {
+            feed(forwarder, i * 1000, 1000);
+            Thread.sleep(5);
+        }
+        assertFalse(forwarder.isConnected());
+        assertEquals(0, forwarder.getBatchesSent());
+    }
+
+    @Test
+    public void parsesEndpoints() {
+        SampleForwarder.Endpoint ws = SampleForwarder.Endpoint.parse(" ws://192.168.1.20:8080 ");
+        assertTrue(ws.webSocket);
+        assertEquals("192.168.1.20", ws.host);
+        assertEquals(8080, ws.port);
+        assertEquals("/", ws.path);
+        assertEquals("ws://localhost:80/live?x=1", SampleForwarder.Endpoint.parse("ws://localhost/live?x=1").toString());
+        assertEquals("tcp://10.0.2.2:9000", SampleForwarder.Endpoint.parse("tcp://10.0.2.2:9000").toString());
+        for (String bad : new String[]{"wss://host:443", "tcp://host", "http://host:80", "127.0.0.1:8080"}) {
+            try {
+                SampleForwarder.Endpoint.parse(bad);
+                fail(bad);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void encodesHandshakeKeys() {
+        // RFC 6455, section 1.3
+        assertEquals("s3pPLMBiTxaQ9kYGzzhZRbK+xOo=", SampleForwarder.acceptKey("dGhlIHNhbXBsZSBub25jZQ=="));
+        Random random = new Random(7);
+        for (int length = 0; length < 40; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            assertEquals(java.util.Base64.getEncoder().encodeToString(data), SampleForwarder.base64(data));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.handcontroller;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SampleRingBufferTest {
+
+    private final long[] times = new long[16];
+    // Channel-major: channel c of frame i is at c * 16 + i
+    private final double[] min = new double[2 * 16];
+    private final double[] max = new double[2 * 16];
+
+    @Test
+    public void dropOldestKeepsNewestFrames() {
+        SampleRingBuffer buffer = new SampleRingBuffer(4, 1, SampleRingBuffer.OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 6; i++) {
+            buffer.offer(i, new double[]{i}, 1);
+        }
+
+        assertEquals(4, buffer.drainTo(times, min, max, 16));
+        assertEquals(2.0, min[0], 0);
+        assertEquals(5.0, max[3], 0);
+        assertEquals(2, buffer.getDroppedSamples());
+    }
+
+    @Test
+    public void aggregateFoldsOverflowIntoOneMinMaxSlot() {
+        SampleRingBuffer buffer = new SampleRingBuffer(2, 1, SampleRingBuffer.OverflowPolicy.AGGREGATE_MIN_MAX);
+        buffer.offer(0, new double[]{1}, 1);
+        buffer.offer(1, new double[]{2}, 1);
+        buffer.offer(2, new double[]{9}, 1);
+        buffer.offer(3, new double[]{-4}, 1);
+        buffer.offer(4, new double[]{5}, 1);
+
+        assertEquals(2, buffer.drainTo(times, min, max, 16));
+        // Room again: the next offer publishes the aggregate first
+        buffer.offer(5, new double[]{7}, 1);
+
+        assertEquals(2, buffer.drainTo(times, min, max, 16));
+        assertEquals(-4.0, min[0], 0);
+        assertEquals(9.0, max[0], 0);
+        assertEquals(2, times[0]);
+        assertEquals(7.0, max[1], 0);
+        assertEquals(2, buffer.getCoalescedSamples());
+        assertEquals(0, buffer.getDroppedSamples());
+    }
+
+    @Test
+    public void queueTimesTravelApartFromTimestamps() {
+        SampleRingBuffer buffer = new SampleRingBuffer(2, 1, SampleRingBuffer.OverflowPolicy.AGGREGATE_MIN_MAX);
+        long[] queued = new long[16];
+        buffer.offer(100, 5000, new double[]{1}, 1);
+        buffer.offer(101, 5001, new double[]{2}, 1);
+        // Coalesced: the slot keeps the queue time of its first sample
+        buffer.offer(102, 5002, new double[]{3}, 1);
+        buffer.offer(103, 5003, new double[]{4}, 1);
+
+        assertEquals(2, buffer.drainTo(times, queued, min, max, 16));
+        assertEquals(100, times[0]);
+        assertEquals(5000, queued[0]);
+        assertEquals(5001, queued[1]);
+        buffer.offer(104, 5004, new double[]{5}, 1);
+        assertEquals(2, buffer.drainTo(times, queued, min, max, 16));
+        assertEquals(102, times[0]);
+        assertEquals(5002, queued[0]);
+        assertEquals(5004, queued[1]);
+    }
+
+    @Test
+    public void missingChannelsAreNaN() {
+        SampleRingBuffer buffer = new SampleRingBuffer(4, 2, SampleRingBuffer.OverflowPolicy.DROP_OLDEST);
+        buffer.offer(0, new double[]{3}, 1);
+
+        assertEquals(1, buffer.drainTo(times, min, max, 16));
+        assertEquals(3.0, min[0], 0);
+        assertTrue(Double.isNaN(min[16]));
+    }
+
+    @Test
+    public void drainIsChannelMajorAcrossTheWrap() {
+        SampleRingBuffer buffer = new SampleRingBuffer(4, 2, SampleRingBuffer.OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 3; i++) {
+            buffer.offer(i, new double[]{i, -i}, 2);
+        }
+        assertEquals(3, buffer.drainTo(times, min, max, 16));
+        // Slots 3, 0 and 1: the read wraps around the end of each plane
+        for (int i = 3; i < 6; i++) {
+            buffer.offer(i, new double[]{i, -i}, 2);
+        }
+
+        assertEquals(3, buffer.drainTo(times, min, max, 16));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(3 + i, times[i]);
+            assertEquals(3.0 + i, max[i], 0);
+            assertEquals(-3.0 - i, max[16 + i], 0);
+        }
+    }
+
+    @Test
+    public void concurrentProducerNeverReordersFrames() throws InterruptedException {
+        SampleRingBuffer buffer = new SampleRingBuffer(64, 1, SampleRingBuffer.OverflowPolicy.DROP_OLDEST);
+        int total = 200_000;
+        Thread producer = new Thread(() -> {
+            double[] value = new double[1];
+            for (int i = 1; i <= total; i++) {
+                value[0] = i;
+                buffer.offer(i, value, 1);
+            }
+        });
+        producer.start();
+
+        long[] t = new long[32];
+        double[] lo = new double[32];
+        double[] hi = new double[32];
+        double last = 0;
+        while (producer.isAlive() || buffer.size() > 0) {
+            int n = buffer.drainTo(t, lo, hi, 32);
+            for (int i = 0; i < n; i++) {
+                assertTrue(lo[i] > last);
+                assertEquals((double) t[i], lo[i], 0);
+                last = lo[i];
+            }
+        }
+        producer.join();
+        assertEquals(total, (long) last);
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.handcontroller;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SeriesBufferTest {
+
+    @Test
+    public void overwritesOldestOnceFull() {
+        SeriesBuffer series = new SeriesBuffer(3);
+        for (int i = 0; i < 5; i++) {
+            series.append(i * 10L, i);
+        }
+
+        assertEquals(3, series.size());
+        assertEquals(2.0, series.getValue(0), 0);
+        assertEquals(4.0, series.getValue(2), 0);
+        assertEquals(40L, series.getNewestTimestamp());
+    }
+
+    @Test
+    public void findsFirstIndexInWindow() {
+        SeriesBuffer series = new SeriesBuffer(4);
+        for (int i = 0; i < 6; i++) {
+            series.append(i * 10L, i);
+        }
+
+        // Retained timestamps are 20, 30, 40, 50
+        assertEquals(0, series.indexAtOrAfter(0));
+        assertEquals(1, series.indexAtOrAfter(25));
+        assertEquals(3, series.indexAtOrAfter(50));
+        assertEquals(4, series.indexAtOrAfter(51));
+    }
+}
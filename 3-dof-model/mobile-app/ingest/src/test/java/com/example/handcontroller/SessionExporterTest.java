@@ -0,0 +1,158 @@
+package com.example.handcontroller;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class SessionExporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // 250 samples a millisecond apart; channel 1 missing on every 10th
+    private File record() throws IOException {
+        File file = folder.newFile("session" + SessionFormat.FILE_EXTENSION);
+        try (SessionRecorder recorder = new SessionRecorder(file, 2, 1234L, 100, 4)) {
+            double[] values = new double[2];
+            for (int i = 0; i < 250; i++) {
+                values[0] = i * 0.5;
+                values[1] = -i;
+                recorder.record(5_000_000L + i * 1_000_000L, values, i % 10 == 0 ? 1 : 2);
+                while (recorder.getChunksWritten() < i / 100 - 2) {
+                    Thread.yield();
+                }
+            }
+        }
+        return file;
+    }
+
+    private static byte[] export(File file, SessionExporter.Format format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SessionReader reader = new SessionReader(file)) {
+            assertEquals(250, SessionExporter.export(reader, format, out, null));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void writesGzipCsvRows() throws IOException {
+        byte[] data = export(record(), SessionExporter.Format.CSV_GZIP);
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(data)), StandardCharsets.US_ASCII))) {
+            assertEquals("time_s,channel_1,channel_2", in.readLine());
+            assertEquals("0,0,", in.readLine());
+            assertEquals("0.001,0.5,-1", in.readLine());
+            int rows = 2;
+            String line;
+            String last = null;
+            while ((line = in.readLine()) != null) {
+                last = line;
+                rows++;
+            }
+            assertEquals(250, rows);
+            assertEquals("0.249,124.5,-249", last);
+        }
+    }
+
+    @Test
+    public void writesColumnarBlocksPerChunk() throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(gunzip(export(record(), SessionExporter.Format.COLUMNAR)))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(SessionExporter.COLUMNAR_MAGIC, in.getInt());
+        assertEquals(SessionExporter.COLUMNAR_VERSION, in.getInt());
+        assertEquals(2, in.getInt());
+        assertEquals(1234L, in.getLong());
+        assertEquals(5_000_000L, in.getLong());
+
+        long time = 5_000_000L;
+        int sample = 0;
+        while (in.hasRemaining()) {
+            int samples = in.getInt();
+            for (int i = 0; i < samples; i++) {
+                time += in.getLong();
+                assertEquals(5_000_000L + (sample + i) * 1_000_000L, time);
+            }
+            for (int i = 0; i < samples; i++) {
+                assertEquals((sample + i) * 0.5f, in.getFloat(), 0);
+            }
+            for (int i = 0; i < samples; i++) {
+                float value = in.getFloat();
+                if ((sample + i) % 10 == 0) {
+                    assertTrue(Float.isNaN(value));
+                } else {
+                    assertEquals(-(sample + i), value, 0);
+                }
+            }
+            sample += samples;
+        }
+        assertEquals(250, sample);
+    }
+
+    @Test
+    public void namesCsvColumnsAfterTheBoardInputs() throws IOException {
+        File file = folder.newFile("sparse" + SessionFormat.FILE_EXTENSION);
+        try (SessionRecorder recorder = new SessionRecorder(file, ChannelDescriptor.fromMask(0b101), 0L, 100, 4)) {
+            recorder.record(0L, new double[]{1, 2}, 2);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SessionReader reader = new SessionReader(file)) {
+            SessionExporter.export(reader, SessionExporter.Format.CSV_GZIP, out, null);
+        }
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())), StandardCharsets.US_ASCII))) {
+            assertEquals("time_s,channel_1,channel_3", in.readLine());
+            assertEquals("0,1,2", in.readLine());
+        }
+    }
+
+    @Test
+    public void stopsWhenProgressSaysSo() throws IOException {
+        File file = record();
+        try (SessionReader reader = new SessionReader(file)) {
+            long written = SessionExporter.export(reader, SessionExporter.Format.CSV_GZIP,
+                    new ByteArrayOutputStream(), (done, total) -> done < 100);
+            assertEquals(100, written);
+        }
+    }
+
+    @Test
+    public void formatsFixedPointWithoutTrailingZeros() {
+        TextBuffer text = new TextBuffer(256);
+        text.appendFixed(1.5, 3).append(' ')
+                .appendFixed(-0.0004, 3).append(' ')
+                .appendFixed(-0.25, 3).append(' ')
+                .appendFixed(2.0005, 3).append(' ')
+                .appendFixed(0.000001, 6).append(' ')
+                .appendFixed(12.0999, 3).append(' ')
+                .appendFixed(Double.POSITIVE_INFINITY, 3);
+        assertEquals("1.5 0 -0.25 2.001 0.000001 12.1 Infinity", text.toString());
+    }
+}
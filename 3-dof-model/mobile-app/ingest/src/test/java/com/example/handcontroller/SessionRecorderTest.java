@@ -0,0 +1,87 @@
+package com.example.handcontroller;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class SessionRecorderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File record(int frames, int framesPerChunk) throws IOException {
+        File file = folder.newFile("session" + SessionFormat.FILE_EXTENSION);
+        try (SessionRecorder recorder = new SessionRecorder(file, 2, 1234L, framesPerChunk, 4)) {
+            double[] values = new double[2];
+            for (int i = 0; i < frames; i++) {
+                values[0] = i;
+                values[1] = -i;
+                recorder.record(i * 1_000_000L, values, 2);
+                // Let the writer keep up, this test is about the format
+                while (recorder.getChunksWritten() < i / framesPerChunk - 2) {
+                    Thread.yield();
+                }
+            }
+        }
+        return file;
+    }
+
+    @Test
+    public void roundTripsChunksThroughIndex() throws IOException {
+        File file = record(250, 100);
+
+        try (SessionReader reader = new SessionReader(file)) {
+            assertEquals(2, reader.getChannelCount());
+            assertEquals(1234L, reader.getStartWallClockMillis());
+            assertEquals(3, reader.getChunkCount());
+            assertEquals(250, reader.getTotalSamples());
+            assertEquals(200_000_000L, reader.getChunkFirstTimestamp(2));
+
+            long[] times = new long[100];
+            float[] values = new float[200];
+            assertEquals(50, reader.readChunk(2, times, values));
+            assertEquals(249_000_000L, times[49]);
+            assertEquals(-249f, values[99], 0);
+        }
+    }
+
+    @Test
+    public void chunkMasksNameTheBoardInputs() throws IOException {
+        File file = folder.newFile("sparse" + SessionFormat.FILE_EXTENSION);
+        // Inputs 1 and 3; the first chunk only ever gets the first channel
+        try (SessionRecorder recorder = new SessionRecorder(file, ChannelDescriptor.fromMask(0b1010), 0L, 10, 4)) {
+            double[] values = {1, 2};
+            for (int i = 0; i < 20; i++) {
+                recorder.record(i * 1_000_000L, values, i < 10 ? 1 : 2);
+            }
+        }
+
+        try (SessionReader reader = new SessionReader(file)) {
+            assertEquals(2, reader.getChunkCount());
+            assertEquals(0b0010, reader.getChunkChannelMask(0));
+            assertEquals(0b1010, reader.getChunkChannelMask(1));
+            assertEquals(ChannelDescriptor.fromMask(0b1010), reader.getLayout());
+        }
+    }
+
+    @Test
+    public void recoversUnindexedChunksAndDropsTornTail() throws IOException {
+        File file = record(300, 100);
+        // Lose the index entirely and tear the last chunk, as after a crash mid-write
+        assertTrue(new File(file.getPath() + SessionFormat.INDEX_EXTENSION).delete());
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+
+        try (SessionReader reader = new SessionReader(file)) {
+            assertEquals(2, reader.getChunkCount());
+            assertEquals(200, reader.getTotalSamples());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.handcontroller;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StreamMergerTest {
+
+    private long now;
+
+    private IngestPipeline link() {
+        return new IngestPipeline(BinaryProtocol.MAX_CHANNELS, 64,
+                SampleRingBuffer.OverflowPolicy.DROP_OLDEST, null, null, () -> now);
+    }
+
+    private void feed(IngestPipeline link, long at, String line) {
+        now = at;
+        byte[] bytes = (line + "\r\n").getBytes(StandardCharsets.US_ASCII);
+        link.feed(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void mergesLinksInTimestampOrder() {
+        IngestPipeline left = link();
+        IngestPipeline right = link();
+        feed(left, 10, "1,1");
+        feed(right, 15, "2,2,2");
+        feed(left, 20, "3,3");
+        feed(left, 30, "5,5");
+        feed(right, 25, "4,4,4");
+
+        IngestPipeline[] links = {left, right};
+        left.advanceStream();
+        right.advanceStream();
+        List<String> order = new ArrayList<>();
+        now = 1_000_000_000L;
+        StreamMerger merger = new StreamMerger(() -> now);
+        int merged = merger.drain(links, 2, (link, timestamp, values, channelCount) ->
+                order.add(link + "@" + timestamp + "x" + channelCount + "=" + (int) values[0]));
+
+        assertEquals(5, merged);
+        assertEquals(List.of("0@10x2=1", "1@15x3=2", "0@20x2=3", "1@25x3=4", "0@30x2=5"), order);
+        assertEquals(0, merger.getOutOfOrderFrames());
+    }
+
+    @Test
+    public void holdsBackOnlyTheNewestFrames() {
+        IngestPipeline left = link();
+        IngestPipeline right = link();
+        feed(left, 1_000, "1");
+        feed(left, 9_000_000, "2");
+        left.advanceStream();
+        right.advanceStream();
+
+        // Right never sends anything; left still flows up to now - hold back
+        now = 10_000_000;
+        List<Long> times = new ArrayList<>();
+        StreamMerger merger = new StreamMerger(5_000_000, () -> now);
+        merger.drain(new IngestPipeline[]{left, right, null}, 3,
+                (link, timestamp, values, channelCount) -> times.add(timestamp));
+        assertEquals(List.of(1_000L), times);
+
+        now = 20_000_000;
+        merger.drain(new IngestPipeline[]{left, right, null}, 3,
+                (link, timestamp, values, channelCount) -> times.add(timestamp));
+        assertEquals(List.of(1_000L, 9_000_000L), times);
+        assertEquals(0, merger.getOutOfOrderFrames());
+    }
+}
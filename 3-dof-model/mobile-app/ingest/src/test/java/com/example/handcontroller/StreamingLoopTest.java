@@ -0,0 +1,241 @@
+package com.example.handcontroller;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class StreamingLoopTest {
+
+    /** Live source that fails to connect a few times, then sends one line per read until closed. */
+    private static class FlakySource implements SensorSource {
+        final CountDownLatch streaming = new CountDownLatch(1);
+        volatile int failuresLeft;
+        volatile boolean dropAfterFirstRead;
+        volatile RuntimeException readFailure;
+        volatile int opens;
+        private volatile boolean open;
+        private boolean sentLine;
+
+        FlakySource(int failures) {
+            this.failuresLeft = failures;
+        }
+
+        @Override
+        public void open() throws IOException {
+            opens++;
+            if (failuresLeft > 0) {
+                failuresLeft--;
+                throw new IOException("connect failed");
+            }
+            open = true;
+            sentLine = false;
+        }
+
+        @Override
+        public synchronized int read(byte[] buffer, int offset, int length) throws IOException {
+            if (!sentLine) {
+                sentLine = true;
+                byte[] line = "1,2\r\n".getBytes(StandardCharsets.US_ASCII);
+                System.arraycopy(line, 0, buffer, offset, line.length);
+                return line.length;
+            }
+            streaming.countDown();
+            if (dropAfterFirstRead) {
+                dropAfterFirstRead = false;
+                throw new IOException("link lost");
+            }
+            RuntimeException failure = readFailure;
+            if (failure != null) {
+                readFailure = null;
+                throw failure;
+            }
+            // Blocks like a socket until closed
+            while (open) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            throw new IOException("closed");
+        }
+
+        @Override
+        public void write(byte[] data) {
+        }
+
+        @Override
+        public String getName() {
+            return "flaky";
+        }
+
+        @Override
+        public String getAddress() {
+            return "00:00:00:00:00:01";
+        }
+
+        @Override
+        public boolean isLive() {
+            return true;
+        }
+
+        @Override
+        public synchronized void close() {
+            open = false;
+            notifyAll();
+        }
+    }
+
+    private final List<StreamingLoop.State> states = new CopyOnWriteArrayList<>();
+    private final List<IOException> errors = new CopyOnWriteArrayList<>();
+
+    private StreamingLoop loop() {
+        return new StreamingLoop(
+                source -> new IngestPipeline(2, SampleRingBuffer.OverflowPolicy.DROP_OLDEST, null, null,
+                        NanoClock.SYSTEM),
+                new ReconnectBackoff(1, 8, new Random(1)),
+                (source, state, error) -> {
+                    states.add(state);
+                    if (error != null) {
+                        errors.add(error);
+                    }
+                });
+    }
+
+    private static Thread start(StreamingLoop loop) {
+        Thread thread = new Thread(loop, "sensor-io-test");
+        thread.start();
+        return thread;
+    }
+
+    @Test
+    public void backoffGrowsAndIsCapped() {
+        ReconnectBackoff backoff = new ReconnectBackoff(100, 1000, new Random(3));
+        long[] ceilings = {100, 200, 400, 800, 1000, 1000};
+        for (long ceiling : ceilings) {
+            long delay = backoff.nextDelayMillis();
+            assertTrue(delay >= ceiling / 2 && delay <= ceiling);
+        }
+        backoff.reset();
+        assertTrue(backoff.nextDelayMillis() <= 100);
+    }
+
+    @Test
+    public void reconnectsUntilTheSourceOpens() throws Exception {
+        StreamingLoop loop = loop();
+        Thread thread = start(loop);
+        FlakySource source = new FlakySource(3);
+        loop.setSource(source);
+
+        assertTrue(source.streaming.await(5, TimeUnit.SECONDS));
+        assertEquals(4, source.opens);
+        assertEquals(StreamingLoop.State.STREAMING, loop.getState());
+        assertEquals(1, loop.getPipeline().getDecoder().getFramesDecoded());
+        assertEquals("1,2\r\n".length(), loop.getBytesRead());
+
+        loop.shutdown();
+        thread.join(2000);
+        assertFalse(thread.isAlive());
+    }
+
+    @Test
+    public void reconnectsAfterTheLinkDrops() throws Exception {
+        StreamingLoop loop = loop();
+        Thread thread = start(loop);
+        FlakySource source = new FlakySource(0);
+        source.dropAfterFirstRead = true;
+        loop.setSource(source);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (source.opens < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, source.opens);
+        assertTrue(states.contains(StreamingLoop.State.RECONNECTING));
+
+        loop.shutdown();
+        thread.join(2000);
+        assertFalse(thread.isAlive());
+    }
+
+    @Test
+    public void runtimeFailuresReconnectInsteadOfEndingTheThread() throws Exception {
+        StreamingLoop loop = loop();
+        Thread thread = start(loop);
+        FlakySource source = new FlakySource(0);
+        SecurityException revoked = new SecurityException("permission revoked");
+        source.readFailure = revoked;
+        loop.setSource(source);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (source.opens < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, source.opens);
+        assertTrue(states.contains(StreamingLoop.State.RECONNECTING));
+        assertSame(revoked, errors.get(0).getCause());
+        assertTrue(thread.isAlive());
+
+        loop.shutdown();
+        thread.join(2000);
+        assertFalse(thread.isAlive());
+    }
+
+    @Test
+    public void replacingTheSourceStopsTheOldOne() throws Exception {
+        StreamingLoop loop = loop();
+        Thread thread = start(loop);
+        FlakySource first = new FlakySource(0);
+        loop.setSource(first);
+        assertTrue(first.streaming.await(5, TimeUnit.SECONDS));
+
+        FlakySource second = new FlakySource(0);
+        loop.setSource(second);
+        assertTrue(second.streaming.await(5, TimeUnit.SECONDS));
+        // No reconnect attempt for the replaced source
+        assertEquals(1, first.opens);
+
+        loop.shutdown();
+        thread.join(2000);
+        assertFalse(thread.isAlive());
+    }
+
+    @Test
+    public void replayEndsWithoutReconnecting() throws Exception {
+        StreamingLoop loop = loop();
+        Thread thread = start(loop);
+        ReplaySensorSource replay = new ReplaySensorSource("replay", new WaveformReplayFrames(2, 1000, 50, 1L),
+                ReplaySensorSource.AS_FAST_AS_POSSIBLE, ReplaySensorSource.Encoding.ASCII);
+        loop.setSource(replay);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (loop.getSource() != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertNull(loop.getSource());
+        assertEquals(StreamingLoop.State.DISCONNECTED, loop.getState());
+        assertFalse(states.contains(StreamingLoop.State.RECONNECTING));
+        assertEquals(50, loop.getPipeline().getDecoder().getFramesDecoded());
+
+        loop.shutdown();
+        thread.join(2000);
+        assertFalse(thread.isAlive());
+    }
+
+    @Test
+    public void shutdownWithoutSourceStopsTheThread() throws Exception {
+        StreamingLoop loop = loop();
+        Thread thread = start(loop);
+        loop.shutdown();
+        thread.join(2000);
+        assertFalse(thread.isAlive());
+    }
+}
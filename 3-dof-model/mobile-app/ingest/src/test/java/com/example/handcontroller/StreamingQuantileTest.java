@@ -0,0 +1,71 @@
+package com.example.handcontroller;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class StreamingQuantileTest {
+
+    @Test
+    public void tracksQuantilesOfSkewedData() {
+        Random random = new Random(5);
+        double[] quantiles = {0.5, 0.9, 0.95};
+        StreamingQuantile[] sketches = new StreamingQuantile[quantiles.length];
+        for (int q = 0; q < quantiles.length; q++) {
+            sketches[q] = new StreamingQuantile(quantiles[q]);
+        }
+        // Exponential, like a rectified EMG envelope at rest
+        double[] values = new double[20_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = -Math.log(1 - random.nextDouble()) * 10;
+            for (StreamingQuantile sketch : sketches) {
+                sketch.add(values[i]);
+            }
+        }
+
+        Arrays.sort(values);
+        for (int q = 0; q < quantiles.length; q++) {
+            double exact = values[(int) (quantiles[q] * values.length)];
+            assertEquals(exact, sketches[q].get(), exact * 0.03);
+        }
+    }
+
+    @Test
+    public void exactForTheFirstFewValues() {
+        StreamingQuantile median = new StreamingQuantile(0.5);
+        assertTrue(Double.isNaN(median.get()));
+        median.add(7);
+        median.add(1);
+        median.add(4);
+        assertEquals(4, median.get(), 0);
+    }
+
+    @Test
+    public void onlineStatsMatchTwoPass() {
+        Random random = new Random(9);
+        OnlineStats stats = new OnlineStats();
+        double[] values = new double[1000];
+        double sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            // Large offset next to the spread
+            values[i] = 1e6 + random.nextGaussian();
+            sum += values[i];
+            stats.add(values[i]);
+        }
+        double mean = sum / values.length;
+        double squares = 0;
+        for (double value : values) {
+            squares += (value - mean) * (value - mean);
+        }
+
+        assertEquals(1000, stats.getCount());
+        assertEquals(mean, stats.getMean(), 1e-9);
+        assertEquals(squares / (values.length - 1), stats.getVariance(), 1e-9);
+        Arrays.sort(values);
+        assertEquals(values[0], stats.getMin(), 0);
+        assertEquals(values[values.length - 1], stats.getMax(), 0);
+    }
+}
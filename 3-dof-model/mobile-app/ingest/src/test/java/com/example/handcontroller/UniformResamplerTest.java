@@ -0,0 +1,62 @@
+package com.example.handcontroller;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class UniformResamplerTest {
+
+    private final List<long[]> samples = new ArrayList<>();
+    private final UniformResampler.Listener collector =
+            (timestamp, values, channelCount) -> samples.add(new long[]{timestamp, Math.round(values[1])});
+
+    @Test
+    public void interpolatesOntoTheGrid() {
+        UniformResampler resampler = new UniformResampler(1_000_000, 50_000_000, 2);
+        // Irregular frames of a ramp: channel 1 holds the time in us
+        long[] times = {10_300_000, 10_900_000, 11_200_000, 13_700_000, 14_000_000};
+        for (long t : times) {
+            resampler.accept(t, new double[]{0, t / 1000.0}, 2, collector);
+        }
+
+        long[] expected = {11_000_000, 12_000_000, 13_000_000, 14_000_000};
+        assertEquals(expected.length, samples.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], samples.get(i)[0]);
+            assertEquals(expected[i] / 1000, samples.get(i)[1]);
+        }
+    }
+
+    @Test
+    public void boardsWithDifferentPhasesShareTheGrid() {
+        UniformResampler a = new UniformResampler(2_000_000, 50_000_000, 2);
+        UniformResampler b = new UniformResampler(2_000_000, 50_000_000, 2);
+        List<Long> gridA = new ArrayList<>();
+        List<Long> gridB = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            a.accept(1_234_567L + i * 1_000_000L, new double[]{i, i}, 2, (t, v, n) -> gridA.add(t));
+            b.accept(1_789_000L + i * 1_999_000L, new double[]{i, i}, 2, (t, v, n) -> gridB.add(t));
+        }
+        for (long t : gridA) {
+            assertEquals(0, t % 2_000_000);
+        }
+        assertTrue(gridB.containsAll(gridA.subList(0, 40)));
+    }
+
+    @Test
+    public void longGapsAreNotBridged() {
+        UniformResampler resampler = new UniformResampler(1_000_000, 10_000_000, 2);
+        resampler.accept(1_000_000, new double[]{0, 1}, 2, collector);
+        resampler.accept(2_000_000, new double[]{0, 2}, 2, collector);
+        resampler.accept(40_000_000, new double[]{0, 40}, 2, collector);
+        resampler.accept(41_000_000, new double[]{0, 41}, 2, collector);
+
+        assertEquals(4, samples.size());
+        assertEquals(2_000_000, samples.get(1)[0]);
+        assertEquals(40_000_000, samples.get(2)[0]);
+        assertEquals(1, resampler.getGaps());
+    }
+}
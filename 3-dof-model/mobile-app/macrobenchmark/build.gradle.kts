@@ -0,0 +1,83 @@
+// Macrobenchmarks for the app and the journeys its baseline profile is
+// generated from. Needs a device or emulator (API 28+, API 33+ unrooted):
+//   ./gradlew :app:generateBaselineProfile
+//   ./gradlew :macrobenchmark:connectedBenchmarkReleaseAndroidTest :macrobenchmark:checkPerformanceBudgets
+plugins {
+    alias(libs.plugins.android.test)
+    id("org.jetbrains.kotlin.android")
+    alias(libs.plugins.baselineprofile)
+}
+
+android {
+    namespace = "com.example.handcontroller.macrobenchmark"
+    compileSdk = 34
+
+    defaultConfig {
+        minSdk = 28
+        targetSdk = 34
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+    }
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_17
+        targetCompatibility = JavaVersion.VERSION_17
+    }
+
+    kotlinOptions {
+        jvmTarget = "17"
+    }
+
+    targetProjectPath = ":app"
+    experimentalProperties["android.experimental.self-instrumenting"] = true
+}
+
+baselineProfile {
+    useConnectedDevices = true
+}
+
+dependencies {
+    implementation("androidx.test.ext:junit:1.1.5")
+    implementation(libs.uiautomator)
+    implementation(libs.benchmark.macro.junit4)
+}
+
+// Median budgets per benchmark, in ms. A metric matches by prefix, since
+// trace section metrics are labelled with their mode (e.g. "...SumMs").
+val budgets = mapOf(
+    "startupBaselineProfile" to ("timeToInitialDisplayMs" to 600.0),
+    "languageSwitch" to ("SettingsActivity.onCreate" to 120.0),
+)
+
+tasks.register("checkPerformanceBudgets") {
+    description = "Fails if a benchmark median from the last connected run is over budget."
+    val results = layout.buildDirectory.dir("outputs/connected_android_test_additional_output")
+    doLast {
+        val files = results.get().asFile.walkTopDown()
+            .filter { it.name.endsWith("benchmarkData.json") }
+            .toList()
+        if (files.isEmpty()) {
+            throw GradleException("No benchmark results, run connectedBenchmarkReleaseAndroidTest first")
+        }
+        val failures = mutableListOf<String>()
+        for (file in files) {
+            @Suppress("UNCHECKED_CAST")
+            val data = groovy.json.JsonSlurper().parse(file) as Map<String, Any?>
+            @Suppress("UNCHECKED_CAST")
+            for (benchmark in data["benchmarks"] as List<Map<String, Any?>>) {
+                val (prefix, budget) = budgets[benchmark["name"]] ?: continue
+                val metrics = benchmark["metrics"] as Map<String, Map<String, Any?>>
+                for ((metric, values) in metrics) {
+                    if (!metric.startsWith(prefix)) continue
+                    val median = (values["median"] as Number).toDouble()
+                    logger.lifecycle("${benchmark["name"]} $metric median $median ms (budget $budget ms)")
+                    if (median > budget) {
+                        failures += "${benchmark["name"]}: $metric median $median ms > $budget ms"
+                    }
+                }
+            }
+        }
+        if (failures.isNotEmpty()) {
+            throw GradleException(failures.joinToString("\n"))
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.handcontroller.macrobenchmark
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Generates the app's baseline profile from cold start and a language switch
+ * round trip; run it with ./gradlew :app:generateBaselineProfile.
+ */
+@RunWith(AndroidJUnit4::class)
+class BaselineProfileGenerator {
+
+    @get:Rule
+    val rule = BaselineProfileRule()
+
+    @Test
+    fun generate() = rule.collect(
+        packageName = TARGET_PACKAGE,
+        includeInStartupProfile = true,
+    ) {
+        pressHome()
+        startActivityAndWait()
+        openSettings()
+        switchLanguage(HINDI)
+        switchLanguage(ENGLISH)
+        device.pressBack()
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.handcontroller.macrobenchmark
+
+import androidx.benchmark.macro.MacrobenchmarkScope
+import androidx.test.uiautomator.By
+import androidx.test.uiautomator.Until
+
+const val TARGET_PACKAGE = "com.example.handcontroller"
+
+private const val TIMEOUT_MS = 5_000L
+
+// Order of the items SettingsActivity adds to the language menu
+const val ENGLISH = 0
+const val HINDI = 1
+
+/** From the main screen, opens Settings through the bottom navigation. */
+fun MacrobenchmarkScope.openSettings() {
+    device.wait(Until.findObject(By.res(TARGET_PACKAGE, "settings")), TIMEOUT_MS).click()
+    device.wait(Until.hasObject(By.res(TARGET_PACKAGE, "selectLanguage")), TIMEOUT_MS)
+}
+
+/** On Settings, picks a language from the menu and waits for the screen to be recreated. */
+fun MacrobenchmarkScope.switchLanguage(index: Int) {
+    device.findObject(By.res(TARGET_PACKAGE, "selectLanguage")).click()
+    device.wait(Until.hasObject(By.res("android", "title")), TIMEOUT_MS)
+    device.findObjects(By.res("android", "title"))[index].click()
+    device.wait(Until.hasObject(By.res(TARGET_PACKAGE, "selectLanguage")), TIMEOUT_MS)
+    device.waitForIdle()
+}
@@ -0,0 +1,47 @@
+package com.example.handcontroller.macrobenchmark
+
+import androidx.benchmark.macro.BaselineProfileMode
+import androidx.benchmark.macro.CompilationMode
+import androidx.benchmark.macro.ExperimentalMetricApi
+import androidx.benchmark.macro.FrameTimingMetric
+import androidx.benchmark.macro.StartupMode
+import androidx.benchmark.macro.TraceSectionMetric
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Switching language on Settings: the recreated activity's onCreate (the
+ * "SettingsActivity.onCreate" trace section) and the frames around it.
+ */
+@RunWith(AndroidJUnit4::class)
+class LanguageSwitchBenchmark {
+
+    @get:Rule
+    val rule = MacrobenchmarkRule()
+
+    @OptIn(ExperimentalMetricApi::class)
+    @Test
+    fun languageSwitch() {
+        var switches = 0
+        rule.measureRepeated(
+            packageName = TARGET_PACKAGE,
+            metrics = listOf(
+                TraceSectionMetric("SettingsActivity.onCreate", TraceSectionMetric.Mode.Sum),
+                FrameTimingMetric(),
+            ),
+            compilationMode = CompilationMode.Partial(BaselineProfileMode.Require),
+            startupMode = StartupMode.WARM,
+            iterations = 10,
+            setupBlock = {
+                startActivityAndWait()
+                openSettings()
+            },
+        ) {
+            // Alternate, so every iteration is a real change of language
+            switchLanguage(if (switches++ % 2 == 0) HINDI else ENGLISH)
+        }
+    }
+}
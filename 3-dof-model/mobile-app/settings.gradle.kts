@@ -21,4 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "HandController"
 include(":app")
+include(":ingest")
+include(":macrobenchmark")
  
\ No newline at end of file
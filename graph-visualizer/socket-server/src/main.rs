@@ -1,4 +1,6 @@
 use std::env;
+use std::sync::Arc;
+use std::sync::atomic::{AtomicI64, Ordering};
 use rand::Rng;
 use serde_json::json;
 use log::{info, error};
@@ -6,9 +8,18 @@ use chrono::prelude::*;
 use std::net::SocketAddr;
 use futures::{StreamExt, SinkExt};
 use tokio::net::{TcpListener, TcpStream};
+use tokio::sync::broadcast;
 use tokio_tungstenite::{accept_async, tungstenite::protocol::Message};
 use tokio::time::{sleep, Duration};
 
+// Messages kept for slow viewers before they start skipping
+const RELAY_CAPACITY: usize = 256;
+// Random demo data resumes this long after the last live message
+const LIVE_TIMEOUT_MS: i64 = 1000;
+
+// Sender connection id (0 for the demo data) and the JSON text as received
+type Relay = broadcast::Sender<(u64, String)>;
+
 #[tokio::main]
 async fn main() {
     env_logger::init();
@@ -19,8 +30,14 @@ async fn main() {
 
     info!("Listening on: {}", addr);
 
+    let (relay, _) = broadcast::channel(RELAY_CAPACITY);
+    let last_live = Arc::new(AtomicI64::new(0));
+    tokio::spawn(demo_data(relay.clone(), last_live.clone()));
+
+    let mut next_id = 0u64;
     while let Ok((stream, _)) = listener.accept().await {
-        tokio::spawn(handle_connection(stream));
+        next_id += 1;
+        tokio::spawn(handle_connection(stream, next_id, relay.clone(), last_live.clone()));
     }
 }
 
@@ -29,7 +46,28 @@ pub fn get_unix_timestamp_ms() -> i64 {
     now.timestamp_millis()
 }
 
-async fn handle_connection(stream: TcpStream) {
+// Random samples for every viewer while nothing live is coming in
+async fn demo_data(relay: Relay, last_live: Arc<AtomicI64>) {
+    loop {
+        let timestamp = get_unix_timestamp_ms();
+        if timestamp - last_live.load(Ordering::Relaxed) > LIVE_TIMEOUT_MS {
+            let random_number_1 = rand::thread_rng().gen_range(1..=1024);
+            let random_number_2 = rand::thread_rng().gen_range(1..=1024);
+            let payload = json!({
+                "timestamp": timestamp,
+                "channel1": random_number_1,
+                "channel2": random_number_2
+            }).to_string();
+            // No viewers is not an error
+            let _ = relay.send((0, payload));
+        }
+        sleep(Duration::from_millis(100)).await;
+    }
+}
+
+// Every connection gets what the others send: the phone app sends batches
+// (a JSON array of samples per message), the visualizer just listens
+async fn handle_connection(stream: TcpStream, id: u64, relay: Relay, last_live: Arc<AtomicI64>) {
     let ws_stream = match accept_async(stream).await {
         Ok(ws) => ws,
         Err(e) => {
@@ -39,28 +77,35 @@ async fn handle_connection(stream: TcpStream) {
     };
 
     let (mut sender, mut receiver) = ws_stream.split();
+    let mut messages = relay.subscribe();
 
     tokio::spawn(async move {
         loop {
-            let random_number_1 = rand::thread_rng().gen_range(1..=1024);
-            let random_number_2 = rand::thread_rng().gen_range(1..=1024);
-            let timestamp = get_unix_timestamp_ms();
-            let payload = json!({
-                "timestamp": timestamp,
-                "channel1": random_number_1,
-                "channel2": random_number_2
-            }).to_string();
-
-            if let Err(e) = sender.send(Message::Text(payload)).await {
-                error!("Error sending message: {}", e);
-                break;
+            match messages.recv().await {
+                Ok((from, payload)) => {
+                    if from == id {
+                        continue;
+                    }
+                    if let Err(e) = sender.send(Message::Text(payload)).await {
+                        error!("Error sending message: {}", e);
+                        break;
+                    }
+                }
+                // A slow viewer skips ahead instead of holding up the sender
+                Err(broadcast::error::RecvError::Lagged(skipped)) => {
+                    info!("Connection {} skipped {} messages", id, skipped);
+                }
+                Err(broadcast::error::RecvError::Closed) => break,
             }
-            sleep(Duration::from_millis(100)).await;
         }
     });
 
     while let Some(msg) = receiver.next().await {
         match msg {
+            Ok(Message::Text(text)) => {
+                last_live.store(get_unix_timestamp_ms(), Ordering::Relaxed);
+                let _ = relay.send((id, text));
+            }
             Ok(Message::Close(_)) => break,
             Ok(_) => (),
             Err(e) => {
@@ -69,4 +114,4 @@ async fn handle_connection(stream: TcpStream) {
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -77,13 +77,15 @@ export default function Home() {
       socket.onmessage = async (event: MessageEvent) => {
         try {
           const data = JSON.parse(event.data);
+          // The phone app sends batches of samples, the demo server one at a time
+          const samples = Array.isArray(data) ? data : [data];
           setSocketData(prevData => {
             const newData = [
               ...(prevData || []),
-              {
-                ...data,
-                formattedTimestamp: new Date(data.timestamp).toLocaleTimeString(),
-              },
+              ...samples.map(sample => ({
+                ...sample,
+                formattedTimestamp: new Date(sample.timestamp).toLocaleTimeString(),
+              })),
             ].slice(-500);
             return newData;
           });